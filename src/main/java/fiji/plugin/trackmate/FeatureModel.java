@@ -22,6 +22,7 @@
 package fiji.plugin.trackmate;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -29,6 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
+import fiji.plugin.trackmate.features.LazySpotFeatureCalculator;
 import fiji.plugin.trackmate.features.edges.EdgeTargetAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackIndexAnalyzer;
 
@@ -90,6 +92,12 @@ public class FeatureModel
 
 	private final Model model;
 
+	/**
+	 * The calculator that computes spot features on demand. <code>null</code>
+	 * if all spot features are computed upfront.
+	 */
+	private volatile LazySpotFeatureCalculator lazySpotFeatureCalculator;
+
 	/*
 	 * CONSTRUCTOR
 	 */
@@ -525,6 +533,59 @@ public class FeatureModel
 		}
 	}
 
+	/**
+	 * Sets the calculator in charge of computing the declared spot features
+	 * the first time their values are requested. If <code>null</code>, spot
+	 * features are expected to be computed upfront.
+	 *
+	 * @param calculator
+	 *            the lazy calculator, or <code>null</code>.
+	 */
+	public void setLazySpotFeatureCalculator( final LazySpotFeatureCalculator calculator )
+	{
+		this.lazySpotFeatureCalculator = calculator;
+	}
+
+	/**
+	 * Ensures that the values of the specified spot features are computed for
+	 * all the spots of the model. Does nothing if spot features are computed
+	 * upfront, or if they were already computed.
+	 *
+	 * @param features
+	 *            the spot features that will be requested.
+	 */
+	public void ensureSpotFeatures( final Collection< String > features )
+	{
+		final LazySpotFeatureCalculator calculator = lazySpotFeatureCalculator;
+		if ( null != calculator )
+			calculator.ensureComputed( features );
+	}
+
+	/**
+	 * Ensures that the values of the specified spot features are computed for
+	 * the spots of the specified frame.
+	 *
+	 * @param features
+	 *            the spot features that will be requested.
+	 * @param frame
+	 *            the frame of the spots.
+	 */
+	public void ensureSpotFeatures( final Collection< String > features, final int frame )
+	{
+		final LazySpotFeatureCalculator calculator = lazySpotFeatureCalculator;
+		if ( null != calculator )
+			calculator.ensureComputed( features, Collections.singleton( frame ) );
+	}
+
+	/**
+	 * Ensures that the values of all the declared spot features are computed
+	 * for all the spots of the model.
+	 */
+	public void ensureAllSpotFeatures()
+	{
+		ensureSpotFeatures( spotFeatures );
+	}
+
 	/**
 	 * Returns spot features as declared in this model.
 	 *
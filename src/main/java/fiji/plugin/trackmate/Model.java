@@ -21,10 +21,12 @@
  */
 package fiji.plugin.trackmate;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.Graphs;
@@ -418,6 +420,10 @@ public class Model
 	 */
 	public void filterSpots( final Collection< FeatureFilter > spotFilters, final boolean doNotify )
 	{
+		final List< String > filteredFeatures = new ArrayList<>( spotFilters.size() );
+		for ( final FeatureFilter filter : spotFilters )
+			filteredFeatures.add( filter.feature );
+		featureModel.ensureSpotFeatures( filteredFeatures );
 		spots.filter( spotFilters );
 		if ( doNotify )
 		{
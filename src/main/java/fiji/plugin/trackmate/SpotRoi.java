@@ -23,6 +23,7 @@ package fiji.plugin.trackmate;
 
 import java.util.Arrays;
 
+import fiji.plugin.trackmate.util.SpotRoiMask;
 import net.imagej.ImgPlus;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessibleInterval;
@@ -47,6 +48,13 @@ public class SpotRoi
 	 */
 	public final double[] y;
 
+	/**
+	 * The last rasterization of this ROI. Compared to the ROI coordinates and
+	 * spot position on every request, so that it is invalidated if any of
+	 * them changes.
+	 */
+	private volatile CachedMask cachedMask;
+
 	public SpotRoi( final double[] x, final double[] y )
 	{
 		this.x = x;
@@ -120,6 +128,34 @@ public class SpotRoi
 		return Regions.sample( region, Views.extendMirrorDouble( Views.dropSingletonDimensions( img ) ) );
 	}
 
+	/**
+	 * Returns the mask of the pixels inside this polygon, for a spot at the
+	 * specified position and pixel sizes. The mask is cached and reused as
+	 * long as the ROI, the position and the pixel sizes are unchanged.
+	 *
+	 * @param spotXCenter
+	 *            the spot X position, in physical units.
+	 * @param spotYCenter
+	 *            the spot Y position, in physical units.
+	 * @param xScale
+	 *            the pixel size in X.
+	 * @param yScale
+	 *            the pixel size in Y.
+	 * @return the mask, in pixel coordinates.
+	 */
+	public SpotRoiMask getMask( final double spotXCenter, final double spotYCenter, final double xScale, final double yScale )
+	{
+		final CachedMask cached = cachedMask;
+		if ( null != cached && cached.matches( this, spotXCenter, spotYCenter, xScale, yScale ) )
+			return cached.mask;
+
+		final double[] xp = toPolygonX( xScale, 0, spotXCenter, 1. );
+		final double[] yp = toPolygonY( yScale, 0, spotYCenter, 1. );
+		final SpotRoiMask mask = SpotRoiMask.rasterize( xp, yp );
+		cachedMask = new CachedMask( this, spotXCenter, spotYCenter, xScale, yScale, mask );
+		return mask;
+	}
+
 	public double radius()
 	{
 		return Math.sqrt( area() / Math.PI );
@@ -168,6 +204,36 @@ public class SpotRoi
 	 * UTILS.
 	 */
 
+	private static final class CachedMask
+	{
+
+		private final double[] x;
+
+		private final double[] y;
+
+		private final double[] key;
+
+		private final SpotRoiMask mask;
+
+		private CachedMask( final SpotRoi roi, final double spotXCenter, final double spotYCenter, final double xScale, final double yScale, final SpotRoiMask mask )
+		{
+			this.x = roi.x.clone();
+			this.y = roi.y.clone();
+			this.key = new double[] { spotXCenter, spotYCenter, xScale, yScale };
+			this.mask = mask;
+		}
+
+		private boolean matches( final SpotRoi roi, final double spotXCenter, final double spotYCenter, final double xScale, final double yScale )
+		{
+			return key[ 0 ] == spotXCenter
+					&& key[ 1 ] == spotYCenter
+					&& key[ 2 ] == xScale
+					&& key[ 3 ] == yScale
+					&& Arrays.equals( x, roi.x )
+					&& Arrays.equals( y, roi.y );
+		}
+	}
+
 	private static final double[] centroid( final double[] x, final double[] y )
 	{
 		final double area = signedArea( x, y );
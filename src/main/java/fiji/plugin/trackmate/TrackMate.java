@@ -21,16 +21,27 @@
  */
 package fiji.plugin.trackmate;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
 import org.scijava.Cancelable;
 import org.scijava.Named;
 import org.scijava.util.VersionUtils;
@@ -43,9 +54,13 @@ import fiji.plugin.trackmate.detection.SpotGlobalDetector;
 import fiji.plugin.trackmate.detection.SpotGlobalDetectorFactory;
 import fiji.plugin.trackmate.features.EdgeFeatureCalculator;
 import fiji.plugin.trackmate.features.FeatureFilter;
+import fiji.plugin.trackmate.features.LazySpotFeatureCalculator;
 import fiji.plugin.trackmate.features.SpotFeatureCalculator;
 import fiji.plugin.trackmate.features.TrackFeatureCalculator;
+import fiji.plugin.trackmate.io.TrackSpillWriter;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTracker;
+import fiji.plugin.trackmate.tracking.TrackSpiller;
 import fiji.plugin.trackmate.util.Threads;
 import fiji.plugin.trackmate.util.TMUtils;
 import ij.gui.Roi;
@@ -99,6 +114,12 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 
 	private final List< Cancelable > cancelables = Collections.synchronizedList( new ArrayList<>() );
 
+	private boolean lazySpotFeatures = false;
+
+	private boolean onlineTracking = false;
+
+	private File trackSpillFile;
+
 	/*
 	 * CONSTRUCTORS
 	 */
@@ -137,6 +158,81 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 		return settings;
 	}
 
+	/**
+	 * Sets whether spot features are computed lazily. If <code>true</code>,
+	 * {@link #computeSpotFeatures(boolean)} only declares the spot features,
+	 * and each analyzer is run the first time one of its features is requested
+	 * through the {@link FeatureModel}, for instance to filter spots, color
+	 * them, or display them in a table. Batch jobs that only need the spot
+	 * positions and quality then skip the analyzers entirely.
+	 *
+	 * @param lazySpotFeatures
+	 *            whether spot features are computed on demand.
+	 */
+	public void setLazySpotFeatures( final boolean lazySpotFeatures )
+	{
+		this.lazySpotFeatures = lazySpotFeatures;
+	}
+
+	/**
+	 * Sets whether {@link #process()} tracks spots while they are detected.
+	 * If <code>true</code>, each frame goes through the initial filtering and
+	 * is linked to the previous frames as soon as it is detected, with the
+	 * {@link OnlineSpotTracker} of the tracker factory. Gap-closing, merging
+	 * and splitting are done over a sliding window of frames, so the links
+	 * found can differ from the ones of the batch tracker.
+	 * <p>
+	 * This is possible only with a frame-by-frame detector, a tracker that
+	 * supports it, and spot filters and feature penalties based on the
+	 * features set by the detector ({@link Spot#FEATURES}). Otherwise,
+	 * {@link #process()} runs the steps one after the other as usual.
+	 * <p>
+	 * The model is updated while frames are processed: the spots of a frame
+	 * and their links to earlier frames are added to it in a model
+	 * transaction as soon as the tracker reports that this frame cannot
+	 * receive new links anymore, so that model listeners see the tracks grow.
+	 * Spot features other than the ones set by the detector, edge and track
+	 * features, and filters are computed once all the frames are detected and
+	 * tracked, as with the batch process. Use {@link #setTrackSpillFile(File)}
+	 * to get the tracks out of memory as soon as they are complete.
+	 *
+	 * @param onlineTracking
+	 *            whether spots are tracked while they are detected.
+	 * @see fiji.plugin.trackmate.tracking.SpotTrackerFactory#createOnline(Map)
+	 */
+	public void setOnlineTracking( final boolean onlineTracking )
+	{
+		this.onlineTracking = onlineTracking;
+	}
+
+	/**
+	 * Sets the file to which {@link #process()} writes tracks as soon as they
+	 * are complete, to track movies that do not fit in memory. Spots are
+	 * tracked while they are detected, as with
+	 * {@link #setOnlineTracking(boolean)}, and only the frames that can still
+	 * be linked are kept in memory. A track is written to the file and removed
+	 * from memory when the tracker reports that its last frame cannot receive
+	 * new links anymore.
+	 * <p>
+	 * The model is then left empty: spots and tracks are read back from the
+	 * file with a {@link fiji.plugin.trackmate.io.TrackSpillReader}. Spots
+	 * keep the features set by the detector, and are marked as visible or not
+	 * according to the spot filters. Spot analyzers are not run, and edge and
+	 * track features are not computed.
+	 * <p>
+	 * If online tracking is not possible with the current settings, the steps
+	 * are run one after the other and the results are kept in the model, as
+	 * if no file was set.
+	 *
+	 * @param trackSpillFile
+	 *            the file to write tracks to, or <code>null</code> to keep all
+	 *            the tracks in the model.
+	 */
+	public void setTrackSpillFile( final File trackSpillFile )
+	{
+		this.trackSpillFile = trackSpillFile;
+	}
+
 	/*
 	 * PROCESSES
 	 */
@@ -162,6 +258,20 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 
 		final Logger logger = model.getLogger();
 		final SpotFeatureCalculator calculator = new SpotFeatureCalculator( model, settings, doLogIt );
+		if ( lazySpotFeatures && calculator.checkInput() )
+		{
+			calculator.declareFeatures();
+			final LazySpotFeatureCalculator lazyCalculator = new LazySpotFeatureCalculator( model, settings );
+			lazyCalculator.setNumThreads( numThreads );
+			model.getFeatureModel().setLazySpotFeatureCalculator( lazyCalculator );
+			if ( doLogIt )
+				logger.log( "Spot features will be computed on demand.\n" );
+
+			model.notifyFeaturesComputed();
+			return true;
+		}
+
+		model.getFeatureModel().setLazySpotFeatureCalculator( null );
 		cancelables.add( calculator );
 		calculator.setNumThreads( numThreads );
 		if ( calculator.checkInput() && calculator.process() )
@@ -286,6 +396,14 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 			return true; // Not an error.
 		}
 
+		// Feature penalties are maps of spot features.
+		if ( null != settings.trackerSettings )
+			for ( final Object value : settings.trackerSettings.values() )
+				if ( value instanceof Map )
+					model.getFeatureModel().ensureSpotFeatures( ( ( Map< ?, ? > ) value ).keySet().stream()
+							.map( Object::toString )
+							.collect( Collectors.toList() ) );
+
 		final SpotTracker tracker = settings.trackerFactory.create( model.getSpots(), settings.trackerSettings );
 		if ( tracker == null )
 		{
@@ -461,7 +579,6 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 	private boolean processFrameByFrame( final SpotDetectorFactory factory, final ImgPlus img, final Logger logger )
 	{
 		final Interval interval = TMUtils.getInterval( img, settings );
-		final int zindex = img.dimensionIndex( Axes.Z );
 		final int numFrames = settings.tend - settings.tstart + 1;
 		// Final results holder, for all frames
 		final SpotCollection spots = new SpotCollection();
@@ -469,8 +586,6 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 		// To report progress
 		final AtomicInteger spotFound = new AtomicInteger( 0 );
 		final AtomicInteger progress = new AtomicInteger( 0 );
-		// To translate spots, later
-		final double[] calibration = TMUtils.getSpatialCalibration( settings.imp );
 
 		/*
 		 * Fine tune multi-threading: If we have 10 threads and 15 frames to
@@ -503,75 +618,15 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 					if ( isCanceled() )
 						return Boolean.TRUE; // ok to be canceled.
 
-					// Yield detector for target frame
-					final SpotDetector< ? > detector = factory.getDetector( interval, frame );
-					if ( detector instanceof MultiThreaded )
-					{
-						final MultiThreaded md = ( MultiThreaded ) detector;
-						md.setNumThreads( threadsPerFrame );
-					}
-
-					if ( detector instanceof Cancelable )
-						cancelables.add( ( Cancelable ) detector );
-
-					// Execute detection
-					if ( detector.checkInput() && detector.process() )
-					{
-						// On success, get results.
-						final List< Spot > spotsThisFrame = detector.getResult();
-
-						/*
-						 * Special case: if we have a single column image, then
-						 * the detectors internally dealt with a single line
-						 * image. We need to permute back the X & Y coordinates
-						 * if it's the case.
-						 */
-						if ( img.dimension( 0 ) < 2 && zindex < 0 )
-						{
-							for ( final Spot spot : spotsThisFrame )
-							{
-								spot.putFeature( Spot.POSITION_Y, spot.getDoublePosition( 0 ) );
-								spot.putFeature( Spot.POSITION_X, 0d );
-							}
-						}
-
-						List< Spot > prunedSpots;
-						final Roi roi = settings.getRoi();
-						if ( roi != null )
-						{
-							prunedSpots = new ArrayList<>();
-							for ( final Spot spot : spotsThisFrame )
-							{
-								if ( roi.contains(
-										( int ) Math.round( spot.getFeature( Spot.POSITION_X ) / calibration[ 0 ] ),
-										( int ) Math.round( spot.getFeature( Spot.POSITION_Y ) / calibration[ 1 ] ) ) )
-									prunedSpots.add( spot );
-							}
-						}
-						else
-						{
-							prunedSpots = spotsThisFrame;
-						}
-						// Add detection feature other than position
-						for ( final Spot spot : prunedSpots )
-						{
-							// FRAME will be set upon adding to
-							// SpotCollection.
-							spot.putFeature( Spot.POSITION_T, frame * settings.dt );
-						}
-						// Store final results for this frame
-						spots.put( frame, prunedSpots );
-						// Report
-						spotFound.addAndGet( prunedSpots.size() );
-						logger.setProgress( progress.incrementAndGet() / ( double ) numFrames );
-
-					}
-					else
-					{
-						// Fail: exit and report error.
-						errorMessage = detector.getErrorMessage();
+					final List< Spot > prunedSpots = detectFrame( factory, img, interval, frame, threadsPerFrame );
+					if ( null == prunedSpots )
 						return Boolean.FALSE;
-					}
+
+					// Store final results for this frame
+					spots.put( frame, prunedSpots );
+					// Report
+					spotFound.addAndGet( prunedSpots.size() );
+					logger.setProgress( progress.incrementAndGet() / ( double ) numFrames );
 					return Boolean.TRUE;
 				}
 			};
@@ -620,6 +675,399 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 		return reportOk.get();
 	}
 
+	/**
+	 * Runs the detector on the specified frame, and returns the spots found
+	 * in the ROI.
+	 *
+	 * @return the spots detected, or <code>null</code> if detection failed.
+	 */
+	@SuppressWarnings( "rawtypes" )
+	private List< Spot > detectFrame( final SpotDetectorFactory factory, final ImgPlus img, final Interval interval, final int frame, final int threadsPerFrame )
+	{
+		// Yield detector for target frame
+		final SpotDetector< ? > detector = factory.getDetector( interval, frame );
+		if ( detector instanceof MultiThreaded )
+		{
+			final MultiThreaded md = ( MultiThreaded ) detector;
+			md.setNumThreads( threadsPerFrame );
+		}
+
+		if ( detector instanceof Cancelable )
+			cancelables.add( ( Cancelable ) detector );
+
+		// Execute detection
+		try
+		{
+			if ( !detector.checkInput() || !detector.process() )
+			{
+				// Fail: exit and report error.
+				errorMessage = detector.getErrorMessage();
+				return null;
+			}
+		}
+		finally
+		{
+			/*
+			 * Nothing is left to cancel. Do not keep the detector, as all the
+			 * frames of the movie can be processed in a single run.
+			 */
+			if ( detector instanceof Cancelable )
+				cancelables.remove( detector );
+		}
+
+		// On success, get results.
+		final List< Spot > spotsThisFrame = detector.getResult();
+
+		/*
+		 * Special case: if we have a single column image, then the detectors
+		 * internally dealt with a single line image. We need to permute back
+		 * the X & Y coordinates if it's the case.
+		 */
+		if ( img.dimension( 0 ) < 2 && img.dimensionIndex( Axes.Z ) < 0 )
+		{
+			for ( final Spot spot : spotsThisFrame )
+			{
+				spot.putFeature( Spot.POSITION_Y, spot.getDoublePosition( 0 ) );
+				spot.putFeature( Spot.POSITION_X, 0d );
+			}
+		}
+
+		List< Spot > prunedSpots;
+		final Roi roi = settings.getRoi();
+		if ( roi != null )
+		{
+			// To translate spots.
+			final double[] calibration = TMUtils.getSpatialCalibration( settings.imp );
+			prunedSpots = new ArrayList<>();
+			for ( final Spot spot : spotsThisFrame )
+			{
+				if ( roi.contains(
+						( int ) Math.round( spot.getFeature( Spot.POSITION_X ) / calibration[ 0 ] ),
+						( int ) Math.round( spot.getFeature( Spot.POSITION_Y ) / calibration[ 1 ] ) ) )
+					prunedSpots.add( spot );
+			}
+		}
+		else
+		{
+			prunedSpots = spotsThisFrame;
+		}
+		// Add detection feature other than position
+		for ( final Spot spot : prunedSpots )
+		{
+			// FRAME will be set upon adding to SpotCollection.
+			spot.putFeature( Spot.POSITION_T, frame * settings.dt );
+		}
+		return prunedSpots;
+	}
+
+	/**
+	 * Returns the online tracker to use to track spots while they are
+	 * detected, or <code>null</code> if the settings do not allow it.
+	 */
+	private OnlineSpotTracker createOnlineTracker()
+	{
+		final Logger logger = model.getLogger();
+		final SpotDetectorFactoryBase< ? > factory = settings.detectorFactory;
+		if ( !( factory instanceof SpotDetectorFactory ) || factory instanceof ManualDetectorFactory || null == settings.trackerFactory )
+		{
+			logger.log( "Online tracking requires a frame-by-frame detector and a tracker. Processing steps one after the other.\n" );
+			return null;
+		}
+
+		// Only the features set by the detector are known while detecting.
+		final List< String > features = new ArrayList<>();
+		for ( final FeatureFilter filter : settings.getSpotFilters() )
+			features.add( filter.feature );
+		if ( null != settings.trackerSettings )
+			for ( final Object value : settings.trackerSettings.values() )
+				if ( value instanceof Map )
+					for ( final Object key : ( ( Map< ?, ? > ) value ).keySet() )
+						features.add( key.toString() );
+		for ( final String feature : features )
+		{
+			if ( !Spot.FEATURES.contains( feature ) )
+			{
+				logger.log( "Online tracking cannot use the spot feature " + feature + ". Processing steps one after the other.\n" );
+				return null;
+			}
+		}
+
+		final OnlineSpotTracker tracker = settings.trackerFactory.createOnline( settings.trackerSettings );
+		if ( null == tracker )
+			logger.log( "The tracker " + settings.trackerFactory.getName() + " cannot track spots while they are detected. Processing steps one after the other.\n" );
+		return tracker;
+	}
+
+	/**
+	 * Detects spots frame by frame, and links each frame with the specified
+	 * online tracker as soon as it is detected. Then computes spot, edge and
+	 * track features and filters the results, as {@link #process()} does.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	private boolean processOnline( final OnlineSpotTracker tracker )
+	{
+		isCanceled = false;
+		cancelReason = null;
+		cancelables.clear();
+
+		final Logger logger = model.getLogger();
+		logger.log( "Starting detection and online tracking process using "
+				+ ( ( numThreads > 1 ) ? ( numThreads + " threads" ) : "1 thread" )
+				+ ".\n", Logger.BLUE_COLOR );
+
+		if ( null == settings.detectorSettings )
+		{
+			errorMessage = "Detector settings is null.\n";
+			return false;
+		}
+		final SpotDetectorFactory factory = ( SpotDetectorFactory ) settings.detectorFactory;
+		final ImgPlus img = TMUtils.rawWraps( settings.imp );
+		if ( !factory.setTarget( img, settings.detectorSettings ) )
+		{
+			errorMessage = factory.getErrorMessage();
+			return false;
+		}
+
+		final Interval interval = TMUtils.getInterval( img, settings );
+		final int numFrames = settings.tend - settings.tstart + 1;
+		final int nSimultaneousFrames = ( factory.forbidMultithreading() )
+				? 1
+				: Math.min( numThreads, numFrames );
+		final int threadsPerFrame = Math.max( 1, numThreads / nSimultaneousFrames );
+		tracker.setNumThreads( numThreads );
+		tracker.setLogger( logger );
+
+		/*
+		 * Frames are detected in parallel, and tracked in order as soon as
+		 * they are available. Detection is not let go too far ahead of
+		 * tracking, so that detected frames do not pile up in memory.
+		 */
+		final ExecutorService executorService = Threads.newFixedThreadPool( nSimultaneousFrames );
+		final int lookAhead = 2 * nSimultaneousFrames;
+		final Queue< Future< List< Spot > > > tasks = new ArrayDeque<>( lookAhead );
+		final IntFunction< Future< List< Spot > > > submitDetection = frame -> {
+			final Callable< List< Spot > > detection = () -> isCanceled()
+					? Collections.emptyList()
+					: detectFrame( factory, img, interval, frame, threadsPerFrame );
+			return executorService.submit( detection );
+		};
+		for ( int i = 0; i < Math.min( lookAhead, numFrames ); i++ )
+			tasks.add( submitDetection.apply( settings.tstart + i ) );
+		logger.setStatus( "Detection and tracking..." );
+		logger.setProgress( 0 );
+
+		final SpotCollection spots = new SpotCollection();
+		spots.setNumThreads( numThreads );
+		final List< FeatureFilter > spotFilters = settings.getSpotFilters();
+		TrackSpillWriter spillWriter = null;
+		TrackSpiller spiller = null;
+		int spotFound = 0;
+		int lastPublished = settings.tstart - 1;
+		boolean ok = true;
+		try
+		{
+			if ( null != trackSpillFile )
+			{
+				spillWriter = new TrackSpillWriter( trackSpillFile, model.getSpaceUnits(), model.getTimeUnits() );
+				spiller = new TrackSpiller( tracker.getResult(), spillWriter );
+			}
+			else
+			{
+				// Completed frames are published to the model.
+				model.clearSpots( true );
+				model.clearTracks( true );
+			}
+
+			for ( int i = 0; i < numFrames; i++ )
+			{
+				final List< Spot > detected = tasks.poll().get();
+				if ( i + lookAhead < numFrames )
+					tasks.add( submitDetection.apply( settings.tstart + i + lookAhead ) );
+				if ( null == detected )
+				{
+					logger.error( "Detection failed after " + i + " frames:\n" + errorMessage );
+					ok = false;
+					break;
+				}
+				if ( isCanceled() )
+					break;
+
+				// Initial filtering on quality.
+				final int frame = settings.tstart + i;
+				final List< Spot > spotsThisFrame = new ArrayList<>( detected.size() );
+				for ( final Spot spot : detected )
+					if ( spot.getFeature( Spot.QUALITY ).compareTo( settings.initialSpotFilterValue ) >= 0 )
+						spotsThisFrame.add( spot );
+				spotFound += spotsThisFrame.size();
+				if ( null == spiller )
+				{
+					spots.put( frame, spotsThisFrame );
+				}
+				else
+				{
+					// Set the features the spot collection would set.
+					for ( final Spot spot : spotsThisFrame )
+					{
+						spot.putFeature( Spot.FRAME, Double.valueOf( frame ) );
+						spot.putFeature( SpotCollection.VISIBILITY, isVisible( spot, spotFilters ) ? SpotCollection.ONE : SpotCollection.ZERO );
+					}
+					spiller.addFrame( frame, spotsThisFrame );
+				}
+
+				// Only track the spots that pass the spot filters.
+				final List< Spot > visibleSpots = new ArrayList<>( spotsThisFrame.size() );
+				for ( final Spot spot : spotsThisFrame )
+					if ( isVisible( spot, spotFilters ) )
+						visibleSpots.add( spot );
+
+				if ( !tracker.addFrame( frame, visibleSpots ) )
+				{
+					errorMessage = "Tracking process failed:\n" + tracker.getErrorMessage();
+					ok = false;
+					break;
+				}
+				if ( null != spiller )
+					spiller.spill( tracker.getCompletedFrame() );
+				else
+					lastPublished = publishFrames( spots, tracker.getResult(), spotFilters, lastPublished, Math.min( frame, tracker.getCompletedFrame() ) );
+				logger.setProgress( ( i + 1. ) / numFrames );
+			}
+			if ( ok && !tracker.finish() )
+			{
+				errorMessage = "Tracking process failed:\n" + tracker.getErrorMessage();
+				ok = false;
+			}
+			if ( null != spiller )
+				spiller.flush();
+			else if ( ok && !isCanceled() )
+				publishFrames( spots, tracker.getResult(), spotFilters, lastPublished, settings.tend );
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			errorMessage = "Problem during detection: " + e.getMessage();
+			ok = false;
+			e.printStackTrace();
+		}
+		catch ( final IOException e )
+		{
+			errorMessage = "Problem writing tracks to " + trackSpillFile + ": " + e.getMessage();
+			ok = false;
+			e.printStackTrace();
+		}
+		finally
+		{
+			executorService.shutdownNow();
+			if ( null != spillWriter )
+			{
+				try
+				{
+					spillWriter.close();
+				}
+				catch ( final IOException e )
+				{
+					errorMessage = "Problem writing tracks to " + trackSpillFile + ": " + e.getMessage();
+					ok = false;
+					e.printStackTrace();
+				}
+			}
+			logger.setProgress( 1 );
+			logger.setStatus( "" );
+		}
+
+		model.setSpots( spots, true );
+		logger.log( "Found " + spotFound + " spots.\n" );
+		if ( !ok )
+			return false;
+		if ( isCanceled() )
+		{
+			logger.log( "Detection canceled. Reason:\n" + getCancelReason() + "\n" );
+			return true;
+		}
+		if ( null != spillWriter )
+		{
+			logger.log( "Wrote " + spillWriter.getNSpots() + " spots and " + spillWriter.getNEdges() + " links to " + trackSpillFile + ".\n" );
+			return true;
+		}
+
+		if ( !computeSpotFeatures( true ) )
+			return false;
+		if ( isCanceled() )
+			return true;
+
+		if ( !execSpotFiltering( true ) )
+			return false;
+
+		model.setTracks( tracker.getResult(), true );
+
+		if ( !computeEdgeFeatures( true ) )
+			return false;
+		if ( isCanceled() )
+			return true;
+
+		if ( !computeTrackFeatures( true ) )
+			return false;
+		if ( isCanceled() )
+			return true;
+
+		return execTrackFiltering( true );
+	}
+
+	/**
+	 * Adds the spots of the frames after <code>from</code> up to
+	 * <code>to</code> to the model, with their links to the spots of earlier
+	 * frames, in a single model transaction.
+	 *
+	 * @return the last frame added to the model.
+	 */
+	private int publishFrames( final SpotCollection spots, final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph, final List< FeatureFilter > spotFilters, final int from, final int to )
+	{
+		if ( to <= from )
+			return from;
+
+		model.beginUpdate();
+		try
+		{
+			for ( int frame = from + 1; frame <= to; frame++ )
+			{
+				for ( final Iterator< Spot > it = spots.iterator( frame, false ); it.hasNext(); )
+				{
+					final Spot spot = it.next();
+					model.addSpotTo( spot, frame );
+					spot.putFeature( SpotCollection.VISIBILITY, isVisible( spot, spotFilters ) ? SpotCollection.ONE : SpotCollection.ZERO );
+					if ( !graph.containsVertex( spot ) )
+						continue;
+
+					for ( final DefaultWeightedEdge edge : graph.edgesOf( spot ) )
+					{
+						final Spot other = Graphs.getOppositeVertex( graph, edge, spot );
+						if ( other.getFeature( Spot.FRAME ).intValue() < frame )
+							model.addEdge( other, spot, graph.getEdgeWeight( edge ) );
+					}
+				}
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		return to;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified spot passes all the filters,
+	 * as in {@link SpotCollection#filter(java.util.Collection)}.
+	 */
+	private static boolean isVisible( final Spot spot, final List< FeatureFilter > filters )
+	{
+		for ( final FeatureFilter filter : filters )
+		{
+			final Double val = spot.getFeature( filter.feature );
+			if ( null == val || filter.isAbove && val.compareTo( filter.value ) < 0 || !filter.isAbove && val.compareTo( filter.value ) > 0 )
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Execute the initial spot filtering part.
 	 * <p>
@@ -780,6 +1228,15 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named, Ca
 	@Override
 	public boolean process()
 	{
+		if ( onlineTracking || null != trackSpillFile )
+		{
+			final OnlineSpotTracker tracker = createOnlineTracker();
+			if ( null != tracker )
+				return processOnline( tracker );
+			if ( null != trackSpillFile )
+				model.getLogger().log( "Tracks are kept in memory and not written to " + trackSpillFile + ".\n" );
+		}
+
 		if ( !execDetection() )
 			return false;
 		if ( isCanceled() )
@@ -39,6 +39,7 @@ import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.TrackMate;
 import fiji.plugin.trackmate.detection.util.MedianFilter2D;
+import fiji.plugin.trackmate.util.PixelKernels;
 import fiji.plugin.trackmate.util.Threads;
 import fiji.plugin.trackmate.util.TMUtils;
 import ij.ImagePlus;
@@ -47,6 +48,7 @@ import net.imagej.axis.Axes;
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Point;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -532,6 +534,12 @@ public class DetectionUtils
 	 */
 	public static final < T extends RealType< T > > void normalize( final Iterable< T > input )
 	{
+		if ( input instanceof IterableInterval )
+		{
+			PixelKernels.normalize( ( IterableInterval< T > ) input );
+			return;
+		}
+
 		// Min & Max.
 		double max = Double.NEGATIVE_INFINITY;
 		double min = Double.POSITIVE_INFINITY;
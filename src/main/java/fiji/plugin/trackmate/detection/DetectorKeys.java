@@ -105,6 +105,27 @@ public class DetectorKeys
 	/** A default value for the {@link #KEY_DOWNSAMPLE_FACTOR} parameter. */
 	public static final int DEFAULT_DOWNSAMPLE_FACTOR = 4;
 
+	/**
+	 * The key identifying the parameter setting whether the detection is done
+	 * in a coarse-to-fine manner: spots are first detected on a downsampled
+	 * image, with a downsampling factor chosen from the spot radius, then
+	 * refined at full resolution. Expected values are {@link Boolean}s. This
+	 * parameter is optional and is not part of the default settings: if it is
+	 * absent, {@link #DEFAULT_DO_PYRAMID_DETECTION} is used.
+	 * <p>
+	 * Currently used by:
+	 * <ul>
+	 * <li>{@link LogDetector}
+	 * <li>{@link DogDetector}
+	 * </ul>
+	 * 
+	 * @see PyramidDetector
+	 */
+	public static final String KEY_DO_PYRAMID_DETECTION = "DO_PYRAMID_DETECTION";
+
+	/** A default value for the {@link #KEY_DO_PYRAMID_DETECTION} parameter. */
+	public static final boolean DEFAULT_DO_PYRAMID_DETECTION = false;
+
 	/**
 	 * The key identifying the parameter setting whether we pre-filter the
 	 * target image with a median filter or not. Expected values are
@@ -21,6 +21,7 @@
  */
 package fiji.plugin.trackmate.detection;
 
+import fiji.plugin.trackmate.detection.util.RecursiveGaussian;
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
@@ -29,10 +30,14 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.dog.DifferenceOfGaussian;
 import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.parallel.Parallelization;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
@@ -85,13 +90,9 @@ public class DogDetector< T extends RealType< T > & NativeType< T > > extends Lo
 		 * Do DoG computation.
 		 */
 
-		final RandomAccessible< T > extended = Views.extendMirrorSingle( view );
 		// We need to shift coordinates by -min[] to have the correct location.
 		final long[] min = new long[ interval.numDimensions() ];
 		interval.min( min );
-		final FloatType type = new FloatType();
-		final RandomAccessibleInterval< FloatType > dog = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
-		final RandomAccessibleInterval< FloatType > dog2 = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
 
 		final double sigma1 = radius / Math.sqrt( interval.numDimensions() ) * 0.9;
 		final double sigma2 = radius / Math.sqrt( interval.numDimensions() ) * 1.1;
@@ -105,24 +106,45 @@ public class DogDetector< T extends RealType< T > & NativeType< T > > extends Lo
 		for ( int d = 0; d < cal.length; d++ )
 			cal[ d ] = calibration[ d ];
 		final double[][] sigmas = DifferenceOfGaussian.computeSigmas( 0.5, 2, cal, sigma1, sigma2 );
-		try
+
+		final RandomAccessibleInterval< FloatType > dog;
+		if ( RecursiveGaussian.isSuitable( sigmas ) && Intervals.numElements( interval ) < Integer.MAX_VALUE )
 		{
-			Parallelization.runWithNumThreads( numThreads, () -> {
-				Gauss3.gauss( sigmas[ 1 ], extended, dog2 );
-				Gauss3.gauss( sigmas[ 0 ], extended, dog );
-			} );
+			/*
+			 * Large sigmas: recursive filtering, whose cost does not depend on
+			 * sigma. Both Gaussians and their difference are computed at once.
+			 */
+			final ArrayImg< FloatType, FloatArray > out = ArrayImgs.floats( Intervals.dimensionsAsLongArray( interval ) );
+			final RandomAccessibleInterval< T > source = view;
+			Parallelization.runWithNumThreads( numThreads,
+					() -> RecursiveGaussian.differenceOfGaussian( sigmas[ 0 ], sigmas[ 1 ], source, out ) );
+			dog = Views.translate( out, min );
 		}
-		catch ( final IncompatibleTypeException e )
+		else
 		{
-			e.printStackTrace();
-		}
+			final RandomAccessible< T > extended = Views.extendMirrorSingle( view );
+			final FloatType type = new FloatType();
+			dog = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
+			final RandomAccessibleInterval< FloatType > dog2 = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
+			try
+			{
+				Parallelization.runWithNumThreads( numThreads, () -> {
+					Gauss3.gauss( sigmas[ 1 ], extended, dog2 );
+					Gauss3.gauss( sigmas[ 0 ], extended, dog );
+				} );
+			}
+			catch ( final IncompatibleTypeException e )
+			{
+				e.printStackTrace();
+			}
 
-		final IterableInterval< FloatType > dogIterable = Views.iterable( dog );
-		final IterableInterval< FloatType > tmpIterable = Views.iterable( dog2 );
-		final Cursor< FloatType > dogCursor = dogIterable.cursor();
-		final Cursor< FloatType > tmpCursor = tmpIterable.cursor();
-		while ( dogCursor.hasNext() )
-			dogCursor.next().sub( tmpCursor.next() );
+			final IterableInterval< FloatType > dogIterable = Views.iterable( dog );
+			final IterableInterval< FloatType > tmpIterable = Views.iterable( dog2 );
+			final Cursor< FloatType > dogCursor = dogIterable.cursor();
+			final Cursor< FloatType > tmpCursor = tmpIterable.cursor();
+			while ( dogCursor.hasNext() )
+				dogCursor.next().sub( tmpCursor.next() );
+		}
 
 		spots = DetectionUtils.findLocalMaxima( dog, threshold, calibration, radius, doSubPixelLocalization, numThreads );
 
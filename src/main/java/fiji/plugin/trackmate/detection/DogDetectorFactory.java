@@ -77,6 +77,14 @@ public class DogDetectorFactory< T extends RealType< T > & NativeType< T >> exte
 		final double[] calibration = TMUtils.getSpatialCalibration( img );
 
 		final RandomAccessible< T > imFrame = prepareFrameImg( frame );
+		if ( isPyramidDetection( settings ) )
+		{
+			final PyramidDetector< T > detector = new PyramidDetector<>( imFrame, interval, calibration, radius, threshold,
+					( im, itv, cal, thr, coarse ) -> new DogDetector<>( im, itv, cal, radius, thr, doSubpixel, doMedian && !coarse ) );
+			detector.setNumThreads( 1 );
+			return detector;
+		}
+
 		final DogDetector< T > detector = new DogDetector<>( imFrame, interval, calibration, radius, threshold, doSubpixel, doMedian );
 		detector.setNumThreads( 1 );
 		return detector;
@@ -41,10 +41,14 @@ import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.algorithm.gradient.HessianMatrix;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.loops.LoopBuilder;
 import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
 import net.imglib2.parallel.TaskExecutor;
@@ -218,7 +222,9 @@ public class HessianDetector< T extends RealType< T > & NativeType< T > > implem
 		try
 		{
 			// Compute Hessian.
-			final Img< FloatType > det = computeHessianDeterminant( crop, new FloatType() );
+			final Img< FloatType > det = ( Intervals.numElements( crop ) < Integer.MAX_VALUE )
+					? computeHessianDeterminantStreaming( crop )
+					: computeHessianDeterminant( crop, new FloatType() );
 
 			// Normalize from 0 to 1.
 			if ( normalize )
@@ -322,6 +328,140 @@ public class HessianDetector< T extends RealType< T > & NativeType< T > > implem
 		return det;
 	}
 
+	/**
+	 * Computes the determinant of the Hessian matrix without storing the
+	 * gradient and Hessian images. Only the Gaussian-filtered image and the
+	 * determinant image are allocated, that is twice the crop size instead of
+	 * about <code>n(n+3)/2 + 2</code> times.
+	 * <p>
+	 * The second derivatives are computed on the fly, block by block, with the
+	 * same finite-difference scheme as {@link HessianMatrix}: central
+	 * difference of central differences, with border extension for both the
+	 * Gaussian and the gradient. They are then scaled like
+	 * {@link HessianMatrix#scaleHessianMatrix(net.imglib2.RandomAccessibleInterval, double[])}
+	 * does.
+	 *
+	 * @param crop
+	 *            the interval to process. Must have less than
+	 *            {@link Integer#MAX_VALUE} elements.
+	 * @return the determinant image, as a zero-min image.
+	 */
+	private final Img< FloatType > computeHessianDeterminantStreaming( final Interval crop ) throws IncompatibleTypeException
+	{
+		final int n = crop.numDimensions();
+
+		// Sigmas in pixel units.
+		final double[] radius = new double[] { radiusXY, radiusXY, radiusZ };
+		final double[] sigmas = new double[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			final double cal = d < calibration.length ? calibration[ d ] : 1;
+			sigmas[ d ] = radius[ d ] / cal / Math.sqrt( n );
+		}
+
+		// Scale factors for the Hessian elements, in composite order.
+		double minSigma = Double.POSITIVE_INFINITY;
+		for ( final double sigma : sigmas )
+			minSigma = Math.min( minSigma, sigma );
+		final double[] scales = new double[ n * ( n + 1 ) / 2 ];
+		for ( int d1 = 0, k = 0; d1 < n; d1++ )
+			for ( int d2 = d1; d2 < n; d2++, k++ )
+				scales[ k ] = sigmas[ d1 ] * sigmas[ d2 ] / ( minSigma * minSigma );
+
+		// Gaussian filtering.
+		final long[] dimensions = Intervals.dimensionsAsLongArray( crop );
+		final ArrayImg< FloatType, FloatArray > gaussian = ArrayImgs.floats( dimensions );
+		final IntervalView< T > input = Views.zeroMin( Views.interval( img, crop ) );
+		Gauss3.gauss( sigmas, Views.extendBorder( input ), gaussian, es );
+
+		// Determinant, block by block along the last dimension.
+		final ArrayImg< FloatType, FloatArray > det = ArrayImgs.floats( dimensions );
+		final float[] g = gaussian.update( null ).getCurrentStorageArray();
+		final float[] out = det.update( null ).getCurrentStorageArray();
+		final int[] dims = new int[ n ];
+		final int[] strides = new int[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			dims[ d ] = ( int ) dimensions[ d ];
+			strides[ d ] = ( d == 0 ) ? 1 : strides[ d - 1 ] * dims[ d - 1 ];
+		}
+
+		final int lastDim = n - 1;
+		final int nBlocks = Math.max( 1, Math.min( nTasks, dims[ lastDim ] ) );
+		final List< int[] > blocks = new ArrayList<>( nBlocks );
+		for ( int b = 0; b < nBlocks; b++ )
+			blocks.add( new int[] {
+					( int ) ( ( long ) dims[ lastDim ] * b / nBlocks ),
+					( int ) ( ( long ) dims[ lastDim ] * ( b + 1 ) / nBlocks ) } );
+
+		final TaskExecutor taskExecutor = TaskExecutors.forExecutorServiceAndNumTasks( es, nBlocks );
+		taskExecutor.forEach( blocks, block -> {
+			final int[] pos = new int[ n ];
+			final double[] h = new double[ scales.length ];
+			pos[ lastDim ] = block[ 0 ];
+			for ( int p = block[ 0 ] * strides[ lastDim ]; p < block[ 1 ] * strides[ lastDim ]; p++ )
+			{
+				for ( int d1 = 0, k = 0; d1 < n; d1++ )
+					for ( int d2 = d1; d2 < n; d2++, k++ )
+						h[ k ] = scales[ k ] * secondDerivative( g, p, pos, dims, strides, d1, d2 );
+
+				out[ p ] = ( float ) ( ( n == 2 ) ? det2( h ) : det3( h ) );
+
+				// Move to next position.
+				for ( int d = 0; d < n; d++ )
+				{
+					if ( ++pos[ d ] < dims[ d ] )
+						break;
+					pos[ d ] = 0;
+				}
+			}
+		} );
+		return det;
+	}
+
+	/**
+	 * Central difference along <code>d1</code> of the central difference along
+	 * <code>d2</code> of the image, at the specified position. Out-of-bounds
+	 * values are taken from the closest border, for the image and its
+	 * gradient.
+	 */
+	private static final double secondDerivative( final float[] g, final int p, final int[] pos, final int[] dims, final int[] strides, final int d1, final int d2 )
+	{
+		// Neighbors along d2 of the current position.
+		final int c2 = pos[ d2 ];
+		final int c2p = Math.min( c2 + 1, dims[ d2 ] - 1 );
+		final int c2m = Math.max( c2 - 1, 0 );
+		final int pp = p + ( c2p - c2 ) * strides[ d2 ];
+		final int pm = p + ( c2m - c2 ) * strides[ d2 ];
+
+		// Gradient along d1 at these neighbors.
+		final int c1p = ( d1 == d2 ) ? c2p : pos[ d1 ];
+		final int c1m = ( d1 == d2 ) ? c2m : pos[ d1 ];
+		return 0.5 * ( centralDifference( g, pp, c1p, dims[ d1 ], strides[ d1 ] )
+				- centralDifference( g, pm, c1m, dims[ d1 ], strides[ d1 ] ) );
+	}
+
+	private static final double centralDifference( final float[] g, final int p, final int c, final int dim, final int stride )
+	{
+		final int forward = p + ( Math.min( c + 1, dim - 1 ) - c ) * stride;
+		final int backward = p + ( Math.max( c - 1, 0 ) - c ) * stride;
+		return 0.5 * ( g[ forward ] - g[ backward ] );
+	}
+
+	private static final double det2( final double[] h )
+	{
+		return h[ 0 ] * h[ 2 ] - h[ 1 ] * h[ 1 ];
+	}
+
+	private static final double det3( final double[] h )
+	{
+		final double x = h[ 3 ] * h[ 5 ] - h[ 4 ] * h[ 4 ];
+		final double y = h[ 1 ] * h[ 5 ] - h[ 2 ] * h[ 4 ];
+		final double z = h[ 1 ] * h[ 4 ] - h[ 2 ] * h[ 3 ];
+		// Change sign so that bright detections have positive values.
+		return -( h[ 0 ] * x - h[ 1 ] * y + h[ 2 ] * z );
+	}
+
 	@Override
 	public List< Spot > getResult()
 	{
@@ -29,6 +29,7 @@ import fiji.plugin.trackmate.Spot;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.loops.LoopBuilder;
@@ -40,7 +41,7 @@ import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
-public class LabelImageDetector< T extends RealType< T > & NativeType< T > > implements SpotDetector< T >
+public class LabelImageDetector< T extends RealType< T > & NativeType< T > > implements SpotDetector< T >, MultiThreaded
 {
 
 	private final static String BASE_ERROR_MESSAGE = "ThresholdDetector: ";
@@ -100,6 +101,17 @@ public class LabelImageDetector< T extends RealType< T > & NativeType< T > > imp
 	public boolean process()
 	{
 		final long start = System.currentTimeMillis();
+		if ( input.numDimensions() != 2 )
+		{
+			/*
+			 * 3D: no need for a labeling, we collect the statistics of all
+			 * labels in one pass over the label image.
+			 */
+			spots = MaskUtils.fromLabelImage( input, interval, calibration, numThreads, null );
+			processingTime = System.currentTimeMillis() - start;
+			return true;
+		}
+
 		final RandomAccessibleInterval< T > rai = Views.interval( input, interval );
 		final T type = Util.getTypeFromInterval( rai );
 
@@ -136,10 +148,7 @@ public class LabelImageDetector< T extends RealType< T > & NativeType< T > > imp
 			indices.add( Integer.valueOf( i + 1 ) );
 
 		final ImgLabeling< Integer, R > labeling = ImgLabeling.fromImageAndLabels( rai, indices );
-		if ( input.numDimensions() == 2 )
-			spots = MaskUtils.fromLabelingWithROI( labeling, interval, calibration, simplify, null );
-		else
-			spots = MaskUtils.fromLabeling( labeling, interval, calibration );
+		spots = MaskUtils.fromLabelingWithROI( labeling, interval, calibration, simplify, null );
 	}
 
 	@Override
@@ -159,4 +168,22 @@ public class LabelImageDetector< T extends RealType< T > & NativeType< T > > imp
 	{
 		return processingTime;
 	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
 }
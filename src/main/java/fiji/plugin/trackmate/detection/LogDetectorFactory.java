@@ -27,6 +27,7 @@ import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_RADIUS;
 import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_TARGET_CHANNEL;
 import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_THRESHOLD;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_MEDIAN_FILTERING;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_PYRAMID_DETECTION;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_SUBPIXEL_LOCALIZATION;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_RADIUS;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_TARGET_CHANNEL;
@@ -35,6 +36,7 @@ import static fiji.plugin.trackmate.io.IOUtils.readBooleanAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readDoubleAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readIntegerAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.writeDoMedian;
+import static fiji.plugin.trackmate.io.IOUtils.writeDoPyramidDetection;
 import static fiji.plugin.trackmate.io.IOUtils.writeDoSubPixel;
 import static fiji.plugin.trackmate.io.IOUtils.writeRadius;
 import static fiji.plugin.trackmate.io.IOUtils.writeTargetChannel;
@@ -164,11 +166,33 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		final double[] calibration = TMUtils.getSpatialCalibration( img );
 		final RandomAccessible< T > imFrame = prepareFrameImg( frame );
 
+		if ( isPyramidDetection( settings ) )
+		{
+			final PyramidDetector< T > detector = new PyramidDetector<>( imFrame, interval, calibration, radius, threshold,
+					( im, itv, cal, thr, coarse ) -> new LogDetector<>( im, itv, cal, radius, thr, doSubpixel, doMedian && !coarse ) );
+			detector.setNumThreads( 1 );
+			return detector;
+		}
+
 		final LogDetector< T > detector = new LogDetector<>( imFrame, interval, calibration, radius, threshold, doSubpixel, doMedian );
 		detector.setNumThreads( 1 );
 		return detector;
 	}
 
+	/**
+	 * Returns <code>true</code> if the specified settings require
+	 * coarse-to-fine detection. The corresponding parameter is optional.
+	 * 
+	 * @param settings
+	 *            the detector settings.
+	 * @return whether to use a {@link PyramidDetector}.
+	 */
+	protected static boolean isPyramidDetection( final Map< String, Object > settings )
+	{
+		final Object obj = settings.get( KEY_DO_PYRAMID_DETECTION );
+		return ( obj instanceof Boolean ) && ( Boolean ) obj;
+	}
+
 	@Override
 	public String getKey()
 	{
@@ -191,13 +215,17 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		ok = ok & checkParameter( lSettings, KEY_THRESHOLD, Double.class, errorHolder );
 		ok = ok & checkParameter( lSettings, KEY_DO_MEDIAN_FILTERING, Boolean.class, errorHolder );
 		ok = ok & checkParameter( lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, Boolean.class, errorHolder );
+		if ( lSettings.containsKey( KEY_DO_PYRAMID_DETECTION ) )
+			ok = ok & checkParameter( lSettings, KEY_DO_PYRAMID_DETECTION, Boolean.class, errorHolder );
 		final List< String > mandatoryKeys = new ArrayList<>();
 		mandatoryKeys.add( KEY_TARGET_CHANNEL );
 		mandatoryKeys.add( KEY_RADIUS );
 		mandatoryKeys.add( KEY_THRESHOLD );
 		mandatoryKeys.add( KEY_DO_MEDIAN_FILTERING );
 		mandatoryKeys.add( KEY_DO_SUBPIXEL_LOCALIZATION );
-		ok = ok & checkMapKeys( lSettings, mandatoryKeys, null, errorHolder );
+		final List< String > optionalKeys = new ArrayList<>();
+		optionalKeys.add( KEY_DO_PYRAMID_DETECTION );
+		ok = ok & checkMapKeys( lSettings, mandatoryKeys, optionalKeys, errorHolder );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
@@ -209,7 +237,8 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 	public boolean marshall( final Map< String, Object > lSettings, final Element element )
 	{
 		final StringBuilder errorHolder = new StringBuilder();
-		final boolean ok = writeTargetChannel( lSettings, element, errorHolder ) && writeRadius( lSettings, element, errorHolder ) && writeThreshold( lSettings, element, errorHolder ) && writeDoMedian( lSettings, element, errorHolder ) && writeDoSubPixel( lSettings, element, errorHolder );
+		final boolean ok = writeTargetChannel( lSettings, element, errorHolder ) && writeRadius( lSettings, element, errorHolder ) && writeThreshold( lSettings, element, errorHolder ) && writeDoMedian( lSettings, element, errorHolder ) && writeDoSubPixel( lSettings, element, errorHolder )
+				&& ( !lSettings.containsKey( KEY_DO_PYRAMID_DETECTION ) || writeDoPyramidDetection( lSettings, element, errorHolder ) );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
@@ -228,6 +257,8 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, errorHolder );
 		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_MEDIAN_FILTERING, errorHolder );
 		ok = ok & readIntegerAttribute( element, lSettings, KEY_TARGET_CHANNEL, errorHolder );
+		if ( null != element.getAttributeValue( KEY_DO_PYRAMID_DETECTION ) )
+			ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_PYRAMID_DETECTION, errorHolder );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
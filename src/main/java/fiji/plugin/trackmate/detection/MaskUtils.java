@@ -23,16 +23,26 @@ package fiji.plugin.trackmate.detection;
 
 import java.awt.Polygon;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotRoi;
+import fiji.plugin.trackmate.util.PixelKernels;
 import fiji.plugin.trackmate.util.Threads;
+import gnu.trove.map.hash.TLongIntHashMap;
 import ij.ImagePlus;
 import ij.gui.PolygonRoi;
 import ij.measure.Measurements;
 import ij.process.FloatPolygon;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -48,14 +58,15 @@ import net.imglib2.img.ImgFactory;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.roi.labeling.ImgLabeling;
 import net.imglib2.roi.labeling.LabelRegion;
-import net.imglib2.roi.labeling.LabelRegionCursor;
 import net.imglib2.roi.labeling.LabelRegions;
+import net.imglib2.roi.labeling.LabelingMapping;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
@@ -77,22 +88,10 @@ public class MaskUtils
 	{
 		// Min & max
 		final T t = Util.getTypeFromInterval( img );
-		final T max = t.createVariable();
-		max.setReal( Double.NEGATIVE_INFINITY );
-		final T min = t.createVariable();
-		min.setReal( Double.POSITIVE_INFINITY );
-
-		for ( final T pixel : Views.iterable( img ) )
-		{
-			if ( pixel.compareTo( min ) < 0 )
-				min.set( pixel );
-
-			if ( pixel.compareTo( max ) > 0 )
-				max.set( pixel );
-		}
+		final double[] minMax = PixelKernels.minMax( Views.iterable( img ) );
 
 		// Histogram.
-		final Real1dBinMapper< T > mapper = new Real1dBinMapper<>( min.getRealDouble(), max.getRealDouble(), 256, false );
+		final Real1dBinMapper< T > mapper = new Real1dBinMapper<>( minMax[ 0 ], minMax[ 1 ], 256, false );
 		final Histogram1d< T > histogram = new Histogram1d<>( Views.iterable( img ), mapper );
 
 		// Threshold.
@@ -194,8 +193,17 @@ public class MaskUtils
 		// Crop.
 		final IntervalView< T > crop = Views.interval( input, interval );
 		final IntervalView< T > in = Views.zeroMin( crop );
-		final Converter< T, BitType > converter = ( a, b ) -> b.set( a.getRealDouble() > threshold );
-		final RandomAccessible< BitType > bitMask = Converters.convertRAI( in, converter, new BitType() );
+		final Img< BitType > thresholded = PixelKernels.threshold( in, threshold );
+		final RandomAccessible< BitType > bitMask;
+		if ( null != thresholded )
+		{
+			bitMask = thresholded;
+		}
+		else
+		{
+			final Converter< T, BitType > converter = ( a, b ) -> b.set( a.getRealDouble() > threshold );
+			bitMask = Converters.convertRAI( in, converter, new BitType() );
+		}
 
 		// Prepare output.
 		final ImgFactory< IntType > factory = Util.getArrayOrCellImgFactory( in, new IntType() );
@@ -251,7 +259,8 @@ public class MaskUtils
 		return fromLabeling(
 				labeling,
 				interval,
-				calibration );
+				calibration,
+				numThreads );
 	}
 
 	/**
@@ -273,44 +282,77 @@ public class MaskUtils
 			final Interval interval,
 			final double[] calibration )
 	{
-		// Parse each component.
-		final LabelRegions< Integer > regions = new LabelRegions<>( labeling );
-		final Iterator< LabelRegion< Integer > > iterator = regions.iterator();
-		final List< Spot > spots = new ArrayList<>( regions.getExistingLabels().size() );
-		while ( iterator.hasNext() )
-		{
-			final LabelRegion< Integer > region = iterator.next();
-			final LabelRegionCursor cursor = region.localizingCursor();
-			final int[] cursorPos = new int[ labeling.numDimensions() ];
-			final long[] sum = new long[ 3 ];
-			while ( cursor.hasNext() )
-			{
-				cursor.fwd();
-				cursor.localize( cursorPos );
-				for ( int d = 0; d < sum.length; d++ )
-					sum[ d ] += cursorPos[ d ];
-			}
-
-			final double[] pos = new double[ 3 ];
-			for ( int d = 0; d < pos.length; d++ )
-				pos[ d ] = sum[ d ] / ( double ) region.size();
-
-			final double x = calibration[ 0 ] * ( interval.min( 0 ) + pos[ 0 ] );
-			final double y = calibration[ 1 ] * ( interval.min( 1 ) + pos[ 1 ] );
-			final double z = calibration[ 2 ] * ( interval.min( 2 ) + pos[ 2 ] );
+		return fromLabeling( labeling, interval, calibration, 1 );
+	}
 
-			double volume = region.size();
-			for ( int d = 0; d < calibration.length; d++ )
-				if ( calibration[ d ] > 0 )
-					volume *= calibration[ d ];
-			final double radius = ( labeling.numDimensions() == 2 )
-					? Math.sqrt( volume / Math.PI )
-					: Math.pow( 3. * volume / ( 4. * Math.PI ), 1. / 3. );
-			final double quality = region.size();
-			spots.add( new Spot( x, y, z, radius, quality ) );
-		}
+	/**
+	 * Creates spots from a label image. The statistics of all the labels are
+	 * collected in a single, multithreaded, pass over the labeling index
+	 * image.
+	 * 
+	 * @param <R>
+	 *            the type that backs-up the labeling.
+	 * @param labeling
+	 *            the labeling, must be zero-min.
+	 * @param interval
+	 *            the interval, used to reposition the spots from the zero-min
+	 *            labeling to the proper coordinates.
+	 * @param calibration
+	 *            the physical calibration.
+	 * @param numThreads
+	 *            how many threads to use for multithreaded computation.
+	 * @return a list of spots, without ROI.
+	 */
+	public static < R extends IntegerType< R > > List< Spot > fromLabeling(
+			final ImgLabeling< Integer, R > labeling,
+			final Interval interval,
+			final double[] calibration,
+			final int numThreads )
+	{
+		final LabelAccumulator indexAccumulator = accumulate( labeling.getIndexImg(), null, numThreads );
+		final LabelAccumulator labelAccumulator = toLabels( labeling, indexAccumulator );
+		return toSpots( labelAccumulator, interval, calibration, false );
+	}
 
-		return spots;
+	/**
+	 * Creates spots from a label image, without building a labeling. The pixel
+	 * values of the label image are used as label values, 0 being the
+	 * background. The position, size and quality of all the labels are
+	 * collected in a single, multithreaded, pass over the image, so the cost
+	 * does not depend on the number of labels.
+	 * 
+	 * @param <T>
+	 *            the type of the label image. Must be real, scalar.
+	 *            Non-integer values are rounded to the closest integer.
+	 * @param <S>
+	 *            the type of the quality image. Must be real, scalar.
+	 * @param labelImage
+	 *            the label image.
+	 * @param interval
+	 *            the interval in the label image to analyze.
+	 * @param calibration
+	 *            the physical calibration.
+	 * @param numThreads
+	 *            how many threads to use for multithreaded computation.
+	 * @param qualityImage
+	 *            the image in which to read the quality value, by taking the
+	 *            max pixel value in each label. If <code>null</code>, the
+	 *            quality is the size of the label in pixels.
+	 * @return a list of spots, without ROI.
+	 */
+	public static < T extends RealType< T >, S extends RealType< S > > List< Spot > fromLabelImage(
+			final RandomAccessible< T > labelImage,
+			final Interval interval,
+			final double[] calibration,
+			final int numThreads,
+			final RandomAccessibleInterval< S > qualityImage )
+	{
+		final IntervalView< T > in = Views.zeroMin( Views.interval( labelImage, interval ) );
+		final IntervalView< S > inQuality = ( null == qualityImage )
+				? null
+				: Views.zeroMin( Views.interval( qualityImage, interval ) );
+		final LabelAccumulator accumulator = accumulate( in, inQuality, numThreads );
+		return toSpots( accumulator, interval, calibration, null != qualityImage );
 	}
 
 	/**
@@ -349,54 +391,155 @@ public class MaskUtils
 		// Crop of the quality image.
 		final IntervalView< R > cropQuality = Views.interval( qualityImage, interval );
 		final IntervalView< R > inQuality = Views.zeroMin( cropQuality );
-		final RandomAccess< R > raQuality = inQuality.randomAccess( inQuality );
 
-		// Parse each component.
-		final LabelRegions< Integer > regions = new LabelRegions<>( labeling );
-		final Iterator< LabelRegion< Integer > > iterator = regions.iterator();
-		final List< Spot > spots = new ArrayList<>( regions.getExistingLabels().size() );
-		while ( iterator.hasNext() )
+		// Parse all components at once.
+		final LabelAccumulator indexAccumulator = accumulate( labeling.getIndexImg(), inQuality, numThreads );
+		final LabelAccumulator labelAccumulator = toLabels( labeling, indexAccumulator );
+		return toSpots( labelAccumulator, interval, calibration, true );
+	}
+
+	/**
+	 * Collects the statistics of all labels in a zero-min label image, in a
+	 * single pass. The image is split in slabs along its last dimension, each
+	 * slab being processed by one thread in its own accumulator. The partial
+	 * accumulators are merged at the end.
+	 */
+	private static < R extends RealType< R >, S extends RealType< S > > LabelAccumulator accumulate(
+			final RandomAccessibleInterval< R > labels,
+			final RandomAccessibleInterval< S > qualityImage,
+			final int numThreads )
+	{
+		final int n = labels.numDimensions();
+		final int splitDim = n - 1;
+		final long splitSize = labels.dimension( splitDim );
+		final int nTasks = ( int ) Math.max( 1, Math.min( numThreads, splitSize ) );
+
+		final ExecutorService executorService = nTasks > 1
+				? Threads.newFixedThreadPool( nTasks )
+				: Threads.newSingleThreadExecutor();
+		final List< Future< LabelAccumulator > > futures = new ArrayList<>( nTasks );
+		for ( int t = 0; t < nTasks; t++ )
 		{
-			final LabelRegion< Integer > region = iterator.next();
-			final LabelRegionCursor cursor = region.localizingCursor();
-			final int[] cursorPos = new int[ labeling.numDimensions() ];
-			final long[] sum = new long[ 3 ];
-			double quality = Double.NEGATIVE_INFINITY;
-			while ( cursor.hasNext() )
-			{
-				cursor.fwd();
+			final long[] min = Intervals.minAsLongArray( labels );
+			final long[] max = Intervals.maxAsLongArray( labels );
+			min[ splitDim ] = labels.min( splitDim ) + splitSize * t / nTasks;
+			max[ splitDim ] = labels.min( splitDim ) + splitSize * ( t + 1 ) / nTasks - 1;
+			final FinalInterval slab = new FinalInterval( min, max );
+			futures.add( executorService.submit( () -> accumulate( labels, qualityImage, slab ) ) );
+		}
+		executorService.shutdown();
+
+		final LabelAccumulator accumulator = new LabelAccumulator( n );
+		try
+		{
+			for ( final Future< LabelAccumulator > future : futures )
+				accumulator.merge( future.get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			executorService.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( "Interrupted while collecting label statistics.", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			// Do not return the spots of the other slabs only.
+			executorService.shutdownNow();
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+		return accumulator;
+	}
 
-				// Position.
-				cursor.localize( cursorPos );
-				for ( int d = 0; d < sum.length; d++ )
-					sum[ d ] += cursorPos[ d ];
+	private static < R extends RealType< R >, S extends RealType< S > > LabelAccumulator accumulate(
+			final RandomAccessibleInterval< R > labels,
+			final RandomAccessibleInterval< S > qualityImage,
+			final Interval slab )
+	{
+		final LabelAccumulator accumulator = new LabelAccumulator( labels.numDimensions() );
+		final Cursor< R > cursor = Views.interval( labels, slab ).localizingCursor();
+		final RandomAccess< S > raQuality = ( null == qualityImage )
+				? null
+				: qualityImage.randomAccess( slab );
+		final long[] position = new long[ labels.numDimensions() ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final long label = Math.round( cursor.get().getRealDouble() );
+			if ( label <= 0 )
+				continue;
 
-				// Quality
+			cursor.localize( position );
+			final double quality;
+			if ( null == raQuality )
+			{
+				quality = Double.NEGATIVE_INFINITY;
+			}
+			else
+			{
 				raQuality.setPosition( cursor );
-				final double q = raQuality.get().getRealDouble();
-				if ( q > quality )
-					quality = q;
+				quality = raQuality.get().getRealDouble();
 			}
+			accumulator.add( label, position, quality );
+		}
+		return accumulator;
+	}
+
+	/**
+	 * Re-keys an accumulator built on the index image of a labeling with the
+	 * labels themselves.
+	 */
+	private static LabelAccumulator toLabels( final ImgLabeling< Integer, ? > labeling, final LabelAccumulator indexAccumulator )
+	{
+		final LabelingMapping< Integer > mapping = labeling.getMapping();
+		final LabelAccumulator labelAccumulator = new LabelAccumulator( indexAccumulator.n );
+		for ( int slot = 0; slot < indexAccumulator.size(); slot++ )
+		{
+			final int index = ( int ) indexAccumulator.labels[ slot ];
+			for ( final Integer label : mapping.labelsAtIndex( index ) )
+				labelAccumulator.merge( label.longValue(), indexAccumulator, slot );
+		}
+		return labelAccumulator;
+	}
 
-			final double[] pos = new double[ 3 ];
-			for ( int d = 0; d < pos.length; d++ )
-				pos[ d ] = sum[ d ] / ( double ) region.size();
+	private static List< Spot > toSpots(
+			final LabelAccumulator accumulator,
+			final Interval interval,
+			final double[] calibration,
+			final boolean qualityFromImage )
+	{
+		final int n = accumulator.n;
+		final List< Spot > spots = new ArrayList<>();
+		final double[] pos = new double[ n ];
+		for ( final int slot : accumulator.slotsByLabel() )
+		{
+			final long size = accumulator.counts[ slot ];
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = accumulator.sums[ slot * n + d ] / ( double ) size;
 
 			final double x = calibration[ 0 ] * ( interval.min( 0 ) + pos[ 0 ] );
 			final double y = calibration[ 1 ] * ( interval.min( 1 ) + pos[ 1 ] );
-			final double z = calibration[ 2 ] * ( interval.min( 2 ) + pos[ 2 ] );
+			final double z = ( n > 2 )
+					? calibration[ 2 ] * ( interval.min( 2 ) + pos[ 2 ] )
+					: 0.;
 
-			double volume = region.size();
-			for ( int d = 0; d < calibration.length; d++ )
+			double volume = size;
+			for ( int d = 0; d < n; d++ )
 				if ( calibration[ d ] > 0 )
 					volume *= calibration[ d ];
 
-			final double radius = ( labeling.numDimensions() == 2 )
+			final double radius = ( n == 2 )
 					? Math.sqrt( volume / Math.PI )
 					: Math.pow( 3. * volume / ( 4. * Math.PI ), 1. / 3. );
+			final double quality = qualityFromImage
+					? accumulator.qualities[ slot ]
+					: size;
 			spots.add( new Spot( x, y, z, radius, quality ) );
 		}
-
 		return spots;
 	}
 
@@ -929,6 +1072,125 @@ public class MaskUtils
 		return polygons;
 	}
 
+	/**
+	 * Per-label statistics: pixel count, sum of pixel coordinates and max
+	 * quality. Labels are stored densely, in the order they are first met, so
+	 * the memory used depends on the number of labels and not on their values.
+	 */
+	private static final class LabelAccumulator
+	{
+
+		private final int n;
+
+		/** Label value to slot in the arrays. */
+		private final TLongIntHashMap slots = new TLongIntHashMap( 16, 0.5f, 0l, -1 );
+
+		/** Label value of each slot. */
+		private long[] labels;
+
+		private long[] counts;
+
+		/** Coordinate sums, <code>n</code> consecutive values per slot. */
+		private long[] sums;
+
+		private double[] qualities;
+
+		private int size;
+
+		/**
+		 * The last label met and its slot. Labels come in runs along image
+		 * lines, so this spares most of the map lookups.
+		 */
+		private long lastLabel;
+
+		private int lastSlot = -1;
+
+		public LabelAccumulator( final int n )
+		{
+			this.n = n;
+			this.labels = new long[ 0 ];
+			this.counts = new long[ 0 ];
+			this.sums = new long[ 0 ];
+			this.qualities = new double[ 0 ];
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		private int slot( final long label )
+		{
+			if ( label == lastLabel && lastSlot >= 0 )
+				return lastSlot;
+
+			int slot = slots.get( label );
+			if ( slot < 0 )
+			{
+				slot = size++;
+				if ( slot >= counts.length )
+				{
+					if ( slot >= Integer.MAX_VALUE / n )
+						throw new IllegalArgumentException( "Too many labels: " + slot );
+					final int newSize = ( int ) Math.min( Integer.MAX_VALUE / n, Math.max( 16L, 2L * counts.length ) );
+					labels = Arrays.copyOf( labels, newSize );
+					counts = Arrays.copyOf( counts, newSize );
+					sums = Arrays.copyOf( sums, newSize * n );
+					qualities = Arrays.copyOf( qualities, newSize );
+				}
+				labels[ slot ] = label;
+				qualities[ slot ] = Double.NEGATIVE_INFINITY;
+				slots.put( label, slot );
+			}
+			lastLabel = label;
+			lastSlot = slot;
+			return slot;
+		}
+
+		public void add( final long label, final long[] position, final double quality )
+		{
+			final int slot = slot( label );
+			counts[ slot ]++;
+			for ( int d = 0; d < n; d++ )
+				sums[ slot * n + d ] += position[ d ];
+			if ( quality > qualities[ slot ] )
+				qualities[ slot ] = quality;
+		}
+
+		/**
+		 * Adds the statistics of slot <code>otherSlot</code> in the specified
+		 * accumulator to the statistics of label <code>label</code> in this
+		 * one.
+		 */
+		public void merge( final long label, final LabelAccumulator other, final int otherSlot )
+		{
+			final int slot = slot( label );
+			counts[ slot ] += other.counts[ otherSlot ];
+			for ( int d = 0; d < n; d++ )
+				sums[ slot * n + d ] += other.sums[ otherSlot * n + d ];
+			if ( other.qualities[ otherSlot ] > qualities[ slot ] )
+				qualities[ slot ] = other.qualities[ otherSlot ];
+		}
+
+		public void merge( final LabelAccumulator other )
+		{
+			for ( int slot = 0; slot < other.size; slot++ )
+				merge( other.labels[ slot ], other, slot );
+		}
+
+		/**
+		 * Returns the slots sorted by increasing label value.
+		 */
+		public int[] slotsByLabel()
+		{
+			return IntStream.range( 0, size )
+					.boxed()
+					.sorted( Comparator.comparingLong( slot -> labels[ slot ] ) )
+					.mapToInt( Integer::intValue )
+					.toArray();
+		}
+	}
+
 	/**
 	 * This class implements a Cartesian polygon in progress. The edges are
 	 * supposed to be parallel to the x or y axis. It is implemented as a deque
@@ -0,0 +1,458 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.detection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.util.Threads;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * A coarse-to-fine wrapper for blob detectors such as the LoG and DoG
+ * detectors.
+ * <p>
+ * Large spots are band-limited at a scale much coarser than the pixel grid, so
+ * they can be detected on a downsampled image. The downsampling factor is
+ * chosen from the spot radius, so that spots are still about
+ * {@value #COARSE_RADIUS} pixels in radius in the downsampled image. The
+ * detection is run on this image, with a calibration scaled accordingly, which
+ * yields candidate spots. Each candidate is then refined by running the
+ * detector again at full resolution, in a small window around the candidate,
+ * which gives the final position and quality.
+ *
+ * @param <T>
+ *            the type of the source image.
+ */
+public class PyramidDetector< T extends RealType< T > & NativeType< T > > implements SpotDetector< T >, MultiThreaded
+{
+
+	/**
+	 * Interface for functions that create the detector to run, at the coarse
+	 * level and in refinement windows.
+	 */
+	@FunctionalInterface
+	public static interface DetectorProvider
+	{
+		/**
+		 * Returns a new detector.
+		 *
+		 * @param img
+		 *            the image to detect spots in.
+		 * @param interval
+		 *            the interval in which to detect spots.
+		 * @param calibration
+		 *            the calibration of the image.
+		 * @param threshold
+		 *            the quality threshold to use.
+		 * @param coarse
+		 *            if <code>true</code>, the detector is for the coarse,
+		 *            downsampled level.
+		 * @return a new detector.
+		 */
+		public SpotDetector< FloatType > get( RandomAccessible< FloatType > img, Interval interval, double[] calibration, double threshold, boolean coarse );
+	}
+
+	/*
+	 * CONSTANTS
+	 */
+
+	private final static String BASE_ERROR_MESSAGE = "PyramidDetector: ";
+
+	/**
+	 * The spot radius, in pixels, targeted in the downsampled image.
+	 */
+	public static final double COARSE_RADIUS = 4.;
+
+	/**
+	 * Margin added around the refinement windows, in units of the detector
+	 * sigma (the radius divided by the square root of the dimensionality).
+	 * The LoG kernel extends to 3 sigma and the larger Gaussian of the DoG to
+	 * 3.3 sigma, so the filter response near the window center is the same as
+	 * on the whole image. The recursive Gaussian filters used by the DoG
+	 * detector for large spots have longer tails, and their response can
+	 * differ by about 1% from the one on the whole image.
+	 */
+	private static final double REFINEMENT_MARGIN = 4.5;
+
+	/**
+	 * Pixels added to the refinement margin, for the rounding of the kernel
+	 * sizes and for the neighbors used to find and localize the maxima.
+	 */
+	private static final int REFINEMENT_PAD = 4;
+
+	/**
+	 * Relative tolerance on the threshold used at the coarse level, so that
+	 * candidates slightly below the threshold are still refined.
+	 * <p>
+	 * The quality of a spot on the downsampled image is lower than at full
+	 * resolution, because the spot center can be up to half a coarse pixel
+	 * away from the closest coarse pixel, and because block averaging blurs
+	 * the image. For a Gaussian spot of the size the filter is tuned to, and
+	 * a filter of sigma <code>COARSE_RADIUS / sqrt(n)</code> coarse pixels,
+	 * the first effect costs at most 3% of the quality in 2D and 6% in 3D, and
+	 * the second less than 1% and 2%. Spots 20% smaller than the radius lose
+	 * up to 9% in 3D. The tolerance is set well above these bounds, to cover
+	 * spots that are not Gaussian and the noise, which is averaged out at the
+	 * coarse level. A larger tolerance only adds candidates that are
+	 * discarded during refinement.
+	 * <p>
+	 * The LoG quality is not scale-normalized: it is larger on the
+	 * downsampled image, by about <code>f^(4-n)</code> for a downsampling
+	 * factor <code>f</code>, so this tolerance matters mostly for the DoG
+	 * detector.
+	 */
+	private static final double COARSE_THRESHOLD_TOLERANCE = 0.25;
+
+	/*
+	 * FIELDS
+	 */
+
+	private final RandomAccessible< T > img;
+
+	private final Interval interval;
+
+	private final double[] calibration;
+
+	private final double radius;
+
+	private final double threshold;
+
+	private final DetectorProvider provider;
+
+	private String errorMessage;
+
+	private List< Spot > spots = new ArrayList<>();
+
+	private long processingTime;
+
+	private int numThreads;
+
+	/*
+	 * CONSTRUCTOR
+	 */
+
+	public PyramidDetector(
+			final RandomAccessible< T > img,
+			final Interval interval,
+			final double[] calibration,
+			final double radius,
+			final double threshold,
+			final DetectorProvider provider )
+	{
+		this.img = img;
+		this.interval = DetectionUtils.squeeze( interval );
+		this.calibration = calibration;
+		this.radius = radius;
+		this.threshold = threshold;
+		this.provider = provider;
+		setNumThreads();
+	}
+
+	/*
+	 * METHODS
+	 */
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( null == img )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Image is null.";
+			return false;
+		}
+		if ( img.numDimensions() > 3 )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Image must be 1D, 2D or 3D, got " + img.numDimensions() + "D.";
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long start = System.currentTimeMillis();
+		final RandomAccessible< FloatType > source = Converters.convert( img, ( a, b ) -> b.setReal( a.getRealDouble() ), new FloatType() );
+		final int n = interval.numDimensions();
+		final long[] factors = getDownsamplingFactors( radius, calibration, n );
+
+		boolean downsample = false;
+		for ( final long f : factors )
+			downsample = downsample || f > 1;
+
+		if ( !downsample )
+		{
+			// Spots too small: plain detection.
+			final List< Spot > detected = detect( provider.get( source, interval, calibration, threshold, false ), numThreads );
+			if ( null == detected )
+				return false;
+			spots = detected;
+			processingTime = System.currentTimeMillis() - start;
+			return true;
+		}
+
+		/*
+		 * Coarse detection.
+		 */
+
+		final ArrayImg< FloatType, FloatArray > coarse = downsample( source, interval, factors );
+		final double[] coarseCalibration = new double[ n ];
+		for ( int d = 0; d < n; d++ )
+			coarseCalibration[ d ] = calibration[ d ] * factors[ d ];
+		final double coarseThreshold = threshold - COARSE_THRESHOLD_TOLERANCE * Math.abs( threshold );
+		final List< Spot > candidates = detect( provider.get( coarse, coarse, coarseCalibration, coarseThreshold, true ), numThreads );
+		if ( null == candidates )
+			return false;
+
+		/*
+		 * Refinement at full resolution.
+		 */
+
+		final ExecutorService executors = Threads.newFixedThreadPool( Math.max( 1, numThreads ) );
+		final List< Future< Spot > > futures = new ArrayList<>( candidates.size() );
+		for ( final Spot candidate : candidates )
+		{
+			// Candidate position in full-resolution pixel coordinates.
+			final double[] center = new double[ n ];
+			for ( int d = 0; d < n; d++ )
+				center[ d ] = interval.min( d )
+						+ candidate.getDoublePosition( d ) / calibration[ d ]
+						+ ( factors[ d ] - 1 ) / 2.;
+			futures.add( executors.submit( () -> refine( source, center, factors ) ) );
+		}
+		executors.shutdown();
+
+		final List< Spot > refined = new ArrayList<>( candidates.size() );
+		try
+		{
+			for ( final Future< Spot > future : futures )
+			{
+				final Spot spot = future.get();
+				if ( null != spot )
+					refined.add( spot );
+			}
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+			e.printStackTrace();
+			return false;
+		}
+
+		spots = removeDuplicates( refined );
+		processingTime = System.currentTimeMillis() - start;
+		return true;
+	}
+
+	/**
+	 * Runs the detector in a full-resolution window around the specified
+	 * candidate position, and returns the detected spot closest to the
+	 * candidate. Returns <code>null</code> if no spot is found within one
+	 * radius of the candidate.
+	 */
+	private Spot refine( final RandomAccessible< FloatType > source, final double[] center, final long[] factors )
+	{
+		final int n = center.length;
+		final double sigma = radius / Math.sqrt( n );
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			final long half = factors[ d ] + ( long ) Math.ceil( REFINEMENT_MARGIN * sigma / calibration[ d ] ) + REFINEMENT_PAD;
+			final long c = Math.round( center[ d ] );
+			min[ d ] = Math.max( interval.min( d ), c - half );
+			max[ d ] = Math.min( interval.max( d ), c + half );
+		}
+		final List< Spot > detected = detect( provider.get( source, new FinalInterval( min, max ), calibration, threshold, false ), 1 );
+		if ( null == detected )
+			return null;
+
+		Spot closest = null;
+		double minD2 = radius * radius;
+		for ( final Spot spot : detected )
+		{
+			double d2 = 0.;
+			for ( int d = 0; d < n; d++ )
+			{
+				final double dx = spot.getDoublePosition( d ) - center[ d ] * calibration[ d ];
+				d2 += dx * dx;
+			}
+			if ( d2 <= minD2 )
+			{
+				minD2 = d2;
+				closest = spot;
+			}
+		}
+		return closest;
+	}
+
+	private List< Spot > detect( final SpotDetector< FloatType > detector, final int nThreads )
+	{
+		if ( detector instanceof MultiThreaded )
+			( ( MultiThreaded ) detector ).setNumThreads( nThreads );
+		if ( !detector.checkInput() || !detector.process() )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + detector.getErrorMessage();
+			return null;
+		}
+		return detector.getResult();
+	}
+
+	/**
+	 * Two candidates may converge to the same spot during refinement. Keep
+	 * only the best of spots closer than one pixel.
+	 */
+	private List< Spot > removeDuplicates( final List< Spot > refined )
+	{
+		double minCal = Double.POSITIVE_INFINITY;
+		for ( int d = 0; d < interval.numDimensions(); d++ )
+			minCal = Math.min( minCal, calibration[ d ] );
+		final double tol2 = minCal * minCal;
+
+		refined.sort( Comparator.comparingDouble( ( final Spot s ) -> s.getFeature( Spot.QUALITY ) ).reversed() );
+		final List< Spot > out = new ArrayList<>( refined.size() );
+		for ( final Spot spot : refined )
+		{
+			boolean duplicate = false;
+			for ( final Spot other : out )
+			{
+				if ( spot.squareDistanceTo( other ) < tol2 )
+				{
+					duplicate = true;
+					break;
+				}
+			}
+			if ( !duplicate )
+				out.add( spot );
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the downsampling factors to use in each dimension, so that a
+	 * spot of the specified radius is about {@link #COARSE_RADIUS} pixels in
+	 * the downsampled image.
+	 *
+	 * @param radius
+	 *            the spot radius, in physical units.
+	 * @param calibration
+	 *            the image calibration.
+	 * @param n
+	 *            the number of dimensions.
+	 * @return a new array of downsampling factors.
+	 */
+	public static final long[] getDownsamplingFactors( final double radius, final double[] calibration, final int n )
+	{
+		final long[] factors = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			factors[ d ] = Math.max( 1l, ( long ) Math.floor( radius / calibration[ d ] / COARSE_RADIUS ) );
+		return factors;
+	}
+
+	/**
+	 * Downsamples the specified interval of the source by averaging over
+	 * blocks of the specified size, in a single pass over the source.
+	 */
+	private static final ArrayImg< FloatType, FloatArray > downsample( final RandomAccessible< FloatType > source, final Interval interval, final long[] factors )
+	{
+		final int n = interval.numDimensions();
+		final long[] dims = new long[ n ];
+		final int[] strides = new int[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			dims[ d ] = ( interval.dimension( d ) + factors[ d ] - 1 ) / factors[ d ];
+			strides[ d ] = ( d == 0 ) ? 1 : strides[ d - 1 ] * ( int ) dims[ d - 1 ];
+		}
+		final ArrayImg< FloatType, FloatArray > coarse = ArrayImgs.floats( dims );
+		final float[] data = coarse.update( null ).getCurrentStorageArray();
+		final int[] counts = new int[ data.length ];
+
+		final Cursor< FloatType > cursor = Views.flatIterable( Views.zeroMin( Views.interval( source, interval ) ) ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final float val = cursor.next().get();
+			int index = 0;
+			for ( int d = 0; d < n; d++ )
+				index += ( int ) ( cursor.getLongPosition( d ) / factors[ d ] ) * strides[ d ];
+			data[ index ] += val;
+			counts[ index ]++;
+		}
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] /= counts[ i ];
+
+		return coarse;
+	}
+
+	@Override
+	public List< Spot > getResult()
+	{
+		return spots;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return processingTime;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
@@ -22,10 +22,13 @@
 package fiji.plugin.trackmate.detection.semiauto;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -45,6 +48,7 @@ import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
 
 /**
  * A class made to perform semi-automated tracking of spots in TrackMate &amp;
@@ -58,7 +62,9 @@ import net.imglib2.type.numeric.RealType;
  * center, then it is added to the model and linked with the first spot.
  * <p>
  * The process is then repeated, taking the newly found spot as a source for the
- * next neighborhood. The model is updated live for every spot found.
+ * next neighborhood. When several spots are selected, they are tracked
+ * together frame by frame: overlapping neighborhoods in a frame are inspected
+ * by a single detector, and the model is updated once per frame.
  * <p>
  * The process halts when:
  * <ul>
@@ -155,20 +161,39 @@ public abstract class AbstractSemiAutoTracker< T extends RealType< T > & NativeT
 		selectionModel.clearSelection();
 
 		ok = true;
-		final int nThreads = Math.min( numThreads, spots.size() );
-		final ExecutorService executors = Threads.newFixedThreadPool( nThreads );
-		final List< Future< ? > > futures = new ArrayList<>( spots.size() );
+		final List< Track > tracks = new ArrayList<>( spots.size() );
 		for ( final Spot spot : spots )
-		{
-			final Future< ? > future = executors.submit( () -> processSpot( spot ) );
-			futures.add( future );
-		}
+			tracks.add( new Track( spot ) );
+
+		/*
+		 * Step all the tracks together, frame by frame. At each step we deal
+		 * with the tracks that are the most behind, so that all the seeds
+		 * reaching a frame are searched in one batch.
+		 */
+
+		final int nThreads = Math.max( 1, Math.min( numThreads, spots.size() ) );
+		final ExecutorService executors = Threads.newFixedThreadPool( nThreads );
 		try
 		{
-			for ( final Future< ? > future : futures )
-				future.get();
+			while ( !tracks.isEmpty() )
+			{
+				int frame = Integer.MAX_VALUE;
+				for ( final Track track : tracks )
+					frame = Math.min( frame, track.nextFrame() );
 
-			executors.shutdown();
+				final List< Track > batch = new ArrayList<>();
+				for ( final Track track : tracks )
+					if ( track.nextFrame() == frame )
+						batch.add( track );
+
+				final List< Track > finished = processFrame( batch, frame, executors );
+				for ( final Track track : finished )
+				{
+					if ( track.nSpotProcessed > 0 )
+						logger.log( "Finished semi-auto tracking after processing " + track.nSpotProcessed + " spots from " + track.initialSpot + " to " + track.spot + ".\n" );
+				}
+				tracks.removeAll( finished );
+			}
 		}
 		catch ( InterruptedException | ExecutionException e )
 		{
@@ -176,9 +201,250 @@ public abstract class AbstractSemiAutoTracker< T extends RealType< T > & NativeT
 			errorMessage = e.getMessage();
 			e.printStackTrace();
 		}
+		finally
+		{
+			executors.shutdown();
+		}
 		return ok;
 	}
 
+	/**
+	 * Searches the successors of all the specified tracks in the specified
+	 * frame, and adds them to the model.
+	 * <p>
+	 * Search regions that share the same source, calibration, transform and
+	 * spot radius, and that overlap, are merged and inspected by a single
+	 * detector. This way the overlapping parts of the source are extracted and
+	 * filtered only once. The clusters are processed concurrently. The model
+	 * is then updated in one go, on the calling thread.
+	 *
+	 * @return the tracks that cannot be extended further.
+	 */
+	private List< Track > processFrame( final List< Track > batch, final int frame, final ExecutorService executors ) throws InterruptedException, ExecutionException
+	{
+		final List< Track > finished = new ArrayList<>();
+		final List< Query > queries = new ArrayList<>( batch.size() );
+		for ( final Track track : batch )
+		{
+			if ( nFrames > 0 && track.nSpotProcessed >= nFrames )
+			{
+				finished.add( track );
+				continue;
+			}
+			track.nSpotProcessed++;
+
+			final SearchRegion< T > sn = getNeighborhood( track.spot, frame );
+			if ( null == sn )
+			{
+				finished.add( track );
+				continue;
+			}
+			queries.add( new Query( track, sn ) );
+		}
+
+		/*
+		 * Detect spots, one detector per cluster of overlapping regions.
+		 */
+
+		final List< List< Query > > clusters = cluster( queries );
+		final List< Future< ? > > futures = new ArrayList<>( clusters.size() );
+		for ( final List< Query > cluster : clusters )
+			futures.add( executors.submit( () -> processCluster( cluster ) ) );
+		for ( final Future< ? > future : futures )
+			future.get();
+
+		/*
+		 * Collect targets.
+		 */
+
+		final Set< Spot > claimed = new HashSet<>();
+		final List< Query > found = new ArrayList<>( queries.size() );
+		for ( final Query query : queries )
+		{
+			if ( null == query.target )
+			{
+				if ( null != query.message )
+					logger.log( "Spot: " + query.track.initialSpot + ": " + query.message );
+				finished.add( query.track );
+				continue;
+			}
+
+			// Two neighbors might have picked the same spot.
+			Spot target = query.target;
+			if ( !claimed.add( target ) )
+			{
+				target = new Spot( target );
+				query.target = target;
+			}
+
+			/*
+			 * Default POSITION_T features. Concrete implementations MUST fix
+			 * this so that this feature represent a physical time.
+			 */
+			target.putFeature( Spot.POSITION_T, Double.valueOf( frame ) );
+			exposeSpot( target, query.track.spot );
+			target.putFeature( Spot.RADIUS, query.radius );
+			found.add( query );
+		}
+
+		/*
+		 * Update model.
+		 */
+
+		if ( found.isEmpty() )
+			return finished;
+
+		model.beginUpdate();
+		try
+		{
+			for ( final Query query : found )
+			{
+				final Spot spot = query.track.spot;
+				model.addSpotTo( query.target, frame );
+				model.addEdge( spot, query.target, spot.squareDistanceTo( query.target ) );
+				query.track.spot = query.target;
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		return finished;
+	}
+
+	/**
+	 * Runs one detector on the bounding box of the search regions of the
+	 * specified cluster, and selects the successor of each track in the
+	 * detection results.
+	 */
+	private void processCluster( final List< Query > cluster )
+	{
+		final SearchRegion< T > first = cluster.get( 0 ).sn;
+		Interval union = first.interval;
+		double minQuality = Double.POSITIVE_INFINITY;
+		for ( final Query query : cluster )
+		{
+			union = Intervals.union( union, query.sn.interval );
+			minQuality = Math.min( minQuality, query.minQuality );
+		}
+
+		final SpotDetector< T > detector = createDetector( first.source, union, first.calibration, cluster.get( 0 ).radius, minQuality );
+		if ( !detector.checkInput() || !detector.process() )
+		{
+			ok = false;
+			errorMessage = detector.getErrorMessage();
+			return;
+		}
+
+		/*
+		 * Translate spots, keeping their pixel coordinates to check against
+		 * individual search regions.
+		 */
+
+		final List< Spot > detectedSpots = detector.getResult();
+		final int n = union.numDimensions();
+		final double[][] pixelCoords = new double[ detectedSpots.size() ][ n ];
+		final String[] features = new String[] { Spot.POSITION_X, Spot.POSITION_Y, Spot.POSITION_Z };
+		final double[] coords = new double[ 3 ];
+		final double[] target = new double[ 3 ];
+		for ( int s = 0; s < detectedSpots.size(); s++ )
+		{
+			final Spot ds = detectedSpots.get( s );
+			ds.localize( coords );
+			for ( int d = 0; d < n; d++ )
+				pixelCoords[ s ][ d ] = coords[ d ] / first.calibration[ d ];
+			first.transform.apply( coords, target );
+			for ( int i = 0; i < target.length; i++ )
+				ds.putFeature( features[ i ], target[ i ] );
+		}
+
+		// Sort them by descending quality.
+		final Integer[] order = new Integer[ detectedSpots.size() ];
+		for ( int s = 0; s < order.length; s++ )
+			order[ s ] = Integer.valueOf( s );
+		Arrays.sort( order, ( i1, i2 ) -> Double.compare(
+				detectedSpots.get( i2 ).getFeature( Spot.QUALITY ).doubleValue(),
+				detectedSpots.get( i1 ).getFeature( Spot.QUALITY ).doubleValue() ) );
+
+		for ( final Query query : cluster )
+		{
+			final double maxSqDist = distanceTolerance * distanceTolerance * query.radius * query.radius;
+			boolean any = false;
+			for ( final Integer index : order )
+			{
+				final Spot candidate = detectedSpots.get( index.intValue() );
+				if ( candidate.getFeature( Spot.QUALITY ).doubleValue() < query.minQuality
+						|| !contains( query.sn.interval, pixelCoords[ index.intValue() ] ) )
+					continue;
+
+				any = true;
+				if ( candidate.squareDistanceTo( query.track.spot ) < maxSqDist )
+				{
+					query.target = candidate;
+					break;
+				}
+			}
+			if ( null == query.target )
+				query.message = any
+						? "Suitable spot found, but outside the tolerance radius.\n"
+						: "No suitable spot found.\n";
+		}
+	}
+
+	/**
+	 * Groups the specified queries in clusters of overlapping search regions
+	 * that can be inspected by the same detector.
+	 */
+	private List< List< Query > > cluster( final List< Query > queries )
+	{
+		final int n = queries.size();
+		final int[] parent = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			parent[ i ] = i;
+
+		for ( int i = 0; i < n; i++ )
+		{
+			final Query qi = queries.get( i );
+			for ( int j = i + 1; j < n; j++ )
+			{
+				final Query qj = queries.get( j );
+				if ( !qi.isCompatible( qj ) || Intervals.isEmpty( Intervals.intersect( qi.sn.interval, qj.sn.interval ) ) )
+					continue;
+
+				final int ri = root( parent, i );
+				final int rj = root( parent, j );
+				if ( ri != rj )
+					parent[ rj ] = ri;
+			}
+		}
+
+		final Map< Integer, List< Query > > clusters = new LinkedHashMap<>();
+		for ( int i = 0; i < n; i++ )
+			clusters.computeIfAbsent( Integer.valueOf( root( parent, i ) ), k -> new ArrayList<>() ).add( queries.get( i ) );
+		return new ArrayList<>( clusters.values() );
+	}
+
+	private static final int root( final int[] parent, int i )
+	{
+		while ( parent[ i ] != i )
+		{
+			parent[ i ] = parent[ parent[ i ] ];
+			i = parent[ i ];
+		}
+		return i;
+	}
+
+	private static final boolean contains( final Interval interval, final double[] pos )
+	{
+		for ( int d = 0; d < pos.length; d++ )
+		{
+			final long p = Math.round( pos[ d ] );
+			if ( p < interval.min( d ) || p > interval.max( d ) )
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Recursively investigates a neighborhood to find the most likely successor
 	 * of a spot, starting with the specified spot and operating recursively.
@@ -436,6 +702,70 @@ public abstract class AbstractSemiAutoTracker< T extends RealType< T > & NativeT
 		return numThreads;
 	}
 
+	/**
+	 * The state of the semi-automatic tracking started from one seed.
+	 */
+	private static final class Track
+	{
+
+		private final Spot initialSpot;
+
+		private Spot spot;
+
+		private int nSpotProcessed;
+
+		private Track( final Spot initialSpot )
+		{
+			this.initialSpot = initialSpot;
+			this.spot = initialSpot;
+		}
+
+		private int nextFrame()
+		{
+			return spot.getFeature( Spot.FRAME ).intValue() + 1;
+		}
+	}
+
+	/**
+	 * The search of the successor of a track in one frame.
+	 */
+	private final class Query
+	{
+
+		private final Track track;
+
+		private final SearchRegion< T > sn;
+
+		private final double radius;
+
+		private final double minQuality;
+
+		private Spot target;
+
+		private String message;
+
+		private Query( final Track track, final SearchRegion< T > sn )
+		{
+			this.track = track;
+			this.sn = sn;
+			this.radius = track.spot.getFeature( Spot.RADIUS ).doubleValue();
+			this.minQuality = track.spot.getFeature( Spot.QUALITY ).doubleValue() * qualityThreshold;
+		}
+
+		/**
+		 * Returns <code>true</code> if the two search regions can be inspected
+		 * by the same detector.
+		 */
+		private boolean isCompatible( final Query other )
+		{
+			return sn.source == other.sn.source
+					&& radius == other.radius
+					&& sn.interval.numDimensions() == other.sn.interval.numDimensions()
+					&& Arrays.equals( sn.calibration, other.sn.calibration )
+					&& Arrays.equals( sn.transform.getRowPackedCopy(), other.sn.transform.getRowPackedCopy() );
+		}
+	}
+
 	/**
 	 * A utility class made to return the information on a neighborhood
 	 * generated from a source around a {@link Spot}.
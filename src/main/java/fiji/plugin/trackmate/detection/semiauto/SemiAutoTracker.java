@@ -21,6 +21,9 @@
  */
 package fiji.plugin.trackmate.detection.semiauto;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SelectionModel;
@@ -45,6 +48,13 @@ public class SemiAutoTracker< T extends RealType< T > & NativeType< T > > extend
 
 	private final ImagePlus imp;
 
+	/**
+	 * The frame hyperslices already built. Returning the same view for all the
+	 * spots searched in a frame lets the parent class recognize overlapping
+	 * neighborhoods and detect them together.
+	 */
+	private final Map< Integer, RandomAccessible< T > > frameSources = new ConcurrentHashMap<>();
+
 	@SuppressWarnings( "unchecked" )
 	public SemiAutoTracker( final Model model, final SelectionModel selectionModel, final ImagePlus imp, final Logger logger )
 	{
@@ -147,12 +157,15 @@ public class SemiAutoTracker< T extends RealType< T > & NativeType< T > > extend
 		final AffineTransform3D transform = new AffineTransform3D();
 
 		final SearchRegion< T > sn = new SearchRegion<>();
-		RandomAccessible< T > source = img;
-		if ( tindex >= 0 )
-			source = Views.hyperSlice( source, tindex, frame );
-
-		if ( cindex >= 0 )
-			source = Views.hyperSlice( source, cindex, targetChannel );
+		final RandomAccessible< T > source = frameSources.computeIfAbsent( Integer.valueOf( frame ), f -> {
+			RandomAccessible< T > slice = img;
+			if ( tindex >= 0 )
+				slice = Views.hyperSlice( slice, tindex, frame );
+
+			if ( cindex >= 0 )
+				slice = Views.hyperSlice( slice, cindex, targetChannel );
+			return slice;
+		} );
 
 		sn.source = source;
 		sn.transform = transform;
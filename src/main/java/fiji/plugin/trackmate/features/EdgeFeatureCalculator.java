@@ -128,6 +128,23 @@ public class EdgeFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 		computeEdgeFeaturesAgent( edges, spotFeatureAnalyzers, doLogIt );
 	}
 
+	/**
+	 * Calculates the features of the specified analyzers for the specified
+	 * edges.
+	 *
+	 * @param edges
+	 *            the edges to compute.
+	 * @param analyzers
+	 *            the analyzers to use for computation.
+	 * @param doLogIt
+	 *            if <code>true</code>, the logger of the model will be notified
+	 *            of the calculation.
+	 */
+	public void computeEdgesFeatures( final Collection< DefaultWeightedEdge > edges, final List< EdgeAnalyzer > analyzers, final boolean doLogIt )
+	{
+		computeEdgeFeaturesAgent( edges, analyzers, doLogIt );
+	}
+
 	/*
 	 * PRIVATE METHODS
 	 */
@@ -21,8 +21,10 @@
  */
 package fiji.plugin.trackmate.features;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.TrackMateModule;
@@ -72,4 +74,19 @@ public interface FeatureAnalyzer extends TrackMateModule
 	 *         manual feature.
 	 */
 	public boolean isManualFeature();
+
+	/**
+	 * Returns the data of the model the features of this analyzer depend on.
+	 * When the model is edited, the features are recomputed only if one of
+	 * these inputs changed.
+	 * <p>
+	 * The default implementation returns all the inputs, so that the features
+	 * are recomputed after any change.
+	 *
+	 * @return the set of inputs.
+	 */
+	public default Set< FeatureInput > getInputs()
+	{
+		return EnumSet.allOf( FeatureInput.class );
+	}
 }
@@ -0,0 +1,43 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+/**
+ * The data of the model a {@link FeatureAnalyzer} reads to compute its
+ * features. Analyzers declare them so that the features can be updated only
+ * when one of their inputs changed.
+ */
+public enum FeatureInput
+{
+	/** The pixel values of the source image under the object. */
+	PIXELS,
+	/** The spot positions in space. */
+	POSITION,
+	/** The spot radius, ROI or any other description of its shape. */
+	SHAPE,
+	/** The spot frames and time positions. */
+	FRAME,
+	/** The links between spots, their weights and the track topology. */
+	LINKS,
+	/** Other numerical features, such as the quality or the features computed by other analyzers. */
+	FEATURES;
+}
@@ -23,6 +23,7 @@ package fiji.plugin.trackmate.features;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -194,7 +195,7 @@ public class FeatureUtils
 		}
 		case SPOTS:
 		{
-
+			fm.ensureSpotFeatures( Collections.singleton( featureKey ) );
 			final DoubleArray val = new DoubleArray();
 			for ( final Spot spot : model.getSpots().iterable( visibleOnly ) )
 			{
@@ -253,6 +254,8 @@ public class FeatureUtils
 			if ( displaySettings.getSpotColorByFeature().equals( ManualSpotColorAnalyzerFactory.FEATURE ) )
 				return new ManualSpotColorGenerator( displaySettings.getMissingValueColor() );
 
+			model.getFeatureModel().ensureSpotFeatures( Collections.singleton( displaySettings.getSpotColorByFeature() ) );
+
 			return new SpotColorGenerator(
 					displaySettings.getSpotColorByFeature(),
 					displaySettings.getMissingValueColor(),
@@ -316,6 +319,8 @@ public class FeatureUtils
 			if ( displaySettings.getTrackColorByFeature().equals( ManualSpotColorAnalyzerFactory.FEATURE ) )
 				return new ManualEdgePerSpotColorGenerator( model, displaySettings.getMissingValueColor() );
 
+			model.getFeatureModel().ensureSpotFeatures( Collections.singleton( displaySettings.getTrackColorByFeature() ) );
+
 			return new PerSpotFeatureColorGenerator(
 					model,
 					displaySettings.getTrackColorByFeature(),
@@ -0,0 +1,304 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.ModelChangeEvent;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+import fiji.plugin.trackmate.features.track.IncrementalTrackAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackStatistics;
+
+/**
+ * Maintains the {@link TrackStatistics} of the tracks of a model as it is
+ * edited, so that the features of {@link IncrementalTrackAnalyzer}s can be
+ * updated in <code>O(log n)</code> per added or removed spot or edge.
+ * <p>
+ * Statistics are built lazily, by walking a track the first time its features
+ * are requested. They are then updated from each model change event. When two
+ * tracks are merged, the statistics of the smaller one are merged into the
+ * ones of the larger one. Changes that cannot be applied incrementally, such
+ * as moving a spot or splitting a track, invalidate the statistics, which are
+ * then rebuilt the next time they are requested.
+ */
+class IncrementalTrackStatistics
+{
+
+	/**
+	 * The statistics of one track. When tracks are merged, the statistics of
+	 * the absorbed track forward to the ones of the other.
+	 */
+	private static final class Node
+	{
+
+		private final TrackStatistics statistics = new TrackStatistics();
+
+		private Node forward;
+
+		private boolean invalid;
+
+		private Node find()
+		{
+			Node root = this;
+			while ( null != root.forward )
+				root = root.forward;
+			// Path compression.
+			Node node = this;
+			while ( node != root )
+			{
+				final Node next = node.forward;
+				node.forward = root;
+				node = next;
+			}
+			return root;
+		}
+	}
+
+	/** What we need to know about an edge once it is removed from the model. */
+	private static final class EdgeRecord
+	{
+
+		private final Spot source;
+
+		private final double speed;
+
+		private EdgeRecord( final Spot source, final double speed )
+		{
+			this.source = source;
+			this.speed = speed;
+		}
+	}
+
+	private final Map< Spot, Node > owners = new HashMap<>();
+
+	private final Map< DefaultWeightedEdge, EdgeRecord > edges = new HashMap<>();
+
+	private final TrackModel trackModel;
+
+	IncrementalTrackStatistics( final TrackModel trackModel )
+	{
+		this.trackModel = trackModel;
+	}
+
+	/**
+	 * Updates the statistics against the specified model change event.
+	 */
+	void apply( final ModelChangeEvent event )
+	{
+		if ( owners.isEmpty() )
+			return;
+
+		final Set< Node > touched = new HashSet<>();
+
+		// Removed edges first, while we can still find their track.
+		for ( final DefaultWeightedEdge edge : event.getEdges() )
+		{
+			if ( event.getEdgeFlag( edge ) != ModelChangeEvent.FLAG_EDGE_REMOVED )
+				continue;
+			final EdgeRecord record = edges.remove( edge );
+			if ( null == record )
+				continue;
+			final Node node = rootOf( record.source );
+			if ( null == node )
+				continue;
+			touched.add( node );
+			if ( !node.statistics.removeEdge( record.speed ) )
+				node.invalid = true;
+		}
+
+		// Spots.
+		for ( final Spot spot : event.getSpots() )
+		{
+			final int flag = event.getSpotFlag( spot );
+			if ( flag == ModelChangeEvent.FLAG_SPOT_ADDED )
+				continue;
+
+			final Node node = rootOf( spot );
+			if ( null == node )
+				continue;
+
+			touched.add( node );
+			if ( flag == ModelChangeEvent.FLAG_SPOT_REMOVED )
+			{
+				owners.remove( spot );
+				if ( !node.statistics.removeSpot( spot ) )
+					node.invalid = true;
+			}
+			else
+			{
+				// We do not know the values it contributed before.
+				node.invalid = true;
+			}
+		}
+
+		// Added edges.
+		for ( final DefaultWeightedEdge edge : event.getEdges() )
+		{
+			if ( event.getEdgeFlag( edge ) != ModelChangeEvent.FLAG_EDGE_ADDED || null == trackModel.trackIDOf( edge ) )
+				continue;
+
+			final Spot source = trackModel.getEdgeSource( edge );
+			final Spot target = trackModel.getEdgeTarget( edge );
+			final Node sn = rootOf( source );
+			final Node tn = rootOf( target );
+			final Node node;
+			if ( null == sn && null == tn )
+			{
+				// Either a new track, or one we do not have statistics for.
+				continue;
+			}
+			else if ( null == sn )
+			{
+				node = tn;
+				join( source, node );
+			}
+			else if ( null == tn )
+			{
+				node = sn;
+				join( target, node );
+			}
+			else if ( sn == tn )
+			{
+				node = sn;
+			}
+			else
+			{
+				// Merge the smaller track into the larger one.
+				final boolean sourceLarger = sn.statistics.getNSpots() >= tn.statistics.getNSpots();
+				node = sourceLarger ? sn : tn;
+				final Node other = sourceLarger ? tn : sn;
+				node.statistics.merge( other.statistics );
+				node.invalid |= other.invalid;
+				other.forward = node;
+			}
+
+			final double speed = TrackStatistics.speed( source, target );
+			node.statistics.addEdge( speed );
+			edges.put( edge, new EdgeRecord( source, speed ) );
+			touched.add( node );
+		}
+
+		/*
+		 * Check the statistics of the updated tracks against their content.
+		 * This catches the changes we could not follow, such as a track
+		 * split or a merge with a track we had no statistics for. Statistics
+		 * that were changed but match no track are stale.
+		 */
+		final Set< Integer > updated = event.getTrackUpdated();
+		final Map< Node, Integer > claimed = new HashMap<>();
+		for ( final Integer trackID : null == updated ? Collections.< Integer >emptySet() : updated )
+		{
+			final Set< Spot > spots = trackModel.trackSpots( trackID );
+			if ( null == spots || spots.isEmpty() )
+				continue;
+			final Node node = rootOf( spots.iterator().next() );
+			if ( null == node )
+				continue;
+			final Integer other = claimed.put( node, trackID );
+			if ( null != other || !matches( node, trackID ) )
+				node.invalid = true;
+		}
+		for ( final Node node : touched )
+			if ( node.find() == node && !claimed.containsKey( node ) )
+				node.invalid = true;
+	}
+
+	/**
+	 * Stores the features of the specified analyzers for the specified tracks,
+	 * from their statistics. Missing or invalid statistics are rebuilt.
+	 */
+	void putFeatures( final Collection< Integer > trackIDs, final List< IncrementalTrackAnalyzer > analyzers, final FeatureModel fm )
+	{
+		for ( final Integer trackID : trackIDs )
+		{
+			final TrackStatistics statistics = statisticsOf( trackID );
+			if ( null == statistics )
+				continue;
+			for ( final IncrementalTrackAnalyzer analyzer : analyzers )
+				analyzer.putFeatures( trackID, statistics, fm );
+		}
+	}
+
+	/**
+	 * Forgets all the statistics.
+	 */
+	void clear()
+	{
+		owners.clear();
+		edges.clear();
+	}
+
+	private TrackStatistics statisticsOf( final Integer trackID )
+	{
+		final Set< Spot > spots = trackModel.trackSpots( trackID );
+		if ( null == spots || spots.isEmpty() )
+			return null;
+
+		final Node node = rootOf( spots.iterator().next() );
+		if ( null != node && !node.invalid && matches( node, trackID ) )
+			return node.statistics;
+
+		// Rebuild.
+		final Node rebuilt = new Node();
+		for ( final Spot spot : spots )
+		{
+			rebuilt.statistics.addSpot( spot );
+			owners.put( spot, rebuilt );
+		}
+		for ( final DefaultWeightedEdge edge : trackModel.trackEdges( trackID ) )
+		{
+			final Spot source = trackModel.getEdgeSource( edge );
+			final double speed = TrackStatistics.speed( source, trackModel.getEdgeTarget( edge ) );
+			rebuilt.statistics.addEdge( speed );
+			edges.put( edge, new EdgeRecord( source, speed ) );
+		}
+		return rebuilt.statistics;
+	}
+
+	private boolean matches( final Node node, final Integer trackID )
+	{
+		return node.statistics.getNSpots() == trackModel.trackSpots( trackID ).size()
+				&& node.statistics.getNEdges() == trackModel.trackEdges( trackID ).size();
+	}
+
+	private void join( final Spot spot, final Node node )
+	{
+		node.statistics.addSpot( spot );
+		owners.put( spot, node );
+	}
+
+	private Node rootOf( final Spot spot )
+	{
+		final Node node = owners.get( spot );
+		return null == node ? null : node.find();
+	}
+}
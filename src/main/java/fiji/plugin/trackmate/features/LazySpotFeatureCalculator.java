@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.features.spot.SpotAnalyzerFactoryBase;
+import net.imglib2.algorithm.MultiThreaded;
+
+/**
+ * Computes spot features on demand, the first time their values are
+ * requested.
+ * <p>
+ * The spot analyzers configured in the {@link Settings} are declared in the
+ * feature model, but they are only run when one of their features is
+ * requested through
+ * {@link fiji.plugin.trackmate.FeatureModel#ensureSpotFeatures(Collection)}.
+ * They are then run in parallel over the frames that were not computed yet,
+ * and the results are memoized. Analyzers that depend on the features of
+ * other analyzers (declaring {@link FeatureInput#FEATURES} as input) are run
+ * along with the analyzers configured before them.
+ * <p>
+ * Spots added or modified after a frame has been computed are not handled
+ * here: the {@link ModelFeatureUpdater} takes care of them.
+ *
+ * @author Jean-Yves Tinevez
+ */
+public class LazySpotFeatureCalculator implements MultiThreaded
+{
+
+	private final Model model;
+
+	private final Settings settings;
+
+	private final SpotFeatureCalculator calculator;
+
+	/**
+	 * The frames each analyzer factory was computed on. Guarded by this.
+	 */
+	private final Map< SpotAnalyzerFactoryBase< ? >, Set< Integer > > computed = new HashMap<>();
+
+	private int numThreads;
+
+	public LazySpotFeatureCalculator( final Model model, final Settings settings )
+	{
+		this.model = model;
+		this.settings = settings;
+		this.calculator = new SpotFeatureCalculator( model, settings, false );
+		setNumThreads();
+	}
+
+	/**
+	 * Ensures that the specified features are computed for all the spots of the
+	 * model, visible or not.
+	 *
+	 * @param features
+	 *            the features to compute.
+	 */
+	public void ensureComputed( final Collection< String > features )
+	{
+		ensureComputed( features, model.getSpots().keySet() );
+	}
+
+	/**
+	 * Ensures that the specified features are computed for all the spots of
+	 * the specified frames.
+	 *
+	 * @param features
+	 *            the features to compute.
+	 * @param frames
+	 *            the frames to compute.
+	 */
+	public synchronized void ensureComputed( final Collection< String > features, final Collection< Integer > frames )
+	{
+		final List< SpotAnalyzerFactoryBase< ? > > factories = settings.getSpotAnalyzerFactories();
+
+		// Select the analyzers that provide the features.
+		int lastDependent = -1;
+		final boolean[] selected = new boolean[ factories.size() ];
+		for ( int i = 0; i < factories.size(); i++ )
+		{
+			final SpotAnalyzerFactoryBase< ? > factory = factories.get( i );
+			if ( Collections.disjoint( factory.getFeatures(), features ) )
+				continue;
+
+			selected[ i ] = true;
+			if ( factory.getInputs().contains( FeatureInput.FEATURES ) )
+				lastDependent = i;
+		}
+		// And the ones they might depend on.
+		for ( int i = 0; i < lastDependent; i++ )
+			selected[ i ] = true;
+
+		// Group the selected analyzers by the frames they miss.
+		final Map< Set< Integer >, List< SpotAnalyzerFactoryBase< ? > > > toCompute = new LinkedHashMap<>();
+		for ( int i = 0; i < factories.size(); i++ )
+		{
+			if ( !selected[ i ] )
+				continue;
+
+			final SpotAnalyzerFactoryBase< ? > factory = factories.get( i );
+			final Set< Integer > missing = new TreeSet<>( frames );
+			missing.removeAll( computed.getOrDefault( factory, Collections.emptySet() ) );
+			if ( !missing.isEmpty() )
+				toCompute.computeIfAbsent( missing, k -> new ArrayList<>() ).add( factory );
+		}
+
+		// Compute them, frames in parallel.
+		final SpotCollection spots = model.getSpots();
+		for ( final Entry< Set< Integer >, List< SpotAnalyzerFactoryBase< ? > > > entry : toCompute.entrySet() )
+		{
+			final Map< Integer, Set< Spot > > content = new HashMap<>();
+			for ( final Integer frame : entry.getKey() )
+			{
+				final Set< Spot > frameSpots = new HashSet<>();
+				for ( final Spot spot : spots.iterable( frame, false ) )
+					frameSpots.add( spot );
+				content.put( frame, frameSpots );
+			}
+			calculator.computeSpotFeatures( SpotCollection.fromMap( content ), entry.getValue(), false );
+
+			for ( final SpotAnalyzerFactoryBase< ? > factory : entry.getValue() )
+				computed.computeIfAbsent( factory, k -> new HashSet<>() ).addAll( entry.getKey() );
+		}
+	}
+
+	/**
+	 * Forgets about the features computed so far. They will be recomputed the
+	 * next time they are requested.
+	 */
+	public synchronized void reset()
+	{
+		computed.clear();
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		setNumThreads( Runtime.getRuntime().availableProcessors() );
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+		calculator.setNumThreads( numThreads );
+	}
+}
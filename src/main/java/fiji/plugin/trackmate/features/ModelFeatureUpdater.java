@@ -22,6 +22,14 @@
 package fiji.plugin.trackmate.features;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
@@ -31,18 +39,65 @@ import fiji.plugin.trackmate.ModelChangeListener;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.TrackModel;
+import fiji.plugin.trackmate.features.edges.EdgeAnalyzer;
+import fiji.plugin.trackmate.features.spot.SpotAnalyzerFactoryBase;
+import fiji.plugin.trackmate.features.track.IncrementalTrackAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackAnalyzer;
 import net.imglib2.algorithm.MultiThreaded;
 
 /**
  * A utility class that listens to the change occurring in a model, and updates
  * its spot, edge and track features accordingly. Useful to keep the model in
  * sync with manual editing.
- * 
+ * <p>
+ * Only the features that can be affected by a change are recomputed. Each
+ * change in the model is translated into the set of {@link FeatureInput}s it
+ * modifies, for each spot, edge and track it touches. An analyzer is then run
+ * on an object only if one of the inputs it declares with
+ * {@link FeatureAnalyzer#getInputs()} changed for this object. For instance,
+ * moving a spot does not trigger the recomputation of the track index or of
+ * the track branching features.
+ * <p>
+ * These changes are propagated along the dependencies between objects. The
+ * data of a spot is an input of its edges and of its track, so moving a spot
+ * changes the {@link FeatureInput#POSITION} input of its edges and track. The
+ * features computed for an object are themselves inputs of the analyzers
+ * of the objects that depend on it: when the features of a spot are
+ * recomputed, the {@link FeatureInput#FEATURES} input of its edges and of its
+ * track changes, and when the features of an edge are recomputed, this input
+ * of its track changes. The updates are therefore run in this order, spots,
+ * edges then tracks, each level adding to the changes of the next ones.
+ * <p>
+ * The features of {@link IncrementalTrackAnalyzer}s are not recomputed from
+ * scratch: they are derived from track statistics that are maintained as
+ * spots and edges are added and removed, so linking or unlinking a spot in a
+ * large track does not require walking it.
+ *
  * @author Jean-Yves Tinevez - 2013 - revised in 2021
  */
 public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 {
 
+	/** The inputs that change when a spot is added or changes frame. */
+	private static final Set< FeatureInput > ALL_INPUTS = Collections.unmodifiableSet( EnumSet.allOf( FeatureInput.class ) );
+
+	/**
+	 * The inputs that change when a spot is modified. We do not know what was
+	 * modified, but it cannot be its frame nor its links.
+	 */
+	private static final Set< FeatureInput > SPOT_MODIFIED_INPUTS = Collections.unmodifiableSet( EnumSet.of(
+			FeatureInput.PIXELS,
+			FeatureInput.POSITION,
+			FeatureInput.SHAPE,
+			FeatureInput.FEATURES ) );
+
+	/** The inputs that change when links are added or removed. */
+	private static final Set< FeatureInput > LINKS_INPUTS = Collections.unmodifiableSet( EnumSet.of( FeatureInput.LINKS ) );
+
+	/** The inputs that change when the features of an object are recomputed. */
+	private static final Set< FeatureInput > FEATURES_INPUTS = Collections.unmodifiableSet( EnumSet.of( FeatureInput.FEATURES ) );
+
 	private final SpotFeatureCalculator spotFeatureCalculator;
 
 	private final EdgeFeatureCalculator edgeFeatureCalculator;
@@ -51,8 +106,13 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 
 	private final Model model;
 
+	private final Settings settings;
+
 	private int numThreads;
 
+	/** The statistics of the tracks, updated with each change. */
+	private final IncrementalTrackStatistics trackStatistics;
+
 	/**
 	 * Constructs and activate a {@link ModelFeatureUpdater}. The new instance
 	 * is registered to listen to model changes, and update its feature.
@@ -66,11 +126,13 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 	public ModelFeatureUpdater( final Model model, final Settings settings )
 	{
 		this.model = model;
+		this.settings = settings;
 		// don't log feature computation for updates.
 		final boolean doLogIt = false;
 		this.spotFeatureCalculator = new SpotFeatureCalculator( model, settings, doLogIt );
 		this.edgeFeatureCalculator = new EdgeFeatureCalculator( model, settings, doLogIt );
 		this.trackFeatureCalculator = new TrackFeatureCalculator( model, settings, doLogIt );
+		this.trackStatistics = new IncrementalTrackStatistics( model.getTrackModel() );
 		model.addModelChangeListener( this );
 		setNumThreads();
 	}
@@ -85,31 +147,101 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 		if ( event.getEventID() != ModelChangeEvent.MODEL_MODIFIED )
 			return;
 
-		// Build spot list
-		final ArrayList< Spot > spots = new ArrayList<>( event.getSpots().size() );
-		for ( final Spot spot : event.getSpots() )
+		trackStatistics.apply( event );
+		update( new Changes( event, model.getTrackModel() ) );
+	}
+
+	/**
+	 * Recomputes the features affected by the specified changes.
+	 */
+	private void update( final Changes changes )
+	{
+		final TrackModel trackModel = model.getTrackModel();
+
+		// Update spot features
+		final List< SpotAnalyzerFactoryBase< ? > > spotFactories = settings.getSpotAnalyzerFactories();
+		for ( final Entry< Set< FeatureInput >, List< Spot > > entry : groupByInputs( changes.spots ).entrySet() )
 		{
-			if ( event.getSpotFlag( spot ) != ModelChangeEvent.FLAG_SPOT_REMOVED )
-				spots.add( spot );
+			final List< SpotAnalyzerFactoryBase< ? > > factories = select( spotFactories, entry.getKey() );
+			if ( factories.isEmpty() )
+				continue;
+			spotFeatureCalculator.computeSpotFeatures( SpotCollection.fromCollection( entry.getValue() ), factories, false );
+			for ( final Spot spot : entry.getValue() )
+			{
+				for ( final DefaultWeightedEdge edge : trackModel.edgesOf( spot ) )
+					Changes.add( changes.edges, edge, FEATURES_INPUTS );
+				final Integer trackID = trackModel.trackIDOf( spot );
+				if ( null != trackID )
+					Changes.add( changes.tracks, trackID, FEATURES_INPUTS );
+			}
 		}
-		final SpotCollection sc = SpotCollection.fromCollection( spots );
 
-		// Build edge list
-		final ArrayList< DefaultWeightedEdge > edges = new ArrayList<>( event.getEdges().size() );
-		for ( final DefaultWeightedEdge edge : event.getEdges() )
+		// Update edge features
+		final List< EdgeAnalyzer > edgeAnalyzers = settings.getEdgeAnalyzers();
+		for ( final Entry< Set< FeatureInput >, List< DefaultWeightedEdge > > entry : groupByInputs( changes.edges ).entrySet() )
 		{
-			if ( event.getEdgeFlag( edge ) != ModelChangeEvent.FLAG_EDGE_REMOVED )
-				edges.add( edge );
+			final List< EdgeAnalyzer > analyzers = select( edgeAnalyzers, entry.getKey() );
+			if ( analyzers.isEmpty() )
+				continue;
+			edgeFeatureCalculator.computeEdgesFeatures( entry.getValue(), analyzers, false );
+			for ( final DefaultWeightedEdge edge : entry.getValue() )
+			{
+				final Integer trackID = trackModel.trackIDOf( edge );
+				if ( null != trackID )
+					Changes.add( changes.tracks, trackID, FEATURES_INPUTS );
+			}
 		}
 
-		// Update spot features
-		spotFeatureCalculator.computeSpotFeatures( sc, false );
+		// Update track features
+		final Set< Integer > trackIDs = trackModel.trackIDs( false );
+		changes.tracks.keySet().retainAll( trackIDs );
+		final List< IncrementalTrackAnalyzer > incrementalAnalyzers = new ArrayList<>();
+		final List< TrackAnalyzer > trackAnalyzers = new ArrayList<>();
+		for ( final TrackAnalyzer analyzer : settings.getTrackAnalyzers() )
+		{
+			if ( analyzer instanceof IncrementalTrackAnalyzer && analyzer.isLocal() && !analyzer.isManualFeature() )
+				incrementalAnalyzers.add( ( IncrementalTrackAnalyzer ) analyzer );
+			else
+				trackAnalyzers.add( analyzer );
+		}
+		final Map< Set< FeatureInput >, List< Integer > > trackGroups = groupByInputs( changes.tracks );
+		// First the ones we can update from the track statistics.
+		for ( final Entry< Set< FeatureInput >, List< Integer > > entry : trackGroups.entrySet() )
+		{
+			final List< IncrementalTrackAnalyzer > analyzers = select( incrementalAnalyzers, entry.getKey() );
+			if ( !analyzers.isEmpty() )
+				trackStatistics.putFeatures( entry.getValue(), analyzers, model.getFeatureModel() );
+		}
+		// Then the others, that may depend on them.
+		for ( final Entry< Set< FeatureInput >, List< Integer > > entry : trackGroups.entrySet() )
+		{
+			final List< TrackAnalyzer > analyzers = select( trackAnalyzers, entry.getKey() );
+			if ( !analyzers.isEmpty() )
+				trackFeatureCalculator.computeTrackFeatures( entry.getValue(), analyzers, false );
+		}
+	}
 
-		// Update edge features
-		edgeFeatureCalculator.computeEdgesFeatures( edges, false );
+	/**
+	 * Returns the analyzers that depend on at least one of the specified
+	 * inputs.
+	 */
+	private static < A extends FeatureAnalyzer > List< A > select( final List< A > analyzers, final Set< FeatureInput > changed )
+	{
+		final List< A > selected = new ArrayList<>( analyzers.size() );
+		for ( final A analyzer : analyzers )
+		{
+			if ( !Collections.disjoint( analyzer.getInputs(), changed ) )
+				selected.add( analyzer );
+		}
+		return selected;
+	}
 
-		// Update track features
-		trackFeatureCalculator.computeTrackFeatures( event.getTrackUpdated(), false );
+	private static < O > Map< Set< FeatureInput >, List< O > > groupByInputs( final Map< O, Set< FeatureInput > > inputs )
+	{
+		final Map< Set< FeatureInput >, List< O > > groups = new HashMap<>();
+		for ( final Entry< O, Set< FeatureInput > > entry : inputs.entrySet() )
+			groups.computeIfAbsent( entry.getValue(), k -> new ArrayList<>() ).add( entry.getKey() );
+		return groups;
 	}
 
 	/**
@@ -119,6 +251,7 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 	public void quit()
 	{
 		model.removeModelChangeListener( this );
+		trackStatistics.clear();
 	}
 
 	@Override
@@ -141,4 +274,141 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 		edgeFeatureCalculator.setNumThreads( numThreads );
 		trackFeatureCalculator.setNumThreads( numThreads );
 	}
+
+	/**
+	 * The inputs that changed for each spot, edge and track touched by a model
+	 * modification.
+	 */
+	private static final class Changes
+	{
+
+		private final Map< Spot, Set< FeatureInput > > spots = new HashMap<>();
+
+		private final Map< DefaultWeightedEdge, Set< FeatureInput > > edges = new HashMap<>();
+
+		private final Map< Integer, Set< FeatureInput > > tracks = new HashMap<>();
+
+		private Changes( final ModelChangeEvent event, final TrackModel trackModel )
+		{
+			// Spots.
+			for ( final Spot spot : event.getSpots() )
+			{
+				switch ( event.getSpotFlag( spot ) )
+				{
+				case ModelChangeEvent.FLAG_SPOT_REMOVED:
+					break;
+				case ModelChangeEvent.FLAG_SPOT_MODIFIED:
+					spots.put( spot, SPOT_MODIFIED_INPUTS );
+					break;
+				default:
+					spots.put( spot, ALL_INPUTS );
+					break;
+				}
+			}
+
+			// Edges.
+			boolean linksChanged = false;
+			boolean linksRemoved = false;
+			for ( final DefaultWeightedEdge edge : event.getEdges() )
+			{
+				switch ( event.getEdgeFlag( edge ) )
+				{
+				case ModelChangeEvent.FLAG_EDGE_REMOVED:
+					linksChanged = true;
+					linksRemoved = true;
+					break;
+				case ModelChangeEvent.FLAG_EDGE_ADDED:
+					edges.put( edge, ALL_INPUTS );
+					linksChanged = true;
+					// The edges around it have new neighbors.
+					for ( final DefaultWeightedEdge other : trackModel.edgesOf( trackModel.getEdgeSource( edge ) ) )
+						add( edges, other, LINKS_INPUTS );
+					for ( final DefaultWeightedEdge other : trackModel.edgesOf( trackModel.getEdgeTarget( edge ) ) )
+						add( edges, other, LINKS_INPUTS );
+					break;
+				default:
+					// Modified because one of its spots was, or its weight.
+					if ( !spots.containsKey( trackModel.getEdgeSource( edge ) ) && !spots.containsKey( trackModel.getEdgeTarget( edge ) ) )
+						edges.put( edge, ALL_INPUTS );
+					break;
+				}
+			}
+
+			/*
+			 * We cannot find the spots of removed edges anymore, so all the
+			 * edges of the tracks they were removed from may have lost
+			 * neighbors.
+			 */
+			final Set< Integer > updated = event.getTrackUpdated();
+			if ( linksRemoved && null != updated )
+				for ( final Integer trackID : updated )
+					for ( final DefaultWeightedEdge edge : trackModel.trackEdges( trackID ) )
+						add( edges, edge, LINKS_INPUTS );
+
+			// The data of a spot is also an input of the edges around it and of its track.
+			for ( final Entry< Spot, Set< FeatureInput > > entry : spots.entrySet() )
+			{
+				for ( final DefaultWeightedEdge edge : edgesAround( entry.getKey(), trackModel ) )
+					add( edges, edge, entry.getValue() );
+				final Integer trackID = trackModel.trackIDOf( entry.getKey() );
+				if ( null != trackID )
+					add( tracks, trackID, entry.getValue() );
+			}
+			for ( final Entry< DefaultWeightedEdge, Set< FeatureInput > > entry : edges.entrySet() )
+			{
+				final Integer trackID = trackModel.trackIDOf( entry.getKey() );
+				if ( null != trackID )
+					add( tracks, trackID, entry.getValue() );
+			}
+
+			// Tracks whose topology changed.
+			if ( null == updated )
+				return;
+
+			for ( final Integer trackID : updated )
+			{
+				if ( linksChanged )
+					add( tracks, trackID, LINKS_INPUTS );
+				// We do not know why this track was updated.
+				if ( !tracks.containsKey( trackID ) )
+					tracks.put( trackID, ALL_INPUTS );
+			}
+		}
+
+		/**
+		 * Returns the edges whose features can read the data of the specified
+		 * spot: its own edges, and the ones of its neighbors, such as the
+		 * directional change of the edges that follow it.
+		 */
+		private static Set< DefaultWeightedEdge > edgesAround( final Spot spot, final TrackModel trackModel )
+		{
+			final Set< DefaultWeightedEdge > own = trackModel.edgesOf( spot );
+			final Set< DefaultWeightedEdge > around = new HashSet<>( own );
+			for ( final DefaultWeightedEdge edge : own )
+			{
+				final Spot source = trackModel.getEdgeSource( edge );
+				around.addAll( trackModel.edgesOf( source == spot ? trackModel.getEdgeTarget( edge ) : source ) );
+			}
+			return around;
+		}
+
+		/**
+		 * Adds inputs to the changed inputs of an object.
+		 */
+		private static < O > void add( final Map< O, Set< FeatureInput > > target, final O o, final Set< FeatureInput > inputs )
+		{
+			final Set< FeatureInput > current = target.get( o );
+			if ( null == current )
+			{
+				target.put( o, inputs );
+			}
+			else if ( !current.containsAll( inputs ) )
+			{
+				// Sets may be shared, so we never modify them in place.
+				final Set< FeatureInput > union = EnumSet.copyOf( current );
+				union.addAll( inputs );
+				target.put( o, union );
+			}
+		}
+	}
 }
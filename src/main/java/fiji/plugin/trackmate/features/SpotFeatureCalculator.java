@@ -23,13 +23,16 @@ package fiji.plugin.trackmate.features;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.scijava.Cancelable;
 
@@ -38,6 +41,8 @@ import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.features.spot.FusedSpotAnalyzerFactory;
+import fiji.plugin.trackmate.features.spot.MultiChannelSpotAnalyzerFactory;
 import fiji.plugin.trackmate.features.spot.SpotAnalyzer;
 import fiji.plugin.trackmate.features.spot.SpotAnalyzerFactoryBase;
 import fiji.plugin.trackmate.util.Threads;
@@ -106,8 +111,19 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 	@Override
 	public boolean process()
 	{
+		declareFeatures();
 
-		// Declare what you do.
+		// Do it.
+		computeSpotFeaturesAgent( model.getSpots(), settings.getSpotAnalyzerFactories(), doLogIt );
+		return true;
+	}
+
+	/**
+	 * Declares the spot features configured in the {@link Settings} in the
+	 * feature model, without computing them.
+	 */
+	public void declareFeatures()
+	{
 		for ( final SpotAnalyzerFactoryBase< ? > factory : settings.getSpotAnalyzerFactories() )
 		{
 			final Collection< String > features = factory.getFeatures();
@@ -117,10 +133,6 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 			final Map< String, Boolean > isIntFeature = factory.getIsIntFeature();
 			model.getFeatureModel().declareSpotFeatures( features, featureNames, featureShortNames, featureDimensions, isIntFeature );
 		}
-
-		// Do it.
-		computeSpotFeaturesAgent( model.getSpots(), settings.getSpotAnalyzerFactories(), doLogIt );
-		return true;
 	}
 
 	/**
@@ -134,6 +146,23 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 		computeSpotFeaturesAgent( toCompute, spotFeatureAnalyzers, doLogIt );
 	}
 
+	/**
+	 * Calculates the spot features of the specified analyzer factories, only
+	 * for the spots in the specified collection.
+	 *
+	 * @param toCompute
+	 *            the spots to compute.
+	 * @param analyzerFactories
+	 *            the analyzer factories to use for computation. They must be
+	 *            among the ones configured in the {@link Settings}.
+	 * @param doLogIt
+	 *            whether we should report progress to the user.
+	 */
+	public void computeSpotFeatures( final SpotCollection toCompute, final List< SpotAnalyzerFactoryBase< ? > > analyzerFactories, final boolean doLogIt )
+	{
+		computeSpotFeaturesAgent( toCompute, analyzerFactories, doLogIt );
+	}
+
 	/**
 	 * The method in charge of computing spot features with the given
 	 * {@link SpotAnalyzer}s, for the given {@link SpotCollection}.
@@ -183,9 +212,36 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 			logger.setStatus( "Calculating " + toCompute.getNSpots( false ) + " spots features..." );
 		}
 
+		/*
+		 * Some factories can compute the features of other selected factories
+		 * in a single pass over the pixels, for instance intensity with
+		 * contrast, or shape with ellipse fit. The other factories are then
+		 * skipped.
+		 */
+		final Set< String > selectedKeys = new HashSet<>();
+		for ( final SpotAnalyzerFactoryBase< ? > factory : analyzerFactories )
+			selectedKeys.add( factory.getKey() );
+		final Set< SpotAnalyzerFactoryBase< ? > > fusedFactories = new HashSet<>();
+		final Set< String > skippedKeys = new HashSet<>();
+		for ( final SpotAnalyzerFactoryBase< ? > factory : analyzerFactories )
+		{
+			if ( !( factory instanceof FusedSpotAnalyzerFactory ) || skippedKeys.contains( factory.getKey() ) )
+				continue;
+
+			final List< String > keys = ( ( FusedSpotAnalyzerFactory< ? > ) factory ).getFusedFactoryKeys();
+			if ( !selectedKeys.containsAll( keys ) || keys.stream().anyMatch( skippedKeys::contains ) )
+				continue;
+
+			fusedFactories.add( factory );
+			for ( final String key : keys )
+				if ( !key.equals( factory.getKey() ) )
+					skippedKeys.add( key );
+		}
+
+		final int nChannels = settings.imp.getNChannels();
 		final AtomicInteger progress = new AtomicInteger( 0 );
 		final List< Callable< Void > > tasks = new ArrayList<>( numFrames );
-		final int workToDo = numFrames * analyzerFactories.size() * settings.imp.getNChannels();
+		final int workToDo = numFrames * analyzerFactories.size() * nChannels;
 		for ( int iFrame = 0; iFrame < numFrames; iFrame++ )
 		{
 			final int index = iFrame;
@@ -197,25 +253,66 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm imple
 				{
 					final int frame = frameSet.get( index );
 
-					for ( int channel = 0; channel < settings.imp.getNChannels(); channel++ )
+					final Consumer< SpotAnalyzer< ? > > process = analyzer -> {
+						// Fine-tune multithreading if we can.
+						if ( analyzer instanceof MultiThreaded )
+							( ( MultiThreaded ) analyzer ).setNumThreads( threadsPerFrame );
+
+						analyzer.process( toCompute.iterable( frame, false ) );
+					};
+
+					/*
+					 * Loop over analyzers first, so that multi-channel
+					 * analyzers are called once per frame and can read all
+					 * channels at once.
+					 */
+					for ( final SpotAnalyzerFactoryBase< ? > factory : analyzerFactories )
 					{
-						for ( final SpotAnalyzerFactoryBase< ? > factory : analyzerFactories )
+						if ( isCanceled() )
+							return null;
+
+						final SpotAnalyzer< ? > multiChannelAnalyzer;
+						if ( skippedKeys.contains( factory.getKey() ) )
+						{
+							// Already computed by a fused analyzer.
+							logger.setProgress( progress.addAndGet( nChannels ) / ( double ) workToDo );
+							continue;
+						}
+						else if ( fusedFactories.contains( factory ) )
+						{
+							@SuppressWarnings( "unchecked" )
+							final SpotAnalyzer< ? > fusedAnalyzer = ( ( FusedSpotAnalyzerFactory< ? > ) factory ).getFusedAnalyzer( img, frame );
+							multiChannelAnalyzer = fusedAnalyzer;
+						}
+						else if ( factory instanceof MultiChannelSpotAnalyzerFactory )
+						{
+							@SuppressWarnings( "unchecked" )
+							final SpotAnalyzer< ? > factoryAnalyzer = ( ( MultiChannelSpotAnalyzerFactory< ? > ) factory ).getMultiChannelAnalyzer( img, frame );
+							multiChannelAnalyzer = factoryAnalyzer;
+						}
+						else
+						{
+							multiChannelAnalyzer = null;
+						}
+
+						if ( null != multiChannelAnalyzer )
+						{
+							process.accept( multiChannelAnalyzer );
+							logger.setProgress( progress.addAndGet( nChannels ) / ( double ) workToDo );
+							continue;
+						}
+
+						for ( int channel = 0; channel < nChannels; channel++ )
 						{
 							if ( isCanceled() )
 								return null;
 
-
 							@SuppressWarnings( "unchecked" )
 							final SpotAnalyzer< ? > analyzer = factory.getAnalyzer( img, frame, channel );
-							// Fine-tune multithreading if we can.
-							if ( analyzer instanceof MultiThreaded )
-								( ( MultiThreaded ) analyzer ).setNumThreads( threadsPerFrame );
-
-							analyzer.process( toCompute.iterable( frame, false ) );
-
+							process.accept( analyzer );
 							logger.setProgress( progress.incrementAndGet() / ( double ) workToDo );
-						} // Finished looping over analyzers
-					} // Finished looping over channels
+						} // Finished looping over channels
+					} // Finished looping over analyzers
 
 					return null;
 				}
@@ -21,7 +21,10 @@
  */
 package fiji.plugin.trackmate.features;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SelectionModel;
@@ -68,6 +71,15 @@ public class SpotFeatureGrapher extends AbstractFeatureGrapher
 	@Override
 	protected ModelDataset buildMainDataSet( final List< String > targetYFeatures )
 	{
+		// Only compute the plotted features, on the frames of the plotted spots.
+		final List< String > features = new ArrayList<>( targetYFeatures );
+		features.add( xFeature );
+		final Set< Integer > frames = new TreeSet<>();
+		for ( final Spot spot : spots )
+			frames.add( spot.getFeature( Spot.FRAME ).intValue() );
+		for ( final Integer frame : frames )
+			model.getFeatureModel().ensureSpotFeatures( features, frame );
+
 		return new SpotCollectionDataset(
 				model,
 				selectionModel,
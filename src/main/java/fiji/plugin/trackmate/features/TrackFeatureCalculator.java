@@ -21,6 +21,7 @@
  */
 package fiji.plugin.trackmate.features;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +32,9 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.features.track.AccumulatingTrackAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackWalker;
 import net.imglib2.algorithm.MultiThreadedBenchmarkAlgorithm;
 
 /**
@@ -121,6 +124,15 @@ public class TrackFeatureCalculator extends MultiThreadedBenchmarkAlgorithm impl
 		computeTrackFeaturesAgent( trackIDs, trackFeatureAnalyzers, doLogIt );
 	}
 
+	/**
+	 * Calculates the features of the specified analyzers for the tracks with
+	 * the specified IDs.
+	 */
+	public void computeTrackFeatures( final Collection< Integer > trackIDs, final List< TrackAnalyzer > analyzers, final boolean doLogIt )
+	{
+		computeTrackFeaturesAgent( trackIDs, analyzers, doLogIt );
+	}
+
 	/*
 	 * PRIVATE METHODS
 	 */
@@ -139,6 +151,20 @@ public class TrackFeatureCalculator extends MultiThreadedBenchmarkAlgorithm impl
 			logger.log( "Computing track features:\n", Logger.BLUE_COLOR );
 		}
 
+		/*
+		 * Local analyzers that can accumulate their features over a single walk
+		 * of each track are computed together, at the position of the first of
+		 * them. The walk preserves their order, so they can still depend on
+		 * each other.
+		 */
+		final List< AccumulatingTrackAnalyzer > fused = new ArrayList<>();
+		for ( final TrackAnalyzer analyzer : analyzers )
+			if ( isFusable( analyzer ) )
+				fused.add( ( AccumulatingTrackAnalyzer ) analyzer );
+		if ( fused.size() < 2 )
+			fused.clear();
+
+		boolean fusedDone = false;
 		for ( final TrackAnalyzer analyzer : analyzers )
 		{
 			if ( isCanceled() )
@@ -150,6 +176,31 @@ public class TrackFeatureCalculator extends MultiThreadedBenchmarkAlgorithm impl
 				continue;
 			}
 
+			if ( fused.contains( analyzer ) )
+			{
+				if ( fusedDone )
+					continue;
+
+				final long start = System.currentTimeMillis();
+				TrackWalker.process( trackIDs, model, fused, numThreads );
+				final long end = System.currentTimeMillis();
+				fusedDone = true;
+
+				if ( doLogIt )
+				{
+					final StringBuilder str = new StringBuilder( "  - " );
+					for ( int i = 0; i < fused.size(); i++ )
+					{
+						if ( i > 0 )
+							str.append( ", " );
+						str.append( fused.get( i ).getName() );
+					}
+					str.append( " in " + ( end - start ) + " ms.\n" );
+					logger.log( str.toString() );
+				}
+				continue;
+			}
+
 			analyzer.setNumThreads( numThreads );
 			if ( analyzer.isLocal() )
 			{
@@ -166,6 +217,13 @@ public class TrackFeatureCalculator extends MultiThreadedBenchmarkAlgorithm impl
 		}
 	}
 
+	private static final boolean isFusable( final TrackAnalyzer analyzer )
+	{
+		return ( analyzer instanceof AccumulatingTrackAnalyzer )
+				&& analyzer.isLocal()
+				&& !analyzer.isManualFeature();
+	}
+
 	// --- org.scijava.Cancelable methods ---
 
 	@Override
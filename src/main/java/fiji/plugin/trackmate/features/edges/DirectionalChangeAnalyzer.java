@@ -22,6 +22,7 @@
 package fiji.plugin.trackmate.features.edges;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = EdgeAnalyzer.class )
 public class DirectionalChangeAnalyzer extends AbstractEdgeAnalyzer
@@ -152,4 +154,10 @@ public class DirectionalChangeAnalyzer extends AbstractEdgeAnalyzer
 			sumSq += d * d;
 		return Math.sqrt( sumSq );
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.POSITION, FeatureInput.LINKS );
+	}
 }
@@ -22,9 +22,11 @@
 package fiji.plugin.trackmate.features.edges;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
@@ -33,6 +35,7 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = EdgeAnalyzer.class )
 public class EdgeSpeedAnalyzer extends AbstractEdgeAnalyzer
@@ -88,4 +91,10 @@ public class EdgeSpeedAnalyzer extends AbstractEdgeAnalyzer
 		featureModel.putEdgeFeature( edge, SPEED, S );
 		featureModel.putEdgeFeature( edge, DISPLACEMENT, D );
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.POSITION, FeatureInput.FRAME, FeatureInput.LINKS );
+	}
 }
@@ -22,9 +22,11 @@
 package fiji.plugin.trackmate.features.edges;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
@@ -33,6 +35,7 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = EdgeAnalyzer.class )
 public class EdgeTargetAnalyzer extends AbstractEdgeAnalyzer
@@ -89,4 +92,10 @@ public class EdgeTargetAnalyzer extends AbstractEdgeAnalyzer
 		final Spot target = model.getTrackModel().getEdgeTarget( edge );
 		featureModel.putEdgeFeature( edge, SPOT_TARGET_ID, Double.valueOf( target.ID() ) );
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.LINKS );
+	}
 }
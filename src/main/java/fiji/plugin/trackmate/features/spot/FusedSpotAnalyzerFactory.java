@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import java.util.List;
+
+import net.imagej.ImgPlus;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Interface for spot analyzer factories that can also compute the features of
+ * other factories, in the same pass over the pixels.
+ * <p>
+ * When all the factories listed by {@link #getFusedFactoryKeys()} are
+ * selected, the {@link fiji.plugin.trackmate.features.SpotFeatureCalculator}
+ * calls {@link #getFusedAnalyzer(ImgPlus, int)} once per frame for this
+ * factory, and skips the other factories of the list. Otherwise this factory
+ * is used as a regular one.
+ *
+ * @param <T>
+ *            the pixel type.
+ */
+public interface FusedSpotAnalyzerFactory< T extends RealType< T > & NativeType< T > > extends SpotAnalyzerFactoryBase< T >
+{
+
+	/**
+	 * Returns the keys of the factories whose features are computed by the
+	 * fused analyzer, including the key of this factory.
+	 *
+	 * @return the list of factory keys.
+	 */
+	public List< String > getFusedFactoryKeys();
+
+	/**
+	 * Returns a configured {@link SpotAnalyzer} that computes the features of
+	 * all the factories listed by {@link #getFusedFactoryKeys()}, for all the
+	 * channels of the given frame (0-based). The results must be identical to
+	 * running the analyzers of these factories one after the other.
+	 *
+	 * @param img
+	 *            the 5D (X, Y, Z, C, T) source image. It is the responsibility
+	 *            of the implementation of this method to reslice it for the
+	 *            specified time-point.
+	 * @param frame
+	 *            the target frame to operate on.
+	 * @return a new {@link SpotAnalyzer}.
+	 */
+	public SpotAnalyzer< T > getFusedAnalyzer( ImgPlus< T > img, int frame );
+}
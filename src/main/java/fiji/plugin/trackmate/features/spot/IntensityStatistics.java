@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MAX_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MEAN_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MEDIAN_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MIN_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.STD_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.TOTAL_INTENSITY;
+import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.makeFeatureKey;
+
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Accumulates the intensity statistics of the pixels of a spot in one pass.
+ * <p>
+ * Mean and standard deviation are accumulated with Welford's algorithm,
+ * together with the sum, min and max. Values are also stored in a buffer that
+ * grows as needed and is reused from one spot to the next, so that the median
+ * can be found with a quickselect, in linear time.
+ * <p>
+ * Instances are not thread-safe. Use {@link #get()} or {@link #getAll(int)} to
+ * retrieve the instances of the current thread.
+ */
+final class IntensityStatistics
+{
+
+	private static final ThreadLocal< IntensityStatistics[] > INSTANCES = ThreadLocal.withInitial( () -> new IntensityStatistics[ 0 ] );
+
+	private double[] values = new double[ 256 ];
+
+	private int n;
+
+	private double sum;
+
+	private double mean;
+
+	private double m2;
+
+	private double min;
+
+	private double max;
+
+	private IntensityStatistics()
+	{
+		reset();
+	}
+
+	/**
+	 * Returns the statistics instance of the current thread, reset.
+	 *
+	 * @return a reset {@link IntensityStatistics}.
+	 */
+	static IntensityStatistics get()
+	{
+		return getAll( 1 )[ 0 ];
+	}
+
+	/**
+	 * Returns the specified number of statistics instances of the current
+	 * thread, reset. Used to accumulate the statistics of several channels at
+	 * once. The returned array may be longer than requested.
+	 *
+	 * @param n
+	 *            the number of instances to return.
+	 * @return an array of reset {@link IntensityStatistics}.
+	 */
+	static IntensityStatistics[] getAll( final int n )
+	{
+		IntensityStatistics[] instances = INSTANCES.get();
+		if ( instances.length < n )
+		{
+			final IntensityStatistics[] tmp = new IntensityStatistics[ n ];
+			System.arraycopy( instances, 0, tmp, 0, instances.length );
+			for ( int i = instances.length; i < n; i++ )
+				tmp[ i ] = new IntensityStatistics();
+			instances = tmp;
+			INSTANCES.set( instances );
+		}
+		for ( int i = 0; i < n; i++ )
+			instances[ i ].reset();
+		return instances;
+	}
+
+	void reset()
+	{
+		n = 0;
+		sum = 0.;
+		mean = 0.;
+		m2 = 0.;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Adds a non-NaN value.
+	 */
+	void add( final double val )
+	{
+		if ( n == values.length )
+		{
+			final double[] tmp = new double[ 2 * values.length ];
+			System.arraycopy( values, 0, tmp, 0, n );
+			values = tmp;
+		}
+		values[ n++ ] = val;
+		sum += val;
+		final double delta = val - mean;
+		mean += delta / n;
+		m2 += delta * ( val - mean );
+		if ( val < min )
+			min = val;
+		if ( val > max )
+			max = val;
+	}
+
+	int size()
+	{
+		return n;
+	}
+
+	double mean()
+	{
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	double std()
+	{
+		return n == 0 ? Double.NaN : Math.sqrt( m2 / ( n - 1 ) );
+	}
+
+	/**
+	 * Returns the value of rank <code>n/2</code>. Reorders the value buffer.
+	 */
+	double median()
+	{
+		return n == 0 ? Double.NaN : select( values, n, n / 2 );
+	}
+
+	/**
+	 * Stores the statistics as intensity features of the specified spot.
+	 */
+	void putFeatures( final Spot spot, final int channel )
+	{
+		final boolean empty = n == 0;
+		spot.putFeature( makeFeatureKey( MEAN_INTENSITY, channel ), mean() );
+		spot.putFeature( makeFeatureKey( MEDIAN_INTENSITY, channel ), median() );
+		spot.putFeature( makeFeatureKey( MIN_INTENSITY, channel ), empty ? Double.NaN : min );
+		spot.putFeature( makeFeatureKey( MAX_INTENSITY, channel ), empty ? Double.NaN : max );
+		spot.putFeature( makeFeatureKey( TOTAL_INTENSITY, channel ), empty ? Double.NaN : sum );
+		spot.putFeature( makeFeatureKey( STD_INTENSITY, channel ), std() );
+	}
+
+	/**
+	 * Returns the k-th smallest of the first <code>n</code> elements of the
+	 * specified array, reordering them. Hoare's selection with a median-of-3
+	 * pivot.
+	 */
+	static double select( final double[] a, final int n, final int k )
+	{
+		int left = 0;
+		int right = n - 1;
+		while ( right > left )
+		{
+			// Median-of-3 pivot, moved to a[ left ].
+			final int mid = ( left + right ) >>> 1;
+			if ( a[ mid ] < a[ left ] )
+				swap( a, mid, left );
+			if ( a[ right ] < a[ left ] )
+				swap( a, right, left );
+			if ( a[ right ] < a[ mid ] )
+				swap( a, right, mid );
+			swap( a, left, mid );
+			final double pivot = a[ left ];
+
+			int i = left;
+			int j = right + 1;
+			while ( true )
+			{
+				while ( a[ ++i ] < pivot && i < right )
+					;
+				while ( a[ --j ] > pivot )
+					;
+				if ( i >= j )
+					break;
+				swap( a, i, j );
+			}
+			swap( a, left, j );
+
+			if ( j == k )
+				return a[ k ];
+			else if ( j > k )
+				right = j - 1;
+			else
+				left = j + 1;
+		}
+		return a[ k ];
+	}
+
+	private static final void swap( final double[] a, final int i, final int j )
+	{
+		final double tmp = a[ i ];
+		a[ i ] = a[ j ];
+		a[ j ] = tmp;
+	}
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import net.imagej.ImgPlus;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Interface for spot analyzer factories that can compute the features of all
+ * the channels of a frame at once.
+ * <p>
+ * Analyzers created by {@link #getAnalyzer(ImgPlus, int, int)} process a
+ * single channel, so the geometry of the spot neighborhoods is derived once
+ * per channel. When a factory implements this interface, the
+ * {@link fiji.plugin.trackmate.features.SpotFeatureCalculator} calls
+ * {@link #getMultiChannelAnalyzer(ImgPlus, int)} once per frame instead, and
+ * the analyzer can iterate over each spot neighborhood only once, reading all
+ * the channels at each position.
+ *
+ * @param <T>
+ *            the pixel type.
+ */
+public interface MultiChannelSpotAnalyzerFactory< T extends RealType< T > & NativeType< T > > extends SpotAnalyzerFactory< T >
+{
+
+	/**
+	 * Returns a configured {@link SpotAnalyzer} ready to operate on all the
+	 * channels of the given frame (0-based). The results must be identical to
+	 * running the analyzers returned by
+	 * {@link #getAnalyzer(ImgPlus, int, int)} on each channel.
+	 *
+	 * @param img
+	 *            the 5D (X, Y, Z, C, T) source image. It is the responsibility
+	 *            of the implementation of this method to reslice it for the
+	 *            specified time-point.
+	 * @param frame
+	 *            the target frame to operate on.
+	 * @return a new {@link SpotAnalyzer}.
+	 */
+	public SpotAnalyzer< T > getMultiChannelAnalyzer( ImgPlus< T > img, int frame );
+}
@@ -0,0 +1,619 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import Jama.Matrix;
+import fiji.plugin.trackmate.SpotRoi;
+import fiji.plugin.trackmate.util.Threads;
+
+/**
+ * Computes the morphology of many 2D polygons at once.
+ * <p>
+ * The polygons are stored in flat coordinate arrays: the vertices of polygon
+ * <code>i</code> are at indices <code>offsets[i]</code> (inclusive) to
+ * <code>offsets[i+1]</code> (exclusive). Area, perimeter, convex hull area and
+ * ellipse fit are computed in a single parallel pass over the polygons, with
+ * scratch buffers allocated per thread rather than per polygon. The convex
+ * hull is built with the monotone chain algorithm, and the scatter matrices
+ * of the direct ellipse fit are accumulated without building the design
+ * matrices.
+ * <p>
+ * The convex hull is the same as the one of {@link ConvexHull}, and the
+ * ellipse fit gives the same results as the former Jama-based implementation,
+ * up to rounding errors.
+ *
+ * @author Jean-Yves Tinevez
+ */
+public class RoiMorphology
+{
+
+	/** Index of the ellipse center X in the ellipse parameters. */
+	public static final int ELLIPSE_X0 = 0;
+
+	/** Index of the ellipse center Y in the ellipse parameters. */
+	public static final int ELLIPSE_Y0 = 1;
+
+	/** Index of the ellipse major semi-axis in the ellipse parameters. */
+	public static final int ELLIPSE_MAJOR = 2;
+
+	/** Index of the ellipse minor semi-axis in the ellipse parameters. */
+	public static final int ELLIPSE_MINOR = 3;
+
+	/** Index of the ellipse orientation in the ellipse parameters. */
+	public static final int ELLIPSE_THETA = 4;
+
+	/** Number of ellipse parameters per polygon. */
+	public static final int N_ELLIPSE_PARAMS = 5;
+
+	private final double[] x;
+
+	private final double[] y;
+
+	private final int[] offsets;
+
+	/**
+	 * Creates a morphology engine over polygons stored in flat arrays.
+	 *
+	 * @param x
+	 *            the X coordinates of all the polygon vertices.
+	 * @param y
+	 *            the Y coordinates of all the polygon vertices.
+	 * @param offsets
+	 *            the index of the first vertex of each polygon, followed by
+	 *            the total number of vertices. Its length is the number of
+	 *            polygons plus one.
+	 */
+	public RoiMorphology( final double[] x, final double[] y, final int[] offsets )
+	{
+		this.x = x;
+		this.y = y;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Packs the specified ROIs in flat arrays.
+	 *
+	 * @param rois
+	 *            the ROIs.
+	 * @return a new morphology engine over these ROIs.
+	 */
+	public static RoiMorphology pack( final List< SpotRoi > rois )
+	{
+		final int[] offsets = new int[ rois.size() + 1 ];
+		for ( int i = 0; i < rois.size(); i++ )
+			offsets[ i + 1 ] = offsets[ i ] + rois.get( i ).x.length;
+
+		final double[] x = new double[ offsets[ rois.size() ] ];
+		final double[] y = new double[ offsets[ rois.size() ] ];
+		for ( int i = 0; i < rois.size(); i++ )
+		{
+			final SpotRoi roi = rois.get( i );
+			System.arraycopy( roi.x, 0, x, offsets[ i ], roi.x.length );
+			System.arraycopy( roi.y, 0, y, offsets[ i ], roi.y.length );
+		}
+		return new RoiMorphology( x, y, offsets );
+	}
+
+	/**
+	 * Returns the number of polygons.
+	 *
+	 * @return the number of polygons.
+	 */
+	public int size()
+	{
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Computes the morphology of all the polygons. Each output array receives
+	 * one value per polygon, or {@link #N_ELLIPSE_PARAMS} values for the
+	 * ellipse parameters. Outputs that are <code>null</code> are not computed.
+	 *
+	 * @param area
+	 *            the polygon areas.
+	 * @param perimeter
+	 *            the polygon perimeters.
+	 * @param convexArea
+	 *            the areas of the polygon convex hulls.
+	 * @param ellipse
+	 *            the parameters of the fitted ellipses: center X, center Y,
+	 *            major and minor semi-axes, and the angle of the major axis
+	 *            with the X axis.
+	 * @param numThreads
+	 *            how many threads to use.
+	 */
+	public void compute( final double[] area, final double[] perimeter, final double[] convexArea, final double[] ellipse, final int numThreads )
+	{
+		final int n = size();
+		if ( n == 0 )
+			return;
+
+		final int nChunks = Math.min( n, Math.max( 1, numThreads ) * 4 );
+		final List< Callable< Void > > tasks = new ArrayList<>( nChunks );
+		for ( int c = 0; c < nChunks; c++ )
+		{
+			final int from = ( int ) ( ( long ) n * c / nChunks );
+			final int to = ( int ) ( ( long ) n * ( c + 1 ) / nChunks );
+			tasks.add( () -> {
+				computeRange( from, to, area, perimeter, convexArea, ellipse );
+				return null;
+			} );
+		}
+
+		if ( numThreads <= 1 || nChunks == 1 )
+		{
+			computeRange( 0, n, area, perimeter, convexArea, ellipse );
+			return;
+		}
+
+		final ExecutorService executorService = Threads.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< Void > > futures = executorService.invokeAll( tasks );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+		}
+		executorService.shutdown();
+	}
+
+	private void computeRange( final int from, final int to, final double[] area, final double[] perimeter, final double[] convexArea, final double[] ellipse )
+	{
+		int maxLength = 0;
+		for ( int i = from; i < to; i++ )
+			maxLength = Math.max( maxLength, offsets[ i + 1 ] - offsets[ i ] );
+		final Scratch scratch = new Scratch( maxLength );
+
+		for ( int i = from; i < to; i++ )
+		{
+			final int start = offsets[ i ];
+			final int end = offsets[ i + 1 ];
+			if ( null != area )
+				area[ i ] = Math.abs( signedArea( x, y, start, end ) );
+			if ( null != perimeter )
+				perimeter[ i ] = length( x, y, start, end );
+			if ( null != convexArea )
+			{
+				final int nHull = convexHull( x, y, start, end, scratch );
+				convexArea[ i ] = Math.abs( signedArea( scratch.hx, scratch.hy, 0, nHull ) );
+			}
+			if ( null != ellipse )
+				fitEllipse( x, y, start, end, scratch, ellipse, i * N_ELLIPSE_PARAMS );
+		}
+	}
+
+	/*
+	 * AREA & PERIMETER.
+	 */
+
+	private static double signedArea( final double[] x, final double[] y, final int start, final int end )
+	{
+		if ( end <= start )
+			return 0.;
+		final int last = end - 1;
+		double a = 0.0;
+		for ( int i = start; i < last; i++ )
+			a += x[ i ] * y[ i + 1 ] - x[ i + 1 ] * y[ i ];
+
+		return ( a + x[ last ] * y[ start ] - x[ start ] * y[ last ] ) / 2.0;
+	}
+
+	private static double length( final double[] x, final double[] y, final int start, final int end )
+	{
+		if ( end - start < 2 )
+			return 0;
+
+		double length = 0;
+		for ( int i = start; i < end - 1; i++ )
+		{
+			final double dx = x[ i + 1 ] - x[ i ];
+			final double dy = y[ i + 1 ] - y[ i ];
+			length += Math.sqrt( dx * dx + dy * dy );
+		}
+
+		final double dx0 = x[ start ] - x[ end - 1 ];
+		final double dy0 = y[ start ] - y[ end - 1 ];
+		length += Math.sqrt( dx0 * dx0 + dy0 * dy0 );
+		return length;
+	}
+
+	/*
+	 * CONVEX HULL.
+	 */
+
+	/**
+	 * Builds the convex hull of a polygon in the hull buffers of the scratch,
+	 * and returns its number of vertices.
+	 */
+	private static int convexHull( final double[] x, final double[] y, final int start, final int end, final Scratch scratch )
+	{
+		final int n = end - start;
+		final double[] sx = scratch.sx;
+		final double[] sy = scratch.sy;
+		final double[] hx = scratch.hx;
+		final double[] hy = scratch.hy;
+		System.arraycopy( x, start, sx, 0, n );
+		System.arraycopy( y, start, sy, 0, n );
+		sort( sx, sy, 0, n - 1 );
+
+		if ( n <= 1 )
+		{
+			System.arraycopy( sx, 0, hx, 0, n );
+			System.arraycopy( sy, 0, hy, 0, n );
+			return n;
+		}
+
+		// Upper hull.
+		int nUpper = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			while ( nUpper >= 2 && isNotRightTurn( hx, hy, nUpper - 2, nUpper - 1, sx[ i ], sy[ i ] ) )
+				nUpper--;
+			hx[ nUpper ] = sx[ i ];
+			hy[ nUpper ] = sy[ i ];
+			nUpper++;
+		}
+		nUpper--;
+
+		// Lower hull, stacked after the upper hull.
+		int nLower = 0;
+		for ( int i = n - 1; i >= 0; i-- )
+		{
+			while ( nLower >= 2 && isNotRightTurn( hx, hy, nUpper + nLower - 2, nUpper + nLower - 1, sx[ i ], sy[ i ] ) )
+				nLower--;
+			hx[ nUpper + nLower ] = sx[ i ];
+			hy[ nUpper + nLower ] = sy[ i ];
+			nLower++;
+		}
+		nLower--;
+
+		// Degenerate case: all the points are the same.
+		if ( nUpper == 1 && nLower == 1 && hx[ 0 ] == hx[ 1 ] && hy[ 0 ] == hy[ 1 ] )
+			return 1;
+		return nUpper + nLower;
+	}
+
+	private static boolean isNotRightTurn( final double[] hx, final double[] hy, final int r, final int q, final double px, final double py )
+	{
+		return ( hx[ q ] - hx[ r ] ) * ( py - hy[ r ] ) >= ( hy[ q ] - hy[ r ] ) * ( px - hx[ r ] );
+	}
+
+	/**
+	 * Sorts points by X then Y, in place.
+	 */
+	private static void sort( final double[] x, final double[] y, final int lo, final int hi )
+	{
+		if ( hi - lo < 16 )
+		{
+			for ( int i = lo + 1; i <= hi; i++ )
+			{
+				final double xi = x[ i ];
+				final double yi = y[ i ];
+				int j = i - 1;
+				while ( j >= lo && compare( x[ j ], y[ j ], xi, yi ) > 0 )
+				{
+					x[ j + 1 ] = x[ j ];
+					y[ j + 1 ] = y[ j ];
+					j--;
+				}
+				x[ j + 1 ] = xi;
+				y[ j + 1 ] = yi;
+			}
+			return;
+		}
+
+		// Median of three as pivot.
+		final int mid = ( lo + hi ) >>> 1;
+		if ( compare( x[ mid ], y[ mid ], x[ lo ], y[ lo ] ) < 0 )
+			swap( x, y, mid, lo );
+		if ( compare( x[ hi ], y[ hi ], x[ lo ], y[ lo ] ) < 0 )
+			swap( x, y, hi, lo );
+		if ( compare( x[ hi ], y[ hi ], x[ mid ], y[ mid ] ) < 0 )
+			swap( x, y, hi, mid );
+		final double px = x[ mid ];
+		final double py = y[ mid ];
+
+		int i = lo;
+		int j = hi;
+		while ( i <= j )
+		{
+			while ( compare( x[ i ], y[ i ], px, py ) < 0 )
+				i++;
+			while ( compare( x[ j ], y[ j ], px, py ) > 0 )
+				j--;
+			if ( i <= j )
+			{
+				swap( x, y, i, j );
+				i++;
+				j--;
+			}
+		}
+		if ( lo < j )
+			sort( x, y, lo, j );
+		if ( i < hi )
+			sort( x, y, i, hi );
+	}
+
+	private static int compare( final double x1, final double y1, final double x2, final double y2 )
+	{
+		if ( x1 != x2 )
+			return Double.compare( x1, x2 );
+		return Double.compare( y1, y2 );
+	}
+
+	private static void swap( final double[] x, final double[] y, final int i, final int j )
+	{
+		final double tx = x[ i ];
+		x[ i ] = x[ j ];
+		x[ j ] = tx;
+		final double ty = y[ i ];
+		y[ i ] = y[ j ];
+		y[ j ] = ty;
+	}
+
+	/*
+	 * ELLIPSE FIT.
+	 */
+
+	/**
+	 * Direct least-squares ellipse fit, after Chernov's MATLAB implementation
+	 * ported to Java by Michael Doube in BoneJ. The scatter matrices are accumulated in
+	 * one pass over the vertices, in the same order as the Jama matrix
+	 * products, and the 3x3 system is inverted in closed form when it is well
+	 * conditioned.
+	 */
+	private static void fitEllipse( final double[] x, final double[] y, final int start, final int end, final Scratch scratch, final double[] out, final int o )
+	{
+		final int n = end - start;
+		double sumX = 0.;
+		double sumY = 0.;
+		for ( int i = start; i < end; i++ )
+		{
+			sumX += x[ i ];
+			sumY += y[ i ];
+		}
+		final double xC = sumX / n;
+		final double yC = sumY / n;
+
+		// Scatter matrices S1 = D1'D1, S2 = D1'D2 and S3 = D2'D2.
+		final double[] s1 = scratch.s1;
+		final double[] s2 = scratch.s2;
+		final double[] s3 = scratch.s3;
+		final double[] d1 = scratch.d1;
+		final double[] d2 = scratch.d2;
+		Arrays.fill( s1, 0. );
+		Arrays.fill( s2, 0. );
+		Arrays.fill( s3, 0. );
+		for ( int i = start; i < end; i++ )
+		{
+			final double u = x[ i ] - xC;
+			final double v = y[ i ] - yC;
+			d1[ 0 ] = u * u;
+			d1[ 1 ] = u * v;
+			d1[ 2 ] = v * v;
+			d2[ 0 ] = u;
+			d2[ 1 ] = v;
+			d2[ 2 ] = 1;
+			for ( int a = 0; a < 3; a++ )
+			{
+				for ( int b = 0; b < 3; b++ )
+				{
+					s1[ 3 * a + b ] += d1[ a ] * d1[ b ];
+					s2[ 3 * a + b ] += d1[ a ] * d2[ b ];
+					s3[ 3 * a + b ] += d2[ a ] * d2[ b ];
+				}
+			}
+		}
+
+		// T = - inv(S3) S2'
+		final double[] s3inv = scratch.s3inv;
+		if ( !invert3x3( s3, s3inv ) )
+		{
+			// S3 is symmetric, its packing order does not matter.
+			final Matrix pinv = SpotFitEllipseAnalyzer.pinv( new Matrix( s3, 3 ) );
+			if ( null == pinv )
+			{
+				Arrays.fill( out, o, o + N_ELLIPSE_PARAMS, Double.NaN );
+				return;
+			}
+			for ( int a = 0; a < 3; a++ )
+				for ( int b = 0; b < 3; b++ )
+					s3inv[ 3 * a + b ] = pinv.get( a, b );
+		}
+		final double[] t = scratch.t;
+		for ( int a = 0; a < 3; a++ )
+		{
+			for ( int b = 0; b < 3; b++ )
+			{
+				double s = 0.;
+				for ( int c = 0; c < 3; c++ )
+					s += -s3inv[ 3 * a + c ] * s2[ 3 * b + c ];
+				t[ 3 * a + b ] = s;
+			}
+		}
+
+		// M = S1 + S2 T
+		final double[][] m = scratch.m;
+		for ( int a = 0; a < 3; a++ )
+		{
+			for ( int b = 0; b < 3; b++ )
+			{
+				double s = 0.;
+				for ( int c = 0; c < 3; c++ )
+					s += s2[ 3 * a + c ] * t[ 3 * c + b ];
+				m[ a ][ b ] = s1[ 3 * a + b ] + s;
+			}
+		}
+
+		final double[][] nm = scratch.n;
+		for ( int b = 0; b < 3; b++ )
+		{
+			nm[ 0 ][ b ] = m[ 2 ][ b ] / 2;
+			nm[ 1 ][ b ] = -m[ 1 ][ b ];
+			nm[ 2 ][ b ] = m[ 0 ][ b ] / 2;
+		}
+
+		/*
+		 * The 3x3 eigen decomposition is left to Jama so that the eigenvector
+		 * signs, which the ellipse orientation depends on, are unchanged.
+		 */
+		final double[][] eVec = new Matrix( nm, 3, 3 ).eig().getV().getArray();
+		int f = 0;
+		for ( int i = 0; i < 3; i++ )
+		{
+			if ( ( eVec[ 0 ][ i ] * 4 ) * eVec[ 2 ][ i ] - eVec[ 1 ][ i ] * eVec[ 1 ][ i ] > 0 )
+			{
+				f = i;
+				break;
+			}
+		}
+
+		final double[] q = scratch.q;
+		for ( int a = 0; a < 3; a++ )
+			q[ a ] = eVec[ a ][ f ];
+		for ( int a = 0; a < 3; a++ )
+		{
+			double s = 0.;
+			for ( int b = 0; b < 3; b++ )
+				s += t[ 3 * a + b ] * q[ b ];
+			q[ 3 + a ] = s;
+		}
+
+		final double a4 = q[ 3 ] - 2 * q[ 0 ] * xC - q[ 1 ] * yC;
+		final double a5 = q[ 4 ] - 2 * q[ 2 ] * yC - q[ 1 ] * xC;
+		final double a6 = q[ 5 ] + q[ 0 ] * xC * xC + q[ 2 ] * yC * yC + q[ 1 ] * xC * yC - q[ 3 ] * xC - q[ 4 ] * yC;
+		q[ 3 ] = a4;
+		q[ 4 ] = a5;
+		q[ 5 ] = a6;
+
+		double norm = 0.;
+		for ( int i = 0; i < 6; i++ )
+			norm = hypot( norm, q[ i ] );
+		final double scale = 1 / norm;
+		for ( int i = 0; i < 6; i++ )
+			q[ i ] = q[ i ] * scale;
+
+		SpotFitEllipseAnalyzer.quadraticToCartesian( q, out, o );
+	}
+
+	/**
+	 * Inverts a 3x3 row-packed matrix. Returns <code>false</code> if it is
+	 * too close to singular.
+	 */
+	private static boolean invert3x3( final double[] a, final double[] inv )
+	{
+		final double c00 = a[ 4 ] * a[ 8 ] - a[ 5 ] * a[ 7 ];
+		final double c01 = a[ 5 ] * a[ 6 ] - a[ 3 ] * a[ 8 ];
+		final double c02 = a[ 3 ] * a[ 7 ] - a[ 4 ] * a[ 6 ];
+		final double det = a[ 0 ] * c00 + a[ 1 ] * c01 + a[ 2 ] * c02;
+
+		double scale = 0.;
+		for ( int i = 0; i < 9; i++ )
+			scale = Math.max( scale, Math.abs( a[ i ] ) );
+		if ( !( Math.abs( det ) > 1e-12 * scale * scale * scale ) )
+			return false;
+
+		final double invDet = 1. / det;
+		inv[ 0 ] = c00 * invDet;
+		inv[ 1 ] = ( a[ 2 ] * a[ 7 ] - a[ 1 ] * a[ 8 ] ) * invDet;
+		inv[ 2 ] = ( a[ 1 ] * a[ 5 ] - a[ 2 ] * a[ 4 ] ) * invDet;
+		inv[ 3 ] = c01 * invDet;
+		inv[ 4 ] = ( a[ 0 ] * a[ 8 ] - a[ 2 ] * a[ 6 ] ) * invDet;
+		inv[ 5 ] = ( a[ 2 ] * a[ 3 ] - a[ 0 ] * a[ 5 ] ) * invDet;
+		inv[ 6 ] = c02 * invDet;
+		inv[ 7 ] = ( a[ 1 ] * a[ 6 ] - a[ 0 ] * a[ 7 ] ) * invDet;
+		inv[ 8 ] = ( a[ 0 ] * a[ 4 ] - a[ 1 ] * a[ 3 ] ) * invDet;
+		return true;
+	}
+
+	/**
+	 * sqrt(a^2 + b^2) without under/overflow, as in Jama.
+	 */
+	private static double hypot( final double a, final double b )
+	{
+		if ( Math.abs( a ) > Math.abs( b ) )
+		{
+			final double r = b / a;
+			return Math.abs( a ) * Math.sqrt( 1 + r * r );
+		}
+		else if ( b != 0 )
+		{
+			final double r = a / b;
+			return Math.abs( b ) * Math.sqrt( 1 + r * r );
+		}
+		return 0.;
+	}
+
+	/**
+	 * Buffers reused for all the polygons processed by a thread.
+	 */
+	private static final class Scratch
+	{
+
+		private final double[] sx;
+
+		private final double[] sy;
+
+		private final double[] hx;
+
+		private final double[] hy;
+
+		private final double[] s1 = new double[ 9 ];
+
+		private final double[] s2 = new double[ 9 ];
+
+		private final double[] s3 = new double[ 9 ];
+
+		private final double[] s3inv = new double[ 9 ];
+
+		private final double[] t = new double[ 9 ];
+
+		private final double[] d1 = new double[ 3 ];
+
+		private final double[] d2 = new double[ 3 ];
+
+		private final double[] q = new double[ 6 ];
+
+		private final double[][] m = new double[ 3 ][ 3 ];
+
+		private final double[][] n = new double[ 3 ][ 3 ];
+
+		private Scratch( final int maxLength )
+		{
+			this.sx = new double[ maxLength ];
+			this.sy = new double[ maxLength ];
+			this.hx = new double[ 2 * maxLength ];
+			this.hy = new double[ 2 * maxLength ];
+		}
+	}
+}
@@ -169,6 +169,15 @@ public class SpotContrastAndSNRAnalyzer< T extends RealType< T > > extends Abstr
 			meanOut = sumOut / nOut;
 		}
 
+		putContrastFeatures( spot, channel, meanIn, stdIn, meanOut );
+	}
+
+	/**
+	 * Computes the contrast and SNR from the inner and outer statistics and
+	 * stores them as features of the specified spot.
+	 */
+	static final void putContrastFeatures( final Spot spot, final int channel, final double meanIn, final double stdIn, final double meanOut )
+	{
 		// Compute contrast
 		final double contrast = ( meanIn - meanOut ) / ( meanIn + meanOut );
 
@@ -25,9 +25,11 @@ import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFac
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 
@@ -35,6 +37,7 @@ import org.scijava.Priority;
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
+import fiji.plugin.trackmate.features.FeatureInput;
 import fiji.plugin.trackmate.util.TMUtils;
 import net.imagej.ImgPlus;
 import net.imglib2.type.NativeType;
@@ -182,4 +185,10 @@ public class SpotContrastAndSNRAnalyzerFactory< T extends RealType< T > & Native
 	{
 		this.nChannels = nChannels;
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.PIXELS, FeatureInput.POSITION, FeatureInput.SHAPE, FeatureInput.FEATURES );
+	}
 }
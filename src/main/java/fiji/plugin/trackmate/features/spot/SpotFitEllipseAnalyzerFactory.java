@@ -22,9 +22,11 @@
 package fiji.plugin.trackmate.features.spot;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 
@@ -32,6 +34,7 @@ import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.detection.DetectionUtils;
+import fiji.plugin.trackmate.features.FeatureInput;
 import net.imagej.ImgPlus;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
@@ -156,4 +159,10 @@ public class SpotFitEllipseAnalyzerFactory< T extends RealType< T > & NativeType
 	{
 		return KEY;
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.SHAPE );
+	}
 }
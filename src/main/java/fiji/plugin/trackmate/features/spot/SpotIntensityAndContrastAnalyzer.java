@@ -0,0 +1,245 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.DetectionUtils;
+import fiji.plugin.trackmate.util.MultiChannelCursor;
+import fiji.plugin.trackmate.util.SpotNeighborhood;
+import fiji.plugin.trackmate.util.SpotNeighborhoodCursor;
+import fiji.plugin.trackmate.util.SpotUtil;
+import net.imagej.ImgPlus;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Computes the features of both the {@link SpotIntensityMultiCAnalyzer} and
+ * the {@link SpotContrastAndSNRAnalyzer} in a single pass over the pixels.
+ * <p>
+ * The contrast and SNR are measured using a ring ranging from the spot radius
+ * to twice its radius. Since this outer neighborhood contains the spot
+ * neighborhood, we iterate only over the outer one and sort the pixels as we
+ * go. The intensity statistics use the pixels the spot neighborhood would
+ * iterate over: we record its extent along X for every line of the outer
+ * neighborhood, without reading a single pixel. The ring uses the pixels
+ * further than the spot radius from the center, exactly like the
+ * {@link SpotContrastAndSNRAnalyzer}. Because the spot neighborhood radius is
+ * rounded to a whole number of pixels, a pixel may belong to both.
+ * <p>
+ * Several channels can be processed at once: the neighborhoods are then
+ * computed once per spot, and all the channels are read at each position.
+ * <p>
+ * Spots with a ROI in 2D images, and spots that are too small to have a proper
+ * neighborhood, are handled by the two original analyzers.
+ *
+ * @param <T>
+ *            the type of the pixels.
+ */
+public class SpotIntensityAndContrastAnalyzer< T extends RealType< T > > extends AbstractSpotFeatureAnalyzer< T >
+{
+
+	private final int firstChannel;
+
+	private final List< ImgPlus< T > > channels;
+
+	private final List< RandomAccessible< T > > extended;
+
+	private final SpotIntensityMultiCAnalyzer< T > intensityAnalyzer;
+
+	private final List< SpotContrastAndSNRAnalyzer< T > > contrastAnalyzers;
+
+	/**
+	 * Instantiates an analyzer for intensity, contrast and SNR.
+	 *
+	 * @param img
+	 *            the 2D or 3D image of the desired time-point and channel to
+	 *            operate on,
+	 * @param channel
+	 *            the channel to operate on.
+	 */
+	public SpotIntensityAndContrastAnalyzer( final ImgPlus< T > img, final int channel )
+	{
+		this( Collections.singletonList( img ), channel );
+	}
+
+	/**
+	 * Instantiates an analyzer for intensity, contrast and SNR over several
+	 * channels.
+	 *
+	 * @param channels
+	 *            the 2D or 3D images of the desired time-point, one per
+	 *            channel.
+	 * @param firstChannel
+	 *            the channel index of the first image.
+	 */
+	public SpotIntensityAndContrastAnalyzer( final List< ImgPlus< T > > channels, final int firstChannel )
+	{
+		this.channels = channels;
+		this.firstChannel = firstChannel;
+		this.extended = new ArrayList<>( channels.size() );
+		this.contrastAnalyzers = new ArrayList<>( channels.size() );
+		for ( int c = 0; c < channels.size(); c++ )
+		{
+			extended.add( SpotUtil.extendForNeighborhood( channels.get( c ) ) );
+			contrastAnalyzers.add( new SpotContrastAndSNRAnalyzer<>( channels.get( c ), firstChannel + c ) );
+		}
+		this.intensityAnalyzer = new SpotIntensityMultiCAnalyzer<>( channels, firstChannel );
+	}
+
+	@Override
+	public void process( final Spot spot )
+	{
+		final ImgPlus< T > img = channels.get( 0 );
+		if ( null != spot.getRoi() && DetectionUtils.is2D( img ) )
+		{
+			processSeparately( spot );
+			return;
+		}
+
+		final SpotNeighborhood< T > inner = new SpotNeighborhood<>( spot, img );
+		if ( inner.size() <= 1 )
+		{
+			processSeparately( spot );
+			return;
+		}
+
+		final Spot largeSpot = new Spot( spot );
+		largeSpot.putFeature( Spot.RADIUS, 2. * spot.getFeature( Spot.RADIUS ) );
+		final SpotNeighborhood< T > outer = new SpotNeighborhood<>( largeSpot, img );
+		if ( outer.size() <= 1 )
+		{
+			processSeparately( spot );
+			return;
+		}
+
+		/*
+		 * Extent of the inner neighborhood along X, for each line of the outer
+		 * neighborhood.
+		 */
+
+		final int n = outer.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		outer.min( min );
+		outer.max( max );
+		int nLines = 1;
+		for ( int d = 1; d < n; d++ )
+			nLines *= ( int ) ( max[ d ] - min[ d ] + 1 );
+
+		final long[] lineMin = new long[ nLines ];
+		final long[] lineMax = new long[ nLines ];
+		for ( int i = 0; i < nLines; i++ )
+		{
+			lineMin[ i ] = Long.MAX_VALUE;
+			lineMax[ i ] = Long.MIN_VALUE;
+		}
+
+		final long[] pos = new long[ n ];
+		final SpotNeighborhoodCursor< T > innerCursor = inner.cursor();
+		while ( innerCursor.hasNext() )
+		{
+			innerCursor.fwd();
+			innerCursor.localize( pos );
+			final int line = lineIndex( pos, min, max );
+			if ( line < 0 )
+				continue;
+			lineMin[ line ] = Math.min( lineMin[ line ], pos[ 0 ] );
+			lineMax[ line ] = Math.max( lineMax[ line ], pos[ 0 ] );
+		}
+
+		/*
+		 * Single pass over the outer neighborhood.
+		 */
+
+		final int nChannels = channels.size();
+		final IntensityStatistics[] stats = IntensityStatistics.getAll( nChannels );
+		final int[] nOut = new int[ nChannels ]; // Outer number of non-NaN pixels.
+		final double[] sumOut = new double[ nChannels ];
+		final double radius = spot.getFeature( Spot.RADIUS ).doubleValue();
+		final double radius2 = radius * radius;
+		final SpotNeighborhoodCursor< T > outerCursor = outer.cursor();
+		final MultiChannelCursor< T > cursor = new MultiChannelCursor<>( outerCursor, extended );
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = cursor.getLongPosition( d );
+			final int line = lineIndex( pos, min, max );
+			final boolean isInner = line >= 0 && pos[ 0 ] >= lineMin[ line ] && pos[ 0 ] <= lineMax[ line ];
+			final boolean isRing = outerCursor.getDistanceSquared() > radius2;
+			if ( !isInner && !isRing )
+				continue;
+
+			for ( int c = 0; c < nChannels; c++ )
+			{
+				final double val = cursor.getRealDouble( c );
+				if ( Double.isNaN( val ) )
+					continue;
+
+				if ( isInner )
+					stats[ c ].add( val );
+				if ( isRing )
+				{
+					nOut[ c ]++;
+					sumOut[ c ] += val;
+				}
+			}
+		}
+
+		for ( int c = 0; c < nChannels; c++ )
+		{
+			final int channel = firstChannel + c;
+			stats[ c ].putFeatures( spot, channel );
+			SpotContrastAndSNRAnalyzer.putContrastFeatures( spot, channel, stats[ c ].mean(), stats[ c ].std(), sumOut[ c ] / nOut[ c ] );
+		}
+	}
+
+	private void processSeparately( final Spot spot )
+	{
+		intensityAnalyzer.process( spot );
+		for ( final SpotContrastAndSNRAnalyzer< T > contrastAnalyzer : contrastAnalyzers )
+			contrastAnalyzer.process( spot );
+	}
+
+	/**
+	 * Returns the index of the line along X that contains the specified
+	 * position, in the specified bounding box. Returns -1 if the position is
+	 * not in the box.
+	 */
+	private static final int lineIndex( final long[] pos, final long[] min, final long[] max )
+	{
+		int index = 0;
+		int stride = 1;
+		for ( int d = 1; d < pos.length; d++ )
+		{
+			if ( pos[ d ] < min[ d ] || pos[ d ] > max[ d ] )
+				return -1;
+			index += ( int ) ( pos[ d ] - min[ d ] ) * stride;
+			stride *= ( int ) ( max[ d ] - min[ d ] + 1 );
+		}
+		return index;
+	}
+}
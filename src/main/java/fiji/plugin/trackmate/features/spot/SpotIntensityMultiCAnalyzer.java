@@ -21,80 +21,63 @@
  */
 package fiji.plugin.trackmate.features.spot;
 
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MAX_INTENSITY;
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MEAN_INTENSITY;
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MEDIAN_INTENSITY;
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.MIN_INTENSITY;
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.STD_INTENSITY;
-import static fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory.TOTAL_INTENSITY;
-
-import org.scijava.util.DoubleArray;
+import java.util.Collections;
+import java.util.List;
 
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.util.MultiChannelCursor;
 import fiji.plugin.trackmate.util.SpotUtil;
-import fiji.plugin.trackmate.util.TMUtils;
 import net.imagej.ImgPlus;
-import net.imglib2.IterableInterval;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.util.Util;
 
 public class SpotIntensityMultiCAnalyzer< T extends RealType< T > > extends AbstractSpotFeatureAnalyzer< T >
 {
 
-	private final int channel;
+	private final int firstChannel;
 
-	private final ImgPlus< T > imgCT;
+	private final List< ImgPlus< T > > channels;
 
 	public SpotIntensityMultiCAnalyzer( final ImgPlus< T > imgCT, final int channel )
 	{
-		this.imgCT = imgCT;
-		this.channel = channel;
+		this( Collections.singletonList( imgCT ), channel );
+	}
+
+	/**
+	 * Instantiates an analyzer that computes the intensity features of
+	 * several channels at once. The spot neighborhood is computed only once,
+	 * and all the channels are read at each of its positions.
+	 *
+	 * @param channels
+	 *            the 2D or 3D images of the desired time-point, one per
+	 *            channel.
+	 * @param firstChannel
+	 *            the channel index of the first image.
+	 */
+	public SpotIntensityMultiCAnalyzer( final List< ImgPlus< T > > channels, final int firstChannel )
+	{
+		this.channels = channels;
+		this.firstChannel = firstChannel;
 	}
 
 	@Override
 	public void process( final Spot spot )
 	{
-		final IterableInterval< T > neighborhood = SpotUtil.iterable( spot, imgCT );
-		final DoubleArray intensities = new DoubleArray();
-
-		for ( final T pixel : neighborhood )
+		final int nChannels = channels.size();
+		final IntensityStatistics[] stats = IntensityStatistics.getAll( nChannels );
+		final MultiChannelCursor< T > cursor = SpotUtil.multiChannelCursor( spot, channels );
+		while ( cursor.hasNext() )
 		{
-			final double val = pixel.getRealDouble();
-			if ( Double.isNaN( val ) )
-				continue;
-			intensities.addValue( val );
+			cursor.fwd();
+			for ( int c = 0; c < nChannels; c++ )
+			{
+				final double val = cursor.getRealDouble( c );
+				if ( Double.isNaN( val ) )
+					continue;
+				stats[ c ].add( val );
+			}
 		}
 
-		final double mean;
-		final double median;
-		final double max;
-		final double min;
-		final double sum;
-		final double std;
-		if ( intensities.isEmpty() )
-		{
-			mean = Double.NaN;
-			median = Double.NaN;
-			max = Double.NaN;
-			min = Double.NaN;
-			sum = Double.NaN;
-			std = Double.NaN;
-		}
-		else
-		{
-			Util.quicksort( intensities.getArray(), 0, intensities.size() - 1 );
-			mean = Double.valueOf( TMUtils.average( intensities ) );
-			median = Double.valueOf( intensities.getArray()[ intensities.size() / 2 ] );
-			min = Double.valueOf( intensities.getArray()[ 0 ] );
-			max = Double.valueOf( intensities.getArray()[ intensities.size() - 1 ] );
-			sum = Double.valueOf( TMUtils.sum( intensities ) );
-			std = Double.valueOf( TMUtils.standardDeviation( intensities ) );
-		}
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( MEAN_INTENSITY, channel ), mean );
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( MEDIAN_INTENSITY, channel ), median );
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( MIN_INTENSITY, channel ), min );
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( MAX_INTENSITY, channel ), max );
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( TOTAL_INTENSITY, channel ), sum );
-		spot.putFeature( SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( STD_INTENSITY, channel ), std );
+		for ( int c = 0; c < nChannels; c++ )
+			stats[ c ].putFeatures( spot, firstChannel + c );
 	}
 }
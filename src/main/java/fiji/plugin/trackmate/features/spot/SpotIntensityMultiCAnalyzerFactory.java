@@ -23,22 +23,25 @@ package fiji.plugin.trackmate.features.spot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
+import fiji.plugin.trackmate.features.FeatureInput;
 import fiji.plugin.trackmate.util.TMUtils;
 import net.imagej.ImgPlus;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
 @Plugin( type = SpotAnalyzerFactory.class )
-public class SpotIntensityMultiCAnalyzerFactory< T extends RealType< T > & NativeType< T > > implements SpotAnalyzerFactory< T >
+public class SpotIntensityMultiCAnalyzerFactory< T extends RealType< T > & NativeType< T > > implements MultiChannelSpotAnalyzerFactory< T >, FusedSpotAnalyzerFactory< T >
 {
 
 	private static final String KEY = "Spot intensity";
@@ -86,6 +89,24 @@ public class SpotIntensityMultiCAnalyzerFactory< T extends RealType< T > & Nativ
 		return new SpotIntensityMultiCAnalyzer<>( imgTC, channel );
 	}
 
+	@Override
+	public SpotAnalyzer< T > getMultiChannelAnalyzer( final ImgPlus< T > img, final int frame )
+	{
+		return new SpotIntensityMultiCAnalyzer<>( TMUtils.hyperSlices( img, frame ), 0 );
+	}
+
+	@Override
+	public List< String > getFusedFactoryKeys()
+	{
+		return Arrays.asList( KEY, SpotContrastAndSNRAnalyzerFactory.KEY );
+	}
+
+	@Override
+	public SpotAnalyzer< T > getFusedAnalyzer( final ImgPlus< T > img, final int frame )
+	{
+		return new SpotIntensityAndContrastAnalyzer<>( TMUtils.hyperSlices( img, frame ), 0 );
+	}
+
 	static final String makeFeatureKey( final String feature, final int c )
 	{
 		return feature + ( c + 1 );
@@ -183,4 +204,10 @@ public class SpotIntensityMultiCAnalyzerFactory< T extends RealType< T > & Nativ
 	{
 		return KEY;
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.PIXELS, FeatureInput.POSITION, FeatureInput.SHAPE );
+	}
 }
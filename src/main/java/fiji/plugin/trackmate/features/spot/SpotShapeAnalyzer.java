@@ -21,6 +21,9 @@
  */
 package fiji.plugin.trackmate.features.spot;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotRoi;
 import net.imglib2.type.numeric.RealType;
@@ -35,6 +38,41 @@ public class SpotShapeAnalyzer< T extends RealType< T > > extends AbstractSpotFe
 		this.is2D = is2D;
 	}
 
+	/**
+	 * In 2D, the morphology of all the spots with a ROI is computed in one
+	 * batch.
+	 */
+	@Override
+	public void process( final Iterable< Spot > spots )
+	{
+		if ( !is2D )
+		{
+			super.process( spots );
+			return;
+		}
+
+		final List< Spot > withRoi = new ArrayList<>();
+		final List< SpotRoi > rois = new ArrayList<>();
+		for ( final Spot spot : spots )
+		{
+			final SpotRoi roi = spot.getRoi();
+			if ( roi == null )
+			{
+				process( spot );
+				continue;
+			}
+			withRoi.add( spot );
+			rois.add( roi );
+		}
+
+		final double[] area = new double[ rois.size() ];
+		final double[] perimeter = new double[ rois.size() ];
+		final double[] convexArea = new double[ rois.size() ];
+		RoiMorphology.pack( rois ).compute( area, perimeter, convexArea, null, getNumThreads() );
+		for ( int i = 0; i < withRoi.size(); i++ )
+			putFeatures( withRoi.get( i ), area[ i ], perimeter[ i ], convexArea[ i ] );
+	}
+
 	@Override
 	public void process( final Spot spot )
 	{
@@ -67,6 +105,14 @@ public class SpotShapeAnalyzer< T extends RealType< T > > extends AbstractSpotFe
 			convexArea = area;
 			perimeter = Double.NaN;
 		}
+		putFeatures( spot, area, perimeter, convexArea );
+	}
+
+	/**
+	 * Stores the shape features derived from the specified measurements.
+	 */
+	static void putFeatures( final Spot spot, final double area, final double perimeter, final double convexArea )
+	{
 		final double circularity = 4. * Math.PI * ( area / ( perimeter * perimeter ) );
 		final double solidity = area / convexArea;
 		final double shapeIndex = ( area <= 0. ) ? Double.NaN : perimeter / Math.sqrt( area );
@@ -22,9 +22,11 @@
 package fiji.plugin.trackmate.features.spot;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 
@@ -32,12 +34,13 @@ import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.detection.DetectionUtils;
+import fiji.plugin.trackmate.features.FeatureInput;
 import net.imagej.ImgPlus;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
 @Plugin( type = SpotMorphologyAnalyzerFactory.class )
-public class SpotShapeAnalyzerFactory< T extends RealType< T > & NativeType< T > > implements SpotMorphologyAnalyzerFactory< T >
+public class SpotShapeAnalyzerFactory< T extends RealType< T > & NativeType< T > > implements SpotMorphologyAnalyzerFactory< T >, FusedSpotAnalyzerFactory< T >
 {
 
 	public static final String KEY = "Spot 2D shape descriptors";
@@ -91,6 +94,18 @@ public class SpotShapeAnalyzerFactory< T extends RealType< T > & NativeType< T >
 		return new SpotShapeAnalyzer<>( DetectionUtils.is2D( img ) );
 	}
 
+	@Override
+	public List< String > getFusedFactoryKeys()
+	{
+		return Arrays.asList( KEY, SpotFitEllipseAnalyzerFactory.KEY );
+	}
+
+	@Override
+	public SpotAnalyzer< T > getFusedAnalyzer( final ImgPlus< T > img, final int frame )
+	{
+		return new SpotShapeAndEllipseAnalyzer<>( DetectionUtils.is2D( img ) );
+	}
+
 	@Override
 	public List< String > getFeatures()
 	{
@@ -150,4 +165,10 @@ public class SpotShapeAnalyzerFactory< T extends RealType< T > & NativeType< T >
 	{
 		return KEY;
 	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.SHAPE );
+	}
 }
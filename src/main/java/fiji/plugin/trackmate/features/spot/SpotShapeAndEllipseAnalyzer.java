@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotRoi;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Computes the features of the {@link SpotShapeAnalyzer} and of the
+ * {@link SpotFitEllipseAnalyzer} together. In 2D, the ROIs of all the spots
+ * are packed once and their morphology is computed in a single parallel pass.
+ *
+ * @param <T>
+ *            the type of the pixels. Unused.
+ */
+public class SpotShapeAndEllipseAnalyzer< T extends RealType< T > > extends AbstractSpotFeatureAnalyzer< T >
+{
+
+	private final boolean is2D;
+
+	private final SpotShapeAnalyzer< T > shapeAnalyzer;
+
+	private final SpotFitEllipseAnalyzer< T > ellipseAnalyzer;
+
+	public SpotShapeAndEllipseAnalyzer( final boolean is2D )
+	{
+		this.is2D = is2D;
+		this.shapeAnalyzer = new SpotShapeAnalyzer<>( is2D );
+		this.ellipseAnalyzer = new SpotFitEllipseAnalyzer<>( is2D );
+	}
+
+	@Override
+	public void process( final Iterable< Spot > spots )
+	{
+		if ( !is2D )
+		{
+			super.process( spots );
+			return;
+		}
+
+		final List< Spot > withRoi = new ArrayList<>();
+		final List< SpotRoi > rois = new ArrayList<>();
+		for ( final Spot spot : spots )
+		{
+			final SpotRoi roi = spot.getRoi();
+			if ( roi == null )
+			{
+				process( spot );
+				continue;
+			}
+			withRoi.add( spot );
+			rois.add( roi );
+		}
+
+		final int n = rois.size();
+		final double[] area = new double[ n ];
+		final double[] perimeter = new double[ n ];
+		final double[] convexArea = new double[ n ];
+		final double[] ellipse = new double[ n * RoiMorphology.N_ELLIPSE_PARAMS ];
+		RoiMorphology.pack( rois ).compute( area, perimeter, convexArea, ellipse, getNumThreads() );
+		for ( int i = 0; i < n; i++ )
+		{
+			final Spot spot = withRoi.get( i );
+			SpotShapeAnalyzer.putFeatures( spot, area[ i ], perimeter[ i ], convexArea[ i ] );
+			SpotFitEllipseAnalyzer.putFeatures( spot, ellipse, i * RoiMorphology.N_ELLIPSE_PARAMS );
+		}
+	}
+
+	@Override
+	public void process( final Spot spot )
+	{
+		shapeAnalyzer.process( spot );
+		ellipseAnalyzer.process( spot );
+	}
+}
@@ -0,0 +1,42 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import fiji.plugin.trackmate.Model;
+
+/**
+ * Interface for local track analyzers that can compute their features from a
+ * single walk over each track. The {@link TrackWalker} can then compute the
+ * features of several such analyzers in one traversal.
+ */
+public interface AccumulatingTrackAnalyzer extends TrackAnalyzer
+{
+
+	/**
+	 * Creates a new accumulator that computes the features of this analyzer.
+	 *
+	 * @param model
+	 *            the model the tracks belong to.
+	 * @return a new accumulator.
+	 */
+	public TrackFeatureAccumulator createAccumulator( Model model );
+}
@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import fiji.plugin.trackmate.FeatureModel;
+
+/**
+ * Interface for track analyzers whose features only depend on decomposable
+ * statistics of the track, gathered in {@link TrackStatistics}. These
+ * statistics can be maintained incrementally when the track is edited, so
+ * that the features of such analyzers can be updated without walking the
+ * whole track. Analyzers that do not implement this interface are recomputed
+ * from scratch.
+ */
+public interface IncrementalTrackAnalyzer extends TrackAnalyzer
+{
+
+	/**
+	 * Stores the features of this analyzer for the specified track, computed
+	 * from its statistics.
+	 *
+	 * @param trackID
+	 *            the ID of the track.
+	 * @param statistics
+	 *            the up-to-date statistics of the track.
+	 * @param fm
+	 *            the feature model to store the features in.
+	 */
+	public void putFeatures( Integer trackID, TrackStatistics statistics, FeatureModel fm );
+}
@@ -22,6 +22,8 @@
 package fiji.plugin.trackmate.features.track;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,11 +34,14 @@ import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
+import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = TrackAnalyzer.class )
-public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer
+public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer implements AccumulatingTrackAnalyzer
 {
 
 	public static final String KEY = "Branching analyzer";
@@ -99,21 +104,68 @@ public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer
 	@Override
 	protected void analyze( final Integer trackID, final Model model )
 	{
-		final Set< Spot > track = model.getTrackModel().trackSpots( trackID );
+		TrackWalker.walk( trackID, model, Collections.singletonList( createAccumulator( model ) ) );
+	}
+
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new BranchingAccumulator( model );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.FRAME, FeatureInput.LINKS );
+	}
+
+	private static final class BranchingAccumulator implements TrackFeatureAccumulator
+	{
+
+		private final TrackModel tm;
+
+		private final FeatureModel fm;
+
+		private final Set< Spot > neighbors = new HashSet<>();
 
-		int nmerges = 0;
-		int nsplits = 0;
-		int ncomplex = 0;
-		for ( final Spot spot : track )
+		private int nmerges;
+
+		private int nsplits;
+
+		private int ncomplex;
+
+		private int ngaps;
+
+		private int longestgap;
+
+		private int nspots;
+
+		private BranchingAccumulator( final Model model )
+		{
+			this.tm = model.getTrackModel();
+			this.fm = model.getFeatureModel();
+		}
+
+		@Override
+		public void start( final Spot first, final int nSpots )
 		{
-			final Set< DefaultWeightedEdge > edges = model.getTrackModel().edgesOf( spot );
+			nmerges = 0;
+			nsplits = 0;
+			ncomplex = 0;
+			ngaps = 0;
+			longestgap = 0;
+			nspots = nSpots;
+		}
 
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
+		{
 			// get neighbors
-			final Set< Spot > neighbors = new HashSet<>();
+			neighbors.clear();
 			for ( final DefaultWeightedEdge edge : edges )
 			{
-				neighbors.add( model.getTrackModel().getEdgeSource( edge ) );
-				neighbors.add( model.getTrackModel().getEdgeTarget( edge ) );
+				neighbors.add( tm.getEdgeSource( edge ) );
+				neighbors.add( tm.getEdgeTarget( edge ) );
 			}
 			neighbors.remove( spot );
 
@@ -130,7 +182,7 @@ public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer
 
 			// Test for classical spot
 			if ( earlier == 1 && later == 1 )
-				continue;
+				return;
 
 			// classify spot
 			if ( earlier <= 1 && later > 1 )
@@ -141,11 +193,9 @@ public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer
 				ncomplex++;
 		}
 
-		int ngaps = 0, longestgap = 0;
-		for ( final DefaultWeightedEdge edge : model.getTrackModel().trackEdges( trackID ) )
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
 		{
-			final Spot source = model.getTrackModel().getEdgeSource( edge );
-			final Spot target = model.getTrackModel().getEdgeTarget( edge );
 			final int gaplength = ( int ) Math.abs( target.diffTo( source, Spot.FRAME ) ) - 1;
 			if ( gaplength > 0 )
 			{
@@ -155,13 +205,16 @@ public class TrackBranchingAnalyzer extends AbstractTrackAnalyzer
 			}
 		}
 
-		// Put feature data
-		model.getFeatureModel().putTrackFeature( trackID, NUMBER_GAPS, Double.valueOf( ngaps ) );
-		model.getFeatureModel().putTrackFeature( trackID, LONGEST_GAP, Double.valueOf( longestgap ) );
-		model.getFeatureModel().putTrackFeature( trackID, NUMBER_SPLITS, Double.valueOf( nsplits ) );
-		model.getFeatureModel().putTrackFeature( trackID, NUMBER_MERGES, Double.valueOf( nmerges ) );
-		model.getFeatureModel().putTrackFeature( trackID, NUMBER_COMPLEX, Double.valueOf( ncomplex ) );
-		model.getFeatureModel().putTrackFeature( trackID, NUMBER_SPOTS, Double.valueOf( track.size() ) );
-
+		@Override
+		public void finish( final Integer trackID )
+		{
+			// Put feature data
+			fm.putTrackFeature( trackID, NUMBER_GAPS, Double.valueOf( ngaps ) );
+			fm.putTrackFeature( trackID, LONGEST_GAP, Double.valueOf( longestgap ) );
+			fm.putTrackFeature( trackID, NUMBER_SPLITS, Double.valueOf( nsplits ) );
+			fm.putTrackFeature( trackID, NUMBER_MERGES, Double.valueOf( nmerges ) );
+			fm.putTrackFeature( trackID, NUMBER_COMPLEX, Double.valueOf( ncomplex ) );
+			fm.putTrackFeature( trackID, NUMBER_SPOTS, Double.valueOf( nspots ) );
+		}
 	}
 }
@@ -22,20 +22,24 @@
 package fiji.plugin.trackmate.features.track;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = TrackAnalyzer.class )
-public class TrackDurationAnalyzer extends AbstractTrackAnalyzer
+public class TrackDurationAnalyzer extends AbstractTrackAnalyzer implements AccumulatingTrackAnalyzer, IncrementalTrackAnalyzer
 {
 
 	public static final String KEY = "Track duration";
@@ -86,18 +90,66 @@ public class TrackDurationAnalyzer extends AbstractTrackAnalyzer
 	@Override
 	protected void analyze( final Integer trackID, final Model model )
 	{
-		final FeatureModel fm = model.getFeatureModel();
-
-		// I love brute force.
-		final Set< Spot > track = model.getTrackModel().trackSpots( trackID );
-		double minT = Double.POSITIVE_INFINITY;
-		double maxT = Double.NEGATIVE_INFINITY;
-		Double t;
-		Spot startSpot = null;
-		Spot endSpot = null;
-		for ( final Spot spot : track )
+		TrackWalker.walk( trackID, model, Collections.singletonList( createAccumulator( model ) ) );
+	}
+
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new DurationAccumulator( model.getFeatureModel() );
+	}
+
+	@Override
+	public void putFeatures( final Integer trackID, final TrackStatistics statistics, final FeatureModel fm )
+	{
+		if ( statistics.getNSpots() == 0 )
+			return;
+
+		final double minT = statistics.getStartTime();
+		final double maxT = statistics.getStopTime();
+		fm.putTrackFeature( trackID, TRACK_DURATION, ( maxT - minT ) );
+		fm.putTrackFeature( trackID, TRACK_START, minT );
+		fm.putTrackFeature( trackID, TRACK_STOP, maxT );
+		fm.putTrackFeature( trackID, TRACK_DISPLACEMENT, Math.sqrt( statistics.getStartSpot().squareDistanceTo( statistics.getStopSpot() ) ) );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.FRAME, FeatureInput.LINKS );
+	}
+
+	private static final class DurationAccumulator implements TrackFeatureAccumulator
+	{
+
+		private final FeatureModel fm;
+
+		private double minT;
+
+		private double maxT;
+
+		private Spot startSpot;
+
+		private Spot endSpot;
+
+		private DurationAccumulator( final FeatureModel fm )
+		{
+			this.fm = fm;
+		}
+
+		@Override
+		public void start( final Spot first, final int nSpots )
+		{
+			minT = Double.POSITIVE_INFINITY;
+			maxT = Double.NEGATIVE_INFINITY;
+			startSpot = null;
+			endSpot = null;
+		}
+
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
 		{
-			t = spot.getFeature( Spot.POSITION_T );
+			final double t = spot.getFeature( Spot.POSITION_T );
 			if ( t < minT )
 			{
 				minT = t;
@@ -109,12 +161,21 @@ public class TrackDurationAnalyzer extends AbstractTrackAnalyzer
 				endSpot = spot;
 			}
 		}
-		if ( null == startSpot || null == endSpot )
-			return;
 
-		fm.putTrackFeature( trackID, TRACK_DURATION, ( maxT - minT ) );
-		fm.putTrackFeature( trackID, TRACK_START, minT );
-		fm.putTrackFeature( trackID, TRACK_STOP, maxT );
-		fm.putTrackFeature( trackID, TRACK_DISPLACEMENT, Math.sqrt( startSpot.squareDistanceTo( endSpot ) ) );
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
+		{}
+
+		@Override
+		public void finish( final Integer trackID )
+		{
+			if ( null == startSpot || null == endSpot )
+				return;
+
+			fm.putTrackFeature( trackID, TRACK_DURATION, ( maxT - minT ) );
+			fm.putTrackFeature( trackID, TRACK_START, minT );
+			fm.putTrackFeature( trackID, TRACK_STOP, maxT );
+			fm.putTrackFeature( trackID, TRACK_DISPLACEMENT, Math.sqrt( startSpot.squareDistanceTo( endSpot ) ) );
+		}
 	}
 }
@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Accumulates the values needed to compute track features while a track is
+ * walked by the {@link TrackWalker}. Instances are reused for many tracks, but
+ * are only used by one thread at a time.
+ */
+public interface TrackFeatureAccumulator
+{
+
+	/**
+	 * Starts a new track, resetting the accumulator.
+	 *
+	 * @param first
+	 *            the first spot of the track in time.
+	 * @param nSpots
+	 *            the number of spots in the track.
+	 */
+	public void start( Spot first, int nSpots );
+
+	/**
+	 * Visits a spot of the track. Spots are visited in time order.
+	 *
+	 * @param spot
+	 *            the spot.
+	 * @param edges
+	 *            the edges touching the spot.
+	 */
+	public void spot( Spot spot, Set< DefaultWeightedEdge > edges );
+
+	/**
+	 * Visits an edge of the track. Each edge is visited once, after its source
+	 * spot.
+	 *
+	 * @param edge
+	 *            the edge.
+	 * @param source
+	 *            the source spot of the edge.
+	 * @param target
+	 *            the target spot of the edge.
+	 */
+	public void edge( DefaultWeightedEdge edge, Spot source, Spot target );
+
+	/**
+	 * Finishes the track, storing the track features in the feature model.
+	 *
+	 * @param trackID
+	 *            the ID of the track.
+	 */
+	public void finish( Integer trackID );
+}
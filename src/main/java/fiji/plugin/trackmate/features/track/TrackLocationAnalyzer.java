@@ -22,20 +22,24 @@
 package fiji.plugin.trackmate.features.track;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = TrackAnalyzer.class )
-public class TrackLocationAnalyzer extends AbstractTrackAnalyzer
+public class TrackLocationAnalyzer extends AbstractTrackAnalyzer implements AccumulatingTrackAnalyzer, IncrementalTrackAnalyzer
 {
 
 	public static final String KEY = "Track location";
@@ -80,26 +84,77 @@ public class TrackLocationAnalyzer extends AbstractTrackAnalyzer
 	@Override
 	protected void analyze( final Integer trackID, final Model model )
 	{
-		final FeatureModel fm = model.getFeatureModel();
-		final Set< Spot > track = model.getTrackModel().trackSpots( trackID );
+		TrackWalker.walk( trackID, model, Collections.singletonList( createAccumulator( model ) ) );
+	}
+
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new LocationAccumulator( model.getFeatureModel() );
+	}
+
+	@Override
+	public void putFeatures( final Integer trackID, final TrackStatistics statistics, final FeatureModel fm )
+	{
+		if ( statistics.getNSpots() == 0 )
+			return;
+
+		fm.putTrackFeature( trackID, X_LOCATION, statistics.getMeanX() );
+		fm.putTrackFeature( trackID, Y_LOCATION, statistics.getMeanY() );
+		fm.putTrackFeature( trackID, Z_LOCATION, statistics.getMeanZ() );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.POSITION, FeatureInput.LINKS );
+	}
+
+	private static final class LocationAccumulator implements TrackFeatureAccumulator
+	{
+
+		private final FeatureModel fm;
+
+		private double x;
+
+		private double y;
 
-		double x = 0.;
-		double y = 0.;
-		double z = 0.;
+		private double z;
+
+		private int nspots;
+
+		private LocationAccumulator( final FeatureModel fm )
+		{
+			this.fm = fm;
+		}
 
-		for ( final Spot spot : track )
+		@Override
+		public void start( final Spot first, final int nSpots )
+		{
+			x = 0.;
+			y = 0.;
+			z = 0.;
+			nspots = nSpots;
+		}
+
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
 		{
 			x += spot.getFeature( Spot.POSITION_X );
 			y += spot.getFeature( Spot.POSITION_Y );
 			z += spot.getFeature( Spot.POSITION_Z );
 		}
-		final int nspots = track.size();
-		x /= nspots;
-		y /= nspots;
-		z /= nspots;
-
-		fm.putTrackFeature( trackID, X_LOCATION, x );
-		fm.putTrackFeature( trackID, Y_LOCATION, y );
-		fm.putTrackFeature( trackID, Z_LOCATION, z );
+
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
+		{}
+
+		@Override
+		public void finish( final Integer trackID )
+		{
+			fm.putTrackFeature( trackID, X_LOCATION, x / nspots );
+			fm.putTrackFeature( trackID, Y_LOCATION, y / nspots );
+			fm.putTrackFeature( trackID, Z_LOCATION, z / nspots );
+		}
 	}
 }
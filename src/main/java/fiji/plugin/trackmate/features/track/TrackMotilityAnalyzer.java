@@ -24,14 +24,11 @@ package fiji.plugin.trackmate.features.track;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import javax.swing.ImageIcon;
 
@@ -43,11 +40,11 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 import fiji.plugin.trackmate.features.edges.DirectionalChangeAnalyzer;
-import fiji.plugin.trackmate.util.Threads;
 
 @Plugin( type = TrackAnalyzer.class, priority = Priority.LOW )
-public class TrackMotilityAnalyzer implements TrackAnalyzer
+public class TrackMotilityAnalyzer implements AccumulatingTrackAnalyzer
 {
 
 	public static final String KEY = "Track motility analysis";
@@ -219,71 +216,64 @@ public class TrackMotilityAnalyzer implements TrackAnalyzer
 			return;
 
 		final long start = System.currentTimeMillis();
-
-		// Create tasks.
-		final List< Callable< Void > > tasks = new ArrayList<>( trackIDs.size() );
-		for ( final Integer trackID : trackIDs )
-		{
-			final Callable< Void > task = new Callable< Void >()
-			{
-
-				@Override
-				public Void call() throws Exception
-				{
-					analyze( trackID, model );
-					return null;
-				}
-			};
-			tasks.add( task );
-		}
-
-		final ExecutorService executorService = Threads.newFixedThreadPool( numThreads );
-		List< Future< Void > > futures;
-		try
-		{
-			futures = executorService.invokeAll( tasks );
-			for ( final Future< Void > future : futures )
-				future.get();
-		}
-		catch ( InterruptedException | ExecutionException e )
-		{
-			e.printStackTrace();
-		}
-		executorService.shutdown();
-
+		TrackWalker.process( trackIDs, model, Collections.singletonList( this ), numThreads );
 		final long end = System.currentTimeMillis();
 		processingTime = end - start;
 	}
 
-	private static final void analyze( final Integer trackID, final Model model )
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new MotilityAccumulator( model.getFeatureModel() );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.POSITION, FeatureInput.FRAME, FeatureInput.LINKS );
+	}
+
+	private static final class MotilityAccumulator implements TrackFeatureAccumulator
 	{
-		final FeatureModel fm = model.getFeatureModel();
 
-		/*
-		 * Get the first spot (lowest FRAME).
-		 */
+		private final FeatureModel fm;
 
-		final List< Spot > spots = new ArrayList<>( model.getTrackModel().trackSpots( trackID ) );
-		Collections.sort( spots, Spot.frameComparator );
-		final Spot first = spots.get( 0 );
+		private Spot first;
 
-		/*
-		 * Iterate over edges.
-		 */
+		private double totalDistance;
 
-		final Set< DefaultWeightedEdge > edges = model.getTrackModel().trackEdges( trackID );
+		private double maxDistanceSq;
 
-		double totalDistance = 0.;
-		double maxDistanceSq = Double.NEGATIVE_INFINITY;
-		double maxDistance = 0.;
-		double sumAngleSpeed = 0.;
-		int nAngleSpeed = 0;
+		private double maxDistance;
 
-		for ( final DefaultWeightedEdge edge : edges )
+		private double sumAngleSpeed;
+
+		private int nAngleSpeed;
+
+		private MotilityAccumulator( final FeatureModel fm )
+		{
+			this.fm = fm;
+		}
+
+		@Override
+		public void start( final Spot first, final int nSpots )
+		{
+			this.first = first;
+			totalDistance = 0.;
+			maxDistanceSq = Double.NEGATIVE_INFINITY;
+			maxDistance = 0.;
+			sumAngleSpeed = 0.;
+			nAngleSpeed = 0;
+		}
+
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
+		{}
+
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
 		{
 			// Total distance traveled.
-			final Spot source = model.getTrackModel().getEdgeSource( edge );
-			final Spot target = model.getTrackModel().getEdgeTarget( edge );
 			final double d = Math.sqrt( source.squareDistanceTo( target ) );
 			totalDistance += d;
 
@@ -307,27 +297,27 @@ public class TrackMotilityAnalyzer implements TrackAnalyzer
 			}
 		}
 
-		/*
-		 * Compute features.
-		 */
-
-		// Dependency features.
-		final double netDistance = fm.getTrackFeature( trackID, TrackDurationAnalyzer.TRACK_DISPLACEMENT );
-		final double tTotal = fm.getTrackFeature( trackID, TrackDurationAnalyzer.TRACK_DURATION );
-		final double vMean = fm.getTrackFeature( trackID, TrackSpeedStatisticsAnalyzer.TRACK_MEAN_SPEED );
-
-		// Our features.
-		final double confinmentRatio = netDistance / totalDistance;
-		final double meanStraightLineSpeed = netDistance / tTotal;
-		final double linearityForwardProgression = meanStraightLineSpeed / vMean;
-		final double meanAngleSpeed = sumAngleSpeed / nAngleSpeed;
-
-		// Store.
-		fm.putTrackFeature( trackID, TRACK_TOTAL_DISTANCE_TRAVELED, totalDistance );
-		fm.putTrackFeature( trackID, TRACK_MAX_DISTANCE_TRAVELED, maxDistance );
-		fm.putTrackFeature( trackID, TRACK_CONFINEMENT_RATIO, confinmentRatio );
-		fm.putTrackFeature( trackID, TRACK_MEAN_STRAIGHT_LINE_SPEED, meanStraightLineSpeed );
-		fm.putTrackFeature( trackID, TRACK_LINEARITY_OF_FORWARD_PROGRESSION, linearityForwardProgression );
-		fm.putTrackFeature( trackID, TRACK_MEAN_DIRECTIONAL_CHANGE_RATE, meanAngleSpeed );
+		@Override
+		public void finish( final Integer trackID )
+		{
+			// Dependency features.
+			final double netDistance = fm.getTrackFeature( trackID, TrackDurationAnalyzer.TRACK_DISPLACEMENT );
+			final double tTotal = fm.getTrackFeature( trackID, TrackDurationAnalyzer.TRACK_DURATION );
+			final double vMean = fm.getTrackFeature( trackID, TrackSpeedStatisticsAnalyzer.TRACK_MEAN_SPEED );
+
+			// Our features.
+			final double confinmentRatio = netDistance / totalDistance;
+			final double meanStraightLineSpeed = netDistance / tTotal;
+			final double linearityForwardProgression = meanStraightLineSpeed / vMean;
+			final double meanAngleSpeed = sumAngleSpeed / nAngleSpeed;
+
+			// Store.
+			fm.putTrackFeature( trackID, TRACK_TOTAL_DISTANCE_TRAVELED, totalDistance );
+			fm.putTrackFeature( trackID, TRACK_MAX_DISTANCE_TRAVELED, maxDistance );
+			fm.putTrackFeature( trackID, TRACK_CONFINEMENT_RATIO, confinmentRatio );
+			fm.putTrackFeature( trackID, TRACK_MEAN_STRAIGHT_LINE_SPEED, meanStraightLineSpeed );
+			fm.putTrackFeature( trackID, TRACK_LINEARITY_OF_FORWARD_PROGRESSION, linearityForwardProgression );
+			fm.putTrackFeature( trackID, TRACK_MEAN_DIRECTIONAL_CHANGE_RATE, meanAngleSpeed );
+		}
 	}
 }
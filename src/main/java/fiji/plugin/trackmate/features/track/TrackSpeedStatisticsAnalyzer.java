@@ -22,6 +22,9 @@
 package fiji.plugin.trackmate.features.track;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,11 +37,12 @@ import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 import fiji.plugin.trackmate.util.TMUtils;
 import net.imglib2.util.Util;
 
 @Plugin( type = TrackAnalyzer.class )
-public class TrackSpeedStatisticsAnalyzer extends AbstractTrackAnalyzer
+public class TrackSpeedStatisticsAnalyzer extends AbstractTrackAnalyzer implements AccumulatingTrackAnalyzer, IncrementalTrackAnalyzer
 {
 
 	public static final String KEY = "Track speed";
@@ -95,31 +99,86 @@ public class TrackSpeedStatisticsAnalyzer extends AbstractTrackAnalyzer
 	@Override
 	protected void analyze( final Integer trackID, final Model model )
 	{
-		final FeatureModel fm = model.getFeatureModel();
-		final Set< DefaultWeightedEdge > track = model.getTrackModel().trackEdges( trackID );
-		final double[] speeds = new double[ track.size() ];
-		int n = 0;
-		for ( final DefaultWeightedEdge edge : track )
+		TrackWalker.walk( trackID, model, Collections.singletonList( createAccumulator( model ) ) );
+	}
+
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new SpeedAccumulator( model.getFeatureModel() );
+	}
+
+	@Override
+	public void putFeatures( final Integer trackID, final TrackStatistics statistics, final FeatureModel fm )
+	{
+		if ( statistics.getNEdges() == 0 )
+			return;
+
+		fm.putTrackFeature( trackID, TRACK_MEDIAN_SPEED, statistics.getMedianSpeed() );
+		fm.putTrackFeature( trackID, TRACK_MIN_SPEED, statistics.getMinSpeed() );
+		fm.putTrackFeature( trackID, TRACK_MAX_SPEED, statistics.getMaxSpeed() );
+		fm.putTrackFeature( trackID, TRACK_MEAN_SPEED, statistics.getMeanSpeed() );
+		fm.putTrackFeature( trackID, TRACK_STD_SPEED, statistics.getStdSpeed() );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.POSITION, FeatureInput.FRAME, FeatureInput.LINKS, FeatureInput.FEATURES );
+	}
+
+	private static final class SpeedAccumulator implements TrackFeatureAccumulator
+	{
+
+		private final FeatureModel fm;
+
+		private double[] speeds = new double[ 16 ];
+
+		private int n;
+
+		private SpeedAccumulator( final FeatureModel fm )
 		{
-			final Spot source = model.getTrackModel().getEdgeSource( edge );
-			final Spot target = model.getTrackModel().getEdgeTarget( edge );
-			final double d2 = source.squareDistanceTo( target );
-			final double dt = source.diffTo( target, Spot.POSITION_T );
-			final double val = Math.sqrt( d2 ) / Math.abs( dt );
+			this.fm = fm;
+		}
+
+		@Override
+		public void start( final Spot first, final int nSpots )
+		{
+			n = 0;
+		}
+
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
+		{}
+
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
+		{
+			final double val = TrackStatistics.speed( source, target );
+			if ( n == speeds.length )
+				speeds = Arrays.copyOf( speeds, 2 * n );
 			speeds[ n++ ] = val;
 		}
 
-		Util.quicksort( speeds, 0, track.size() - 1 );
-		final double median = speeds[ track.size() / 2 ];
-		final double min = speeds[ 0 ];
-		final double max = speeds[ track.size() - 1 ];
-		final double mean = Util.average( speeds );
-		final double std = TMUtils.standardDeviation( speeds );
-
-		fm.putTrackFeature( trackID, TRACK_MEDIAN_SPEED, median );
-		fm.putTrackFeature( trackID, TRACK_MIN_SPEED, min );
-		fm.putTrackFeature( trackID, TRACK_MAX_SPEED, max );
-		fm.putTrackFeature( trackID, TRACK_MEAN_SPEED, mean );
-		fm.putTrackFeature( trackID, TRACK_STD_SPEED, std );
+		@Override
+		public void finish( final Integer trackID )
+		{
+			if ( n == 0 )
+				return;
+
+			final double[] vals = ( n == speeds.length ) ? speeds : Arrays.copyOf( speeds, n );
+			Util.quicksort( vals, 0, n - 1 );
+			final double median = vals[ n / 2 ];
+			final double min = vals[ 0 ];
+			final double max = vals[ n - 1 ];
+			final double mean = Util.average( vals );
+			final double std = TMUtils.standardDeviation( vals );
+
+			fm.putTrackFeature( trackID, TRACK_MEDIAN_SPEED, median );
+			fm.putTrackFeature( trackID, TRACK_MIN_SPEED, min );
+			fm.putTrackFeature( trackID, TRACK_MAX_SPEED, max );
+			fm.putTrackFeature( trackID, TRACK_MEAN_SPEED, mean );
+			fm.putTrackFeature( trackID, TRACK_STD_SPEED, std );
+		}
 	}
 }
@@ -22,20 +22,22 @@
 package fiji.plugin.trackmate.features.track;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
+import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.plugin.Plugin;
 
 import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.FeatureInput;
 
 @Plugin( type = TrackAnalyzer.class )
-public class TrackSpotQualityFeatureAnalyzer extends AbstractTrackAnalyzer
+public class TrackSpotQualityFeatureAnalyzer extends AbstractTrackAnalyzer implements AccumulatingTrackAnalyzer, IncrementalTrackAnalyzer
 {
 
 	public static final String KEY = "Track quality";
@@ -55,14 +57,68 @@ public class TrackSpotQualityFeatureAnalyzer extends AbstractTrackAnalyzer
 	@Override
 	protected void analyze( final Integer trackID, final Model model )
 	{
-		final FeatureModel fm = model.getFeatureModel();
-		final Set< Spot > track = model.getTrackModel().trackSpots( trackID );
-		final double mean = track
-				.stream()
-				.filter( Objects::nonNull )
-				.mapToDouble( s -> s.getFeature( Spot.QUALITY ).doubleValue() )
-				.average()
-				.getAsDouble();
-		fm.putTrackFeature( trackID, TRACK_MEAN_QUALITY, Double.valueOf( mean ) );
+		TrackWalker.walk( trackID, model, Collections.singletonList( createAccumulator( model ) ) );
+	}
+
+	@Override
+	public TrackFeatureAccumulator createAccumulator( final Model model )
+	{
+		return new QualityAccumulator( model.getFeatureModel() );
+	}
+
+	@Override
+	public void putFeatures( final Integer trackID, final TrackStatistics statistics, final FeatureModel fm )
+	{
+		if ( statistics.getNSpots() == 0 )
+			return;
+
+		fm.putTrackFeature( trackID, TRACK_MEAN_QUALITY, Double.valueOf( statistics.getMeanQuality() ) );
+	}
+
+	@Override
+	public Set< FeatureInput > getInputs()
+	{
+		return EnumSet.of( FeatureInput.LINKS, FeatureInput.FEATURES );
+	}
+
+	private static final class QualityAccumulator implements TrackFeatureAccumulator
+	{
+
+		private final FeatureModel fm;
+
+		private double sum;
+
+		private int n;
+
+		private QualityAccumulator( final FeatureModel fm )
+		{
+			this.fm = fm;
+		}
+
+		@Override
+		public void start( final Spot first, final int nSpots )
+		{
+			sum = 0.;
+			n = 0;
+		}
+
+		@Override
+		public void spot( final Spot spot, final Set< DefaultWeightedEdge > edges )
+		{
+			sum += spot.getFeature( Spot.QUALITY ).doubleValue();
+			n++;
+		}
+
+		@Override
+		public void edge( final DefaultWeightedEdge edge, final Spot source, final Spot target )
+		{}
+
+		@Override
+		public void finish( final Integer trackID )
+		{
+			if ( n == 0 )
+				return;
+			fm.putTrackFeature( trackID, TRACK_MEAN_QUALITY, Double.valueOf( sum / n ) );
+		}
 	}
 }
@@ -0,0 +1,377 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Decomposable statistics over the spots and edges of a track, that can be
+ * updated when a spot or an edge is added to or removed from the track without
+ * walking the whole track.
+ * <p>
+ * Sums are kept for counts and mean positions, sorted multisets for the
+ * bounds in time and the speed min, max and median, and running moments for
+ * the speed mean and standard deviation. Additions and removals cost
+ * <code>O(log n)</code>, merging two tracks costs <code>O(m log n)</code> where
+ * <code>m</code> is the size of the smaller one.
+ * <p>
+ * The statistics do not keep a copy of the spot features, so a spot must have
+ * the same features when it is removed as when it was added.
+ */
+public class TrackStatistics
+{
+
+	private int nSpots;
+
+	private int nEdges;
+
+	private double sumX;
+
+	private double sumY;
+
+	private double sumZ;
+
+	private double sumQuality;
+
+	/** The spots of the track, sorted by time. */
+	private final TreeMap< Double, List< Spot > > times = new TreeMap<>();
+
+	/** Running mean of the edge speeds. */
+	private double meanSpeed;
+
+	/** Running sum of the squared deviations of the edge speeds. */
+	private double m2Speed;
+
+	/** The lower half of the edge speeds. Holds <code>n / 2</code> values. */
+	private final Multiset lowerSpeeds = new Multiset();
+
+	/** The upper half of the edge speeds. Its first value is the median. */
+	private final Multiset upperSpeeds = new Multiset();
+
+	/**
+	 * Returns the speed along an edge, as computed by the
+	 * {@link TrackSpeedStatisticsAnalyzer}.
+	 *
+	 * @param source
+	 *            the source spot of the edge.
+	 * @param target
+	 *            the target spot of the edge.
+	 * @return the speed.
+	 */
+	public static final double speed( final Spot source, final Spot target )
+	{
+		final double d2 = source.squareDistanceTo( target );
+		final double dt = source.diffTo( target, Spot.POSITION_T );
+		return Math.sqrt( d2 ) / Math.abs( dt );
+	}
+
+	/*
+	 * UPDATE METHODS
+	 */
+
+	public void addSpot( final Spot spot )
+	{
+		nSpots++;
+		sumX += spot.getFeature( Spot.POSITION_X ).doubleValue();
+		sumY += spot.getFeature( Spot.POSITION_Y ).doubleValue();
+		sumZ += spot.getFeature( Spot.POSITION_Z ).doubleValue();
+		sumQuality += spot.getFeature( Spot.QUALITY ).doubleValue();
+		times.computeIfAbsent( spot.getFeature( Spot.POSITION_T ), t -> new ArrayList<>( 1 ) ).add( spot );
+	}
+
+	/**
+	 * Removes a spot from these statistics.
+	 *
+	 * @param spot
+	 *            the spot to remove.
+	 * @return <code>false</code> if the spot could not be found, in which case
+	 *         these statistics are not valid anymore.
+	 */
+	public boolean removeSpot( final Spot spot )
+	{
+		final Double t = spot.getFeature( Spot.POSITION_T );
+		final List< Spot > list = times.get( t );
+		if ( null == list || !list.remove( spot ) )
+			return false;
+		if ( list.isEmpty() )
+			times.remove( t );
+
+		nSpots--;
+		sumX -= spot.getFeature( Spot.POSITION_X ).doubleValue();
+		sumY -= spot.getFeature( Spot.POSITION_Y ).doubleValue();
+		sumZ -= spot.getFeature( Spot.POSITION_Z ).doubleValue();
+		sumQuality -= spot.getFeature( Spot.QUALITY ).doubleValue();
+		return true;
+	}
+
+	/**
+	 * Adds an edge to these statistics.
+	 *
+	 * @param speed
+	 *            the speed along the edge, as computed by
+	 *            {@link #speed(Spot, Spot)}.
+	 */
+	public void addEdge( final double speed )
+	{
+		nEdges++;
+		final double delta = speed - meanSpeed;
+		meanSpeed += delta / nEdges;
+		m2Speed += delta * ( speed - meanSpeed );
+
+		if ( !upperSpeeds.isEmpty() && speed >= upperSpeeds.first() )
+			upperSpeeds.add( speed, 1 );
+		else
+			lowerSpeeds.add( speed, 1 );
+		rebalance();
+	}
+
+	/**
+	 * Removes an edge from these statistics.
+	 *
+	 * @param speed
+	 *            the speed along the edge, when it was added.
+	 * @return <code>false</code> if the speed could not be found, in which
+	 *         case these statistics are not valid anymore.
+	 */
+	public boolean removeEdge( final double speed )
+	{
+		if ( !lowerSpeeds.remove( speed ) && !upperSpeeds.remove( speed ) )
+			return false;
+		rebalance();
+
+		nEdges--;
+		if ( nEdges == 0 )
+		{
+			meanSpeed = 0.;
+			m2Speed = 0.;
+			return true;
+		}
+		final double oldMean = meanSpeed;
+		meanSpeed = ( oldMean * ( nEdges + 1 ) - speed ) / nEdges;
+		m2Speed = Math.max( 0., m2Speed - ( speed - oldMean ) * ( speed - meanSpeed ) );
+		return true;
+	}
+
+	/**
+	 * Adds the content of other statistics to these ones, as when two tracks
+	 * are merged by a new edge. The new edge must be added separately.
+	 *
+	 * @param other
+	 *            the statistics to add. They are not modified.
+	 */
+	public void merge( final TrackStatistics other )
+	{
+		sumX += other.sumX;
+		sumY += other.sumY;
+		sumZ += other.sumZ;
+		sumQuality += other.sumQuality;
+		nSpots += other.nSpots;
+		for ( final Entry< Double, List< Spot > > entry : other.times.entrySet() )
+			times.computeIfAbsent( entry.getKey(), t -> new ArrayList<>( entry.getValue().size() ) ).addAll( entry.getValue() );
+
+		// Parallel combination of the running moments.
+		final int n = nEdges + other.nEdges;
+		if ( n > 0 )
+		{
+			final double delta = other.meanSpeed - meanSpeed;
+			m2Speed += other.m2Speed + delta * delta * nEdges * other.nEdges / n;
+			meanSpeed += delta * other.nEdges / n;
+		}
+		nEdges = n;
+		for ( final Entry< Double, Integer > entry : other.lowerSpeeds.counts.entrySet() )
+			lowerSpeeds.add( entry.getKey(), entry.getValue() );
+		for ( final Entry< Double, Integer > entry : other.upperSpeeds.counts.entrySet() )
+			lowerSpeeds.add( entry.getKey(), entry.getValue() );
+		rebalance();
+	}
+
+	/**
+	 * Restores the median invariant: the lower half holds the
+	 * <code>n / 2</code> smallest speeds.
+	 */
+	private void rebalance()
+	{
+		final int n = lowerSpeeds.size + upperSpeeds.size;
+		while ( !lowerSpeeds.isEmpty() && !upperSpeeds.isEmpty() && lowerSpeeds.last() > upperSpeeds.first() )
+		{
+			// Can happen after a merge.
+			final double a = lowerSpeeds.pollLast();
+			final double b = upperSpeeds.pollFirst();
+			lowerSpeeds.add( b, 1 );
+			upperSpeeds.add( a, 1 );
+		}
+		while ( lowerSpeeds.size > n / 2 )
+			upperSpeeds.add( lowerSpeeds.pollLast(), 1 );
+		while ( lowerSpeeds.size < n / 2 )
+			lowerSpeeds.add( upperSpeeds.pollFirst(), 1 );
+	}
+
+	/*
+	 * GETTERS
+	 */
+
+	public int getNSpots()
+	{
+		return nSpots;
+	}
+
+	public int getNEdges()
+	{
+		return nEdges;
+	}
+
+	public double getMeanX()
+	{
+		return sumX / nSpots;
+	}
+
+	public double getMeanY()
+	{
+		return sumY / nSpots;
+	}
+
+	public double getMeanZ()
+	{
+		return sumZ / nSpots;
+	}
+
+	public double getMeanQuality()
+	{
+		return sumQuality / nSpots;
+	}
+
+	public double getStartTime()
+	{
+		return times.firstKey();
+	}
+
+	public double getStopTime()
+	{
+		return times.lastKey();
+	}
+
+	/**
+	 * Returns the first spot in time of the track.
+	 */
+	public Spot getStartSpot()
+	{
+		return times.firstEntry().getValue().get( 0 );
+	}
+
+	/**
+	 * Returns the last spot in time of the track.
+	 */
+	public Spot getStopSpot()
+	{
+		return times.lastEntry().getValue().get( 0 );
+	}
+
+	public double getMeanSpeed()
+	{
+		return meanSpeed;
+	}
+
+	public double getStdSpeed()
+	{
+		return Math.sqrt( m2Speed / ( nEdges - 1 ) );
+	}
+
+	public double getMinSpeed()
+	{
+		return lowerSpeeds.isEmpty() ? upperSpeeds.first() : lowerSpeeds.first();
+	}
+
+	public double getMaxSpeed()
+	{
+		return upperSpeeds.last();
+	}
+
+	public double getMedianSpeed()
+	{
+		return upperSpeeds.first();
+	}
+
+	/**
+	 * A sorted multiset of doubles.
+	 */
+	private static final class Multiset
+	{
+
+		private final TreeMap< Double, Integer > counts = new TreeMap<>();
+
+		private int size;
+
+		private boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		private void add( final double val, final int count )
+		{
+			counts.merge( val, count, Integer::sum );
+			size += count;
+		}
+
+		private boolean remove( final double val )
+		{
+			final Integer count = counts.get( val );
+			if ( null == count )
+				return false;
+			if ( count == 1 )
+				counts.remove( val );
+			else
+				counts.put( val, count - 1 );
+			size--;
+			return true;
+		}
+
+		private double first()
+		{
+			return counts.firstKey();
+		}
+
+		private double last()
+		{
+			return counts.lastKey();
+		}
+
+		private double pollFirst()
+		{
+			final double val = counts.firstKey();
+			remove( val );
+			return val;
+		}
+
+		private double pollLast()
+		{
+			final double val = counts.lastKey();
+			remove( val );
+			return val;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+import fiji.plugin.trackmate.util.Threads;
+
+/**
+ * Walks tracks once, in time order, and feeds their spots and edges to
+ * {@link TrackFeatureAccumulator}s. This allows computing the features of
+ * several {@link AccumulatingTrackAnalyzer}s with a single traversal of each
+ * track.
+ */
+public class TrackWalker
+{
+
+	private TrackWalker()
+	{}
+
+	/**
+	 * Walks one track.
+	 *
+	 * @param trackID
+	 *            the ID of the track to walk.
+	 * @param model
+	 *            the model.
+	 * @param accumulators
+	 *            the accumulators to feed. Their features are stored in the
+	 *            order of this list.
+	 */
+	public static void walk( final Integer trackID, final Model model, final List< TrackFeatureAccumulator > accumulators )
+	{
+		final TrackModel trackModel = model.getTrackModel();
+		final List< Spot > spots = new ArrayList<>( trackModel.trackSpots( trackID ) );
+		if ( spots.isEmpty() )
+			return;
+		spots.sort( Spot.frameComparator );
+
+		final Spot first = spots.get( 0 );
+		for ( final TrackFeatureAccumulator accumulator : accumulators )
+			accumulator.start( first, spots.size() );
+
+		for ( final Spot spot : spots )
+		{
+			final Set< DefaultWeightedEdge > edges = trackModel.edgesOf( spot );
+			for ( final TrackFeatureAccumulator accumulator : accumulators )
+				accumulator.spot( spot, edges );
+
+			// Each edge is visited from its source.
+			for ( final DefaultWeightedEdge edge : edges )
+			{
+				if ( trackModel.getEdgeSource( edge ) != spot )
+					continue;
+				final Spot target = trackModel.getEdgeTarget( edge );
+				for ( final TrackFeatureAccumulator accumulator : accumulators )
+					accumulator.edge( edge, spot, target );
+			}
+		}
+
+		for ( final TrackFeatureAccumulator accumulator : accumulators )
+			accumulator.finish( trackID );
+	}
+
+	/**
+	 * Computes the features of the specified analyzers for the specified
+	 * tracks, walking each track once. Tracks are processed in parallel on a
+	 * single pool, and each thread reuses its accumulators for all its tracks.
+	 *
+	 * @param trackIDs
+	 *            the IDs of the tracks to process.
+	 * @param model
+	 *            the model.
+	 * @param analyzers
+	 *            the analyzers. Features that depend on the features of other
+	 *            analyzers must come after them in this list.
+	 * @param numThreads
+	 *            how many threads to use.
+	 */
+	public static void process( final Collection< Integer > trackIDs, final Model model, final List< ? extends AccumulatingTrackAnalyzer > analyzers, final int numThreads )
+	{
+		if ( trackIDs.isEmpty() || analyzers.isEmpty() )
+			return;
+
+		final List< Integer > ids = new ArrayList<>( trackIDs );
+		final int nChunks = Math.min( ids.size(), Math.max( 1, numThreads ) * 4 );
+		final List< Callable< Void > > tasks = new ArrayList<>( nChunks );
+		for ( int c = 0; c < nChunks; c++ )
+		{
+			final List< Integer > chunk = ids.subList( ids.size() * c / nChunks, ids.size() * ( c + 1 ) / nChunks );
+			tasks.add( () -> {
+				final List< TrackFeatureAccumulator > accumulators = new ArrayList<>( analyzers.size() );
+				for ( final AccumulatingTrackAnalyzer analyzer : analyzers )
+					accumulators.add( analyzer.createAccumulator( model ) );
+				for ( final Integer trackID : chunk )
+					walk( trackID, model, accumulators );
+				return null;
+			} );
+		}
+
+		final ExecutorService executorService = Threads.newFixedThreadPool( Math.max( 1, numThreads ) );
+		try
+		{
+			final List< Future< Void > > futures = executorService.invokeAll( tasks );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+		}
+		executorService.shutdown();
+	}
+}
@@ -22,6 +22,7 @@
 package fiji.plugin.trackmate.gui.components.detector;
 
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_MEDIAN_FILTERING;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_PYRAMID_DETECTION;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_SUBPIXEL_LOCALIZATION;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_RADIUS;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_TARGET_CHANNEL;
@@ -70,6 +71,8 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 
 	protected JCheckBox jCheckBoxMedianFilter;
 
+	protected JCheckBox jCheckPyramid;
+
 	protected JFormattedTextField ftfDiameter;
 
 	protected JCheckBox jCheckSubPixel;
@@ -106,8 +109,8 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 		this.setPreferredSize( new java.awt.Dimension( 300, 461 ) );
 		final GridBagLayout gridBagLayout = new GridBagLayout();
 		gridBagLayout.columnWeights = new double[] { 1.0, 0.0, 1.0, 0.0 };
-		gridBagLayout.rowWeights = new double[] { 0., 1., 0., 0., 0., 0., 0., 0. };
-		gridBagLayout.rowHeights = new int[] { 0, 0, 0, 0, 0, 0, 0, 0 };
+		gridBagLayout.rowWeights = new double[] { 0., 1., 0., 0., 0., 0., 0., 0., 0. };
+		gridBagLayout.rowHeights = new int[] { 0, 0, 0, 0, 0, 0, 0, 0, 0 };
 		setLayout( gridBagLayout );
 
 		final JLabel jLabelSegmenterName = new JLabel( detectorName );
@@ -256,12 +259,36 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 		this.add( jCheckSubPixel, gbcCheckSubPixel );
 		jCheckSubPixel.setFont( SMALL_FONT );
 
+		final JLabel lblPyramid = new JLabel( "Coarse-to-fine detection:" );
+		lblPyramid.setFont( SMALL_FONT );
+		final GridBagConstraints gbcPyramid = new GridBagConstraints();
+		gbcPyramid.anchor = GridBagConstraints.EAST;
+		gbcPyramid.gridwidth = 2;
+		gbcPyramid.insets = new Insets( 5, 5, 5, 5 );
+		gbcPyramid.gridx = 0;
+		gbcPyramid.gridy = 7;
+		add( lblPyramid, gbcPyramid );
+
+		// Add pyramid checkbox
+		jCheckPyramid = new JCheckBox();
+		jCheckPyramid.setToolTipText( "<html>Detect large spots on a downsampled image, <br>"
+				+ "then refine them at full resolution.</html>" );
+		final GridBagConstraints gbcCheckPyramid = new GridBagConstraints();
+		gbcCheckPyramid.anchor = GridBagConstraints.NORTH;
+		gbcCheckPyramid.fill = GridBagConstraints.HORIZONTAL;
+		gbcCheckPyramid.insets = new Insets( 5, 5, 5, 5 );
+		gbcCheckPyramid.gridwidth = 2;
+		gbcCheckPyramid.gridx = 2;
+		gbcCheckPyramid.gridy = 7;
+		this.add( jCheckPyramid, gbcCheckPyramid );
+		jCheckPyramid.setFont( SMALL_FONT );
+
 		final GridBagConstraints gbcPreview = new GridBagConstraints();
 		gbcPreview.gridwidth = 5;
 		gbcPreview.insets = new Insets( 0, 0, 10, 0 );
 		gbcPreview.fill = GridBagConstraints.BOTH;
 		gbcPreview.gridx = 0;
-		gbcPreview.gridy = 7;
+		gbcPreview.gridy = 8;
 
 		final DetectionPreview detectionPreview = DetectionPreview.create()
 				.model( model )
@@ -310,17 +337,19 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 	@Override
 	public Map< String, Object > getSettings()
 	{
-		final HashMap< String, Object > lSettings = new HashMap<>( 5 );
+		final HashMap< String, Object > lSettings = new HashMap<>( 6 );
 		final int targetChannel = sliderChannel.getValue();
 		final double expectedRadius = ( ( Number ) ftfDiameter.getValue() ).doubleValue() / 2.;
 		final double threshold = ( ( Number ) ftfQualityThreshold.getValue() ).doubleValue();
 		final boolean useMedianFilter = jCheckBoxMedianFilter.isSelected();
 		final boolean doSubPixelLocalization = jCheckSubPixel.isSelected();
+		final boolean doPyramid = jCheckPyramid.isSelected();
 		lSettings.put( KEY_TARGET_CHANNEL, targetChannel );
 		lSettings.put( KEY_RADIUS, expectedRadius );
 		lSettings.put( KEY_THRESHOLD, threshold );
 		lSettings.put( KEY_DO_MEDIAN_FILTERING, useMedianFilter );
 		lSettings.put( KEY_DO_SUBPIXEL_LOCALIZATION, doSubPixelLocalization );
+		lSettings.put( KEY_DO_PYRAMID_DETECTION, doPyramid );
 		return lSettings;
 	}
 
@@ -349,6 +378,7 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 		jCheckBoxMedianFilter.setSelected( ( Boolean ) settings.get( KEY_DO_MEDIAN_FILTERING ) );
 		ftfQualityThreshold.setValue( ( ( Number ) settings.get( KEY_THRESHOLD ) ).doubleValue() );
 		jCheckSubPixel.setSelected( ( Boolean ) settings.get( KEY_DO_SUBPIXEL_LOCALIZATION ) );
+		jCheckPyramid.setSelected( Boolean.TRUE.equals( settings.get( KEY_DO_PYRAMID_DETECTION ) ) );
 	}
 
 	/**
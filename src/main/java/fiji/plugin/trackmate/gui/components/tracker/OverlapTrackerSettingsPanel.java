@@ -63,6 +63,8 @@ public class OverlapTrackerSettingsPanel extends ConfigurationPanel
 
 	private final JRadioButton rdbtnPrecise;
 
+	private final JRadioButton rdbtnRaster;
+
 	public OverlapTrackerSettingsPanel()
 	{
 		final GridBagLayout gridBagLayout = new GridBagLayout();
@@ -133,9 +135,15 @@ public class OverlapTrackerSettingsPanel extends ConfigurationPanel
 		rdbtnPrecise.setToolTipText( IoUCalculation.PRECISE.getInfoText() );
 		panelMethod.add( rdbtnPrecise );
 
+		rdbtnRaster = new JRadioButton( IoUCalculation.RASTER.toString() );
+		rdbtnRaster.setFont( FONT );
+		rdbtnRaster.setToolTipText( IoUCalculation.RASTER.getInfoText() );
+		panelMethod.add( rdbtnRaster );
+
 		final ButtonGroup buttonGroup = new ButtonGroup();
 		buttonGroup.add( rdbtnPrecise );
 		buttonGroup.add( rdbtnFast );
+		buttonGroup.add( rdbtnRaster );
 
 		final JLabel lblMinIoU = new JLabel( "Min IoU:" );
 		lblMinIoU.setFont( FONT );
@@ -193,7 +201,9 @@ public class OverlapTrackerSettingsPanel extends ConfigurationPanel
 		settings.put( KEY_MIN_IOU, ( ( Number ) ftfMinIoU.getValue() ).doubleValue() );
 		final IoUCalculation method = ( rdbtnFast.isSelected() )
 				? IoUCalculation.FAST
-				: IoUCalculation.PRECISE;
+				: ( rdbtnRaster.isSelected() )
+						? IoUCalculation.RASTER
+						: IoUCalculation.PRECISE;
 		settings.put( KEY_IOU_CALCULATION, method.name() );
 		return settings;
 	}
@@ -205,12 +215,20 @@ public class OverlapTrackerSettingsPanel extends ConfigurationPanel
 		ftfMinIoU.setValue( settings.get( KEY_MIN_IOU ) == null ? DEFAULT_MIN_IOU :  settings.get( KEY_MIN_IOU ));
 		final Object obj = settings.get( KEY_IOU_CALCULATION );
 		final boolean isFast;
+		final boolean isRaster;
 		if ( obj != null )
+		{
 			isFast = ( ( String ) obj ).equalsIgnoreCase( IoUCalculation.FAST.name() );
+			isRaster = ( ( String ) obj ).equalsIgnoreCase( IoUCalculation.RASTER.name() );
+		}
 		else
+		{
 			isFast = false;
+			isRaster = false;
+		}
 		rdbtnFast.setSelected( isFast );
-		rdbtnPrecise.setSelected( !isFast );
+		rdbtnRaster.setSelected( isRaster );
+		rdbtnPrecise.setSelected( !isFast && !isRaster );
 	}
 
 	@Override
@@ -88,6 +88,7 @@ public class CSVExporter
 	{
 		final TrackModel tm = model.getTrackModel();
 		final Set< Integer > trackIDs = tm.trackIDs( visibleOnly );
+		model.getFeatureModel().ensureAllSpotFeatures();
 		final List< String > features = new ArrayList<>( model.getFeatureModel().getSpotFeatures() );
 
 		// Function to return a feature value.
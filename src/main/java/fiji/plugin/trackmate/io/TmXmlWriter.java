@@ -524,6 +524,7 @@ public class TmXmlWriter
 	private Element echoSpots( final Model model )
 	{
 		final SpotCollection spots = model.getSpots();
+		model.getFeatureModel().ensureAllSpotFeatures();
 
 		final Element spotCollectionElement = new Element( SPOT_COLLECTION_ELEMENT_KEY );
 		// Store total number of spots
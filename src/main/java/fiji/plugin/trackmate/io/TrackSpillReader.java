@@ -0,0 +1,280 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import static fiji.plugin.trackmate.io.TrackSpillWriter.END_RECORD;
+import static fiji.plugin.trackmate.io.TrackSpillWriter.FEATURE_RECORD;
+import static fiji.plugin.trackmate.io.TrackSpillWriter.FRAME_RECORD;
+import static fiji.plugin.trackmate.io.TrackSpillWriter.MAGIC_NUMBER;
+import static fiji.plugin.trackmate.io.TrackSpillWriter.RELEASE_RECORD;
+import static fiji.plugin.trackmate.io.TrackSpillWriter.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.SpotRoi;
+
+/**
+ * Reads the spots and tracks written by a {@link TrackSpillWriter}.
+ * <p>
+ * The file can be read frame after frame with
+ * {@link #readFrame(Collection, Graph)}. The reader then only keeps in memory
+ * the spots that can still be linked to the next frames, so that a file too
+ * large to fit in memory can still be analyzed. The whole file can also be
+ * loaded in a new {@link Model} with {@link #readModel()}.
+ *
+ * @see TrackSpillWriter
+ */
+public class TrackSpillReader implements Closeable
+{
+
+	private final DataInputStream in;
+
+	private final String spaceUnits;
+
+	private final String timeUnits;
+
+	private final List< String > features = new ArrayList<>();
+
+	/** The spots read and not released yet, that edges can refer to. */
+	private final Map< Integer, Spot > spotsByID = new HashMap<>();
+
+	private int frame;
+
+	private boolean ended;
+
+	/**
+	 * Opens the specified file for reading.
+	 *
+	 * @param file
+	 *            the file to read.
+	 * @throws IOException
+	 *             if the file cannot be read or was not written by a
+	 *             {@link TrackSpillWriter}.
+	 */
+	public TrackSpillReader( final File file ) throws IOException
+	{
+		this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+		try
+		{
+			if ( in.readInt() != MAGIC_NUMBER )
+				throw new IOException( "The file " + file + " is not a TrackMate track file." );
+			final int version = in.readInt();
+			if ( version != VERSION )
+				throw new IOException( "Unsupported version of the TrackMate track file: " + version + "." );
+			this.spaceUnits = in.readUTF();
+			this.timeUnits = in.readUTF();
+		}
+		catch ( final IOException e )
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the spatial units of the spot features.
+	 *
+	 * @return the spatial units.
+	 */
+	public String getSpaceUnits()
+	{
+		return spaceUnits;
+	}
+
+	/**
+	 * Returns the time units of the spot features.
+	 *
+	 * @return the time units.
+	 */
+	public String getTimeUnits()
+	{
+		return timeUnits;
+	}
+
+	/**
+	 * Returns the frame read by the last call to
+	 * {@link #readFrame(Collection, Graph)}.
+	 *
+	 * @return the last frame read.
+	 */
+	public int getFrame()
+	{
+		return frame;
+	}
+
+	/**
+	 * Reads the next frame of the file.
+	 *
+	 * @param spots
+	 *            a collection to which the spots of the frame are added.
+	 * @param graph
+	 *            a graph to which the edges between the spots of the frame and
+	 *            the spots of the previous frames are added, with their
+	 *            source and target.
+	 * @return <code>false</code> if the end of the file was reached, and no
+	 *         frame was read.
+	 * @throws IOException
+	 *             if reading failed, or the file is corrupted.
+	 */
+	public boolean readFrame( final Collection< Spot > spots, final Graph< Spot, DefaultWeightedEdge > graph ) throws IOException
+	{
+		while ( !ended )
+		{
+			final byte record = in.readByte();
+			switch ( record )
+			{
+			case END_RECORD:
+				ended = true;
+				break;
+
+			case FEATURE_RECORD:
+				features.add( in.readUTF() );
+				break;
+
+			case RELEASE_RECORD:
+				final int nReleased = in.readInt();
+				for ( int i = 0; i < nReleased; i++ )
+					spotsByID.remove( Integer.valueOf( in.readInt() ) );
+				break;
+
+			case FRAME_RECORD:
+				readFrameRecord( spots, graph );
+				return true;
+
+			default:
+				throw new IOException( "Unknown record type in TrackMate track file: " + record + "." );
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads all the remaining frames of the file in a new {@link Model}.
+	 * Spots keep the features they had when they were written. Edge and track
+	 * features are not computed.
+	 *
+	 * @return a new {@link Model}.
+	 * @throws IOException
+	 *             if reading failed.
+	 */
+	public Model readModel() throws IOException
+	{
+		final Map< Integer, Set< Spot > > content = new HashMap<>();
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+		final List< Spot > spots = new ArrayList<>();
+		while ( readFrame( spots, graph ) )
+		{
+			final Integer key = Integer.valueOf( frame );
+			Set< Spot > spotsThisFrame = content.get( key );
+			if ( null == spotsThisFrame )
+			{
+				spotsThisFrame = new HashSet<>( spots.size() );
+				content.put( key, spotsThisFrame );
+			}
+			spotsThisFrame.addAll( spots );
+			spots.clear();
+		}
+
+		final Model model = new Model();
+		model.setPhysicalUnits( spaceUnits, timeUnits );
+		model.setSpots( SpotCollection.fromMap( content ), false );
+		model.setTracks( graph, false );
+		return model;
+	}
+
+	private void readFrameRecord( final Collection< Spot > spots, final Graph< Spot, DefaultWeightedEdge > graph ) throws IOException
+	{
+		frame = in.readInt();
+		final int nSpots = in.readInt();
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			final Spot spot = new Spot( in.readInt() );
+			final String name = in.readUTF();
+			spot.setName( name.isEmpty() ? "ID" + spot.ID() : name );
+
+			final int nFeatures = in.readInt();
+			for ( int j = 0; j < nFeatures; j++ )
+			{
+				final String feature = features.get( in.readInt() );
+				spot.putFeature( feature, Double.valueOf( in.readDouble() ) );
+			}
+
+			final int nPoints = in.readInt();
+			if ( nPoints > 0 )
+			{
+				final double[] x = new double[ nPoints ];
+				final double[] y = new double[ nPoints ];
+				for ( int j = 0; j < nPoints; j++ )
+				{
+					x[ j ] = in.readDouble();
+					y[ j ] = in.readDouble();
+				}
+				spot.setRoi( new SpotRoi( x, y ) );
+			}
+
+			spots.add( spot );
+			spotsByID.put( Integer.valueOf( spot.ID() ), spot );
+		}
+
+		final int nEdges = in.readInt();
+		for ( int i = 0; i < nEdges; i++ )
+		{
+			final int sourceID = in.readInt();
+			final int targetID = in.readInt();
+			final double weight = in.readDouble();
+			final Spot source = spotsByID.get( Integer.valueOf( sourceID ) );
+			final Spot target = spotsByID.get( Integer.valueOf( targetID ) );
+			if ( null == source || null == target )
+				throw new IOException( "Edge between unknown spots in TrackMate track file: " + sourceID + " -> " + targetID + "." );
+
+			graph.addVertex( source );
+			graph.addVertex( target );
+			final DefaultWeightedEdge edge = graph.addEdge( source, target );
+			graph.setEdgeWeight( edge, weight );
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
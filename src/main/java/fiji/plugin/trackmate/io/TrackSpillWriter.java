@@ -0,0 +1,245 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotRoi;
+
+/**
+ * Writes spots and tracks to a file frame after frame, so that they can be
+ * removed from memory as soon as their frame cannot receive new links. The
+ * file is read back with a {@link TrackSpillReader}.
+ * <p>
+ * The file is a binary file made of records:
+ * <ul>
+ * <li>a frame record contains the spots of one frame, with their ID, name,
+ * features and ROI, followed by the edges between these spots and the spots
+ * of the previous frames, with their weight.
+ * <li>a release record lists the spots that will not be part of edges written
+ * later, so that readers can forget them.
+ * <li>a feature record declares a feature name. Feature names are written
+ * once, before the first frame that uses them.
+ * </ul>
+ *
+ * @see TrackSpillReader
+ */
+public class TrackSpillWriter implements Closeable
+{
+
+	static final int MAGIC_NUMBER = 0x544d5350;
+
+	static final int VERSION = 1;
+
+	static final byte END_RECORD = 0;
+
+	static final byte FEATURE_RECORD = 1;
+
+	static final byte FRAME_RECORD = 2;
+
+	static final byte RELEASE_RECORD = 3;
+
+	private final DataOutputStream out;
+
+	/** The index of the feature names already written. */
+	private final Map< String, Integer > featureIndices = new HashMap<>();
+
+	private long nSpots;
+
+	private long nEdges;
+
+	/**
+	 * Creates a new file to write spots and tracks to. An existing file is
+	 * overwritten.
+	 *
+	 * @param file
+	 *            the file to write to.
+	 * @param spaceUnits
+	 *            the spatial units of the spot features.
+	 * @param timeUnits
+	 *            the time units of the spot features.
+	 * @throws IOException
+	 *             if the file cannot be created.
+	 */
+	public TrackSpillWriter( final File file, final String spaceUnits, final String timeUnits ) throws IOException
+	{
+		this.out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+		out.writeInt( MAGIC_NUMBER );
+		out.writeInt( VERSION );
+		out.writeUTF( null == spaceUnits ? "" : spaceUnits );
+		out.writeUTF( null == timeUnits ? "" : timeUnits );
+	}
+
+	/**
+	 * Writes the spots of a frame, and the edges that link them to the spots
+	 * of the frames written before.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @param spots
+	 *            the spots of the frame. Their {@link Spot#FRAME} feature must
+	 *            be set.
+	 * @param graph
+	 *            the graph containing the edges. The spots of the previous
+	 *            frames linked to the specified spots must not have been
+	 *            released.
+	 * @throws IOException
+	 *             if writing failed.
+	 */
+	public void writeFrame( final int frame, final Collection< Spot > spots, final Graph< Spot, DefaultWeightedEdge > graph ) throws IOException
+	{
+		// Declare new features first.
+		for ( final Spot spot : spots )
+		{
+			for ( final String feature : spot.getFeatures().keySet() )
+			{
+				if ( featureIndices.containsKey( feature ) )
+					continue;
+
+				featureIndices.put( feature, Integer.valueOf( featureIndices.size() ) );
+				out.writeByte( FEATURE_RECORD );
+				out.writeUTF( feature );
+			}
+		}
+
+		out.writeByte( FRAME_RECORD );
+		out.writeInt( frame );
+		out.writeInt( spots.size() );
+		final List< DefaultWeightedEdge > edges = new ArrayList<>();
+		for ( final Spot spot : spots )
+		{
+			out.writeInt( spot.ID() );
+			out.writeUTF( null == spot.getName() ? "" : spot.getName() );
+
+			final Map< String, Double > features = spot.getFeatures();
+			out.writeInt( features.size() );
+			for ( final Map.Entry< String, Double > entry : features.entrySet() )
+			{
+				out.writeInt( featureIndices.get( entry.getKey() ).intValue() );
+				out.writeDouble( null == entry.getValue() ? Double.NaN : entry.getValue().doubleValue() );
+			}
+
+			final SpotRoi roi = spot.getRoi();
+			if ( null == roi )
+			{
+				out.writeInt( 0 );
+			}
+			else
+			{
+				out.writeInt( roi.x.length );
+				for ( int i = 0; i < roi.x.length; i++ )
+				{
+					out.writeDouble( roi.x[ i ] );
+					out.writeDouble( roi.y[ i ] );
+				}
+			}
+
+			if ( !graph.containsVertex( spot ) )
+				continue;
+			for ( final DefaultWeightedEdge edge : graph.edgesOf( spot ) )
+				if ( Graphs.getOppositeVertex( graph, edge, spot ).getFeature( Spot.FRAME ).intValue() < frame )
+					edges.add( edge );
+		}
+
+		out.writeInt( edges.size() );
+		for ( final DefaultWeightedEdge edge : edges )
+		{
+			out.writeInt( graph.getEdgeSource( edge ).ID() );
+			out.writeInt( graph.getEdgeTarget( edge ).ID() );
+			out.writeDouble( graph.getEdgeWeight( edge ) );
+		}
+
+		nSpots += spots.size();
+		nEdges += edges.size();
+	}
+
+	/**
+	 * Declares that the specified spots, already written, will not be part of
+	 * the edges written next.
+	 *
+	 * @param spots
+	 *            the spots to release.
+	 * @throws IOException
+	 *             if writing failed.
+	 */
+	public void release( final Collection< Spot > spots ) throws IOException
+	{
+		if ( spots.isEmpty() )
+			return;
+
+		out.writeByte( RELEASE_RECORD );
+		out.writeInt( spots.size() );
+		for ( final Spot spot : spots )
+			out.writeInt( spot.ID() );
+	}
+
+	/**
+	 * Returns the number of spots written so far.
+	 *
+	 * @return the number of spots.
+	 */
+	public long getNSpots()
+	{
+		return nSpots;
+	}
+
+	/**
+	 * Returns the number of edges written so far.
+	 *
+	 * @return the number of edges.
+	 */
+	public long getNEdges()
+	{
+		return nEdges;
+	}
+
+	/**
+	 * Marks the end of the file and closes it.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			out.writeByte( END_RECORD );
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking;
+
+import java.util.Collection;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import net.imglib2.algorithm.MultiThreaded;
+
+/**
+ * Interface for trackers that link spots frame after frame, as they are
+ * produced by the detection step, instead of working on a complete
+ * {@link SpotCollection}.
+ * <p>
+ * Frames are given in increasing order with {@link #addFrame(int, Collection)}
+ * and the spots of a frame are linked to the spots of the frame given before
+ * it. The graph returned by {@link #getResult()} is updated as frames are
+ * added, so that tracks are available before the last frame is processed.
+ * Links that need several frames to be decided, such as gap-closing links,
+ * can be added with a delay of a few frames. The {@link #finish()} method must
+ * be called after the last frame to add them.
+ * <p>
+ * The graph is modified in the thread that calls these methods, and must not
+ * be read concurrently.
+ *
+ * @see SpotTrackerFactory#createOnline(java.util.Map)
+ */
+public interface OnlineSpotTracker extends MultiThreaded
+{
+
+	/**
+	 * Links the spots of the specified frame to the ones of the previous
+	 * frames.
+	 *
+	 * @param frame
+	 *            the frame of the spots. Must be larger than the frame given
+	 *            in the previous call.
+	 * @param spots
+	 *            the spots to track in this frame. Their {@link Spot#FRAME}
+	 *            feature must be set to <code>frame</code>, as done when
+	 *            adding them to a {@link SpotCollection}. Can be empty.
+	 * @return <code>true</code> if linking completed without errors.
+	 */
+	public boolean addFrame( final int frame, final Collection< Spot > spots );
+
+	/**
+	 * Adds the links that were waiting for frames after the last one given.
+	 * No frame can be added after this call.
+	 *
+	 * @return <code>true</code> if linking completed without errors.
+	 */
+	public boolean finish();
+
+	/**
+	 * Returns the graph of the links found so far.
+	 *
+	 * @return the tracking graph.
+	 */
+	public SimpleWeightedGraph< Spot, DefaultWeightedEdge > getResult();
+
+	/**
+	 * Returns the last frame whose spots will not receive new links, whatever
+	 * the frames added next. The tracks that end in this frame or before it
+	 * are complete, and can for instance be removed from the graph returned
+	 * by {@link #getResult()} to save memory.
+	 * <p>
+	 * The default implementation returns {@link Integer#MIN_VALUE}, meaning
+	 * that no track is known to be complete before {@link #finish()} is
+	 * called.
+	 *
+	 * @return the last completed frame.
+	 * @see TrackSpiller
+	 */
+	public default int getCompletedFrame()
+	{
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns a meaningful error message if a call to
+	 * {@link #addFrame(int, Collection)} or {@link #finish()} failed.
+	 *
+	 * @return an error message.
+	 */
+	public String getErrorMessage();
+
+	/**
+	 * Sets the {@link Logger} instance that will receive messages from this
+	 * tracker.
+	 *
+	 * @param logger
+	 *            the logger to echo messages to.
+	 */
+	public void setLogger( final Logger logger );
+}
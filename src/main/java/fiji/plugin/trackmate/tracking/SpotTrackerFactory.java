@@ -45,6 +45,24 @@ public interface SpotTrackerFactory extends TrackMateModule
 	 */
 	public SpotTracker create( final SpotCollection spots, final Map< String, Object > settings );
 
+	/**
+	 * Instantiates and returns a new {@link OnlineSpotTracker}, that links
+	 * spots frame after frame as they are detected, using the specified
+	 * settings map.
+	 * <p>
+	 * Trackers that need all the frames before linking do not support this
+	 * mode, and return <code>null</code>, which is the default.
+	 *
+	 * @param settings
+	 *            the settings map configuring the tracker.
+	 * @return a new {@link OnlineSpotTracker} instance, or <code>null</code>
+	 *         if this tracker cannot link frames as they come.
+	 */
+	public default OnlineSpotTracker createOnline( final Map< String, Object > settings )
+	{
+		return null;
+	}
+
 	/**
 	 * Returns a new GUI panel able to configure the settings suitable for the
 	 * target tracker identified by the key parameter.
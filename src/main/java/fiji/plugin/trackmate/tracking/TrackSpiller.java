@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.io.TrackSpillWriter;
+
+/**
+ * Moves the spots and links of an {@link OnlineSpotTracker} to a
+ * {@link TrackSpillWriter} as soon as they are final, so that memory usage
+ * depends on the number of frames that can still be linked rather than on the
+ * length of the movie.
+ * <p>
+ * The spots of each frame are given with {@link #addFrame(int, Collection)}.
+ * When {@link #spill(int)} is called with the frame returned by
+ * {@link OnlineSpotTracker#getCompletedFrame()}, the frames up to this one are
+ * written with their links to the previous frames. A spot is then removed from
+ * the tracker graph once all the spots it is linked to are written.
+ */
+public class TrackSpiller
+{
+
+	private final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph;
+
+	private final TrackSpillWriter writer;
+
+	/** The spots of the frames that are not written yet, per frame. */
+	private final TreeMap< Integer, Collection< Spot > > frames = new TreeMap<>();
+
+	/**
+	 * Creates a spiller for the specified tracker graph.
+	 *
+	 * @param graph
+	 *            the graph of the tracker, from which written spots are
+	 *            removed.
+	 * @param writer
+	 *            the writer to which spots and links are written.
+	 */
+	public TrackSpiller( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph, final TrackSpillWriter writer )
+	{
+		this.graph = graph;
+		this.writer = writer;
+	}
+
+	/**
+	 * Registers the spots of a frame. All the spots given to the tracker must
+	 * be registered, before the frame is completed.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @param spots
+	 *            all the spots of the frame, linked or not. Their
+	 *            {@link Spot#FRAME} feature must be set.
+	 */
+	public void addFrame( final int frame, final Collection< Spot > spots )
+	{
+		frames.put( Integer.valueOf( frame ), spots );
+	}
+
+	/**
+	 * Writes the frames up to the specified one, and removes from the graph
+	 * the spots whose links are all written.
+	 *
+	 * @param completedFrame
+	 *            the last frame whose spots cannot receive new links.
+	 * @throws IOException
+	 *             if writing failed.
+	 */
+	public void spill( final int completedFrame ) throws IOException
+	{
+		final Map< Integer, Collection< Spot > > completed = frames.headMap( Integer.valueOf( completedFrame ), true );
+		for ( final Map.Entry< Integer, Collection< Spot > > entry : completed.entrySet() )
+		{
+			final int frame = entry.getKey().intValue();
+			final Collection< Spot > spots = entry.getValue();
+			writer.writeFrame( frame, spots, graph );
+
+			/*
+			 * The spots of this frame and their predecessors can be released
+			 * if they have no successor after this frame.
+			 */
+			final Set< Spot > candidates = new HashSet<>( spots );
+			for ( final Spot spot : spots )
+				if ( graph.containsVertex( spot ) )
+					for ( final Spot neighbor : Graphs.neighborListOf( graph, spot ) )
+						if ( neighbor.getFeature( Spot.FRAME ).intValue() < frame )
+							candidates.add( neighbor );
+
+			final List< Spot > released = new ArrayList<>();
+			for ( final Spot spot : candidates )
+				if ( !graph.containsVertex( spot ) || isWritten( spot, frame ) )
+					released.add( spot );
+
+			writer.release( released );
+			graph.removeAllVertices( released );
+		}
+		completed.clear();
+	}
+
+	/**
+	 * Writes all the frames left. The graph must not receive new links after
+	 * this call.
+	 *
+	 * @throws IOException
+	 *             if writing failed.
+	 */
+	public void flush() throws IOException
+	{
+		spill( Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified spot and all the spots it is
+	 * linked to are in frames up to the specified frame.
+	 */
+	private boolean isWritten( final Spot spot, final int lastWrittenFrame )
+	{
+		for ( final DefaultWeightedEdge edge : graph.edgesOf( spot ) )
+			if ( Graphs.getOppositeVertex( graph, edge, spot ).getFeature( Spot.FRAME ).intValue() > lastWrittenFrame )
+				return false;
+		return true;
+	}
+}
@@ -95,6 +95,46 @@ public class TrackerKeys
 	 */
 	public static final Map< String, Double > DEFAULT_LINKING_FEATURE_PENALTIES = new HashMap<>();
 
+	/**
+	 * Key for the parameter specifying whether the frame-to-frame LAPs are
+	 * solved with the greedy initialization of the Jonker-Volgenant solver
+	 * instead of its column reduction. Each row starts assigned to a free
+	 * column of minimal reduced cost, which leaves fewer rows to augment on
+	 * dense scenes. The links found have the same total cost. Expected values
+	 * are {@link Boolean}s. This parameter is optional.
+	 */
+	public static final String KEY_LINKING_GREEDY_INITIALIZATION = "LINKING_GREEDY_INITIALIZATION";
+
+	/** A default value for the {@value #KEY_LINKING_GREEDY_INITIALIZATION} parameter. */
+	public static final boolean DEFAULT_LINKING_GREEDY_INITIALIZATION = false;
+
+	/**
+	 * Key for the parameter specifying the solver used for the linear
+	 * assignment problems of the segment linking step: gap-closing, merging
+	 * and splitting. Expected values are {@link String}s, either
+	 * {@link #LAP_SOLVER_JONKER_VOLGENANT} or {@link #LAP_SOLVER_AUCTION}. This
+	 * parameter is optional.
+	 */
+	public static final String KEY_LAP_SOLVER = "LAP_SOLVER";
+
+	/**
+	 * Value for the Jonker-Volgenant solver, which is sequential.
+	 * 
+	 * @see #KEY_LAP_SOLVER
+	 */
+	public static final String LAP_SOLVER_JONKER_VOLGENANT = "JONKER_VOLGENANT";
+
+	/**
+	 * Value for the auction solver, which computes bids in parallel. It pays
+	 * off on large problems with many cores.
+	 * 
+	 * @see #KEY_LAP_SOLVER
+	 */
+	public static final String LAP_SOLVER_AUCTION = "AUCTION";
+
+	/** A default value for the {@value #KEY_LAP_SOLVER} parameter. */
+	public static final String DEFAULT_LAP_SOLVER = LAP_SOLVER_JONKER_VOLGENANT;
+
 	/** Search radius for the Kalman tracker. */
 	public static final String KEY_KALMAN_SEARCH_RADIUS = "KALMAN_SEARCH_RADIUS";
 
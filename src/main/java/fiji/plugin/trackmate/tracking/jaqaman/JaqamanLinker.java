@@ -21,20 +21,28 @@
  */
 package fiji.plugin.trackmate.tracking.jaqaman;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.imglib2.algorithm.BenchmarkAlgorithm;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.util.Util;
 import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.CostMatrixCreator;
+import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.AuctionLAP;
 import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.LAPJV;
 import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.SparseCostMatrix;
+import fiji.plugin.trackmate.util.Threads;
 
 /**
  * Links two lists of objects based on the LAP framework described in Jaqaman
@@ -47,7 +55,7 @@ import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.SparseCostMatrix;
  * @param <J>
  *            the type of the target objects to link.
  */
-public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J > > extends BenchmarkAlgorithm implements OutputAlgorithm< Map< K, J > >
+public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J > > extends BenchmarkAlgorithm implements OutputAlgorithm< Map< K, J > >, MultiThreaded
 {
 	private Map< K, J > assignments;
 
@@ -57,6 +65,12 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 
 	private final Logger logger;
 
+	private int numThreads;
+
+	private boolean greedyInitialization;
+
+	private boolean useAuction;
+
 	/**
 	 * Creates a new linker for the specified cost matrix creator. See Jaqaman
 	 * <i>et al.</i>, Nature Methods, <b>2008</b>, Figure 1b.
@@ -70,6 +84,7 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 	{
 		this.costMatrixCreator = costMatrixCreator;
 		this.logger = logger;
+		setNumThreads();
 	}
 
 	public JaqamanLinker( final CostMatrixCreator< K, J > costMatrixCreator )
@@ -106,6 +121,37 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		return costs;
 	}
 
+	/**
+	 * Sets whether the Jonker-Volgenant solver starts with its greedy
+	 * initialization instead of the column reduction. Prices are still
+	 * initialized by column reduction, but every row is then assigned to a
+	 * free column of minimal reduced cost, which leaves fewer rows to
+	 * augment. The assignment found is optimal either way.
+	 * 
+	 * @param greedyInitialization
+	 *            if <code>true</code>, the greedy initialization is used.
+	 * @see LAPJV#setGreedyInitialization(boolean)
+	 */
+	public void setGreedyInitialization( final boolean greedyInitialization )
+	{
+		this.greedyInitialization = greedyInitialization;
+	}
+
+	/**
+	 * Sets whether the cost matrix is solved with the auction algorithm
+	 * instead of the Jonker-Volgenant algorithm. The auction computes its
+	 * bids in parallel, and pays off on large problems that do not split in
+	 * many independent components. The greedy initialization is ignored by the
+	 * auction.
+	 * 
+	 * @param useAuction
+	 *            if <code>true</code>, the {@link AuctionLAP} solver is used.
+	 */
+	public void setUseAuction( final boolean useAuction )
+	{
+		this.useAuction = useAuction;
+	}
+
 	@Override
 	public boolean checkInput()
 	{
@@ -143,13 +189,181 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		}
 
 		/*
-		 * Complement the cost matrix with alternative no linking cost matrix.
+		 * Alternative no linking costs.
 		 */
 
 		logger.setStatus( "Completing the cost matrix..." );
 
 		final int nCols = tl.getNCols();
 		final int nRows = tl.getNRows();
+		final double[] rowAltCosts = new double[ nRows ];
+		for ( int i = 0; i < nRows; i++ )
+			rowAltCosts[ i ] = costMatrixCreator.getAlternativeCostForSource( matrixRows.get( i ) );
+		final double[] colAltCosts = new double[ nCols ];
+		for ( int j = 0; j < nCols; j++ )
+			colAltCosts[ j ] = costMatrixCreator.getAlternativeCostForTarget( matrixCols.get( j ) );
+
+		/*
+		 * Bottom right alt. cost is the overall min of alternative costs. This
+		 * deviate or extend a bit the u-track code.
+		 */
+		final double minCost = Math.min( Util.min( colAltCosts ), Util.min( rowAltCosts ) );
+
+		/*
+		 * Split the problem in the connected components of the cost matrix.
+		 * The complemented matrix of the whole problem is block-diagonal with
+		 * one block per component, so solving each block independently gives
+		 * the same optimum.
+		 */
+
+		final int[] labels = tl.componentLabels();
+		int nComponents = 0;
+		for ( final int label : labels )
+			nComponents = Math.max( nComponents, label + 1 );
+		final int[] rowCounts = new int[ nComponents ];
+		final int[] colCounts = new int[ nComponents ];
+		for ( int i = 0; i < nRows; i++ )
+			rowCounts[ labels[ i ] ]++;
+		for ( int j = 0; j < nCols; j++ )
+			colCounts[ labels[ nRows + j ] ]++;
+		final int[][] componentRows = new int[ nComponents ][];
+		final int[][] componentCols = new int[ nComponents ][];
+		for ( int c = 0; c < nComponents; c++ )
+		{
+			componentRows[ c ] = new int[ rowCounts[ c ] ];
+			componentCols[ c ] = new int[ colCounts[ c ] ];
+		}
+		Arrays.fill( rowCounts, 0 );
+		Arrays.fill( colCounts, 0 );
+		// Local index of each column in its component.
+		final int[] colIndex = new int[ nCols ];
+		for ( int i = 0; i < nRows; i++ )
+		{
+			final int c = labels[ i ];
+			componentRows[ c ][ rowCounts[ c ]++ ] = i;
+		}
+		for ( int j = 0; j < nCols; j++ )
+		{
+			final int c = labels[ nRows + j ];
+			colIndex[ j ] = colCounts[ c ];
+			componentCols[ c ][ colCounts[ c ]++ ] = j;
+		}
+		logger.setProgress( 0.6 );
+
+		/*
+		 * Solve the components, largest first.
+		 */
+
+		logger.setStatus( "Solving the cost matrix..." );
+		final Integer[] order = new Integer[ nComponents ];
+		for ( int c = 0; c < nComponents; c++ )
+			order[ c ] = Integer.valueOf( c );
+		Arrays.sort( order, ( c1, c2 ) -> Integer.compare(
+				componentRows[ c2 ].length + componentCols[ c2 ].length,
+				componentRows[ c1 ].length + componentCols[ c1 ].length ) );
+
+		// For each row, its assigned column or -1, and the cost.
+		final int[] rowAssignment = new int[ nRows ];
+		final double[] rowCosts = new double[ nRows ];
+		// Components are solved in parallel, so only a single one gets to
+		// parallelize the auction.
+		final int auctionThreads = useAuction ? ( ( nComponents == 1 ) ? numThreads : 1 ) : 0;
+		final List< Callable< String > > tasks = new ArrayList<>( nComponents );
+		for ( final Integer c : order )
+		{
+			final int[] rows = componentRows[ c ];
+			final int[] cols = componentCols[ c ];
+			tasks.add( () -> solveComponent( tl, rows, cols, colIndex, rowAltCosts, colAltCosts, minCost, greedyInitialization, auctionThreads, rowAssignment, rowCosts ) );
+		}
+
+		final List< String > errors = new ArrayList<>();
+		if ( numThreads <= 1 || nComponents == 1 )
+		{
+			for ( final Callable< String > task : tasks )
+			{
+				try
+				{
+					errors.add( task.call() );
+				}
+				catch ( final Exception e )
+				{
+					errors.add( e.getMessage() );
+				}
+			}
+		}
+		else
+		{
+			final ExecutorService executor = Threads.newFixedThreadPool( Math.min( numThreads, nComponents ) );
+			try
+			{
+				for ( final Future< String > future : executor.invokeAll( tasks ) )
+					errors.add( future.get() );
+			}
+			catch ( final InterruptedException | ExecutionException e )
+			{
+				errors.add( e.getMessage() );
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
+		for ( final String error : errors )
+		{
+			if ( null != error )
+			{
+				errorMessage = error;
+				return false;
+			}
+		}
+
+		assignments = new HashMap<>();
+		costs = new HashMap<>();
+		for ( int i = 0; i < nRows; i++ )
+		{
+			final int j = rowAssignment[ i ];
+			if ( j >= 0 )
+			{
+				final K source = matrixRows.get( i );
+				final J target = matrixCols.get( j );
+				assignments.put( source, target );
+				costs.put( source, Double.valueOf( rowCosts[ i ] ) );
+			}
+		}
+
+		logger.setProgress( 1 );
+		logger.setStatus( "" );
+		final long end = System.currentTimeMillis();
+		processingTime = end - start;
+
+		return true;
+	}
+
+	/**
+	 * Complements the cost matrix of one connected component with the
+	 * alternative no linking costs, and solves it. It is solved with the
+	 * Jonker-Volgenant algorithm if <code>auctionThreads</code> is 0, with
+	 * the auction algorithm on this number of threads otherwise.
+	 * 
+	 * @return <code>null</code> if the component was solved, an error message
+	 *         otherwise.
+	 */
+	private static String solveComponent(
+			final SparseCostMatrix tl,
+			final int[] rows,
+			final int[] cols,
+			final int[] colIndex,
+			final double[] rowAltCosts,
+			final double[] colAltCosts,
+			final double minCost,
+			final boolean greedyInitialization,
+			final int auctionThreads,
+			final int[] rowAssignment,
+			final double[] rowCosts )
+	{
+		final int nRows = rows.length;
+		final int nCols = cols.length;
+		final SparseCostMatrix tlc = ( nRows == tl.getNRows() && nCols == tl.getNCols() ) ? tl : tl.subMatrix( rows, colIndex, nCols );
 
 		/*
 		 * Top right
@@ -160,7 +374,7 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		for ( int i = 0; i < nRows; i++ )
 		{
 			kktr[ i ] = i;
-			cctr[ i ] = costMatrixCreator.getAlternativeCostForSource( matrixRows.get( i ) );
+			cctr[ i ] = rowAltCosts[ rows[ i ] ];
 		}
 		final int[] numbertr = new int[ nRows ];
 		Arrays.fill( numbertr, 1 );
@@ -174,7 +388,7 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		for ( int i = 0; i < kkbl.length; i++ )
 		{
 			kkbl[ i ] = i;
-			ccbl[ i ] = costMatrixCreator.getAlternativeCostForTarget( matrixCols.get( i ) );
+			ccbl[ i ] = colAltCosts[ cols[ i ] ];
 		}
 		final int[] numberbl = new int[ nCols ];
 		Arrays.fill( numberbl, 1 );
@@ -182,54 +396,70 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 
 		/*
 		 * Bottom right.
-		 * 
-		 * Alt. cost is the overall min of alternative costs. This deviate or
-		 * extend a bit the u-track code.
 		 */
-		final double minCost = Math.min( Util.min( ccbl ), Util.min( cctr ) );
-		final SparseCostMatrix br = tl.transpose();
+		final SparseCostMatrix br = tlc.transpose();
 		br.fillWith( minCost );
 
 		/*
 		 * Stitch them together
 		 */
-		final SparseCostMatrix full = ( tl.hcat( tr ) ).vcat( bl.hcat( br ) );
-		logger.setProgress( 0.6 );
+		final SparseCostMatrix full = ( tlc.hcat( tr ) ).vcat( bl.hcat( br ) );
 
 		/*
 		 * Solve the full cost matrix.
 		 */
-		logger.setStatus( "Solving the cost matrix..." );
-		final LAPJV solver = new LAPJV( full );
-		if ( !solver.checkInput() || !solver.process() )
+		final int[] assgn;
+		if ( auctionThreads > 0 )
 		{
-			errorMessage = solver.getErrorMessage();
-			return false;
+			final AuctionLAP solver = new AuctionLAP( full );
+			solver.setNumThreads( auctionThreads );
+			if ( !solver.checkInput() || !solver.process() )
+				return solver.getErrorMessage();
+
+			assgn = solver.getResult();
 		}
+		else
+		{
+			final LAPJV solver = new LAPJV( full );
+			solver.setGreedyInitialization( greedyInitialization );
+			if ( !solver.checkInput() || !solver.process() )
+				return solver.getErrorMessage();
 
-		final int[] assgn = solver.getResult();
-		assignments = new HashMap<>();
-		costs = new HashMap<>();
-		for ( int i = 0; i < assgn.length; i++ )
+			assgn = solver.getResult();
+		}
+
+		for ( int i = 0; i < nRows; i++ )
 		{
 			final int j = assgn[ i ];
-			if ( i < matrixRows.size() && j < matrixCols.size() )
+			if ( j < nCols )
 			{
-				final K source = matrixRows.get( i );
-				final J target = matrixCols.get( j );
-				assignments.put( source, target );
-
-				final double cost = full.get( i, j, Double.POSITIVE_INFINITY );
-				costs.put( source, Double.valueOf( cost ) );
+				rowAssignment[ rows[ i ] ] = cols[ j ];
+				rowCosts[ rows[ i ] ] = full.get( i, j, Double.POSITIVE_INFINITY );
+			}
+			else
+			{
+				rowAssignment[ rows[ i ] ] = -1;
 			}
 		}
+		return null;
+	}
 
-		logger.setProgress( 1 );
-		logger.setStatus( "" );
-		final long end = System.currentTimeMillis();
-		processingTime = end - start;
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
 
-		return true;
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
 	}
 
 	public String resultToString()
@@ -43,12 +43,16 @@ import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_CUTOFF_PERCENTILE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LAP_SOLVER;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_GREEDY_INITIALIZATION;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_AUCTION;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_JONKER_VOLGENANT;
 import static fiji.plugin.trackmate.util.TMUtils.checkMapKeys;
 import static fiji.plugin.trackmate.util.TMUtils.checkParameter;
 
@@ -258,6 +262,8 @@ public class LAPUtils
                 {
                     ok = ok & checkParameter( settings, KEY_LINKING_MAX_DISTANCE, Double.class, errorHolder );
                     ok = ok & checkFeatureMap( settings, KEY_LINKING_FEATURE_PENALTIES, errorHolder );
+                    if ( settings.containsKey( KEY_LINKING_GREEDY_INITIALIZATION ) )
+                        ok = ok & checkParameter( settings, KEY_LINKING_GREEDY_INITIALIZATION, Boolean.class, errorHolder );
                 }
                 // Gap-closing
 		ok = ok & checkParameter( settings, KEY_ALLOW_GAP_CLOSING, Boolean.class, errorHolder );
@@ -276,6 +282,8 @@ public class LAPUtils
 		ok = ok & checkParameter( settings, KEY_CUTOFF_PERCENTILE, Double.class, errorHolder );
 		ok = ok & checkParameter( settings, KEY_ALTERNATIVE_LINKING_COST_FACTOR, Double.class, errorHolder );
 		ok = ok & checkParameter( settings, KEY_BLOCKING_VALUE, Double.class, errorHolder );
+		if ( settings.containsKey( KEY_LAP_SOLVER ) )
+			ok = ok & checkLAPSolver( settings, errorHolder );
                 
                 // Check keys
 		final List< String > mandatoryKeys = new ArrayList<>();
@@ -297,11 +305,13 @@ public class LAPUtils
 		if ( linking )
                 {
                     optionalKeys.add( KEY_LINKING_FEATURE_PENALTIES );
+                    optionalKeys.add( KEY_LINKING_GREEDY_INITIALIZATION );
                 }
                 optionalKeys.add( KEY_GAP_CLOSING_FEATURE_PENALTIES );
 		optionalKeys.add( KEY_SPLITTING_FEATURE_PENALTIES );
 		optionalKeys.add( KEY_MERGING_FEATURE_PENALTIES );
                 optionalKeys.add( KEY_KALMAN_SEARCH_RADIUS );
+		optionalKeys.add( KEY_LAP_SOLVER );
 		ok = ok & checkMapKeys( settings, mandatoryKeys, optionalKeys, errorHolder );
                 return ok;
 	}
@@ -356,6 +366,30 @@ public class LAPUtils
 		return ok;
 	}
 
+	/**
+	 * Check the validity of the LAP solver parameter in a settings map. It
+	 * must be one of the <code>LAP_SOLVER_*</code> values of
+	 * {@link fiji.plugin.trackmate.tracking.TrackerKeys}.
+	 *
+	 * @param map
+	 *            the map to inspect.
+	 * @param errorHolder
+	 *            will be appended with an error message.
+	 * @return true if the LAP solver parameter is valid.
+	 */
+	public static final boolean checkLAPSolver( final Map< String, Object > map, final StringBuilder errorHolder )
+	{
+		if ( !checkParameter( map, KEY_LAP_SOLVER, String.class, errorHolder ) )
+			return false;
+		final Object solver = map.get( KEY_LAP_SOLVER );
+		if ( !LAP_SOLVER_JONKER_VOLGENANT.equals( solver ) && !LAP_SOLVER_AUCTION.equals( solver ) )
+		{
+			errorHolder.append( "Unknown LAP solver: " + solver + ".\n" );
+			return false;
+		}
+		return true;
+	}
+
 	public static final void echoMatrix( final double[][] m )
 	{
 		final int nlines = m.length;
@@ -0,0 +1,330 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_GAP_CLOSING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_MERGING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_SPLITTING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LAP_SOLVER;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_AUCTION;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
+import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.JaqamanSegmentCostMatrixCreator;
+
+/**
+ * An {@link OnlineSpotTracker} that adds gap-closing, merging and splitting
+ * links to the links of a frame-to-frame {@link OnlineSpotTracker}, over a
+ * sliding window of frames.
+ * <p>
+ * Let <code>G</code> be the max frame gap for gap-closing, or 1 if gap-closing
+ * is not allowed. Segment links are searched for by blocks of <code>G</code>
+ * source frames, whereas the {@link SegmentTracker} solves a single LAP for
+ * the whole movie: all the segments ending or splitting in frames
+ * <code>[a, a+G-1]</code> are linked in a single LAP. This LAP is solved as
+ * soon as frame <code>a+2G</code> has been linked, because segment ends,
+ * starts and middles in frames up to <code>a+2G-1</code> are then known. The
+ * window of frames kept in memory goes from <code>a</code> to
+ * <code>a+2G</code>, plus the frame-to-frame predecessors of the spots in
+ * these frames.
+ * <p>
+ * Segment starts linked in a block cannot be linked again in the next block.
+ * Apart from that, blocks are solved independently: the result is the same as
+ * the {@link SegmentTracker} when the movie is shorter than one block, but on
+ * longer movies segment links are optimal per block rather than globally, and
+ * the alternative cost is computed per block.
+ */
+public class OnlineSegmentTracker implements OnlineSpotTracker
+{
+
+	private static final String BASE_ERROR_MESSAGE = "[OnlineSegmentTracker] ";
+
+	private final OnlineSpotTracker frameToFrameTracker;
+
+	private final Map< String, Object > settings;
+
+	private final boolean linkSegments;
+
+	/**
+	 * The number of source frames per block. Also the largest frame interval
+	 * of a segment link.
+	 */
+	private final int blockSize;
+
+	/**
+	 * The frame-to-frame links of the frames in the window, without the
+	 * segment links.
+	 */
+	private final SimpleWeightedGraph< Spot, DefaultWeightedEdge > window = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+
+	/** The vertices of the window graph, per frame. */
+	private final TreeMap< Integer, List< Spot > > windowFrames = new TreeMap<>();
+
+	/** The targets of the segment links of the previous blocks. */
+	private final Set< Spot > linkedTargets = new HashSet<>();
+
+	private boolean started;
+
+	/** The first source frame of the next block. */
+	private long blockStart;
+
+	private long lastFrame;
+
+	private int numThreads;
+
+	private String errorMessage;
+
+	/**
+	 * Creates a segment tracker on top of the specified frame-to-frame
+	 * tracker.
+	 *
+	 * @param frameToFrameTracker
+	 *            the tracker that links frames. Its graph receives the segment
+	 *            links.
+	 * @param fullsettings
+	 *            the tracker settings, from which the gap-closing, merging and
+	 *            splitting keys are read.
+	 */
+	public OnlineSegmentTracker( final OnlineSpotTracker frameToFrameTracker, final Map< String, Object > fullsettings )
+	{
+		this.frameToFrameTracker = frameToFrameTracker;
+		this.settings = SegmentTracker.segmentLinkingSettings( fullsettings );
+		final boolean allowGapClosing = Boolean.TRUE.equals( settings.get( KEY_ALLOW_GAP_CLOSING ) );
+		this.linkSegments = allowGapClosing
+				|| Boolean.TRUE.equals( settings.get( KEY_ALLOW_TRACK_MERGING ) )
+				|| Boolean.TRUE.equals( settings.get( KEY_ALLOW_TRACK_SPLITTING ) );
+		this.blockSize = allowGapClosing ? Math.max( 1, ( Integer ) settings.get( KEY_GAP_CLOSING_MAX_FRAME_GAP ) ) : 1;
+		setNumThreads();
+	}
+
+	@Override
+	public boolean addFrame( final int frame, final Collection< Spot > spots )
+	{
+		if ( !frameToFrameTracker.addFrame( frame, spots ) )
+		{
+			errorMessage = frameToFrameTracker.getErrorMessage();
+			return false;
+		}
+		if ( !linkSegments )
+			return true;
+
+		/*
+		 * Copy the new frame-to-frame links to the window. Spots that are not
+		 * linked yet are added too, they may be linked to the next frame. A
+		 * predecessor that already left the window is added back, so that its
+		 * successor is not taken for a segment start.
+		 */
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = frameToFrameTracker.getResult();
+		windowFrames.put( frame, new ArrayList<>( spots ) );
+		for ( final Spot spot : spots )
+		{
+			window.addVertex( spot );
+			if ( !graph.containsVertex( spot ) )
+				continue;
+
+			for ( final DefaultWeightedEdge edge : graph.edgesOf( spot ) )
+			{
+				final Spot other = Graphs.getOppositeVertex( graph, edge, spot );
+				final int otherFrame = other.getFeature( Spot.FRAME ).intValue();
+				if ( otherFrame >= frame )
+					continue;
+
+				if ( window.addVertex( other ) )
+					windowFrames.computeIfAbsent( otherFrame, f -> new ArrayList<>() ).add( other );
+				final DefaultWeightedEdge copy = window.addEdge( other, spot );
+				window.setEdgeWeight( copy, graph.getEdgeWeight( edge ) );
+			}
+		}
+
+		lastFrame = frame;
+		if ( !started )
+		{
+			blockStart = frame;
+			started = true;
+		}
+
+		// Link the blocks whose segments are all known.
+		while ( lastFrame >= blockStart + 2L * blockSize )
+			if ( !linkBlock() )
+				return false;
+
+		return true;
+	}
+
+	@Override
+	public boolean finish()
+	{
+		if ( !frameToFrameTracker.finish() )
+		{
+			errorMessage = frameToFrameTracker.getErrorMessage();
+			return false;
+		}
+		if ( !started )
+			return true;
+
+		while ( blockStart <= lastFrame )
+			if ( !linkBlock() )
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Solves the segment linking LAP of the next block and slides the window
+	 * past it.
+	 */
+	private boolean linkBlock()
+	{
+		final int firstSourceFrame = ( int ) blockStart;
+		final int lastSourceFrame = ( int ) Math.min( Integer.MAX_VALUE, blockStart + blockSize - 1 );
+
+		final JaqamanSegmentCostMatrixCreator costMatrixCreator = new JaqamanSegmentCostMatrixCreator( window, settings );
+		costMatrixCreator.setNumThreads( numThreads );
+		costMatrixCreator.setSourceFrameInterval( firstSourceFrame, lastSourceFrame );
+		costMatrixCreator.setExcludedStarts( linkedTargets );
+		final JaqamanLinker< Spot, Spot > linker = new JaqamanLinker<>( costMatrixCreator );
+		linker.setNumThreads( numThreads );
+		linker.setUseAuction( LAP_SOLVER_AUCTION.equals( settings.get( KEY_LAP_SOLVER ) ) );
+		if ( !linker.checkInput() || !linker.process() )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Linking segments from frames " + firstSourceFrame + " to " + lastSourceFrame + ": " + linker.getErrorMessage();
+			return false;
+		}
+
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = frameToFrameTracker.getResult();
+		final Map< Spot, Spot > assignment = linker.getResult();
+		final Map< Spot, Double > costs = linker.getAssignmentCosts();
+		for ( final Spot source : assignment.keySet() )
+		{
+			final Spot target = assignment.get( source );
+			final DefaultWeightedEdge edge = graph.addEdge( source, target );
+			graph.setEdgeWeight( edge, costs.get( source ) );
+			linkedTargets.add( target );
+		}
+
+		blockStart = lastSourceFrame + 1L;
+
+		/*
+		 * Forget the spots that cannot be part of a link anymore. The
+		 * predecessors of the spots after the block are kept, whatever the
+		 * frame interval of their frame-to-frame link, so that these spots are
+		 * not taken for segment starts.
+		 */
+		final Iterator< Map.Entry< Integer, List< Spot > > > it = windowFrames.headMap( lastSourceFrame, true ).entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Map.Entry< Integer, List< Spot > > entry = it.next();
+			final List< Spot > kept = new ArrayList<>();
+			for ( final Spot spot : entry.getValue() )
+			{
+				if ( hasSuccessorAfter( spot, lastSourceFrame ) )
+					kept.add( spot );
+				else
+					window.removeVertex( spot );
+			}
+			if ( kept.isEmpty() )
+				it.remove();
+			else
+				entry.setValue( kept );
+		}
+		linkedTargets.removeIf( spot -> spot.getFeature( Spot.FRAME ).intValue() <= blockStart );
+		return true;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified spot is linked in the window
+	 * to a spot in a frame after the specified one.
+	 */
+	private boolean hasSuccessorAfter( final Spot spot, final int frame )
+	{
+		for ( final DefaultWeightedEdge edge : window.edgesOf( spot ) )
+			if ( Graphs.getOppositeVertex( window, edge, spot ).getFeature( Spot.FRAME ).intValue() > frame )
+				return true;
+		return false;
+	}
+
+	@Override
+	public int getCompletedFrame()
+	{
+		final int frameToFrameCompleted = frameToFrameTracker.getCompletedFrame();
+		if ( !linkSegments )
+			return frameToFrameCompleted;
+		if ( !started )
+			return Integer.MIN_VALUE;
+
+		// Segment links go from the next block to frames after it.
+		return ( int ) Math.min( blockStart - 1, frameToFrameCompleted );
+	}
+
+	@Override
+	public SimpleWeightedGraph< Spot, DefaultWeightedEdge > getResult()
+	{
+		return frameToFrameTracker.getResult();
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public void setLogger( final Logger logger )
+	{
+		frameToFrameTracker.setLogger( logger );
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+		frameToFrameTracker.setNumThreads();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+		frameToFrameTracker.setNumThreads( numThreads );
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
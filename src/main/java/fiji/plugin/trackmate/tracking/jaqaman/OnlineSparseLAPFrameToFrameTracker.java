@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALTERNATIVE_LINKING_COST_FACTOR;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_GREEDY_INITIALIZATION;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.SquareDistCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.JaqamanLinkingCostMatrixCreator;
+
+/**
+ * The {@link OnlineSpotTracker} version of the
+ * {@link SparseLAPFrameToFrameTracker}: each frame is linked to the previous
+ * one by solving a LAP as soon as it is added. If
+ * {@link fiji.plugin.trackmate.tracking.TrackerKeys#KEY_LINKING_GREEDY_INITIALIZATION}
+ * is set, each LAP is solved with the greedy initialization of the
+ * Jonker-Volgenant solver.
+ */
+public class OnlineSparseLAPFrameToFrameTracker implements OnlineSpotTracker
+{
+
+	private final static String BASE_ERROR_MESSAGE = "[OnlineSparseLAPFrameToFrameTracker] ";
+
+	private final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+
+	private final CostFunction< Spot, Spot > costFunction;
+
+	private final double costThreshold;
+
+	private final double alternativeCostFactor;
+
+	private final boolean greedyInitialization;
+
+	private int numThreads;
+
+	private String errorMessage;
+
+	private List< Spot > previousSpots = Collections.emptyList();
+
+	private Integer previousFrame;
+
+	/**
+	 * Creates a frame-to-frame tracker configured by the linking keys of the
+	 * specified settings map. Other keys are ignored.
+	 *
+	 * @param settings
+	 *            the tracker settings.
+	 */
+	public OnlineSparseLAPFrameToFrameTracker( final Map< String, Object > settings )
+	{
+		@SuppressWarnings( "unchecked" )
+		final Map< String, Double > featurePenalties = ( Map< String, Double > ) settings.get( KEY_LINKING_FEATURE_PENALTIES );
+		this.costFunction = ( null == featurePenalties || featurePenalties.isEmpty() )
+				? new SquareDistCostFunction()
+				: new FeaturePenaltyCostFunction( featurePenalties );
+		final double maxDist = ( Double ) settings.get( KEY_LINKING_MAX_DISTANCE );
+		this.costThreshold = maxDist * maxDist;
+		this.alternativeCostFactor = ( Double ) settings.get( KEY_ALTERNATIVE_LINKING_COST_FACTOR );
+		this.greedyInitialization = Boolean.TRUE.equals( settings.get( KEY_LINKING_GREEDY_INITIALIZATION ) );
+		setNumThreads();
+	}
+
+	@Override
+	public boolean addFrame( final int frame, final Collection< Spot > spots )
+	{
+		if ( null != previousFrame && frame <= previousFrame )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Frame " + frame + " was added after frame " + previousFrame + ".";
+			return false;
+		}
+
+		final List< Spot > targets = new ArrayList<>( spots );
+		if ( !previousSpots.isEmpty() && !targets.isEmpty() )
+		{
+			final JaqamanLinkingCostMatrixCreator< Spot, Spot > creator = new JaqamanLinkingCostMatrixCreator<>( previousSpots, targets, costFunction, costThreshold, alternativeCostFactor, 1d );
+			final JaqamanLinker< Spot, Spot > linker = new JaqamanLinker<>( creator );
+			linker.setNumThreads( numThreads );
+			linker.setGreedyInitialization( greedyInitialization );
+			if ( !linker.checkInput() || !linker.process() )
+			{
+				errorMessage = BASE_ERROR_MESSAGE + "At frame " + previousFrame + " to " + frame + ": " + linker.getErrorMessage();
+				return false;
+			}
+
+			final Map< Spot, Double > costs = linker.getAssignmentCosts();
+			final Map< Spot, Spot > assignment = linker.getResult();
+			for ( final Spot source : assignment.keySet() )
+			{
+				final Spot target = assignment.get( source );
+				graph.addVertex( source );
+				graph.addVertex( target );
+				final DefaultWeightedEdge edge = graph.addEdge( source, target );
+				graph.setEdgeWeight( edge, costs.get( source ) );
+			}
+		}
+
+		previousSpots = targets;
+		previousFrame = frame;
+		return true;
+	}
+
+	@Override
+	public boolean finish()
+	{
+		previousSpots = Collections.emptyList();
+		return true;
+	}
+
+	@Override
+	public int getCompletedFrame()
+	{
+		// The spots of the last frame can be linked to the next one.
+		return ( null == previousFrame ) ? Integer.MIN_VALUE : previousFrame.intValue() - 1;
+	}
+
+	@Override
+	public SimpleWeightedGraph< Spot, DefaultWeightedEdge > getResult()
+	{
+		return graph;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public void setLogger( final Logger logger )
+	{}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
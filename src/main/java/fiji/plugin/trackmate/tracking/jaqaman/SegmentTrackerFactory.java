@@ -25,6 +25,7 @@ import static fiji.plugin.trackmate.io.IOUtils.marshallMap;
 import static fiji.plugin.trackmate.io.IOUtils.readBooleanAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readDoubleAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readIntegerAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.readStringAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.unmarshallMap;
 import static fiji.plugin.trackmate.io.IOUtils.writeAttribute;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_GAP_CLOSING;
@@ -36,10 +37,12 @@ import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_CUTOFF_PERCENTILE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LAP_SOLVER;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_AUCTION;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.XML_ELEMENT_NAME_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.XML_ELEMENT_NAME_GAP_CLOSING;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.XML_ELEMENT_NAME_MERGING;
@@ -120,6 +123,8 @@ public abstract class SegmentTrackerFactory implements SpotTrackerFactory
 		ok = ok & writeAttribute( settings, element, KEY_CUTOFF_PERCENTILE, Double.class, str );
 		ok = ok & writeAttribute( settings, element, KEY_ALTERNATIVE_LINKING_COST_FACTOR, Double.class, str );
 		ok = ok & writeAttribute( settings, element, KEY_BLOCKING_VALUE, Double.class, str );
+		if ( settings.containsKey( KEY_LAP_SOLVER ) )
+			ok = ok & writeAttribute( settings, element, KEY_LAP_SOLVER, String.class, str );
 
 		return ok;
 	}
@@ -202,6 +207,8 @@ public abstract class SegmentTrackerFactory implements SpotTrackerFactory
 		ok = ok & readDoubleAttribute( element, settings, KEY_CUTOFF_PERCENTILE, errorHolder );
 		ok = ok & readDoubleAttribute( element, settings, KEY_ALTERNATIVE_LINKING_COST_FACTOR, errorHolder );
 		ok = ok & readDoubleAttribute( element, settings, KEY_BLOCKING_VALUE, errorHolder );
+		if ( null != element.getAttributeValue( KEY_LAP_SOLVER ) )
+			ok = ok & readStringAttribute( element, settings, KEY_LAP_SOLVER, errorHolder );
 
 		return ok;
 	}
@@ -268,6 +275,9 @@ public abstract class SegmentTrackerFactory implements SpotTrackerFactory
 			str.append( "  Track merging not allowed.\n" );
 		}
 
+		if ( LAP_SOLVER_AUCTION.equals( sm.get( KEY_LAP_SOLVER ) ) )
+			str.append( "  Segments linked with the parallel auction solver.\n" );
+
 		return str.toString();
 	}
 
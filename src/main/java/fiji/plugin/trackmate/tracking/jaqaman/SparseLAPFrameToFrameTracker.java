@@ -24,6 +24,7 @@ package fiji.plugin.trackmate.tracking.jaqaman;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALTERNATIVE_LINKING_COST_FACTOR;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_GREEDY_INITIALIZATION;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.checkFeatureMap;
 import static fiji.plugin.trackmate.util.TMUtils.checkMapKeys;
 import static fiji.plugin.trackmate.util.TMUtils.checkParameter;
@@ -169,6 +170,8 @@ public class SparseLAPFrameToFrameTracker extends MultiThreadedBenchmarkAlgorith
 		final double costThreshold = maxDist * maxDist;
 		final double alternativeCostFactor = ( Double ) settings.get( KEY_ALTERNATIVE_LINKING_COST_FACTOR );
 
+		final boolean greedyInitialization = Boolean.TRUE.equals( settings.get( KEY_LINKING_GREEDY_INITIALIZATION ) );
+
 		// Instantiate graph
 		graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
 
@@ -211,6 +214,9 @@ public class SparseLAPFrameToFrameTracker extends MultiThreadedBenchmarkAlgorith
 
 					final JaqamanLinkingCostMatrixCreator< Spot, Spot > creator = new JaqamanLinkingCostMatrixCreator<>( sources, targets, costFunction, costThreshold, alternativeCostFactor, 1d );
 					final JaqamanLinker< Spot, Spot > linker = new JaqamanLinker<>( creator );
+					// Frame pairs are already processed in parallel.
+					linker.setNumThreads( 1 );
+					linker.setGreedyInitialization( greedyInitialization );
 					if ( !linker.checkInput() || !linker.process() )
 					{
 						errorMessage = "At frame " + lFrame0 + " to " + lFrame1 + ": " + linker.getErrorMessage();
@@ -302,6 +308,8 @@ public class SparseLAPFrameToFrameTracker extends MultiThreadedBenchmarkAlgorith
 		ok = ok & checkFeatureMap( settings, KEY_LINKING_FEATURE_PENALTIES, str );
 		// Others
 		ok = ok & checkParameter( settings, KEY_ALTERNATIVE_LINKING_COST_FACTOR, Double.class, str );
+		if ( settings.containsKey( KEY_LINKING_GREEDY_INITIALIZATION ) )
+			ok = ok & checkParameter( settings, KEY_LINKING_GREEDY_INITIALIZATION, Boolean.class, str );
 
 		// Check keys
 		final List< String > mandatoryKeys = new ArrayList<>();
@@ -309,6 +317,7 @@ public class SparseLAPFrameToFrameTracker extends MultiThreadedBenchmarkAlgorith
 		mandatoryKeys.add( KEY_ALTERNATIVE_LINKING_COST_FACTOR );
 		final List< String > optionalKeys = new ArrayList<>();
 		optionalKeys.add( KEY_LINKING_FEATURE_PENALTIES );
+		optionalKeys.add( KEY_LINKING_GREEDY_INITIALIZATION );
 		ok = ok & checkMapKeys( settings, mandatoryKeys, optionalKeys, str );
 
 		return ok;
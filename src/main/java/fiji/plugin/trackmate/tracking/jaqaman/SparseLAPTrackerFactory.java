@@ -22,6 +22,7 @@
 package fiji.plugin.trackmate.tracking.jaqaman;
 
 import static fiji.plugin.trackmate.io.IOUtils.marshallMap;
+import static fiji.plugin.trackmate.io.IOUtils.readBooleanAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readDoubleAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.unmarshallMap;
 import static fiji.plugin.trackmate.io.IOUtils.writeAttribute;
@@ -29,6 +30,7 @@ import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_LINKING_FEATURE
 import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_LINKING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_GREEDY_INITIALIZATION;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.XML_ELEMENT_NAME_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.jaqaman.LAPUtils.XML_ELEMENT_NAME_LINKING;
 
@@ -45,6 +47,7 @@ import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.gui.components.ConfigurationPanel;
 import fiji.plugin.trackmate.gui.components.tracker.LAPTrackerSettingsPanel;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTrackerFactory;
 
@@ -104,6 +107,12 @@ public class SparseLAPTrackerFactory extends SegmentTrackerFactory
 		return new SparseLAPTracker( spots, settings );
 	}
 
+	@Override
+	public OnlineSpotTracker createOnline( final Map< String, Object > settings )
+	{
+		return new OnlineSegmentTracker( new OnlineSparseLAPFrameToFrameTracker( settings ), settings );
+	}
+
 	@Override
 	public SparseLAPTrackerFactory copy()
 	{
@@ -119,6 +128,8 @@ public class SparseLAPTrackerFactory extends SegmentTrackerFactory
 		// Linking
 		final Element linkingElement = new Element( XML_ELEMENT_NAME_LINKING );
 		ok = ok & writeAttribute( settings, linkingElement, KEY_LINKING_MAX_DISTANCE, Double.class, str );
+		if ( settings.containsKey( KEY_LINKING_GREEDY_INITIALIZATION ) )
+			ok = ok & writeAttribute( settings, linkingElement, KEY_LINKING_GREEDY_INITIALIZATION, Boolean.class, str );
 		// feature penalties
 		@SuppressWarnings( "unchecked" )
 		final Map< String, Double > lfpm = ( Map< String, Double > ) settings.get( KEY_LINKING_FEATURE_PENALTIES );
@@ -147,6 +158,8 @@ public class SparseLAPTrackerFactory extends SegmentTrackerFactory
 		{
 
 			ok = ok & readDoubleAttribute( linkingElement, settings, KEY_LINKING_MAX_DISTANCE, errorHolder );
+			if ( null != linkingElement.getAttributeValue( KEY_LINKING_GREEDY_INITIALIZATION ) )
+				ok = ok & readBooleanAttribute( linkingElement, settings, KEY_LINKING_GREEDY_INITIALIZATION, errorHolder );
 			// feature penalties
 			final Map< String, Double > lfpMap = new HashMap<>();
 			final Element lfpElement = linkingElement.getChild( XML_ELEMENT_NAME_FEATURE_PENALTIES );
@@ -211,6 +224,8 @@ public class SparseLAPTrackerFactory extends SegmentTrackerFactory
 		str.append( "  Linking conditions:\n" );
 		str.append( String.format( "    - max distance: %.1f\n", ( Double ) sm.get( KEY_LINKING_MAX_DISTANCE ) ) );
 		str.append( LAPUtils.echoFeaturePenalties( ( Map< String, Double > ) sm.get( KEY_LINKING_FEATURE_PENALTIES ) ) );
+		if ( Boolean.TRUE.equals( sm.get( KEY_LINKING_GREEDY_INITIALIZATION ) ) )
+			str.append( "    - with greedy initialization.\n" );
 
 		str.append( super.toString( sm ) );
 		return str.toString();
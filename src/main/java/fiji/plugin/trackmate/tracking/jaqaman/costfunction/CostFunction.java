@@ -21,6 +21,8 @@
  */
 package fiji.plugin.trackmate.tracking.jaqaman.costfunction;
 
+import java.util.List;
+
 /**
  * Interface representing a function that can calculate the cost to link a
  * source object to a target object.
@@ -46,4 +48,45 @@ public interface CostFunction< K, J >
 	 */
 	public double linkingCost( K source, J target );
 
+	/**
+	 * Returns <code>true</code> if, for the specified sources and targets,
+	 * the cost returned by this function is never lower than the square
+	 * distance between the source and the target. Cost matrix creators can
+	 * then skip the pairs that are too far apart to have a cost below their
+	 * threshold, without calling this function. The sources and targets must
+	 * then be {@link net.imglib2.RealLocalizable}.
+	 * <p>
+	 * The default implementation returns <code>false</code>.
+	 *
+	 * @param sources
+	 *            the sources that will be linked.
+	 * @param targets
+	 *            the targets that will be linked.
+	 * @return whether the cost is bounded by the square distance.
+	 */
+	public default boolean isBoundedBySquareDistance( final Iterable< ? extends K > sources, final Iterable< ? extends J > targets )
+	{
+		return false;
+	}
+
+	/**
+	 * Returns this cost function bound to the specified sources and targets,
+	 * for cost matrix creators that evaluate many pairs of them.
+	 * Implementations can resolve what they need from the objects once per
+	 * object, instead of once per pair. The costs must be the same as with
+	 * {@link #linkingCost(Object, Object)}.
+	 * <p>
+	 * The default implementation calls {@link #linkingCost(Object, Object)}.
+	 *
+	 * @param sources
+	 *            the sources, that will be referred to by their index.
+	 * @param targets
+	 *            the targets, that will be referred to by their index.
+	 * @return a new cost function over indices in these lists.
+	 */
+	public default IndexedCostFunction compile( final List< ? extends K > sources, final List< ? extends J > targets )
+	{
+		return ( i, j ) -> linkingCost( sources.get( i ), targets.get( j ) );
+	}
+
 }
@@ -21,6 +21,7 @@
  */
 package fiji.plugin.trackmate.tracking.jaqaman.costfunction;
 
+import java.util.List;
 import java.util.Map;
 
 import fiji.plugin.trackmate.Spot;
@@ -82,4 +83,132 @@ public class FeaturePenaltyCostFunction implements CostFunction< Spot, Spot >
 
 		return d2 * penalty * penalty;
 	}
+
+	/**
+	 * Resolves the positions and the penalized feature values of the sources
+	 * and targets into primitive arrays, so that costs are computed without
+	 * any map access. Features missing from a spot are skipped, like NaN
+	 * values.
+	 */
+	@Override
+	public IndexedCostFunction compile( final List< ? extends Spot > sources, final List< ? extends Spot > targets )
+	{
+		final int nFeatures = featurePenalties.size();
+		final String[] features = new String[ nFeatures ];
+		final double[] factors = new double[ nFeatures ];
+		int f = 0;
+		for ( final Map.Entry< String, Double > entry : featurePenalties.entrySet() )
+		{
+			features[ f ] = entry.getKey();
+			factors[ f ] = entry.getValue().doubleValue() * 1.5;
+			f++;
+		}
+		return new Compiled( positions( sources ), featureValues( sources, features ), positions( targets ), featureValues( targets, features ), factors );
+	}
+
+	private static double[] positions( final List< ? extends Spot > spots )
+	{
+		final double[] pos = new double[ 3 * spots.size() ];
+		for ( int i = 0; i < spots.size(); i++ )
+		{
+			final Spot spot = spots.get( i );
+			for ( int d = 0; d < 3; d++ )
+				pos[ 3 * i + d ] = spot.getDoublePosition( d );
+		}
+		return pos;
+	}
+
+	private static double[] featureValues( final List< ? extends Spot > spots, final String[] features )
+	{
+		final double[] values = new double[ features.length * spots.size() ];
+		for ( int i = 0; i < spots.size(); i++ )
+		{
+			final Spot spot = spots.get( i );
+			for ( int f = 0; f < features.length; f++ )
+			{
+				final Double val = spot.getFeature( features[ f ] );
+				values[ i * features.length + f ] = ( null == val ) ? Double.NaN : val.doubleValue();
+			}
+		}
+		return values;
+	}
+
+	private static final class Compiled implements IndexedCostFunction
+	{
+
+		private final double[] sourcePositions;
+
+		private final double[] sourceFeatures;
+
+		private final double[] targetPositions;
+
+		private final double[] targetFeatures;
+
+		private final double[] factors;
+
+		private Compiled( final double[] sourcePositions, final double[] sourceFeatures, final double[] targetPositions, final double[] targetFeatures, final double[] factors )
+		{
+			this.sourcePositions = sourcePositions;
+			this.sourceFeatures = sourceFeatures;
+			this.targetPositions = targetPositions;
+			this.targetFeatures = targetFeatures;
+			this.factors = factors;
+		}
+
+		@Override
+		public double linkingCost( final int source, final int target )
+		{
+			double d1 = 0.;
+			for ( int d = 0; d < 3; d++ )
+			{
+				final double dx = sourcePositions[ 3 * source + d ] - targetPositions[ 3 * target + d ];
+				d1 += dx * dx;
+			}
+			final double d2 = ( d1 == 0 ) ? Double.MIN_NORMAL : d1;
+
+			// Same as Spot.normalizeDiffTo().
+			final int nFeatures = factors.length;
+			double penalty = 1;
+			for ( int f = 0; f < nFeatures; f++ )
+			{
+				final double a = sourceFeatures[ source * nFeatures + f ];
+				final double b = targetFeatures[ target * nFeatures + f ];
+				final double ndiff = ( a == -b ) ? 0d : Math.abs( a - b ) / ( ( a + b ) / 2 );
+				if ( Double.isNaN( ndiff ) )
+					continue;
+				penalty += factors[ f ] * ndiff;
+			}
+
+			return d2 * penalty * penalty;
+		}
+	}
+
+	/**
+	 * The penalty is at least 1 if all the factors are positive, and if all
+	 * the feature values are positive, so that their normalized differences
+	 * are positive too. NaN values are skipped in the cost calculation.
+	 */
+	@Override
+	public boolean isBoundedBySquareDistance( final Iterable< ? extends Spot > sources, final Iterable< ? extends Spot > targets )
+	{
+		for ( final Double factor : featurePenalties.values() )
+			if ( null == factor || !( factor.doubleValue() >= 0. ) )
+				return false;
+
+		return hasPositiveFeatures( sources ) && hasPositiveFeatures( targets );
+	}
+
+	private boolean hasPositiveFeatures( final Iterable< ? extends Spot > spots )
+	{
+		for ( final Spot spot : spots )
+		{
+			for ( final String feature : featurePenalties.keySet() )
+			{
+				final Double val = spot.getFeature( feature );
+				if ( null == val || val.doubleValue() < 0. )
+					return false;
+			}
+		}
+		return true;
+	}
 }
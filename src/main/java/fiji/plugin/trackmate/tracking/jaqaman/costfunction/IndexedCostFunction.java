@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costfunction;
+
+/**
+ * Interface representing a cost function bound to a list of sources and a
+ * list of targets, that calculates the cost to link a source to a target from
+ * their indices in these lists.
+ *
+ * @see CostFunction#compile(java.util.List, java.util.List)
+ */
+@FunctionalInterface
+public interface IndexedCostFunction
+{
+
+	/**
+	 * Returns the cost to link two objects.
+	 *
+	 * @param source
+	 *            the index of the source object in the source list.
+	 * @param target
+	 *            the index of the target object in the target list.
+	 * @return the cost as a double.
+	 */
+	public double linkingCost( int source, int target );
+
+}
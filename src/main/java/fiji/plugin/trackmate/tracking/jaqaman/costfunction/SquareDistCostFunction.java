@@ -40,4 +40,10 @@ public class SquareDistCostFunction implements CostFunction< Spot, Spot >
 		return ( d2 == 0 ) ? Double.MIN_NORMAL : d2;
 	}
 
+	@Override
+	public boolean isBoundedBySquareDistance( final Iterable< ? extends Spot > sources, final Iterable< ? extends Spot > targets )
+	{
+		return true;
+	}
+
 }
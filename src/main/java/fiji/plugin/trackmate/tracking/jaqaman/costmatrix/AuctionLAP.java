@@ -0,0 +1,536 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fiji.plugin.trackmate.util.Threads;
+import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.algorithm.OutputAlgorithm;
+
+/**
+ * Implements the auction algorithm for linear assignment problems, on sparse
+ * cost matrices.
+ * <p>
+ * This is the forward-reverse auction of Bertsekas with epsilon-scaling. In
+ * forward rounds, unassigned rows bid for their best column; in reverse
+ * rounds, unassigned columns bid for their best row. All the bids of a round
+ * are computed independently from the current prices, so that they can be
+ * computed in parallel (Jacobi auction). Conflicting bids for the same column
+ * (or row) are then resolved by keeping the highest one.
+ * <p>
+ * The assignment found is optimal when all the costs are integers. Otherwise
+ * its total cost is within <code>n &epsilon;</code> of the optimum, where
+ * <code>&epsilon;</code> is about 1e-9 times the largest cost divided by
+ * <code>n</code>. Unlike {@link LAPJV}, the matrix must be square, but costs
+ * need not be positive. It must admit a complete assignment, which is always
+ * the case for the matrices built by
+ * {@link fiji.plugin.trackmate.tracking.jaqaman.JaqamanLinker}.
+ *
+ * @see <a href="https://doi.org/10.1007/BF02186476">D.P. Bertsekas and D.A.
+ *      Casta&ntilde;&oacute;n "Parallel synchronous and asynchronous
+ *      implementations of the auction algorithm"</a>
+ */
+public class AuctionLAP implements OutputAlgorithm< int[] >, Benchmark, MultiThreaded
+{
+
+	private static final String BASE_ERROR_MESSAGE = "[AuctionLAP] ";
+
+	/**
+	 * By how much epsilon is divided from one scaling phase to the next.
+	 */
+	private static final double EPSILON_SCALING = 5.;
+
+	/**
+	 * Precision of the assignment cost for non-integer costs, relative to the
+	 * largest cost.
+	 */
+	private static final double RELATIVE_PRECISION = 1e-9;
+
+	/**
+	 * Below this number of bidders, bids are computed in the calling thread.
+	 */
+	private static final int MIN_PARALLEL_BIDDERS = 512;
+
+	private final SparseCostMatrix cm;
+
+	private int[] output;
+
+	private String errorMessage;
+
+	private long processingTime;
+
+	private int numThreads;
+
+	/**
+	 * Instantiates a new auction algorithm for the specified sparse cost
+	 * matrix.
+	 *
+	 * @param cm
+	 *            the cost matrix of the linear assignment problem to solve.
+	 *            Must be square.
+	 */
+	public AuctionLAP( final SparseCostMatrix cm )
+	{
+		this.cm = cm;
+		setNumThreads();
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long start = System.currentTimeMillis();
+		final int n = cm.nRows;
+
+		/*
+		 * We maximize benefits, that are opposite to costs. Bids by columns
+		 * are computed on the transposed matrix.
+		 */
+		final double[] benefits = new double[ cm.cardinality ];
+		double maxAbs = 0.;
+		double minCost = Double.POSITIVE_INFINITY;
+		double maxCost = Double.NEGATIVE_INFINITY;
+		boolean integers = true;
+		for ( int k = 0; k < cm.cardinality; k++ )
+		{
+			final double c = cm.cc[ k ];
+			benefits[ k ] = -c;
+			maxAbs = Math.max( maxAbs, Math.abs( c ) );
+			minCost = Math.min( minCost, c );
+			maxCost = Math.max( maxCost, c );
+			integers = integers && c == Math.rint( c );
+		}
+		final SparseCostMatrix t = cm.transpose();
+		final double[] tBenefits = new double[ t.cardinality ];
+		for ( int k = 0; k < t.cardinality; k++ )
+			tBenefits[ k ] = -t.cc[ k ];
+		final double range = ( n == 0 ) ? 0. : maxCost - minCost;
+
+		/*
+		 * Final epsilon. Below 1 / n, integer costs give the optimal
+		 * assignment. It must stay well above the rounding error on prices.
+		 */
+		final double epsFloor = 16. * Math.ulp( ( n + 1 ) * ( maxAbs + range + 1. ) );
+		final double epsTarget = ( integers )
+				? 1. / ( n + 1 )
+				: RELATIVE_PRECISION * Math.max( maxAbs, Double.MIN_NORMAL ) / Math.max( n, 1 );
+		final double epsFinal = Math.max( epsTarget, epsFloor );
+
+		final State rows = new State( n, cm, benefits );
+		final State cols = new State( n, t, tBenefits );
+		rows.other = cols;
+		cols.other = rows;
+
+		ExecutorService executor = null;
+		if ( numThreads > 1 && n >= MIN_PARALLEL_BIDDERS )
+			executor = Threads.newFixedThreadPool( numThreads );
+		try
+		{
+			double eps = Math.max( range / 2., epsFinal );
+			while ( true )
+			{
+				final String error = scalingPhase( rows, cols, eps, range, executor );
+				if ( null != error )
+				{
+					errorMessage = BASE_ERROR_MESSAGE + error;
+					return false;
+				}
+				if ( eps <= epsFinal )
+					break;
+				eps = Math.max( eps / EPSILON_SCALING, epsFinal );
+			}
+		}
+		finally
+		{
+			if ( null != executor )
+				executor.shutdown();
+		}
+
+		output = rows.match;
+
+		final long end = System.currentTimeMillis();
+		processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Runs the auction from scratch for the specified epsilon, keeping the
+	 * column prices of the previous phase.
+	 *
+	 * @return <code>null</code> if a complete assignment was found, an error
+	 *         message otherwise.
+	 */
+	private String scalingPhase( final State rows, final State cols, final double eps, final double range, final ExecutorService executor )
+	{
+		final int n = rows.match.length;
+		Arrays.fill( rows.match, -1 );
+		Arrays.fill( cols.match, -1 );
+
+		/*
+		 * The profit of each row is the best it can get at the current prices,
+		 * so that epsilon-complementary slackness holds on all arcs.
+		 */
+		double maxDual = 0.;
+		for ( int i = 0; i < n; i++ )
+		{
+			double best = Double.NEGATIVE_INFINITY;
+			for ( int k = rows.m.start[ i ]; k < rows.m.start[ i ] + rows.m.number[ i ]; k++ )
+				best = Math.max( best, rows.benefits[ k ] - cols.dual[ rows.m.kk[ k ] ] );
+			rows.dual[ i ] = best;
+			maxDual = Math.max( maxDual, Math.abs( best ) );
+		}
+		for ( int j = 0; j < n; j++ )
+			maxDual = Math.max( maxDual, Math.abs( cols.dual[ j ] ) );
+
+		/*
+		 * Without a complete assignment, the auction never terminates but
+		 * prices keep on increasing. Prices cannot move more than this in a
+		 * phase otherwise.
+		 */
+		rows.limit = maxDual + 4. * ( n + 1 ) * ( range + eps );
+		cols.limit = rows.limit;
+
+		rows.nBidders = n;
+		cols.nBidders = n;
+		for ( int i = 0; i < n; i++ )
+		{
+			rows.bidders[ i ] = i;
+			cols.bidders[ i ] = i;
+		}
+
+		// Switch direction every time the number of assignments increases.
+		int nAssigned = 0;
+		State forward = rows;
+		while ( nAssigned < n )
+		{
+			final int newlyAssigned = forward.round( eps, range, executor, numThreads );
+			if ( newlyAssigned < 0 )
+				return "The cost matrix does not admit a complete assignment.";
+			if ( newlyAssigned > 0 )
+			{
+				nAssigned += newlyAssigned;
+				forward = forward.other;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The state of one side of the assignment, rows or columns, and its
+	 * bidding logic. Rows bid for columns in forward rounds; columns bid for
+	 * rows in reverse rounds.
+	 */
+	private static final class State
+	{
+
+		/**
+		 * The cost matrix seen from this side.
+		 */
+		private final SparseCostMatrix m;
+
+		private final double[] benefits;
+
+		/**
+		 * The dual variables of this side: profits for rows, prices for
+		 * columns.
+		 */
+		private final double[] dual;
+
+		/**
+		 * The index of the element of the other side each element is assigned
+		 * to, -1 if unassigned.
+		 */
+		private final int[] match;
+
+		/**
+		 * Candidate bidders, some of which might have been assigned by the
+		 * other side since they were added.
+		 */
+		private int[] bidders;
+
+		private int nBidders;
+
+		/**
+		 * The bidders of the next round, swapped with the current ones.
+		 */
+		private int[] next;
+
+		private final int[] bidTarget;
+
+		private final double[] bidValue;
+
+		private final double[] bidOwnDual;
+
+		/**
+		 * For each element of the other side, the index of its best bid in
+		 * the current round, -1 if none.
+		 */
+		private final int[] bestBid;
+
+		private final int[] touched;
+
+		private double limit;
+
+		private State other;
+
+		private State( final int n, final SparseCostMatrix m, final double[] benefits )
+		{
+			this.m = m;
+			this.benefits = benefits;
+			this.dual = new double[ n ];
+			this.match = new int[ n ];
+			this.bidders = new int[ n ];
+			this.next = new int[ n ];
+			this.bidTarget = new int[ n ];
+			this.bidValue = new double[ n ];
+			this.bidOwnDual = new double[ n ];
+			this.bestBid = new int[ n ];
+			this.touched = new int[ n ];
+			Arrays.fill( bestBid, -1 );
+		}
+
+		/**
+		 * Runs one round of bids by the unassigned elements of this side.
+		 *
+		 * @return the number of elements of the other side that were
+		 *         unassigned and got assigned during the round, or -1 if the
+		 *         dual variables diverge.
+		 */
+		private int round( final double eps, final double range, final ExecutorService executor, final int numThreads )
+		{
+			// Drop the bidders that were assigned by the other side.
+			int nb = 0;
+			for ( int b = 0; b < nBidders; b++ )
+			{
+				final int i = bidders[ b ];
+				if ( match[ i ] < 0 )
+					bidders[ nb++ ] = i;
+			}
+			nBidders = nb;
+
+			if ( null == executor || nb < MIN_PARALLEL_BIDDERS )
+			{
+				bid( 0, nb, eps, range );
+			}
+			else
+			{
+				final int nChunks = Math.min( numThreads, nb / ( MIN_PARALLEL_BIDDERS / 2 ) );
+				final List< Callable< Void > > tasks = new ArrayList<>( nChunks );
+				for ( int c = 0; c < nChunks; c++ )
+				{
+					final int from = ( int ) ( ( long ) nb * c / nChunks );
+					final int to = ( int ) ( ( long ) nb * ( c + 1 ) / nChunks );
+					tasks.add( () -> {
+						bid( from, to, eps, range );
+						return null;
+					} );
+				}
+				try
+				{
+					for ( final Future< Void > future : executor.invokeAll( tasks ) )
+						future.get();
+				}
+				catch ( final InterruptedException | ExecutionException e )
+				{
+					e.printStackTrace();
+					bid( 0, nb, eps, range );
+				}
+			}
+
+			/*
+			 * Resolve conflicts: each target goes to its highest bid.
+			 */
+			int nTouched = 0;
+			for ( int b = 0; b < nb; b++ )
+			{
+				final int target = bidTarget[ b ];
+				final int best = bestBid[ target ];
+				if ( best < 0 )
+				{
+					touched[ nTouched++ ] = target;
+					bestBid[ target ] = b;
+				}
+				else if ( bidValue[ b ] > bidValue[ best ] )
+				{
+					bestBid[ target ] = b;
+				}
+			}
+
+			/*
+			 * Assign the winners. Losers and evicted elements bid again in the
+			 * next round of this side.
+			 */
+			int nextBidders = 0;
+			int newlyAssigned = 0;
+			for ( int b = 0; b < nb; b++ )
+			{
+				final int target = bidTarget[ b ];
+				if ( bestBid[ target ] != b )
+				{
+					next[ nextBidders++ ] = bidders[ b ];
+					continue;
+				}
+				final int bidder = bidders[ b ];
+				final double value = bidValue[ b ];
+				if ( Math.abs( value ) > limit || Math.abs( bidOwnDual[ b ] ) > limit )
+					return -1;
+
+				other.dual[ target ] = value;
+				dual[ bidder ] = bidOwnDual[ b ];
+				final int previous = other.match[ target ];
+				if ( previous >= 0 )
+					match[ previous ] = -1;
+				else
+					newlyAssigned++;
+				other.match[ target ] = bidder;
+				match[ bidder ] = target;
+				if ( previous >= 0 )
+					next[ nextBidders++ ] = previous;
+			}
+			for ( int t = 0; t < nTouched; t++ )
+				bestBid[ touched[ t ] ] = -1;
+
+			final int[] tmp = bidders;
+			bidders = next;
+			next = tmp;
+			nBidders = nextBidders;
+			return newlyAssigned;
+		}
+
+		/**
+		 * Computes the bids of the bidders in the specified range. Each
+		 * bidder bids for its best target, raising its dual variable by the
+		 * margin over the second best plus epsilon.
+		 */
+		private void bid( final int from, final int to, final double eps, final double range )
+		{
+			final double[] otherDual = other.dual;
+			for ( int b = from; b < to; b++ )
+			{
+				final int i = bidders[ b ];
+				final int kStart = m.start[ i ];
+				final int kEnd = kStart + m.number[ i ];
+				double v1 = Double.NEGATIVE_INFINITY;
+				double v2 = Double.NEGATIVE_INFINITY;
+				int k1 = -1;
+				for ( int k = kStart; k < kEnd; k++ )
+				{
+					final double v = benefits[ k ] - otherDual[ m.kk[ k ] ];
+					if ( v > v1 )
+					{
+						v2 = v1;
+						v1 = v;
+						k1 = k;
+					}
+					else if ( v > v2 )
+					{
+						v2 = v;
+					}
+				}
+				// A single candidate: any finite second best will do.
+				if ( v2 == Double.NEGATIVE_INFINITY )
+					v2 = v1 - range - eps;
+
+				bidTarget[ b ] = m.kk[ k1 ];
+				bidValue[ b ] = benefits[ k1 ] - v2 + eps;
+				bidOwnDual[ b ] = v2 - eps;
+			}
+		}
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( cm.nRows != cm.nCols )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "This solver requires a square cost matrix. Found " + cm.nRows + " rows and " + cm.nCols + " columns.";
+			return false;
+		}
+		for ( int i = 0; i < cm.nRows; i++ )
+		{
+			if ( cm.number[ i ] == 0 )
+			{
+				errorMessage = BASE_ERROR_MESSAGE + "Row " + i + " has no cost, the cost matrix does not admit a complete assignment.";
+				return false;
+			}
+		}
+		for ( int k = 0; k < cm.cardinality; k++ )
+		{
+			if ( Double.isNaN( cm.cc[ k ] ) || Double.isInfinite( cm.cc[ k ] ) )
+			{
+				errorMessage = BASE_ERROR_MESSAGE + "This solver only accept finite costs. Found " + cm.cc[ k ] + ".";
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return processingTime;
+	}
+
+	/**
+	 * Returns the results as row assignments. The row <code>i</code> is
+	 * associated to the column <code>x[i]</code> in the cost matrix.
+	 *
+	 * @return the row assignments as an <code>int[]</code> array. This array is
+	 *         re-instantiated upon calling {@link #process()}.
+	 */
+	@Override
+	public int[] getResult()
+	{
+		return output;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
@@ -23,7 +23,7 @@ package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 
 import net.imglib2.util.Util;
@@ -118,70 +118,97 @@ public class DefaultCostMatrixCreator< K extends Comparable< K >, J extends Comp
 	@Override
 	public boolean process()
 	{
-		uniqueRows = new ArrayList<>( new HashSet<>( rows ) );
-		Collections.sort( uniqueRows );
-		uniqueCols = new ArrayList<>( new HashSet<>( cols ) );
-		Collections.sort( uniqueCols );
+		final long start = System.currentTimeMillis();
 
-		final List< Assignment > assignments = new ArrayList<>( costs.length );
-		for ( int i = 0; i < costs.length; i++ )
-		{
-			final K rowObj = rows.get( i );
-			final J colObj = cols.get( i );
-			final int r = Collections.binarySearch( uniqueRows, rowObj );
-			final int c = Collections.binarySearch( uniqueCols, colObj );
-			assignments.add( new Assignment( r, c, costs[ i ] ) );
-		}
-		Collections.sort( assignments );
-
-		// Test we do not have duplicates.
-		Assignment previousAssgn = assignments.get( 0 );
-		for ( int i = 1; i < assignments.size(); i++ )
-		{
-			final Assignment assgn = assignments.get( i );
-			if ( assgn.equals( previousAssgn ) )
-			{
-				errorMessage = BASE_ERROR_MESSAGE + "Found duplicate assignment at index: " + assgn + ".";
-				return false;
-			}
-			previousAssgn = assgn;
-		}
+		/*
+		 * Map sources and targets to dense indices, in the order given by
+		 * their natural ordering.
+		 */
 
+		final HashMap< K, Integer > rowIndices = new HashMap<>();
+		uniqueRows = uniqueSorted( rows, rowIndices );
+		final HashMap< J, Integer > colIndices = new HashMap<>();
+		uniqueCols = uniqueSorted( cols, colIndices );
 		final int nRows = uniqueRows.size();
 		final int nCols = uniqueCols.size();
-		final int[] kk = new int[ costs.length ];
-		final int[] number = new int[ nRows ];
-		final double[] cc = new double[ costs.length ];
-
-		Assignment a = assignments.get( 0 );
-		kk[ 0 ] = a.c;
-		cc[ 0 ] = a.cost;
-		int currentRow = a.r;
-		int nOfEl = 0;
-		for ( int i = 1; i < assignments.size(); i++ )
+
+		final int n = costs.length;
+		final int[] r = new int[ n ];
+		final int[] c = new int[ n ];
+		for ( int i = 0; i < n; i++ )
 		{
-			a = assignments.get( i );
+			r[ i ] = rowIndices.get( rows.get( i ) ).intValue();
+			c[ i ] = colIndices.get( cols.get( i ) ).intValue();
+		}
 
-			kk[ i ] = a.c;
-			cc[ i ] = a.cost;
-			nOfEl++;
+		/*
+		 * Two-pass counting sort of the entries, first by column then by
+		 * row. The second pass is stable, so entries end up sorted by row
+		 * then column, which is the CSR layout.
+		 */
+
+		final int[] byCol = new int[ n ];
+		final int[] colStart = new int[ nCols + 1 ];
+		for ( int i = 0; i < n; i++ )
+			colStart[ c[ i ] + 1 ]++;
+		for ( int j = 0; j < nCols; j++ )
+			colStart[ j + 1 ] += colStart[ j ];
+		for ( int i = 0; i < n; i++ )
+			byCol[ colStart[ c[ i ] ]++ ] = i;
 
-			if ( a.r != currentRow )
+		final int[] number = new int[ nRows ];
+		for ( int i = 0; i < n; i++ )
+			number[ r[ i ] ]++;
+		final int[] rowStart = new int[ nRows ];
+		for ( int i = 1; i < nRows; i++ )
+			rowStart[ i ] = rowStart[ i - 1 ] + number[ i - 1 ];
+		final int[] cursor = rowStart.clone();
+
+		final int[] kk = new int[ n ];
+		final double[] cc = new double[ n ];
+		for ( final int i : byCol )
+		{
+			final int row = r[ i ];
+			final int k = cursor[ row ]++;
+			// Columns arrive in increasing order within a row.
+			if ( k > rowStart[ row ] && kk[ k - 1 ] == c[ i ] )
 			{
-				number[ currentRow ] = nOfEl;
-				nOfEl = 0;
-				currentRow = a.r;
+				errorMessage = BASE_ERROR_MESSAGE + "Found duplicate assignment for source " + uniqueRows.get( row ) + " and target " + uniqueCols.get( c[ i ] ) + ".";
+				return false;
 			}
+			kk[ k ] = c[ i ];
+			cc[ k ] = costs[ i ];
 		}
-		number[ currentRow ] = nOfEl + 1;
 
 		scm = new SparseCostMatrix( cc, kk, number, nCols );
 
 		alternativeCost = computeAlternativeCosts();
 
+		final long end = System.currentTimeMillis();
+		processingTime = end - start;
 		return true;
 	}
 
+	/**
+	 * Returns the distinct elements of the specified list, sorted by their
+	 * natural order, and stores the index of each of them in this sorted list
+	 * in the specified map. Elements are compared with their
+	 * {@link Object#equals(Object)} method, and the first of several equal
+	 * elements is the one kept.
+	 */
+	private static < T extends Comparable< T > > ArrayList< T > uniqueSorted( final List< T > list, final HashMap< T, Integer > indices )
+	{
+		final ArrayList< T > unique = new ArrayList<>();
+		for ( final T t : list )
+			if ( indices.putIfAbsent( t, Integer.valueOf( unique.size() ) ) == null )
+				unique.add( t );
+
+		Collections.sort( unique );
+		for ( int i = 0; i < unique.size(); i++ )
+			indices.put( unique.get( i ), Integer.valueOf( i ) );
+		return unique;
+	}
+
 	protected double computeAlternativeCosts()
 	{
 		if ( percentile == 1 )
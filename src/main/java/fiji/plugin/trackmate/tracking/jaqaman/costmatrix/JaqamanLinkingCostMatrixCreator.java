@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.List;
 
 import fiji.plugin.trackmate.tracking.jaqaman.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.IndexedCostFunction;
 
 /**
  * A {@link CostMatrixCreator} that can generate a cost matrix from a list of
@@ -97,21 +98,30 @@ public class JaqamanLinkingCostMatrixCreator< K extends Comparable< K >, J exten
 	{
 		final long start = System.currentTimeMillis();
 
+		final List< K > sourceObjects = new ArrayList<>();
+		sources.forEach( sourceObjects::add );
+		final List< J > targetObjects = new ArrayList<>();
+		targets.forEach( targetObjects::add );
+		final IndexedCostFunction compiledCostFunction = costFunction.compile( sourceObjects, targetObjects );
+
 		final List< K > accSources = new ArrayList<>();
 		final List< J > accTargets = new ArrayList<>();
 		final ResizableDoubleArray costs = new ResizableDoubleArray();
 
-		for ( final K source : sources )
+		if ( !collectCandidatesSpatially( sourceObjects, targetObjects, compiledCostFunction, accSources, accTargets, costs ) )
 		{
-			for ( final J target : targets )
+			for ( int i = 0; i < sourceObjects.size(); i++ )
 			{
-
-				final double cost = costFunction.linkingCost( source, target );
-				if ( cost < costThreshold )
+				for ( int j = 0; j < targetObjects.size(); j++ )
 				{
-					accSources.add( source );
-					accTargets.add( target );
-					costs.add( cost );
+
+					final double cost = compiledCostFunction.linkingCost( i, j );
+					if ( cost < costThreshold )
+					{
+						accSources.add( sourceObjects.get( i ) );
+						accTargets.add( targetObjects.get( j ) );
+						costs.add( cost );
+					}
 				}
 			}
 		}
@@ -153,6 +163,53 @@ public class JaqamanLinkingCostMatrixCreator< K extends Comparable< K >, J exten
 		return true;
 	}
 
+	/**
+	 * Collects the acceptable links using a spatial index over the targets,
+	 * if the cost function guarantees that its cost is never lower than the
+	 * square distance. Only the targets closer than the square root of the
+	 * cost threshold are then passed to the cost function. Links are
+	 * collected in the same order as with an exhaustive search.
+	 *
+	 * @return <code>false</code> if the search could not be done this way, in
+	 *         which case nothing was collected.
+	 */
+	private boolean collectCandidatesSpatially( final List< K > sourceObjects, final List< J > targetObjects, final IndexedCostFunction compiledCostFunction, final List< K > accSources, final List< J > accTargets, final ResizableDoubleArray costs )
+	{
+		if ( !( costThreshold > 0. ) || Double.isInfinite( costThreshold ) || !costFunction.isBoundedBySquareDistance( sourceObjects, targetObjects ) )
+			return false;
+
+		final int nd = SpatialGrid.numDimensions( targetObjects );
+		if ( nd == 0 )
+			return false;
+		final double[] sourcePositions = SpatialGrid.positions( sourceObjects, nd );
+		final double[] targetPositions = SpatialGrid.positions( targetObjects, nd );
+		if ( null == sourcePositions || null == targetPositions )
+			return false;
+
+		final SpatialGrid grid = new SpatialGrid( targetPositions, nd, Math.sqrt( costThreshold ) );
+		final SpatialGrid.Hits hits = new SpatialGrid.Hits();
+		for ( int i = 0; i < sourceObjects.size(); i++ )
+		{
+			final K source = sourceObjects.get( i );
+			hits.clear();
+			grid.search( sourcePositions, i * nd, costThreshold, hits );
+			// Same order as the exhaustive search.
+			hits.sort();
+			for ( int k = 0; k < hits.size; k++ )
+			{
+				final int j = hits.indices[ k ];
+				final double cost = compiledCostFunction.linkingCost( i, j );
+				if ( cost < costThreshold )
+				{
+					accSources.add( source );
+					accTargets.add( targetObjects.get( j ) );
+					costs.add( cost );
+				}
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public String getErrorMessage()
 	{
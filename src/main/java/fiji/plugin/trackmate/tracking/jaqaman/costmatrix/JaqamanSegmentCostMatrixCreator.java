@@ -40,16 +40,24 @@ import static fiji.plugin.trackmate.util.TMUtils.checkParameter;
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.tracking.jaqaman.costfunction.CostFunction;
 import fiji.plugin.trackmate.tracking.jaqaman.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.IndexedCostFunction;
 import fiji.plugin.trackmate.tracking.jaqaman.costfunction.SquareDistCostFunction;
 import fiji.plugin.trackmate.util.Threads;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
+import gnu.trove.list.array.TIntArrayList;
 import net.imglib2.algorithm.MultiThreaded;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultWeightedEdge;
@@ -95,6 +103,12 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 
 	private int numThreads;
 
+	private int minSourceFrame = Integer.MIN_VALUE;
+
+	private int maxSourceFrame = Integer.MAX_VALUE;
+
+	private Collection< Spot > excludedStarts = Collections.emptySet();
+
 	/**
 	 * Instantiates a cost matrix creator for the top-left quadrant of the
 	 * segment linking cost matrix.
@@ -107,6 +121,36 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		setNumThreads();
 	}
 
+	/**
+	 * Restricts the links to the ones that start in the specified frame
+	 * interval: segment ends for gap-closing and merging, segment middles for
+	 * splitting. Targets can still be in any frame. This is used to link
+	 * segments block after block over a sliding window of frames.
+	 *
+	 * @param minFrame
+	 *            the first source frame, inclusive.
+	 * @param maxFrame
+	 *            the last source frame, inclusive.
+	 */
+	public void setSourceFrameInterval( final int minFrame, final int maxFrame )
+	{
+		this.minSourceFrame = minFrame;
+		this.maxSourceFrame = maxFrame;
+	}
+
+	/**
+	 * Sets segment starts that cannot be targeted by gap-closing and splitting
+	 * links, for instance because they were already linked when processing a
+	 * previous block of frames.
+	 *
+	 * @param excludedStarts
+	 *            the segment starts to exclude. Must support fast lookup.
+	 */
+	public void setExcludedStarts( final Collection< Spot > excludedStarts )
+	{
+		this.excludedStarts = excludedStarts;
+	}
+
 	@Override
 	public boolean checkInput()
 	{
@@ -179,8 +223,14 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		final boolean mergingOrSplitting = allowMerging || allowSplitting;
 
 		final GraphSegmentSplitter segmentSplitter = new GraphSegmentSplitter( graph, mergingOrSplitting );
-		final List< Spot > segmentEnds = segmentSplitter.getSegmentEnds();
-		final List< Spot > segmentStarts = segmentSplitter.getSegmentStarts();
+		final List< Spot > segmentEnds = new ArrayList<>();
+		for ( final Spot segmentEnd : segmentSplitter.getSegmentEnds() )
+			if ( isSourceFrame( segmentEnd.getFeature( Spot.FRAME ).intValue() ) )
+				segmentEnds.add( segmentEnd );
+		final List< Spot > segmentStarts = new ArrayList<>();
+		for ( final Spot segmentStart : segmentSplitter.getSegmentStarts() )
+			if ( !excludedStarts.contains( segmentStart ) )
+				segmentStarts.add( segmentStart );
 
 		/*
 		 * Generate all middle points list. We have to sort it by the same order
@@ -202,158 +252,168 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 			allMiddles = Collections.emptyList();
 		}
 
-		final Object lock = new Object();
-
 		/*
-		 * Sources and targets.
+		 * Bucket the targets by frame, with a spatial index per frame when the
+		 * cost functions allow skipping the targets that are too far.
 		 */
-		final ArrayList< Spot > sources = new ArrayList<>();
-		final ArrayList< Spot > targets = new ArrayList<>();
-		// Corresponding costs.
-		final ResizableDoubleArray linkCosts = new ResizableDoubleArray();
+
+		final boolean gcSpatial = allowGapClosing && isSpatial( gcCostFunction, segmentEnds, segmentStarts, gcCostThreshold );
+		final boolean mSpatial = allowMerging && isSpatial( mCostFunction, segmentEnds, allMiddles, mCostThreshold );
+		final boolean sSpatial = allowSplitting && isSpatial( sCostFunction, allMiddles, segmentStarts, sCostThreshold );
+		final FrameBuckets startBuckets = new FrameBuckets( segmentStarts, gcSpatial || sSpatial, allowGapClosing ? gcMaxDistance : sMaxDistance );
+		final FrameBuckets middleBuckets = new FrameBuckets( allMiddles, mSpatial, mMaxDistance );
+
+		// Resolve what the cost functions need from the spots once.
+		final IndexedCostFunction gcCosts = allowGapClosing ? gcCostFunction.compile( segmentEnds, segmentStarts ) : null;
+		final IndexedCostFunction mCosts = allowMerging ? mCostFunction.compile( segmentEnds, allMiddles ) : null;
+		final IndexedCostFunction sCosts = allowSplitting ? sCostFunction.compile( allMiddles, segmentStarts ) : null;
 
 		/*
 		 * A. We iterate over all segment ends, targeting 1st the segment starts
-		 * (gap-closing) then the segment middles (merging).
+		 * (gap-closing) then the segment middles (merging). Each task collects
+		 * its links in its own buffer.
 		 */
 
-		final ExecutorService executorGCM = Threads.newFixedThreadPool( numThreads );
-		for ( final Spot source : segmentEnds )
+		final List< Callable< LinkBuffer > > tasks = new ArrayList<>();
+		for ( final int[] chunk : chunks( segmentEnds.size(), numThreads ) )
 		{
-			executorGCM.submit( new Runnable()
-			{
-				@Override
-				public void run()
+			tasks.add( () -> {
+				final LinkBuffer buffer = new LinkBuffer();
+				final SpatialGrid.Hits hits = new SpatialGrid.Hits();
+				for ( int i = chunk[ 0 ]; i < chunk[ 1 ]; i++ )
 				{
+					final Spot source = segmentEnds.get( i );
 					final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
 
 					/*
-					 * Iterate over segment starts - GAP-CLOSING.
+					 * Iterate over segment starts - GAP-CLOSING. Frame
+					 * interval must be within user specification.
 					 */
 
 					if ( allowGapClosing )
 					{
-						for ( final Spot target : segmentStarts )
+						final int maxFrame = ( int ) Math.min( Integer.MAX_VALUE, ( long ) sourceFrame + maxFrameInterval );
+						for ( final Bucket bucket : startBuckets.between( sourceFrame + 1, maxFrame ) )
 						{
-							// Check frame interval, must be within user
-							// specification.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-							if ( tdiff < 1 || tdiff > maxFrameInterval )
+							hits.clear();
+							bucket.search( source, gcSpatial, gcCostThreshold, hits );
+							for ( int k = 0; k < hits.size; k++ )
 							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = gcCostFunction.linkingCost( source, target );
-							if ( cost > gcCostThreshold )
-							{
-								continue;
-							}
-
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
+								final int j = hits.indices[ k ];
+								final double cost = gcCosts.linkingCost( i, j );
+								if ( cost <= gcCostThreshold )
+									buffer.add( i, j, cost );
 							}
 						}
 					}
 
 					/*
-					 * Iterate over middle points - MERGING.
+					 * Iterate over middle points - MERGING. Frame interval
+					 * must be 1.
 					 */
 
 					if ( allowMerging )
 					{
-						for ( final Spot target : allMiddles )
+						final Bucket bucket = middleBuckets.get( sourceFrame + 1 );
+						if ( null != bucket )
 						{
-							// Check frame interval, must be 1.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-							if ( tdiff != 1 )
-							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = mCostFunction.linkingCost( source, target );
-							if ( cost > mCostThreshold )
+							hits.clear();
+							bucket.search( source, mSpatial, mCostThreshold, hits );
+							for ( int k = 0; k < hits.size; k++ )
 							{
-								continue;
-							}
-
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
+								final int j = hits.indices[ k ];
+								final double cost = mCosts.linkingCost( i, j );
+								if ( cost <= mCostThreshold )
+									// Middles come after starts in the targets.
+									buffer.add( i, segmentStarts.size() + j, cost );
 							}
 						}
 					}
 				}
+				return buffer;
 			} );
 		}
-		executorGCM.shutdown();
-		try
-		{
-			executorGCM.awaitTermination( 1, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+
+		final List< LinkBuffer > gcmBuffers = runAll( tasks );
+		if ( null == gcmBuffers )
 			return false;
-		}
 
 		/*
 		 * Iterate over middle points targeting segment starts - SPLITTING
 		 */
+		final List< LinkBuffer > sBuffers;
 		if ( allowSplitting )
 		{
-			final ExecutorService executorS = Threads.newFixedThreadPool( numThreads );
-			for ( final Spot source : allMiddles )
+			tasks.clear();
+			for ( final int[] chunk : chunks( allMiddles.size(), numThreads ) )
 			{
-				executorS.submit( new Runnable()
-				{
-					@Override
-					public void run()
+				tasks.add( () -> {
+					final LinkBuffer buffer = new LinkBuffer();
+					final SpatialGrid.Hits hits = new SpatialGrid.Hits();
+					for ( int i = chunk[ 0 ]; i < chunk[ 1 ]; i++ )
 					{
+						final Spot source = allMiddles.get( i );
 						final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
-						for ( final Spot target : segmentStarts )
+						if ( !isSourceFrame( sourceFrame ) )
+							continue;
+						// Frame interval must be 1.
+						final Bucket bucket = startBuckets.get( sourceFrame + 1 );
+						if ( null == bucket )
+							continue;
+
+						hits.clear();
+						bucket.search( source, sSpatial, sCostThreshold, hits );
+						for ( int k = 0; k < hits.size; k++ )
 						{
-							// Check frame interval, must be 1.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-
-							if ( tdiff != 1 )
-							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = sCostFunction.linkingCost( source, target );
-							if ( cost > sCostThreshold )
-							{
-								continue;
-							}
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
-							}
+							final int j = hits.indices[ k ];
+							final double cost = sCosts.linkingCost( i, j );
+							if ( cost <= sCostThreshold )
+								buffer.add( i, j, cost );
 						}
 					}
+					return buffer;
 				} );
 			}
-			executorS.shutdown();
-			try
+			sBuffers = runAll( tasks );
+			if ( null == sBuffers )
+				return false;
+		}
+		else
+		{
+			sBuffers = Collections.emptyList();
+		}
+
+		/*
+		 * Merge the buffers.
+		 */
+
+		int nLinks = 0;
+		for ( final LinkBuffer buffer : gcmBuffers )
+			nLinks += buffer.size;
+		for ( final LinkBuffer buffer : sBuffers )
+			nLinks += buffer.size;
+
+		final ArrayList< Spot > sources = new ArrayList<>( nLinks );
+		final ArrayList< Spot > targets = new ArrayList<>( nLinks );
+		// Corresponding costs.
+		final ResizableDoubleArray linkCosts = new ResizableDoubleArray( nLinks );
+		for ( final LinkBuffer buffer : gcmBuffers )
+		{
+			for ( int k = 0; k < buffer.size; k++ )
 			{
-				executorS.awaitTermination( 1, TimeUnit.DAYS );
+				sources.add( segmentEnds.get( buffer.sources[ k ] ) );
+				final int j = buffer.targets[ k ];
+				targets.add( j < segmentStarts.size() ? segmentStarts.get( j ) : allMiddles.get( j - segmentStarts.size() ) );
+				linkCosts.add( buffer.costs[ k ] );
 			}
-			catch ( final InterruptedException e )
+		}
+		for ( final LinkBuffer buffer : sBuffers )
+		{
+			for ( int k = 0; k < buffer.size; k++ )
 			{
-				errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+				sources.add( allMiddles.get( buffer.sources[ k ] ) );
+				targets.add( segmentStarts.get( buffer.targets[ k ] ) );
+				linkCosts.add( buffer.costs[ k ] );
 			}
 		}
 		linkCosts.trimToSize();
@@ -397,6 +457,57 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		return true;
 	}
 
+	private boolean isSourceFrame( final int frame )
+	{
+		return frame >= minSourceFrame && frame <= maxSourceFrame;
+	}
+
+	/**
+	 * Runs the specified tasks on a new thread pool and returns their results,
+	 * or <code>null</code> if they could not complete.
+	 */
+	private List< LinkBuffer > runAll( final List< Callable< LinkBuffer > > tasks )
+	{
+		final ExecutorService executor = Threads.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< LinkBuffer > buffers = new ArrayList<>( tasks.size() );
+			for ( final Future< LinkBuffer > future : executor.invokeAll( tasks ) )
+				buffers.add( future.get() );
+			return buffers;
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+			return null;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Splits <code>n</code> items in contiguous chunks, a few per thread.
+	 */
+	private static List< int[] > chunks( final int n, final int numThreads )
+	{
+		final int nChunks = Math.min( n, Math.max( 1, numThreads ) * 4 );
+		final List< int[] > chunks = new ArrayList<>( nChunks );
+		for ( int c = 0; c < nChunks; c++ )
+			chunks.add( new int[] { ( int ) ( ( long ) n * c / nChunks ), ( int ) ( ( long ) n * ( c + 1 ) / nChunks ) } );
+		return chunks;
+	}
+
+	/**
+	 * Returns <code>true</code> if the targets further than the square root of
+	 * the threshold can be skipped for the specified cost function.
+	 */
+	private static boolean isSpatial( final CostFunction< Spot, Spot > costFunction, final List< Spot > sources, final List< Spot > targets, final double costThreshold )
+	{
+		return !Double.isNaN( costThreshold ) && costFunction.isBoundedBySquareDistance( sources, targets );
+	}
+
 	protected CostFunction< Spot, Spot > getCostFunctionFor( final Map< String, Double > featurePenalties )
 	{
 		// Link Nick Perry original non sparse LAP framework.
@@ -512,4 +623,119 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		return numThreads;
 	}
 
+
+	/**
+	 * The accepted links found by one task, as indices in the source and
+	 * target lists.
+	 */
+	private static final class LinkBuffer
+	{
+
+		private int[] sources = new int[ 64 ];
+
+		private int[] targets = new int[ 64 ];
+
+		private double[] costs = new double[ 64 ];
+
+		private int size;
+
+		private void add( final int source, final int target, final double cost )
+		{
+			if ( size == sources.length )
+			{
+				final int capacity = 2 * size;
+				sources = Arrays.copyOf( sources, capacity );
+				targets = Arrays.copyOf( targets, capacity );
+				costs = Arrays.copyOf( costs, capacity );
+			}
+			sources[ size ] = source;
+			targets[ size ] = target;
+			costs[ size ] = cost;
+			size++;
+		}
+	}
+
+	/**
+	 * The spots of a list, bucketed by frame.
+	 */
+	private static final class FrameBuckets
+	{
+
+		private final TreeMap< Integer, Bucket > buckets = new TreeMap<>();
+
+		private FrameBuckets( final List< Spot > spots, final boolean spatial, final double radius )
+		{
+			final Map< Integer, TIntArrayList > indices = new HashMap<>();
+			for ( int i = 0; i < spots.size(); i++ )
+				indices.computeIfAbsent( spots.get( i ).getFeature( Spot.FRAME ).intValue(), f -> new TIntArrayList() ).add( i );
+			for ( final Map.Entry< Integer, TIntArrayList > entry : indices.entrySet() )
+				buckets.put( entry.getKey(), new Bucket( spots, entry.getValue().toArray(), spatial, radius ) );
+		}
+
+		private Bucket get( final int frame )
+		{
+			return buckets.get( frame );
+		}
+
+		private Collection< Bucket > between( final int fromFrame, final int toFrame )
+		{
+			if ( toFrame < fromFrame )
+				return Collections.emptyList();
+			return buckets.subMap( fromFrame, true, toFrame, true ).values();
+		}
+	}
+
+	/**
+	 * The spots of one frame, with an optional spatial index.
+	 */
+	private static final class Bucket
+	{
+
+		/** Indices of the spots in the list they come from. */
+		private final int[] indices;
+
+		private final SpatialGrid grid;
+
+		private Bucket( final List< Spot > spots, final int[] indices, final boolean spatial, final double radius )
+		{
+			this.indices = indices;
+			if ( spatial )
+			{
+				final double[] positions = new double[ indices.length * 3 ];
+				for ( int k = 0; k < indices.length; k++ )
+				{
+					final Spot spot = spots.get( indices[ k ] );
+					for ( int d = 0; d < 3; d++ )
+						positions[ 3 * k + d ] = spot.getDoublePosition( d );
+				}
+				this.grid = new SpatialGrid( positions, 3, radius );
+			}
+			else
+			{
+				this.grid = null;
+			}
+		}
+
+		/**
+		 * Adds to the hits the indices of the spots of this bucket that may be
+		 * linked to the source: the ones within the square root of the
+		 * threshold if <code>spatial</code> is <code>true</code>, all of them
+		 * otherwise.
+		 */
+		private void search( final Spot source, final boolean spatial, final double costThreshold, final SpatialGrid.Hits hits )
+		{
+			if ( !spatial || null == grid )
+			{
+				for ( final int i : indices )
+					hits.add( i );
+				return;
+			}
+
+			final double[] query = new double[] { source.getDoublePosition( 0 ), source.getDoublePosition( 1 ), source.getDoublePosition( 2 ) };
+			final int from = hits.size;
+			grid.search( query, 0, costThreshold, hits );
+			for ( int k = from; k < hits.size; k++ )
+				hits.indices[ k ] = indices[ hits.indices[ k ] ];
+		}
+	}
 }
@@ -69,6 +69,8 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 
 	private int[] output;
 
+	private boolean greedyInitialization;
+
 	private String errorMessage;
 
 	private long processingTime;
@@ -87,6 +89,20 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 		this.cm = cm;
 	}
 
+	/**
+	 * Sets whether the solver initializes its partial assignment by assigning
+	 * every row to a free column of minimal reduced cost, instead of the
+	 * column reduction of the Jonker-Volgenant algorithm, that assigns each
+	 * column to its cheapest row. The solution is optimal in both cases.
+	 * 
+	 * @param greedyInitialization
+	 *            whether to use the greedy initialization.
+	 */
+	public void setGreedyInitialization( final boolean greedyInitialization )
+	{
+		this.greedyInitialization = greedyInitialization;
+	}
+
 	@Override
 	public boolean process()
 	{
@@ -102,82 +118,13 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 			col[ j ] = j;
 		}
 
-		/*
-		 * Column reduction
-		 */
-
-		Arrays.fill( v, Double.MAX_VALUE );
-		for ( int i = 0; i < cm.nRows; i++ )
-		{
-			for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
-			{
-				final int j = cm.kk[ k ];
-				if ( cm.cc[ k ] < v[ j ] )
-				{
-					v[ j ] = cm.cc[ k ];
-					y[ j ] = i + 1;
-				}
-			}
-		}
-
-		for ( int j = cm.nCols - 1; j >= 0; j-- )
-		{
-			final int i = y[ j ] - 1;
-			if ( x[ i ] == 0 )
-			{
-				x[ i ] = j + 1;
-			}
-			else
-			{
-				if ( x[ i ] > 0 )
-				{
-					x[ i ] = -x[ i ];
-				}
-				y[ j ] = 0;
-			}
-		}
-
-		/*
-		 * Reduction transfer.
-		 */
-
-		int f = 0;
 		final int[] free = new int[ cm.nRows ];
-		for ( int i = 0; i < cm.nRows; i++ )
-		{
-			if ( x[ i ] == 0 )
-			{
-				// unassigned row in free-array
-				free[ f++ ] = i;
-				continue;
-			}
-			else if ( x[ i ] < 0 )
-			{
-				// no reduction transfer possible
-				x[ i ] = -x[ i ];
-			}
-			else
-			{
-				// reduction transfer from assigned row
-				final int j1 = x[ i ] - 1;
-				double min = Double.MAX_VALUE;
-				for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
-				{
-					final int j = cm.kk[ k ];
-					if ( j != j1 )
-					{
-						if ( cm.cc[ k ] - v[ j ] < min )
-						{
-							min = cm.cc[ k ] - v[ j ];
-						}
-					}
-				}
-				v[ j1 ] -= min;
-			}
-		}
+		int f = greedyInitialization
+				? greedyInitialization( x, y, v, free )
+				: reduce( x, y, v, free );
 
 		if ( f == 0 )
-			return true;
+			return terminate( x, start );
 
 		/*
 		 * Augmenting row reduction.
@@ -359,10 +306,168 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 			while ( i1 != i );
 		}
 
+		return terminate( x, start );
+	}
+
+	/**
+	 * Column reduction and reduction transfer. Initializes the prices and a
+	 * partial assignment from scratch.
+	 * 
+	 * @return the number of free rows, stored in <code>free</code>.
+	 */
+	private int reduce( final int[] x, final int[] y, final double[] v, final int[] free )
+	{
+		/*
+		 * Column reduction
+		 */
+
+		Arrays.fill( v, Double.MAX_VALUE );
+		for ( int i = 0; i < cm.nRows; i++ )
+		{
+			for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
+			{
+				final int j = cm.kk[ k ];
+				if ( cm.cc[ k ] < v[ j ] )
+				{
+					v[ j ] = cm.cc[ k ];
+					y[ j ] = i + 1;
+				}
+			}
+		}
+
+		for ( int j = cm.nCols - 1; j >= 0; j-- )
+		{
+			final int i = y[ j ] - 1;
+			if ( x[ i ] == 0 )
+			{
+				x[ i ] = j + 1;
+			}
+			else
+			{
+				if ( x[ i ] > 0 )
+				{
+					x[ i ] = -x[ i ];
+				}
+				y[ j ] = 0;
+			}
+		}
+
 		/*
-		 * Terminate and prepare outputs.
+		 * Reduction transfer.
 		 */
 
+		int f = 0;
+		for ( int i = 0; i < cm.nRows; i++ )
+		{
+			if ( x[ i ] == 0 )
+			{
+				// unassigned row in free-array
+				free[ f++ ] = i;
+				continue;
+			}
+			else if ( x[ i ] < 0 )
+			{
+				// no reduction transfer possible
+				x[ i ] = -x[ i ];
+			}
+			else
+			{
+				// reduction transfer from assigned row
+				final int j1 = x[ i ] - 1;
+				double min = Double.MAX_VALUE;
+				for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
+				{
+					final int j = cm.kk[ k ];
+					if ( j != j1 )
+					{
+						if ( cm.cc[ k ] - v[ j ] < min )
+						{
+							min = cm.cc[ k ] - v[ j ];
+						}
+					}
+				}
+				v[ j1 ] -= min;
+			}
+		}
+		return f;
+	}
+
+	/**
+	 * Initializes the prices by column reduction, then assigns every row to a
+	 * free column of minimal reduced cost, if there is one. This partial
+	 * assignment satisfies the complementary slackness conditions the
+	 * augmentation relies on. Finally, the reduction transfer is applied to
+	 * the assigned rows, as after the column reduction.
+	 * 
+	 * @return the number of free rows, stored in <code>free</code>.
+	 */
+	private int greedyInitialization( final int[] x, final int[] y, final double[] v, final int[] free )
+	{
+		// Column reduction, without assignment.
+		Arrays.fill( v, Double.MAX_VALUE );
+		for ( int k = 0; k < cm.cardinality; k++ )
+		{
+			final int j = cm.kk[ k ];
+			if ( cm.cc[ k ] < v[ j ] )
+				v[ j ] = cm.cc[ k ];
+		}
+
+		int f = 0;
+		for ( int i = 0; i < cm.nRows; i++ )
+		{
+			int jmin = -1;
+			double min = Double.POSITIVE_INFINITY;
+			for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
+			{
+				final int j = cm.kk[ k ];
+				final double h = cm.cc[ k ] - v[ j ];
+				// Among ties, prefer a free column.
+				if ( h < min || ( h == min && jmin >= 0 && y[ jmin ] != 0 ) )
+				{
+					min = h;
+					jmin = j;
+				}
+			}
+			if ( jmin >= 0 && y[ jmin ] == 0 )
+			{
+				x[ i ] = jmin + 1;
+				y[ jmin ] = i + 1;
+			}
+			else
+			{
+				free[ f++ ] = i;
+			}
+		}
+
+		// Reduction transfer from assigned rows.
+		for ( int i = 0; i < cm.nRows; i++ )
+		{
+			if ( x[ i ] == 0 )
+				continue;
+
+			final int j1 = x[ i ] - 1;
+			double u = 0.;
+			double min = Double.MAX_VALUE;
+			for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
+			{
+				final int j = cm.kk[ k ];
+				if ( j == j1 )
+					u = cm.cc[ k ] - v[ j ];
+				else if ( cm.cc[ k ] - v[ j ] < min )
+					min = cm.cc[ k ] - v[ j ];
+			}
+			v[ j1 ] -= min - u;
+		}
+		return f;
+	}
+
+	/**
+	 * Terminates and prepares outputs. Also called when the column reduction
+	 * already assigns every row, which is common for the small problems
+	 * produced by splitting a LAP into independent components.
+	 */
+	private boolean terminate( final int[] x, final long start )
+	{
 		this.output = new int[ x.length ];
 		for ( int i = 0; i < x.length; i++ )
 		{
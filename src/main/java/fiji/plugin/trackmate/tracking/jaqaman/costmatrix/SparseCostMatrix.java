@@ -551,6 +551,106 @@ public class SparseCostMatrix
 		return new SparseCostMatrix( cc2, kk2, number2, nRows );
 	}
 
+	/**
+	 * Labels the connected components of the bipartite graph defined by this
+	 * matrix, where row <code>i</code> is linked to column <code>j</code> if
+	 * the cost <code>(i, j)</code> is not infinite. Rows and columns of
+	 * different components cannot be assigned to each other, so the LAP of
+	 * each component can be solved independently.
+	 * 
+	 * @return a new <code>int[]</code> array of <code>nRows + nCols</code>
+	 *         elements, holding first the component of each row, then the
+	 *         component of each column. Components are numbered from 0, in
+	 *         the order of their first row.
+	 */
+	public int[] componentLabels()
+	{
+		// Union-find over rows then columns.
+		final int[] parent = new int[ nRows + nCols ];
+		for ( int i = 0; i < parent.length; i++ )
+			parent[ i ] = i;
+
+		for ( int i = 0; i < nRows; i++ )
+		{
+			for ( int k = start[ i ]; k < start[ i ] + number[ i ]; k++ )
+			{
+				final int a = find( parent, i );
+				final int b = find( parent, nRows + kk[ k ] );
+				if ( a != b )
+				{
+					// Keep the smallest index as root, so rows are roots.
+					if ( a < b )
+						parent[ b ] = a;
+					else
+						parent[ a ] = b;
+				}
+			}
+		}
+
+		final int[] labels = new int[ parent.length ];
+		final int[] rootLabel = new int[ parent.length ];
+		Arrays.fill( rootLabel, -1 );
+		int nComponents = 0;
+		for ( int i = 0; i < parent.length; i++ )
+		{
+			final int root = find( parent, i );
+			if ( rootLabel[ root ] < 0 )
+				rootLabel[ root ] = nComponents++;
+			labels[ i ] = rootLabel[ root ];
+		}
+		return labels;
+	}
+
+	private static int find( final int[] parent, int i )
+	{
+		while ( parent[ i ] != i )
+		{
+			// Path halving.
+			parent[ i ] = parent[ parent[ i ] ];
+			i = parent[ i ];
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the sub-matrix made of the specified rows and columns. All the
+	 * non-infinite costs of the specified rows must be in the specified
+	 * columns, as it is the case for a connected component.
+	 * 
+	 * @param rows
+	 *            the rows of the sub-matrix, in ascending order.
+	 * @param colIndex
+	 *            an array of <code>nCols</code> elements, holding for each
+	 *            column of this matrix its index in the sub-matrix. Indices
+	 *            must be in the same order as the columns.
+	 * @param nSubCols
+	 *            the number of columns in the sub-matrix.
+	 * @return a new sparse matrix.
+	 */
+	public SparseCostMatrix subMatrix( final int[] rows, final int[] colIndex, final int nSubCols )
+	{
+		int subCardinality = 0;
+		for ( final int i : rows )
+			subCardinality += number[ i ];
+
+		final double[] cc2 = new double[ subCardinality ];
+		final int[] kk2 = new int[ subCardinality ];
+		final int[] number2 = new int[ rows.length ];
+		int index = 0;
+		for ( int r = 0; r < rows.length; r++ )
+		{
+			final int i = rows[ r ];
+			number2[ r ] = number[ i ];
+			for ( int k = start[ i ]; k < start[ i ] + number[ i ]; k++ )
+			{
+				cc2[ index ] = cc[ k ];
+				kk2[ index ] = colIndex[ kk[ k ] ];
+				index++;
+			}
+		}
+		return new SparseCostMatrix( cc2, kk2, number2, nSubCols );
+	}
+
 	/**
 	 * Replace all the non-infinite values of this matrix by the specified
 	 * value.
@@ -0,0 +1,264 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.RealLocalizable;
+
+/**
+ * A uniform grid over a set of points, used to find the points within a
+ * radius of a query point without testing all of them.
+ * <p>
+ * The points are bucketed by cells whose size is at least the search radius,
+ * and stored in flat arrays. A search only inspects the cells overlapping the
+ * search sphere. The grid is immutable once built, and can be searched
+ * concurrently provided each thread uses its own {@link Hits}.
+ *
+ * @author Jean-Yves Tinevez
+ */
+final class SpatialGrid
+{
+
+	/** Spatial dimensions used for bucketing. */
+	private static final int MAX_GRID_DIMS = 3;
+
+	private final double[] positions;
+
+	private final int nd;
+
+	private final int gd;
+
+	private final double[] min = new double[ MAX_GRID_DIMS ];
+
+	private final int[] nCells = new int[] { 1, 1, 1 };
+
+	private final double cellSize;
+
+	/** Start of the points of each cell in {@link #cellPoints}. */
+	private final int[] cellStart;
+
+	/** Point indices sorted by cell. */
+	private final int[] cellPoints;
+
+	/**
+	 * Builds a grid over the specified points.
+	 *
+	 * @param positions
+	 *            the point coordinates, flattened as
+	 *            <code>x0, y0, z0, x1, y1, z1, ...</code>.
+	 * @param nd
+	 *            the number of dimensions of the points.
+	 * @param radius
+	 *            the radius that will be used for searches. Searches with a
+	 *            larger radius still work, but inspect more points.
+	 */
+	SpatialGrid( final double[] positions, final int nd, final double radius )
+	{
+		this.positions = positions;
+		this.nd = nd;
+		this.gd = Math.min( nd, MAX_GRID_DIMS );
+		final int n = positions.length / nd;
+
+		final double[] max = new double[ MAX_GRID_DIMS ];
+		Arrays.fill( min, 0, gd, Double.POSITIVE_INFINITY );
+		Arrays.fill( max, 0, gd, Double.NEGATIVE_INFINITY );
+		for ( int i = 0; i < n; i++ )
+		{
+			for ( int d = 0; d < gd; d++ )
+			{
+				final double x = positions[ i * nd + d ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+		for ( int d = 0; d < gd; d++ )
+			if ( !Double.isFinite( min[ d ] ) )
+				min[ d ] = 0.;
+
+		/*
+		 * Cells no smaller than the radius, so that a search inspects at most
+		 * 3 cells per dimension. Make them larger if there would be too many
+		 * cells for the number of points.
+		 */
+		final long maxCells = Math.max( 1024l, 4l * n );
+		double cs = ( radius > 0. && !Double.isInfinite( radius ) ) ? radius : 1.;
+		while ( true )
+		{
+			long total = 1l;
+			for ( int d = 0; d < gd; d++ )
+			{
+				final double extent = ( n == 0 || !Double.isFinite( max[ d ] - min[ d ] ) ) ? 0. : max[ d ] - min[ d ];
+				nCells[ d ] = ( int ) Math.min( Integer.MAX_VALUE / 2, ( long ) Math.floor( extent / cs ) + 1l );
+				total *= nCells[ d ];
+				if ( total > maxCells )
+					break;
+			}
+			if ( total <= maxCells )
+				break;
+			cs *= 2.;
+		}
+		this.cellSize = cs;
+
+		// Counting sort of the points by cell.
+		final int nTotal = nCells[ 0 ] * nCells[ 1 ] * nCells[ 2 ];
+		this.cellStart = new int[ nTotal + 1 ];
+		final int[] cellOf = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			int cell = 0;
+			for ( int d = gd - 1; d >= 0; d-- )
+			{
+				final int c = Math.max( 0, Math.min( nCells[ d ] - 1, ( int ) Math.floor( ( positions[ i * nd + d ] - min[ d ] ) / cs ) ) );
+				cell = cell * nCells[ d ] + c;
+			}
+			cellOf[ i ] = cell;
+			cellStart[ cell + 1 ]++;
+		}
+		for ( int c = 0; c < nTotal; c++ )
+			cellStart[ c + 1 ] += cellStart[ c ];
+		this.cellPoints = new int[ n ];
+		final int[] fill = Arrays.copyOf( cellStart, nTotal );
+		for ( int i = 0; i < n; i++ )
+			cellPoints[ fill[ cellOf[ i ] ]++ ] = i;
+	}
+
+	/**
+	 * Adds to the specified hits the indices of the points whose square
+	 * distance to the query point is lower than or equal to the specified
+	 * one. Hits are not sorted.
+	 *
+	 * @param query
+	 *            the array holding the query point coordinates.
+	 * @param offset
+	 *            the offset of the query point in this array.
+	 * @param maxSquareDistance
+	 *            the maximal square distance.
+	 * @param hits
+	 *            the hits to add to.
+	 */
+	void search( final double[] query, final int offset, final double maxSquareDistance, final Hits hits )
+	{
+		if ( cellPoints.length == 0 || !( maxSquareDistance >= 0. ) )
+			return;
+
+		final double radius = Math.sqrt( maxSquareDistance );
+		final int[] lo = new int[] { 0, 0, 0 };
+		final int[] hi = new int[] { 0, 0, 0 };
+		for ( int d = 0; d < gd; d++ )
+		{
+			final double x = query[ offset + d ] - min[ d ];
+			final double l = Math.floor( ( x - radius ) / cellSize );
+			final double h = Math.floor( ( x + radius ) / cellSize );
+			if ( h < 0. || l > nCells[ d ] - 1 )
+				return;
+			lo[ d ] = ( int ) Math.max( 0., l );
+			hi[ d ] = ( int ) Math.min( nCells[ d ] - 1, h );
+		}
+
+		for ( int z = lo[ 2 ]; z <= hi[ 2 ]; z++ )
+		{
+			for ( int y = lo[ 1 ]; y <= hi[ 1 ]; y++ )
+			{
+				final int row = ( z * nCells[ 1 ] + y ) * nCells[ 0 ];
+				final int from = cellStart[ row + lo[ 0 ] ];
+				final int to = cellStart[ row + hi[ 0 ] + 1 ];
+				for ( int k = from; k < to; k++ )
+				{
+					final int i = cellPoints[ k ];
+					double d2 = 0.;
+					for ( int d = 0; d < nd; d++ )
+					{
+						final double dx = positions[ i * nd + d ] - query[ offset + d ];
+						d2 += dx * dx;
+					}
+					if ( d2 <= maxSquareDistance )
+						hits.add( i );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the coordinates of the specified objects, flattened, or
+	 * <code>null</code> if one of them is not a {@link RealLocalizable} with
+	 * the specified number of dimensions.
+	 */
+	static double[] positions( final List< ? > objects, final int nd )
+	{
+		final double[] pos = new double[ objects.size() * nd ];
+		int k = 0;
+		for ( final Object o : objects )
+		{
+			if ( !( o instanceof RealLocalizable ) )
+				return null;
+			final RealLocalizable rl = ( RealLocalizable ) o;
+			if ( rl.numDimensions() != nd )
+				return null;
+			for ( int d = 0; d < nd; d++ )
+				pos[ k++ ] = rl.getDoublePosition( d );
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the number of dimensions of the first object if it is a
+	 * {@link RealLocalizable}, 0 otherwise.
+	 */
+	static int numDimensions( final List< ? > objects )
+	{
+		if ( objects.isEmpty() || !( objects.get( 0 ) instanceof RealLocalizable ) )
+			return 0;
+		return ( ( RealLocalizable ) objects.get( 0 ) ).numDimensions();
+	}
+
+	/**
+	 * A growable list of point indices.
+	 */
+	static final class Hits
+	{
+
+		int[] indices = new int[ 16 ];
+
+		int size;
+
+		void add( final int i )
+		{
+			if ( size == indices.length )
+				indices = Arrays.copyOf( indices, 2 * size );
+			indices[ size++ ] = i;
+		}
+
+		void clear()
+		{
+			size = 0;
+		}
+
+		void sort()
+		{
+			Arrays.sort( indices, 0, size );
+		}
+	}
+}
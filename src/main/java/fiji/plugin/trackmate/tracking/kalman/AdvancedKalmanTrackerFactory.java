@@ -28,6 +28,7 @@ import static fiji.plugin.trackmate.io.IOUtils.writeAttribute;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_KALMAN_SEARCH_RADIUS;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_LINKING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_KALMAN_SEARCH_RADIUS;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
@@ -47,9 +48,11 @@ import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.gui.components.ConfigurationPanel;
 import fiji.plugin.trackmate.gui.components.tracker.AdvancedKalmanTrackerSettingsPanel;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTrackerFactory;
 import fiji.plugin.trackmate.tracking.jaqaman.LAPUtils;
+import fiji.plugin.trackmate.tracking.jaqaman.OnlineSegmentTracker;
 import fiji.plugin.trackmate.tracking.jaqaman.SegmentTrackerFactory;
 
 /***
@@ -118,6 +121,17 @@ public class AdvancedKalmanTrackerFactory extends SegmentTrackerFactory
 		return new AdvancedKalmanTracker( spots, settings );
 	}
 
+	@Override
+	public OnlineSpotTracker createOnline( final Map< String, Object > settings )
+	{
+		final double maxSearchRadius = ( Double ) settings.get( KEY_KALMAN_SEARCH_RADIUS );
+		final int maxFrameGap = ( Integer ) settings.get( KEY_GAP_CLOSING_MAX_FRAME_GAP );
+		final double initialSearchRadius = ( Double ) settings.get( KEY_LINKING_MAX_DISTANCE );
+		@SuppressWarnings( "unchecked" )
+		final Map< String, Double > featurePenalties = ( Map< String, Double > ) settings.get( KEY_LINKING_FEATURE_PENALTIES );
+		return new OnlineSegmentTracker( new OnlineKalmanTracker( maxSearchRadius, maxFrameGap, initialSearchRadius, featurePenalties ), settings );
+	}
+
 	@Override
 	public AdvancedKalmanTrackerFactory copy()
 	{
@@ -42,6 +42,7 @@ import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.gui.components.ConfigurationPanel;
 import fiji.plugin.trackmate.gui.components.tracker.KalmanTrackerConfigPanel;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTrackerFactory;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_KALMAN_SEARCH_RADIUS;
@@ -118,6 +119,15 @@ public class KalmanTrackerFactory implements SpotTrackerFactory
 		return new KalmanTracker( spots, maxSearchRadius, maxFrameGap, initialSearchRadius, null );
 	}
 
+	@Override
+	public OnlineSpotTracker createOnline( final Map< String, Object > settings )
+	{
+		final double maxSearchRadius = ( Double ) settings.get( KEY_KALMAN_SEARCH_RADIUS );
+		final int maxFrameGap = ( Integer ) settings.get( KEY_GAP_CLOSING_MAX_FRAME_GAP );
+		final double initialSearchRadius = ( Double ) settings.get( KEY_LINKING_MAX_DISTANCE );
+		return new OnlineKalmanTracker( maxSearchRadius, maxFrameGap, initialSearchRadius, null );
+	}
+
 	@Override
 	public ConfigurationPanel getTrackerConfigurationPanel( final Model model )
 	{
@@ -0,0 +1,500 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.kalman;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
+import fiji.plugin.trackmate.tracking.jaqaman.JaqamanLinker;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.SquareDistCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costmatrix.JaqamanLinkingCostMatrixCreator;
+
+/**
+ * The Kalman filter tracking of the {@link KalmanTracker}, done frame after
+ * frame as they are added. The {@link KalmanTracker} itself feeds the frames
+ * of its spot collection to this class.
+ * <p>
+ * The two first non-empty frames are used to nucleate the first Kalman
+ * filters, and to estimate the measurement noise from the mean radius of the
+ * spots. Frames missing between two added frames are processed as empty
+ * frames, so that Kalman filters can bridge them as gaps.
+ */
+public class OnlineKalmanTracker implements OnlineSpotTracker
+{
+
+	private static final double ALTERNATIVE_COST_FACTOR = 1.05d;
+
+	private static final double PERCENTILE = 1d;
+
+	private static final String BASE_ERROR_MSG = "[KalmanTracker] ";
+
+	private final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+
+	private final SpotCollection predictionsCollection = new SpotCollection();
+
+	private final int maxFrameGap;
+
+	private final Map< String, Double > featurePenalties;
+
+	private final CostFunction< Spot, Spot > costFunction;
+
+	/** Max KF search cost. */
+	private final double maxCost;
+
+	/** Max cost to nucleate KFs. */
+	private final double maxInitialCost;
+
+	/*
+	 * Kalman filter variances.
+	 *
+	 * The search radius is used to derive an estimate of the noise that
+	 * affects position and velocity. The two are linked: if we need a large
+	 * search radius, then the fluctuations over predicted states are large.
+	 */
+
+	private final double positionProcessStd;
+
+	private final double velocityProcessStd;
+
+	private double positionMeasurementStd;
+
+	private boolean savePredictions = false;
+
+	private String errorMessage;
+
+	/**
+	 * The master map that contains the currently active KFs. Is
+	 * <code>null</code> until the second non-empty frame.
+	 */
+	private Map< CVMKalmanFilter, Spot > kalmanFiltersMap;
+
+	/** Spots in the PREVIOUS frame that were not part of a link. */
+	private Collection< Spot > previousOrphanSpots = Collections.emptyList();
+
+	private Integer lastFrame;
+
+	/*
+	 * CONSTRUCTORS
+	 */
+
+	/**
+	 * Creates a tracker that links spots based on their square distance, plus
+	 * the specified feature penalties.
+	 *
+	 * @param maxSearchRadius
+	 *            the max distance between a prediction and a measurement.
+	 * @param maxFrameGap
+	 *            the max number of frames a Kalman filter can go without
+	 *            measurement.
+	 * @param initialSearchRadius
+	 *            the max distance to nucleate a new Kalman filter.
+	 * @param featurePenalties
+	 *            feature penalties to base costs on. Can be <code>null</code>.
+	 */
+	public OnlineKalmanTracker( final double maxSearchRadius, final int maxFrameGap, final double initialSearchRadius, final Map< String, Double > featurePenalties )
+	{
+		this( maxSearchRadius, maxFrameGap, initialSearchRadius, featurePenalties, createCostFunction( featurePenalties ) );
+	}
+
+	/**
+	 * Creates a tracker that links spots with the specified cost function.
+	 *
+	 * @param maxSearchRadius
+	 *            the max distance between a prediction and a measurement.
+	 * @param maxFrameGap
+	 *            the max number of frames a Kalman filter can go without
+	 *            measurement.
+	 * @param initialSearchRadius
+	 *            the max distance to nucleate a new Kalman filter.
+	 * @param featurePenalties
+	 *            the features to copy from a spot to its predictions. Can be
+	 *            <code>null</code>.
+	 * @param costFunction
+	 *            the cost function used both to link predictions to
+	 *            measurements and to nucleate Kalman filters.
+	 */
+	public OnlineKalmanTracker( final double maxSearchRadius, final int maxFrameGap, final double initialSearchRadius, final Map< String, Double > featurePenalties, final CostFunction< Spot, Spot > costFunction )
+	{
+		this.maxFrameGap = maxFrameGap;
+		this.featurePenalties = featurePenalties;
+		this.costFunction = costFunction;
+		this.maxCost = maxSearchRadius * maxSearchRadius;
+		this.maxInitialCost = initialSearchRadius * initialSearchRadius;
+		this.positionProcessStd = maxSearchRadius / 3d;
+		this.velocityProcessStd = maxSearchRadius / 3d;
+	}
+
+	/*
+	 * PUBLIC METHODS
+	 */
+
+	@Override
+	public boolean addFrame( final int frame, final Collection< Spot > spots )
+	{
+		if ( null != lastFrame && frame <= lastFrame )
+		{
+			errorMessage = BASE_ERROR_MSG + "Frame " + frame + " was added after frame " + lastFrame + ".";
+			return false;
+		}
+
+		if ( null == kalmanFiltersMap )
+		{
+			/*
+			 * Initialize. Find first links just based on square distance. We
+			 * do this via the orphan spots lists.
+			 */
+			lastFrame = frame;
+			if ( spots.isEmpty() )
+				return true;
+
+			if ( previousOrphanSpots.isEmpty() )
+			{
+				previousOrphanSpots = new ArrayList<>( spots );
+				return true;
+			}
+
+			/*
+			 * We assume the detector did a good job and that positions
+			 * measured are accurate up to a fraction of the spot radius
+			 */
+			double meanSpotRadius = 0d;
+			for ( final Spot spot : spots )
+				meanSpotRadius += spot.getFeature( Spot.RADIUS ).doubleValue();
+
+			meanSpotRadius /= spots.size();
+			positionMeasurementStd = meanSpotRadius / 10d;
+			kalmanFiltersMap = new HashMap<>( spots.size() );
+			return step( frame, new ArrayList<>( spots ) );
+		}
+
+		// Frames we did not receive are empty.
+		for ( int missing = lastFrame + 1; missing < frame; missing++ )
+			if ( !step( missing, Collections.emptyList() ) )
+				return false;
+
+		return step( frame, new ArrayList<>( spots ) );
+	}
+
+	@Override
+	public boolean finish()
+	{
+		return true;
+	}
+
+	@Override
+	public int getCompletedFrame()
+	{
+		if ( null == lastFrame )
+			return Integer.MIN_VALUE;
+
+		/*
+		 * New links start from the last spot of a Kalman filter, or from an
+		 * orphan spot of the previous frame.
+		 */
+		int completed = lastFrame.intValue() - 1;
+		for ( final Spot spot : previousOrphanSpots )
+			completed = Math.min( completed, spot.getFeature( Spot.FRAME ).intValue() - 1 );
+		if ( null != kalmanFiltersMap )
+			for ( final Spot spot : kalmanFiltersMap.values() )
+				completed = Math.min( completed, spot.getFeature( Spot.FRAME ).intValue() - 1 );
+		return completed;
+	}
+
+	@Override
+	public SimpleWeightedGraph< Spot, DefaultWeightedEdge > getResult()
+	{
+		return graph;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	/**
+	 * Returns the saved predicted state as a {@link SpotCollection}.
+	 *
+	 * @return the predicted states.
+	 * @see #setSavePredictions(boolean)
+	 */
+	public SpotCollection getPredictions()
+	{
+		return predictionsCollection;
+	}
+
+	/**
+	 * Sets whether the tracker saves the predicted states.
+	 *
+	 * @param doSave
+	 *            if <code>true</code>, the predicted states will be saved.
+	 * @see #getPredictions()
+	 */
+	public void setSavePredictions( final boolean doSave )
+	{
+		this.savePredictions = doSave;
+	}
+
+	@Override
+	public void setLogger( final Logger logger )
+	{}
+
+	@Override
+	public void setNumThreads()
+	{}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{}
+
+	@Override
+	public int getNumThreads()
+	{
+		return 1;
+	}
+
+	/*
+	 * PRIVATE METHODS
+	 */
+
+	/**
+	 * Links the measurements of the specified frame to the predictions of the
+	 * Kalman filters, then the remaining ones to the orphans of the previous
+	 * frame.
+	 */
+	private boolean step( final int frame, final List< Spot > measurements )
+	{
+		lastFrame = frame;
+
+		/*
+		 * Predict for all Kalman filters, and use it to generate linking
+		 * candidates.
+		 */
+		final Map< Spot, CVMKalmanFilter > predictionMap = new HashMap<>( kalmanFiltersMap.size() );
+		for ( final CVMKalmanFilter kf : kalmanFiltersMap.keySet() )
+		{
+			final double[] X = kf.predict();
+			final Spot s = kalmanFiltersMap.get( kf );
+			final Spot predSpot = new Spot( X[ 0 ], X[ 1 ], X[ 2 ], s.getFeature( Spot.RADIUS ), s.getFeature( Spot.QUALITY ) );
+			// copy the necessary features of original spot to the predicted
+			// spot
+			if ( null != featurePenalties )
+				predSpot.copyFeatures( s, featurePenalties );
+
+			predictionMap.put( predSpot, kf );
+
+			if ( savePredictions )
+			{
+				final Spot pred = new Spot( X[ 0 ], X[ 1 ], X[ 2 ], s.getFeature( Spot.RADIUS ), s.getFeature( Spot.QUALITY ) );
+				pred.setName( "Pred_" + s.getName() );
+				pred.putFeature( Spot.RADIUS, s.getFeature( Spot.RADIUS ) );
+				predictionsCollection.add( predSpot, frame );
+			}
+
+		}
+		final List< Spot > predictions = new ArrayList<>( predictionMap.keySet() );
+
+		/*
+		 * The KF for which we could not find a measurement in the target
+		 * frame. Is updated later.
+		 */
+		final Collection< CVMKalmanFilter > childlessKFs = new HashSet<>( kalmanFiltersMap.keySet() );
+
+		/*
+		 * Find the global (in space) optimum for associating a prediction to a
+		 * measurement.
+		 */
+
+		final Collection< Spot > orphanSpots = new HashSet<>( measurements );
+		if ( !predictions.isEmpty() && !measurements.isEmpty() )
+		{
+			// Only link measurements to predictions if we have predictions.
+			final JaqamanLinkingCostMatrixCreator< Spot, Spot > crm = new JaqamanLinkingCostMatrixCreator<>(
+					predictions,
+					measurements,
+					costFunction,
+					maxCost,
+					ALTERNATIVE_COST_FACTOR,
+					PERCENTILE );
+			final JaqamanLinker< Spot, Spot > linker = new JaqamanLinker<>( crm );
+			if ( !linker.checkInput() || !linker.process() )
+			{
+				errorMessage = BASE_ERROR_MSG + "Error linking candidates in frame " + frame + ": " + linker.getErrorMessage();
+				return false;
+			}
+			final Map< Spot, Spot > agnts = linker.getResult();
+			final Map< Spot, Double > costs = linker.getAssignmentCosts();
+			// Deal with found links.
+			for ( final Spot spotty : agnts.keySet() )
+			{
+				final CVMKalmanFilter kf = predictionMap.get( spotty );
+
+				// Create links for found match.
+				final Spot source = kalmanFiltersMap.get( kf );
+				final Spot target = agnts.get( spotty );
+
+				graph.addVertex( source );
+				graph.addVertex( target );
+				final DefaultWeightedEdge edge = graph.addEdge( source, target );
+				final double cost = costs.get( spotty );
+				graph.setEdgeWeight( edge, cost );
+
+				// Update Kalman filter
+				kf.update( toMeasurement( target ) );
+
+				// Update Kalman track spot
+				kalmanFiltersMap.put( kf, target );
+
+				// Remove from orphan set
+				orphanSpots.remove( target );
+
+				// Remove from childless KF set
+				childlessKFs.remove( kf );
+			}
+		}
+
+		/*
+		 * Deal with orphans from the previous frame. (We deal with orphans
+		 * from previous frame only now because we want to link in priority
+		 * target spots to predictions. Nucleating new KF from nearest neighbor
+		 * only comes second.
+		 */
+		if ( !previousOrphanSpots.isEmpty() && !orphanSpots.isEmpty() )
+		{
+
+			/*
+			 * We now deal with orphans of the previous frame. We try to find
+			 * them a target from the list of spots that are not already part
+			 * of a link created via KF. That is: the orphan spots of this
+			 * frame.
+			 */
+
+			final JaqamanLinkingCostMatrixCreator< Spot, Spot > ic = new JaqamanLinkingCostMatrixCreator<>(
+					previousOrphanSpots,
+					orphanSpots,
+					costFunction,
+					maxInitialCost,
+					ALTERNATIVE_COST_FACTOR,
+					PERCENTILE );
+			final JaqamanLinker< Spot, Spot > newLinker = new JaqamanLinker<>( ic );
+			if ( !newLinker.checkInput() || !newLinker.process() )
+			{
+				errorMessage = BASE_ERROR_MSG + "Error linking spots from frame " + ( frame - 1 ) + " to frame " + frame + ": " + newLinker.getErrorMessage();
+				return false;
+			}
+			final Map< Spot, Spot > newAssignments = newLinker.getResult();
+			final Map< Spot, Double > assignmentCosts = newLinker.getAssignmentCosts();
+
+			// Build links and new KFs from these links.
+			for ( final Spot source : newAssignments.keySet() )
+			{
+				final Spot target = newAssignments.get( source );
+
+				// Remove from orphan collection.
+				orphanSpots.remove( target );
+
+				// Derive initial state and create Kalman filter.
+				final double[] XP = estimateInitialState( source, target );
+				final CVMKalmanFilter kt = new CVMKalmanFilter( XP, Double.MIN_NORMAL, positionProcessStd, velocityProcessStd, positionMeasurementStd );
+				// We trust the initial state a lot.
+
+				// Store filter and source
+				kalmanFiltersMap.put( kt, target );
+
+				// Add edge to the graph.
+				graph.addVertex( source );
+				graph.addVertex( target );
+				final DefaultWeightedEdge edge = graph.addEdge( source, target );
+				final double cost = assignmentCosts.get( source );
+				graph.setEdgeWeight( edge, cost );
+			}
+		}
+		previousOrphanSpots = orphanSpots;
+
+		// Deal with childless KFs.
+		for ( final CVMKalmanFilter kf : childlessKFs )
+		{
+			// Echo we missed a measurement
+			kf.update( null );
+
+			/*
+			 * We can bridge a limited number of gaps. If too much, we die. If
+			 * not, we will use predicted state next time.
+			 */
+			if ( kf.getNOcclusion() > maxFrameGap )
+				kalmanFiltersMap.remove( kf );
+		}
+		return true;
+	}
+
+	private static final double[] toMeasurement( final Spot spot )
+	{
+		final double[] d = new double[] {
+				spot.getDoublePosition( 0 ),
+				spot.getDoublePosition( 1 ),
+				spot.getDoublePosition( 2 )
+		};
+		return d;
+	}
+
+	private static final double[] estimateInitialState( final Spot first, final Spot second )
+	{
+		final double[] xp = new double[] {
+				second.getDoublePosition( 0 ),
+				second.getDoublePosition( 1 ),
+				second.getDoublePosition( 2 ),
+				second.diffTo( first, Spot.POSITION_X ),
+				second.diffTo( first, Spot.POSITION_Y ),
+				second.diffTo( first, Spot.POSITION_Z )
+		};
+		return xp;
+	}
+
+	/**
+	 * Creates the default cost function.
+	 *
+	 * @param featurePenalties
+	 *            feature penalties to base costs on. Can be <code>null</code>.
+	 * @return a new {@link CostFunction}
+	 */
+	static CostFunction< Spot, Spot > createCostFunction( final Map< String, Double > featurePenalties )
+	{
+		if ( null == featurePenalties || featurePenalties.isEmpty() )
+			return new SquareDistCostFunction();
+
+		return new FeaturePenaltyCostFunction( featurePenalties );
+	}
+}
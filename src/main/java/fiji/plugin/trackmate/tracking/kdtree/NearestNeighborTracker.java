@@ -127,64 +127,7 @@ public class NearestNeighborTracker extends MultiThreadedBenchmarkAlgorithm impl
 					final int sourceFrame = frame;
 					final int targetFrame = frames.higher( frame );
 
-					final int nTargetSpots = spots.getNSpots( targetFrame, true );
-					if ( nTargetSpots < 1 )
-					{
-						logger.setProgress( progress.incrementAndGet() / ( double ) frames.size() );
-						return null;
-					}
-
-					final List< RealPoint > targetCoords = new ArrayList<>( nTargetSpots );
-					final List< FlagNode< Spot > > targetNodes = new ArrayList<>( nTargetSpots );
-					final Iterator< Spot > targetIt = spots.iterator( targetFrame, true );
-					while ( targetIt.hasNext() )
-					{
-						final double[] coords = new double[ 3 ];
-						final Spot spot = targetIt.next();
-						spot.localize( coords );
-						targetCoords.add( new RealPoint( coords ) );
-						targetNodes.add( new FlagNode<>( spot ) );
-					}
-
-					final KDTree< FlagNode< Spot > > tree = new KDTree<>( targetNodes, targetCoords );
-					final NearestNeighborFlagSearchOnKDTree< Spot > search = new NearestNeighborFlagSearchOnKDTree<>( tree );
-
-					/*
-					 * For each spot in the source frame, find its nearest
-					 * neighbor in the target frame.
-					 */
-					final Iterator< Spot > sourceIt = spots.iterator( sourceFrame, true );
-					while ( sourceIt.hasNext() )
-					{
-						final Spot source = sourceIt.next();
-						final double[] coords = new double[ 3 ];
-						source.localize( coords );
-						final RealPoint sourceCoords = new RealPoint( coords );
-						search.search( sourceCoords );
-
-						final double squareDist = search.getSquareDistance();
-						final FlagNode< Spot > targetNode = search.getSampler().get();
-
-						/*
-						 * The closest we could find is too far. We skip this
-						 * source spot and do not create a link
-						 */
-						if ( squareDist > maxDistSquare )
-							continue;
-
-						/*
-						 * Everything is ok. This node is free and below max
-						 * dist. We create a link and mark this node as
-						 * assigned.
-						 */
-
-						targetNode.setVisited( true );
-						synchronized ( graph )
-						{
-							final DefaultWeightedEdge edge = graph.addEdge( source, targetNode.getValue() );
-							graph.setEdgeWeight( edge, squareDist );
-						}
-					}
+					link( spots.iterator( sourceFrame, true ), spots.iterator( targetFrame, true ), maxDistSquare, graph );
 					logger.setProgress( progress.incrementAndGet() / ( double ) frames.size() );
 					return null;
 				}
@@ -233,6 +176,74 @@ public class NearestNeighborTracker extends MultiThreadedBenchmarkAlgorithm impl
 			graph.addVertex( it.next() );
 	}
 
+	/**
+	 * Links each source spot to its nearest target spot, if it is closer than
+	 * the specified distance and was not already taken by another source. The
+	 * spots must already be vertices of the graph.
+	 *
+	 * @param sourceIt
+	 *            the source spots.
+	 * @param targetIt
+	 *            the target spots.
+	 * @param maxDistSquare
+	 *            the maximal square distance for a link.
+	 * @param graph
+	 *            the graph to add links to.
+	 */
+	static void link( final Iterator< Spot > sourceIt, final Iterator< Spot > targetIt, final double maxDistSquare, final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph )
+	{
+		final List< RealPoint > targetCoords = new ArrayList<>();
+		final List< FlagNode< Spot > > targetNodes = new ArrayList<>();
+		while ( targetIt.hasNext() )
+		{
+			final double[] coords = new double[ 3 ];
+			final Spot spot = targetIt.next();
+			spot.localize( coords );
+			targetCoords.add( new RealPoint( coords ) );
+			targetNodes.add( new FlagNode<>( spot ) );
+		}
+		if ( targetNodes.isEmpty() )
+			return;
+
+		final KDTree< FlagNode< Spot > > tree = new KDTree<>( targetNodes, targetCoords );
+		final NearestNeighborFlagSearchOnKDTree< Spot > search = new NearestNeighborFlagSearchOnKDTree<>( tree );
+
+		/*
+		 * For each spot in the source frame, find its nearest neighbor in the
+		 * target frame.
+		 */
+		while ( sourceIt.hasNext() )
+		{
+			final Spot source = sourceIt.next();
+			final double[] coords = new double[ 3 ];
+			source.localize( coords );
+			final RealPoint sourceCoords = new RealPoint( coords );
+			search.search( sourceCoords );
+
+			final double squareDist = search.getSquareDistance();
+			final FlagNode< Spot > targetNode = search.getSampler().get();
+
+			/*
+			 * The closest we could find is too far. We skip this source spot
+			 * and do not create a link
+			 */
+			if ( squareDist > maxDistSquare )
+				continue;
+
+			/*
+			 * Everything is ok. This node is free and below max dist. We
+			 * create a link and mark this node as assigned.
+			 */
+
+			targetNode.setVisited( true );
+			synchronized ( graph )
+			{
+				final DefaultWeightedEdge edge = graph.addEdge( source, targetNode.getValue() );
+				graph.setEdgeWeight( edge, squareDist );
+			}
+		}
+	}
+
 	public static boolean checkInput( final Map< String, Object > settings, final StringBuilder errrorHolder )
 	{
 		boolean ok = checkParameter( settings, KEY_LINKING_MAX_DISTANCE, Double.class, errrorHolder );
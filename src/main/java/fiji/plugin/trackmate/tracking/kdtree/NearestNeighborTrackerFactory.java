@@ -39,6 +39,7 @@ import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.gui.components.ConfigurationPanel;
 import fiji.plugin.trackmate.gui.components.tracker.NearestNeighborTrackerSettingsPanel;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTracker;
 import fiji.plugin.trackmate.tracking.SpotTrackerFactory;
 
@@ -97,6 +98,12 @@ public class NearestNeighborTrackerFactory implements SpotTrackerFactory
 		return new NearestNeighborTracker( spots, settings );
 	}
 
+	@Override
+	public OnlineSpotTracker createOnline( final Map< String, Object > settings )
+	{
+		return new OnlineNearestNeighborTracker( settings );
+	}
+
 	@Override
 	public ConfigurationPanel getTrackerConfigurationPanel( final Model model )
 	{
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.kdtree;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.OnlineSpotTracker;
+
+/**
+ * The {@link OnlineSpotTracker} version of the {@link NearestNeighborTracker}:
+ * each frame is linked to the previous one as soon as it is added.
+ */
+public class OnlineNearestNeighborTracker implements OnlineSpotTracker
+{
+
+	private static final String BASE_ERROR_MESSAGE = "[OnlineNearestNeighborTracker] ";
+
+	private final double maxDistSquare;
+
+	private final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+
+	private List< Spot > previousSpots = Collections.emptyList();
+
+	private Integer previousFrame;
+
+	private String errorMessage;
+
+	public OnlineNearestNeighborTracker( final Map< String, Object > settings )
+	{
+		final double maxLinkingDistance = ( Double ) settings.get( KEY_LINKING_MAX_DISTANCE );
+		this.maxDistSquare = maxLinkingDistance * maxLinkingDistance;
+	}
+
+	@Override
+	public boolean addFrame( final int frame, final Collection< Spot > spots )
+	{
+		if ( null != previousFrame && frame <= previousFrame )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Frame " + frame + " was added after frame " + previousFrame + ".";
+			return false;
+		}
+
+		for ( final Spot spot : spots )
+			graph.addVertex( spot );
+		NearestNeighborTracker.link( previousSpots.iterator(), spots.iterator(), maxDistSquare, graph );
+
+		previousSpots = new ArrayList<>( spots );
+		previousFrame = frame;
+		return true;
+	}
+
+	@Override
+	public boolean finish()
+	{
+		previousSpots = Collections.emptyList();
+		return true;
+	}
+
+	@Override
+	public int getCompletedFrame()
+	{
+		// The spots of the last frame can be linked to the next one.
+		return ( null == previousFrame ) ? Integer.MIN_VALUE : previousFrame.intValue() - 1;
+	}
+
+	@Override
+	public SimpleWeightedGraph< Spot, DefaultWeightedEdge > getResult()
+	{
+		return graph;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public void setLogger( final Logger logger )
+	{}
+
+	@Override
+	public void setNumThreads()
+	{}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{}
+
+	@Override
+	public int getNumThreads()
+	{
+		return 1;
+	}
+}
@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.overlap;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a set of 2D axis-aligned boxes, used to find the boxes
+ * that overlap a query box without testing all of them.
+ * <p>
+ * Each box is stored in all the cells it covers. A search only inspects the
+ * cells covered by the query box, and reports each box once. The grid is
+ * immutable once built, and can be searched concurrently.
+ */
+final class BoxGrid
+{
+
+	/** Box bounds, flattened as <code>minX, minY, maxX, maxY</code>. */
+	private final double[] boxes;
+
+	private final double minX;
+
+	private final double minY;
+
+	private final int nCellsX;
+
+	private final int nCellsY;
+
+	private final double cellSize;
+
+	/** Start of the boxes of each cell in {@link #cellBoxes}. */
+	private final int[] cellStart;
+
+	/** Box indices sorted by cell. */
+	private final int[] cellBoxes;
+
+	/**
+	 * Builds a grid over the specified boxes.
+	 *
+	 * @param boxes
+	 *            the box bounds, flattened as
+	 *            <code>minX0, minY0, maxX0, maxY0, minX1, ...</code>.
+	 */
+	BoxGrid( final double[] boxes )
+	{
+		this.boxes = boxes;
+		final int n = boxes.length / 4;
+
+		double x0 = Double.POSITIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		double meanSize = 0.;
+		for ( int i = 0; i < n; i++ )
+		{
+			x0 = Math.min( x0, boxes[ 4 * i ] );
+			y0 = Math.min( y0, boxes[ 4 * i + 1 ] );
+			x1 = Math.max( x1, boxes[ 4 * i + 2 ] );
+			y1 = Math.max( y1, boxes[ 4 * i + 3 ] );
+			meanSize += Math.max( boxes[ 4 * i + 2 ] - boxes[ 4 * i ], boxes[ 4 * i + 3 ] - boxes[ 4 * i + 1 ] );
+		}
+		meanSize /= Math.max( 1, n );
+		if ( n == 0 || !Double.isFinite( x1 - x0 ) || !Double.isFinite( y1 - y0 ) )
+		{
+			x0 = 0.;
+			y0 = 0.;
+			x1 = 0.;
+			y1 = 0.;
+		}
+		this.minX = x0;
+		this.minY = y0;
+
+		/*
+		 * Cells about the size of the boxes, so that a box covers a few
+		 * cells. Make them larger if there would be too many cells for the
+		 * number of boxes.
+		 */
+		final long maxCells = Math.max( 1024l, 4l * n );
+		double cs = ( meanSize > 0. && Double.isFinite( meanSize ) ) ? meanSize : 1.;
+		long nx;
+		long ny;
+		while ( true )
+		{
+			nx = ( long ) Math.floor( ( x1 - x0 ) / cs ) + 1l;
+			ny = ( long ) Math.floor( ( y1 - y0 ) / cs ) + 1l;
+			if ( nx * ny <= maxCells )
+				break;
+			cs *= 2.;
+		}
+		this.cellSize = cs;
+		this.nCellsX = ( int ) nx;
+		this.nCellsY = ( int ) ny;
+
+		// Counting sort of the boxes by cell, a box being in all its cells.
+		final int nTotal = nCellsX * nCellsY;
+		this.cellStart = new int[ nTotal + 1 ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final int cx0 = cellX( boxes[ 4 * i ] );
+			final int cy0 = cellY( boxes[ 4 * i + 1 ] );
+			final int cx1 = cellX( boxes[ 4 * i + 2 ] );
+			final int cy1 = cellY( boxes[ 4 * i + 3 ] );
+			for ( int cy = cy0; cy <= cy1; cy++ )
+				for ( int cx = cx0; cx <= cx1; cx++ )
+					cellStart[ cy * nCellsX + cx + 1 ]++;
+		}
+		for ( int c = 0; c < nTotal; c++ )
+			cellStart[ c + 1 ] += cellStart[ c ];
+		this.cellBoxes = new int[ cellStart[ nTotal ] ];
+		final int[] fill = Arrays.copyOf( cellStart, nTotal );
+		for ( int i = 0; i < n; i++ )
+		{
+			final int cx0 = cellX( boxes[ 4 * i ] );
+			final int cy0 = cellY( boxes[ 4 * i + 1 ] );
+			final int cx1 = cellX( boxes[ 4 * i + 2 ] );
+			final int cy1 = cellY( boxes[ 4 * i + 3 ] );
+			for ( int cy = cy0; cy <= cy1; cy++ )
+				for ( int cx = cx0; cx <= cx1; cx++ )
+					cellBoxes[ fill[ cy * nCellsX + cx ]++ ] = i;
+		}
+	}
+
+	/**
+	 * Returns the indices of the boxes that overlap the specified box, with
+	 * an intersection of non-zero area, in increasing order.
+	 *
+	 * @param query
+	 *            the array holding the query box bounds.
+	 * @param offset
+	 *            the offset of the query box in this array.
+	 * @return a new array of box indices.
+	 */
+	int[] search( final double[] query, final int offset )
+	{
+		final double qx0 = query[ offset ];
+		final double qy0 = query[ offset + 1 ];
+		final double qx1 = query[ offset + 2 ];
+		final double qy1 = query[ offset + 3 ];
+		if ( cellBoxes.length == 0 || !( qx0 < qx1 ) || !( qy0 < qy1 ) )
+			return new int[ 0 ];
+
+		final int cx0 = cellX( qx0 );
+		final int cy0 = cellY( qy0 );
+		final int cx1 = cellX( qx1 );
+		final int cy1 = cellY( qy1 );
+		int[] hits = new int[ 16 ];
+		int size = 0;
+		for ( int cy = cy0; cy <= cy1; cy++ )
+		{
+			for ( int cx = cx0; cx <= cx1; cx++ )
+			{
+				final int cell = cy * nCellsX + cx;
+				for ( int k = cellStart[ cell ]; k < cellStart[ cell + 1 ]; k++ )
+				{
+					final int i = cellBoxes[ k ];
+					final double bx0 = boxes[ 4 * i ];
+					final double by0 = boxes[ 4 * i + 1 ];
+
+					// Report a box only in the first cell shared with the query.
+					if ( cx != Math.max( cx0, cellX( bx0 ) ) || cy != Math.max( cy0, cellY( by0 ) ) )
+						continue;
+					if ( !( bx0 < qx1 && qx0 < boxes[ 4 * i + 2 ] && by0 < qy1 && qy0 < boxes[ 4 * i + 3 ] ) )
+						continue;
+
+					if ( size == hits.length )
+						hits = Arrays.copyOf( hits, 2 * size );
+					hits[ size++ ] = i;
+				}
+			}
+		}
+		final int[] result = Arrays.copyOf( hits, size );
+		Arrays.sort( result );
+		return result;
+	}
+
+	private int cellX( final double x )
+	{
+		return Math.max( 0, Math.min( nCellsX - 1, ( int ) Math.floor( ( x - minX ) / cellSize ) ) );
+	}
+
+	private int cellY( final double y )
+	{
+		return Math.max( 0, Math.min( nCellsY - 1, ( int ) Math.floor( ( y - minY ) / cellSize ) ) );
+	}
+}
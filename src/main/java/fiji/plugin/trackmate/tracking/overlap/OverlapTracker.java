@@ -25,8 +25,6 @@ import static fiji.plugin.trackmate.tracking.overlap.OverlapTrackerFactory.BASE_
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +49,6 @@ import math.geom2d.Point2D;
 import math.geom2d.conic.Circle2D;
 import math.geom2d.polygon.Polygon2D;
 import math.geom2d.polygon.Polygons2D;
-import math.geom2d.polygon.Rectangle2D;
 import math.geom2d.polygon.SimplePolygon2D;
 import net.imglib2.algorithm.MultiThreadedBenchmarkAlgorithm;
 
@@ -60,7 +57,8 @@ public class OverlapTracker extends MultiThreadedBenchmarkAlgorithm implements S
 
 	public static enum IoUCalculation
 	{
-		FAST( "Fast", "IoU is calculated using the bounding box of the spot." ), PRECISE( "Precise", "IoU is calculated over the shape of the spot ROI." );
+		FAST( "Fast", "IoU is calculated using the bounding box of the spot." ), PRECISE( "Precise", "IoU is calculated over the shape of the spot ROI." ),
+		RASTER( "Raster", "IoU is calculated by counting the pixels covered by the spot ROIs, on a grid about 20 times finer than the spot diameter." );
 
 		private final String str;
 
@@ -84,6 +82,12 @@ public class OverlapTracker extends MultiThreadedBenchmarkAlgorithm implements S
 		}
 	}
 
+	/**
+	 * The number of grid pixels per mean spot radius for the raster IoU
+	 * calculation.
+	 */
+	private static final double RASTER_PIXELS_PER_RADIUS = 10.;
+
 	private SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph;
 
 	private Logger logger = Logger.VOID_LOGGER;
@@ -189,61 +193,75 @@ public class OverlapTracker extends MultiThreadedBenchmarkAlgorithm implements S
 		// Prepare frame pairs in order, not necessarily separated by 1.
 		final Iterator< Integer > frameIterator = spots.keySet().iterator();
 
+		// All the masks share the same grid.
+		final double pixelSize = ( method == IoUCalculation.RASTER ) ? rasterPixelSize() : Double.NaN;
+
 		// First frame.
 		final int sourceFrame = frameIterator.next();
-		Map< Spot, Polygon2D > sourceGeometries = createGeometry( spots.iterable( sourceFrame, true ), method, enlargeFactor );
+		FrameGeometry sourceGeometry = new FrameGeometry( spots.iterable( sourceFrame, true ), method, enlargeFactor, pixelSize );
 
 		logger.setStatus( "Frame to frame linking..." );
 		int progress = 0;
-		while ( frameIterator.hasNext() )
+		final ExecutorService executors = Threads.newFixedThreadPool( numThreads );
+		try
 		{
-			if ( !ok.get() || isCanceled() )
-				break;
-
-			final int targetFrame = frameIterator.next();
-			final Map< Spot, Polygon2D > targetGeometries = createGeometry( spots.iterable( targetFrame, true ), method, enlargeFactor );
-
-			if ( sourceGeometries.isEmpty() || targetGeometries.isEmpty() )
-				continue;
-
-			final ExecutorService executors = Threads.newFixedThreadPool( numThreads );
-			final List< Future< IoULink > > futures = new ArrayList<>();
-
-			// Submit work.
-			for ( final Spot target : targetGeometries.keySet() )
-			{
-				final Polygon2D targetPoly = targetGeometries.get( target );
-				futures.add( executors.submit( new FindBestSourceTask( target, targetPoly, sourceGeometries, minIoU ) ) );
-			}
-
-			// Get results.
-			for ( final Future< IoULink > future : futures )
+			while ( frameIterator.hasNext() )
 			{
 				if ( !ok.get() || isCanceled() )
 					break;
 
-				try
+				final int targetFrame = frameIterator.next();
+				final FrameGeometry targetGeometry = new FrameGeometry( spots.iterable( targetFrame, true ), method, enlargeFactor, pixelSize );
+
+				// Empty frames are skipped.
+				if ( targetGeometry.spots.isEmpty() )
+					continue;
+				if ( sourceGeometry.spots.isEmpty() )
 				{
-					final IoULink link = future.get();
-					if ( link.source == null )
-						continue;
+					sourceGeometry = targetGeometry;
+					continue;
+				}
 
-					graph.addVertex( link.source );
-					graph.addVertex( link.target );
-					final DefaultWeightedEdge edge = graph.addEdge( link.source, link.target );
-					graph.setEdgeWeight( edge, 1. - link.iou );
+				// Only test the sources whose bounding box overlaps the target one.
+				final BoxGrid sourceGrid = new BoxGrid( sourceGeometry.boxes );
+				final List< Future< IoULink > > futures = new ArrayList<>( targetGeometry.spots.size() );
 
-				}
-				catch ( InterruptedException | ExecutionException e )
+				// Submit work.
+				for ( int t = 0; t < targetGeometry.spots.size(); t++ )
+					futures.add( executors.submit( new FindBestSourceTask( t, targetGeometry, sourceGeometry, sourceGrid, minIoU ) ) );
+
+				// Get results.
+				for ( final Future< IoULink > future : futures )
 				{
-					errorMessage = e.getMessage();
-					ok.set( false );
+					if ( !ok.get() || isCanceled() )
+						break;
+
+					try
+					{
+						final IoULink link = future.get();
+						if ( link.source == null )
+							continue;
+
+						graph.addVertex( link.source );
+						graph.addVertex( link.target );
+						final DefaultWeightedEdge edge = graph.addEdge( link.source, link.target );
+						graph.setEdgeWeight( edge, 1. - link.iou );
+
+					}
+					catch ( InterruptedException | ExecutionException e )
+					{
+						errorMessage = e.getMessage();
+						ok.set( false );
+					}
 				}
+
+				sourceGeometry = targetGeometry;
+				logger.setProgress( ( double ) progress++ / spots.keySet().size() );
 			}
+		}
+		finally
+		{
 			executors.shutdown();
-
-			sourceGeometries = targetGeometries;
-			logger.setProgress( ( double ) progress++ / spots.keySet().size() );
 		}
 
 		logger.setProgress( 1d );
@@ -273,25 +291,105 @@ public class OverlapTracker extends MultiThreadedBenchmarkAlgorithm implements S
 		return ok;
 	}
 
-	private static Map< Spot, Polygon2D > createGeometry( final Iterable< Spot > spots, final IoUCalculation method, final double scale )
+	/**
+	 * Returns the size of the pixels of the grid on which the raster IoU is
+	 * calculated, derived from the mean radius of the spots to track.
+	 */
+	private double rasterPixelSize()
+	{
+		double sumRadius = 0.;
+		int n = 0;
+		for ( final Spot spot : spots.iterable( true ) )
+		{
+			sumRadius += spot.getFeature( Spot.RADIUS ).doubleValue();
+			n++;
+		}
+		final double pixelSize = sumRadius / Math.max( 1, n ) * enlargeFactor / RASTER_PIXELS_PER_RADIUS;
+		return ( pixelSize > 0. && Double.isFinite( pixelSize ) ) ? pixelSize : 1.;
+	}
+
+	/**
+	 * The shapes of the spots of one frame, as used by the IoU calculation
+	 * method, with their bounding box and area.
+	 */
+	private static final class FrameGeometry
 	{
-		final Map< Spot, Polygon2D > geometries = new HashMap<>();
-		switch ( method )
+
+		private final IoUCalculation method;
+
+		private final List< Spot > spots;
+
+		/** Bounding boxes, flattened as <code>minX, minY, maxX, maxY</code>. */
+		private final double[] boxes;
+
+		/** Shape areas, in physical units or pixels. */
+		private final double[] areas;
+
+		/** Spot polygons, for the precise method. */
+		private final Polygon2D[] polygons;
+
+		/** Spot masks, for the raster method. */
+		private final SpanMask[] masks;
+
+		public FrameGeometry( final Iterable< Spot > spotIterable, final IoUCalculation method, final double scale, final double pixelSize )
+		{
+			this.method = method;
+			this.spots = new ArrayList<>();
+			spotIterable.forEach( spots::add );
+			final int n = spots.size();
+			this.boxes = new double[ 4 * n ];
+			this.areas = new double[ n ];
+			this.polygons = ( method == IoUCalculation.PRECISE ) ? new Polygon2D[ n ] : null;
+			this.masks = ( method == IoUCalculation.RASTER ) ? new SpanMask[ n ] : null;
+			for ( int i = 0; i < n; i++ )
+			{
+				final Spot spot = spots.get( i );
+				boundingBox( spot, scale, boxes, 4 * i );
+				switch ( method )
+				{
+				case FAST:
+					areas[ i ] = ( boxes[ 4 * i + 2 ] - boxes[ 4 * i ] ) * ( boxes[ 4 * i + 3 ] - boxes[ 4 * i + 1 ] );
+					break;
+
+				case PRECISE:
+					polygons[ i ] = toPolygon( spot, scale );
+					areas[ i ] = Math.abs( polygons[ i ].area() );
+					break;
+
+				case RASTER:
+					masks[ i ] = toMask( spot, scale, pixelSize );
+					areas[ i ] = masks[ i ].area();
+					break;
+
+				default:
+					throw new IllegalArgumentException( "Do not know how to compute IoU for method " + method );
+				}
+			}
+		}
+
+		/**
+		 * Returns the area of the intersection of the shape of a spot of this
+		 * frame with the shape of a spot of the specified frame, whose
+		 * bounding boxes are known to overlap.
+		 */
+		private double intersection( final int i, final FrameGeometry other, final int j )
 		{
-		case FAST:
-			for ( final Spot spot : spots )
-				geometries.put( spot, toBoundingBox( spot, scale ) );
-			break;
-
-		case PRECISE:
-			for ( final Spot spot : spots )
-				geometries.put( spot, toPolygon( spot, scale ) );
-			break;
-
-		default:
-			throw new IllegalArgumentException( "Do not know how to compute IoU for method " + method );
+			switch ( method )
+			{
+			case FAST:
+				return ( Math.min( boxes[ 4 * i + 2 ], other.boxes[ 4 * j + 2 ] ) - Math.max( boxes[ 4 * i ], other.boxes[ 4 * j ] ) )
+						* ( Math.min( boxes[ 4 * i + 3 ], other.boxes[ 4 * j + 3 ] ) - Math.max( boxes[ 4 * i + 1 ], other.boxes[ 4 * j + 1 ] ) );
+
+			case PRECISE:
+				return Math.abs( Polygons2D.intersection( polygons[ i ], other.polygons[ j ] ).area() );
+
+			case RASTER:
+				return masks[ i ].intersection( other.masks[ j ] );
+
+			default:
+				throw new IllegalArgumentException( "Do not know how to compute IoU for method " + method );
+			}
 		}
-		return Collections.unmodifiableMap( geometries );
 	}
 
 	private static SimplePolygon2D toPolygon( final Spot spot, final double scale )
@@ -314,67 +412,104 @@ public class OverlapTracker extends MultiThreadedBenchmarkAlgorithm implements S
 		return poly.transform( AffineTransform2D.createScaling( new Point2D( xc, yc ), scale, scale ) );
 	}
 
-	private static Rectangle2D toBoundingBox( final Spot spot, final double scale )
+	private static SpanMask toMask( final Spot spot, final double scale, final double pixelSize )
 	{
 		final double xc = spot.getDoublePosition( 0 );
 		final double yc = spot.getDoublePosition( 1 );
 		final SpotRoi roi = spot.getRoi();
+		final double[] x;
+		final double[] y;
 		if ( roi == null )
 		{
 			final double radius = spot.getFeature( Spot.RADIUS ).doubleValue() * scale;
-			return new Rectangle2D( xc - radius, yc - radius, 2 * radius, 2 * radius );
+			final int nPoints = 32;
+			x = new double[ nPoints ];
+			y = new double[ nPoints ];
+			for ( int i = 0; i < nPoints; i++ )
+			{
+				final double theta = 2. * Math.PI * i / nPoints;
+				x[ i ] = xc + radius * Math.cos( theta );
+				y[ i ] = yc + radius * Math.sin( theta );
+			}
+		}
+		else
+		{
+			x = new double[ roi.x.length ];
+			y = new double[ roi.y.length ];
+			for ( int i = 0; i < x.length; i++ )
+			{
+				x[ i ] = xc + roi.x[ i ] * scale;
+				y[ i ] = yc + roi.y[ i ] * scale;
+			}
+		}
+		return SpanMask.rasterize( x, y, pixelSize );
+	}
+
+	private static void boundingBox( final Spot spot, final double scale, final double[] boxes, final int offset )
+	{
+		final double xc = spot.getDoublePosition( 0 );
+		final double yc = spot.getDoublePosition( 1 );
+		final SpotRoi roi = spot.getRoi();
+		if ( roi == null )
+		{
+			final double radius = spot.getFeature( Spot.RADIUS ).doubleValue() * scale;
+			boxes[ offset ] = xc - radius;
+			boxes[ offset + 1 ] = yc - radius;
+			boxes[ offset + 2 ] = xc + radius;
+			boxes[ offset + 3 ] = yc + radius;
 		}
 		else
 		{
-			final double minX = Arrays.stream( roi.x ).min().getAsDouble() * scale;
-			final double maxX = Arrays.stream( roi.x ).max().getAsDouble() * scale;
-			final double minY = Arrays.stream( roi.y ).min().getAsDouble() * scale;
-			final double maxY = Arrays.stream( roi.y ).max().getAsDouble() * scale;
-			return new Rectangle2D( xc + minX, yc + minY, maxX - minX, maxY - minY );
+			boxes[ offset ] = xc + Arrays.stream( roi.x ).min().getAsDouble() * scale;
+			boxes[ offset + 1 ] = yc + Arrays.stream( roi.y ).min().getAsDouble() * scale;
+			boxes[ offset + 2 ] = xc + Arrays.stream( roi.x ).max().getAsDouble() * scale;
+			boxes[ offset + 3 ] = yc + Arrays.stream( roi.y ).max().getAsDouble() * scale;
 		}
 	}
 
 	private static final class FindBestSourceTask implements Callable< IoULink >
 	{
 
-		private final Spot target;
+		private final int target;
+
+		private final FrameGeometry targetGeometry;
 
-		private final Polygon2D targetPoly;
+		private final FrameGeometry sourceGeometry;
 
-		private final Map< Spot, Polygon2D > sourceGeometries;
+		private final BoxGrid sourceGrid;
 
 		private final double minIoU;
 
-		public FindBestSourceTask( final Spot target, final Polygon2D targetPoly, final Map< Spot, Polygon2D > sourceGeometries, final double minIoU )
+		public FindBestSourceTask( final int target, final FrameGeometry targetGeometry, final FrameGeometry sourceGeometry, final BoxGrid sourceGrid, final double minIoU )
 		{
 			this.target = target;
-			this.targetPoly = targetPoly;
-			this.sourceGeometries = sourceGeometries;
+			this.targetGeometry = targetGeometry;
+			this.sourceGeometry = sourceGeometry;
+			this.sourceGrid = sourceGrid;
 			this.minIoU = minIoU;
 		}
 
 		@Override
 		public IoULink call() throws Exception
 		{
-			final double targetArea = Math.abs( targetPoly.area() );
+			final double targetArea = targetGeometry.areas[ target ];
 			double maxIoU = minIoU;
 			Spot bestSpot = null;
-			for ( final Spot spot : sourceGeometries.keySet() )
+			for ( final int source : sourceGrid.search( targetGeometry.boxes, 4 * target ) )
 			{
-				final Polygon2D sourcePoly = sourceGeometries.get( spot );
-				final double intersection = Math.abs( Polygons2D.intersection( targetPoly, sourcePoly ).area() );
+				final double intersection = targetGeometry.intersection( target, sourceGeometry, source );
 				if ( intersection == 0. )
 					continue;
 
-				final double union = Math.abs( sourcePoly.area() ) + targetArea - intersection;
+				final double union = sourceGeometry.areas[ source ] + targetArea - intersection;
 				final double iou = intersection / union;
 				if ( iou > maxIoU )
 				{
 					maxIoU = iou;
-					bestSpot = spot;
+					bestSpot = sourceGeometry.spots.get( source );
 				}
 			}
-			return new IoULink( bestSpot, target, maxIoU );
+			return new IoULink( bestSpot, targetGeometry.spots.get( target ), maxIoU );
 		}
 	}
 
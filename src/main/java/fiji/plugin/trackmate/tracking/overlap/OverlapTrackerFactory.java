@@ -67,8 +67,9 @@ public class OverlapTrackerFactory implements SpotTrackerFactory
 
 	/**
 	 * The key to the parameter that stores how the IoU should be calculated.
-	 * There are two methods specified as strings: <code>FAST_CALCULATION</code>
-	 * and <code>PRECISE_CALCULATION</code>.
+	 * There are three methods specified as strings:
+	 * <code>FAST_CALCULATION</code>, <code>PRECISE_CALCULATION</code> and
+	 * <code>RASTER_CALCULATION</code>.
 	 */
 	public static final String KEY_IOU_CALCULATION = "IOU_CALCULATION";
 
@@ -86,6 +87,13 @@ public class OverlapTrackerFactory implements SpotTrackerFactory
 	 */
 	public static final String PRECISE_CALCULATION = IoUCalculation.PRECISE.name();
 
+	/**
+	 * Value for the raster IoU calculation method.
+	 * 
+	 * @see #KEY_IOU_CALCULATION
+	 */
+	public static final String RASTER_CALCULATION = IoUCalculation.RASTER.name();
+
 	public static final String TRACKER_KEY = "OVERLAP_TRACKER";
 
 	public static final String TRACKER_NAME = "Overlap tracker";
@@ -101,9 +109,11 @@ public class OverlapTrackerFactory implements SpotTrackerFactory
 			+ "<p> "
 			+ "The minimal IoU parameter sets a threshold below which links won't be created. The scale "
 			+ "factor allows for enlarging (&gt;1) or shrinking (&lt;1) the spot shapes before computing "
-			+ "their IoU. Two methods can be used to compute IoU: The <it>Fast</it> one approximates  "
+			+ "their IoU. Three methods can be used to compute IoU: The <it>Fast</it> one approximates  "
 			+ "the spot shapes by their rectangular bounding-box. The <it>Precise</it> one uses the actual "
-			+ "spot polygon. "
+			+ "spot polygon. The <it>Raster</it> one paints the spot polygons on a fine pixel grid "
+			+ "and counts the pixels they share. It is close to the <it>Precise</it> one and much "
+			+ "faster on large spot shapes. "
 			+ "<p> "
 			+ "<p> "
 			+ "This tracker works in 2D and 3D. However in 3D, the IoU is computed from the "
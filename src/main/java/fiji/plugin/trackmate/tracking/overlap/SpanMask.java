@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.overlap;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a polygon rasterized on a grid of square pixels, stored as
+ * runs of pixels along X, row by row.
+ * <p>
+ * The grid starts at <code>0</code> in physical units, so that all the masks
+ * rasterized with the same pixel size share the same grid, and the area of
+ * their intersection can be computed by intersecting their runs.
+ */
+final class SpanMask
+{
+
+	private static final int[] NO_RUNS = new int[ 0 ];
+
+	/** The row of the first run list. */
+	private final int minRow;
+
+	/**
+	 * The runs of row <code>r</code> are stored at indices
+	 * <code>rowStart[r - minRow]</code> (included) to
+	 * <code>rowStart[r - minRow + 1]</code> (excluded) of {@link #runs}.
+	 */
+	private final int[] rowStart;
+
+	/**
+	 * The runs, as pairs of first column (included) and last column
+	 * (excluded), sorted along X in each row.
+	 */
+	private final int[] runs;
+
+	private final long area;
+
+	private SpanMask( final int minRow, final int[] rowStart, final int[] runs )
+	{
+		this.minRow = minRow;
+		this.rowStart = rowStart;
+		this.runs = runs;
+		long a = 0;
+		for ( int k = 0; k < runs.length; k += 2 )
+			a += runs[ k + 1 ] - runs[ k ];
+		this.area = a;
+	}
+
+	/**
+	 * Returns the number of pixels in this mask.
+	 *
+	 * @return the area in pixels.
+	 */
+	long area()
+	{
+		return area;
+	}
+
+	/**
+	 * Returns the number of pixels shared by this mask and the specified one.
+	 * Both masks must have been rasterized with the same pixel size.
+	 *
+	 * @param other
+	 *            the other mask.
+	 * @return the area of the intersection in pixels.
+	 */
+	long intersection( final SpanMask other )
+	{
+		final int r0 = Math.max( minRow, other.minRow );
+		final int r1 = Math.min( minRow + rowStart.length - 1, other.minRow + other.rowStart.length - 1 );
+		long count = 0;
+		for ( int r = r0; r < r1; r++ )
+		{
+			int i = rowStart[ r - minRow ];
+			final int iEnd = rowStart[ r - minRow + 1 ];
+			int j = other.rowStart[ r - other.minRow ];
+			final int jEnd = other.rowStart[ r - other.minRow + 1 ];
+			while ( i < iEnd && j < jEnd )
+			{
+				final int start = Math.max( runs[ i ], other.runs[ j ] );
+				final int end = Math.min( runs[ i + 1 ], other.runs[ j + 1 ] );
+				if ( end > start )
+					count += end - start;
+
+				// Move past the run that ends first.
+				if ( runs[ i + 1 ] < other.runs[ j + 1 ] )
+					i += 2;
+				else
+					j += 2;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Rasterizes the specified polygon. A pixel belongs to the mask if its
+	 * center is inside the polygon, following the even-odd rule.
+	 *
+	 * @param x
+	 *            the X coordinates of the polygon vertices, in physical
+	 *            units.
+	 * @param y
+	 *            the Y coordinates of the polygon vertices, in physical
+	 *            units.
+	 * @param pixelSize
+	 *            the size of the grid pixels, in physical units.
+	 * @return a new mask.
+	 */
+	static SpanMask rasterize( final double[] x, final double[] y, final double pixelSize )
+	{
+		final int n = x.length;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for ( int k = 0; k < n; k++ )
+		{
+			minY = Math.min( minY, y[ k ] );
+			maxY = Math.max( maxY, y[ k ] );
+		}
+		if ( n < 3 || !( minY < maxY ) )
+			return new SpanMask( 0, new int[] { 0 }, NO_RUNS );
+
+		// Rows whose center is within the polygon Y range.
+		final int row0 = ( int ) Math.ceil( minY / pixelSize - 0.5 );
+		final int row1 = ( int ) Math.ceil( maxY / pixelSize - 0.5 );
+		final int nRows = Math.max( 0, row1 - row0 );
+		final int[] rowStart = new int[ nRows + 1 ];
+		int[] runs = new int[ 4 * nRows + 2 ];
+		int size = 0;
+		final double[] crossings = new double[ n ];
+		for ( int r = 0; r < nRows; r++ )
+		{
+			final double yc = ( row0 + r + 0.5 ) * pixelSize;
+			int nCrossings = 0;
+			for ( int k = 0; k < n; k++ )
+			{
+				final int l = ( k + 1 ) % n;
+				if ( ( y[ k ] <= yc ) != ( y[ l ] <= yc ) )
+					crossings[ nCrossings++ ] = x[ k ] + ( yc - y[ k ] ) * ( x[ l ] - x[ k ] ) / ( y[ l ] - y[ k ] );
+			}
+			Arrays.sort( crossings, 0, nCrossings );
+
+			for ( int k = 0; k + 1 < nCrossings; k += 2 )
+			{
+				// Columns whose center is between the two crossings.
+				final int start = ( int ) Math.ceil( crossings[ k ] / pixelSize - 0.5 );
+				final int end = ( int ) Math.ceil( crossings[ k + 1 ] / pixelSize - 0.5 );
+				if ( end <= start )
+					continue;
+				if ( size > rowStart[ r ] && runs[ size - 1 ] >= start )
+				{
+					// Touches the previous run.
+					runs[ size - 1 ] = Math.max( runs[ size - 1 ], end );
+					continue;
+				}
+				if ( size + 2 > runs.length )
+					runs = Arrays.copyOf( runs, 2 * runs.length );
+				runs[ size++ ] = start;
+				runs[ size++ ] = end;
+			}
+			rowStart[ r + 1 ] = size;
+		}
+		return new SpanMask( row0, rowStart, Arrays.copyOf( runs, size ) );
+	}
+}
@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.util;
+
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A cursor that iterates over a region of the first channel of an image, and
+ * gives access to the pixel values of all the channels at the current
+ * position. The region geometry is computed once, for the first channel, and
+ * the other channels are read through random accesses.
+ *
+ * @param <T>
+ *            the pixel type.
+ */
+public class MultiChannelCursor< T extends RealType< T > >
+{
+
+	private final Cursor< T > cursor;
+
+	private final RandomAccess< T >[] ras;
+
+	/**
+	 * Creates a new multi-channel cursor.
+	 *
+	 * @param cursor
+	 *            a localizing cursor over the region, in the first channel.
+	 * @param channels
+	 *            the channels to read from, in order. They must be extended
+	 *            like the image the cursor iterates over, if the region can go
+	 *            out of the image bounds. The first channel is read through
+	 *            the cursor.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public MultiChannelCursor( final Cursor< T > cursor, final List< ? extends RandomAccessible< T > > channels )
+	{
+		this.cursor = cursor;
+		this.ras = new RandomAccess[ channels.size() ];
+		for ( int c = 1; c < ras.length; c++ )
+			ras[ c ] = channels.get( c ).randomAccess();
+	}
+
+	public int numChannels()
+	{
+		return ras.length;
+	}
+
+	public boolean hasNext()
+	{
+		return cursor.hasNext();
+	}
+
+	public void fwd()
+	{
+		cursor.fwd();
+	}
+
+	/**
+	 * Returns the position of the cursor in the specified dimension.
+	 */
+	public long getLongPosition( final int d )
+	{
+		return cursor.getLongPosition( d );
+	}
+
+	/**
+	 * Returns the value of the specified channel at the current position.
+	 *
+	 * @param channel
+	 *            the channel index, in the list given at construction.
+	 * @return the pixel value, as a <code>double</code>.
+	 */
+	public double getRealDouble( final int channel )
+	{
+		if ( channel == 0 )
+			return cursor.get().getRealDouble();
+
+		final RandomAccess< T > ra = ras[ channel ];
+		ra.setPosition( cursor );
+		return ra.get().getRealDouble();
+	}
+}
@@ -0,0 +1,618 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.util;
+
+import java.util.Arrays;
+
+import net.imagej.ImgPlus;
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgView;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.IterableRandomAccessibleInterval;
+import net.imglib2.view.MixedTransformView;
+
+/**
+ * Pixel-wise reductions and transforms specialized for images stored in
+ * primitive arrays.
+ * <p>
+ * When an image is an {@link ArrayImg} or a {@link PlanarImg} of float,
+ * double, byte or short pixels, possibly wrapped in an {@link ImgPlus} or
+ * seen through views that crop, translate or slice it, the kernels of this
+ * class loop directly over the primitive arrays that store the pixels. These loops are simple enough to be vectorized by the JIT
+ * compiler, so whole-frame processing is bound by the memory bandwidth. For
+ * any other image, they fall back to iterating over {@link RealType}s.
+ * <p>
+ * Reductions over <code>double[]</code> arrays use several independent
+ * accumulators, which breaks the dependency chain between successive
+ * additions.
+ *
+ * @author Jean-Yves Tinevez
+ */
+public class PixelKernels
+{
+
+	private PixelKernels()
+	{}
+
+	/*
+	 * REDUCTIONS ON ARRAYS.
+	 */
+
+	/**
+	 * Returns the sum of the first elements of an array.
+	 *
+	 * @param data
+	 *            the array.
+	 * @param length
+	 *            the number of elements to sum.
+	 * @return the sum.
+	 */
+	public static double sum( final double[] data, final int length )
+	{
+		double s0 = 0.;
+		double s1 = 0.;
+		double s2 = 0.;
+		double s3 = 0.;
+		int i = 0;
+		for ( ; i + 3 < length; i += 4 )
+		{
+			s0 += data[ i ];
+			s1 += data[ i + 1 ];
+			s2 += data[ i + 2 ];
+			s3 += data[ i + 3 ];
+		}
+		for ( ; i < length; i++ )
+			s0 += data[ i ];
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of the squared deviations to a value of the first
+	 * elements of an array.
+	 *
+	 * @param data
+	 *            the array.
+	 * @param length
+	 *            the number of elements to use.
+	 * @param mean
+	 *            the value to compute the deviations from.
+	 * @return the sum of squared deviations.
+	 */
+	public static double sumOfSquaredDeviations( final double[] data, final int length, final double mean )
+	{
+		double s0 = 0.;
+		double s1 = 0.;
+		double s2 = 0.;
+		double s3 = 0.;
+		int i = 0;
+		for ( ; i + 3 < length; i += 4 )
+		{
+			final double d0 = data[ i ] - mean;
+			final double d1 = data[ i + 1 ] - mean;
+			final double d2 = data[ i + 2 ] - mean;
+			final double d3 = data[ i + 3 ] - mean;
+			s0 += d0 * d0;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+		for ( ; i < length; i++ )
+		{
+			final double d = data[ i ] - mean;
+			s0 += d * d;
+		}
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/*
+	 * KERNELS ON IMAGES.
+	 */
+
+	/**
+	 * Returns the min and max of the pixel values of an image.
+	 *
+	 * @param <T>
+	 *            the pixel type.
+	 * @param img
+	 *            the image.
+	 * @return a new <code>double[]</code> array containing the min and the
+	 *         max, in this order.
+	 */
+	public static < T extends RealType< T > > double[] minMax( final IterableInterval< T > img )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		final Storage storage = Storage.ofIterable( img );
+		if ( null == storage )
+		{
+			for ( final T t : img )
+			{
+				final double val = t.getRealDouble();
+				if ( val < min )
+					min = val;
+				if ( val > max )
+					max = val;
+			}
+			return new double[] { min, max };
+		}
+
+		for ( int p = 0; p < storage.arrays.length; p++ )
+		{
+			final Object array = storage.arrays[ p ];
+			final int from = storage.offsets[ p ];
+			final int to = from + storage.lengths[ p ];
+			switch ( storage.kind )
+			{
+			case FLOAT:
+			{
+				final float[] a = ( float[] ) array;
+				float lmin = Float.POSITIVE_INFINITY;
+				float lmax = Float.NEGATIVE_INFINITY;
+				for ( int i = from; i < to; i++ )
+				{
+					final float v = a[ i ];
+					lmin = v < lmin ? v : lmin;
+					lmax = v > lmax ? v : lmax;
+				}
+				min = Math.min( min, lmin );
+				max = Math.max( max, lmax );
+				break;
+			}
+			case DOUBLE:
+			{
+				final double[] a = ( double[] ) array;
+				for ( int i = from; i < to; i++ )
+				{
+					final double v = a[ i ];
+					min = v < min ? v : min;
+					max = v > max ? v : max;
+				}
+				break;
+			}
+			case UNSIGNED_BYTE:
+			case BYTE:
+			{
+				final byte[] a = ( byte[] ) array;
+				final int mask = storage.kind == Kind.UNSIGNED_BYTE ? 0xff : -1;
+				int lmin = Integer.MAX_VALUE;
+				int lmax = Integer.MIN_VALUE;
+				for ( int i = from; i < to; i++ )
+				{
+					final int v = a[ i ] & mask;
+					lmin = v < lmin ? v : lmin;
+					lmax = v > lmax ? v : lmax;
+				}
+				min = Math.min( min, lmin );
+				max = Math.max( max, lmax );
+				break;
+			}
+			case UNSIGNED_SHORT:
+			case SHORT:
+			{
+				final short[] a = ( short[] ) array;
+				final int mask = storage.kind == Kind.UNSIGNED_SHORT ? 0xffff : -1;
+				int lmin = Integer.MAX_VALUE;
+				int lmax = Integer.MIN_VALUE;
+				for ( int i = from; i < to; i++ )
+				{
+					final int v = a[ i ] & mask;
+					lmin = v < lmin ? v : lmin;
+					lmax = v > lmax ? v : lmax;
+				}
+				min = Math.min( min, lmin );
+				max = Math.max( max, lmax );
+				break;
+			}
+			}
+		}
+		return new double[] { min, max };
+	}
+
+	/**
+	 * Normalizes the pixel values of an image between 0 and 1, in place.
+	 *
+	 * @param <T>
+	 *            the pixel type.
+	 * @param img
+	 *            the image.
+	 */
+	public static < T extends RealType< T > > void normalize( final IterableInterval< T > img )
+	{
+		final double[] minMax = minMax( img );
+		final double min = minMax[ 0 ];
+		final double range = minMax[ 1 ] - minMax[ 0 ];
+		final Storage storage = Storage.ofIterable( img );
+		if ( null != storage && storage.kind == Kind.FLOAT )
+		{
+			for ( int p = 0; p < storage.arrays.length; p++ )
+			{
+				final float[] a = ( float[] ) storage.arrays[ p ];
+				final int from = storage.offsets[ p ];
+				final int to = from + storage.lengths[ p ];
+				for ( int i = from; i < to; i++ )
+					a[ i ] = ( float ) ( ( a[ i ] - min ) / range );
+			}
+			return;
+		}
+		if ( null != storage && storage.kind == Kind.DOUBLE )
+		{
+			for ( int p = 0; p < storage.arrays.length; p++ )
+			{
+				final double[] a = ( double[] ) storage.arrays[ p ];
+				final int from = storage.offsets[ p ];
+				final int to = from + storage.lengths[ p ];
+				for ( int i = from; i < to; i++ )
+					a[ i ] = ( a[ i ] - min ) / range;
+			}
+			return;
+		}
+		for ( final T t : img )
+			t.setReal( ( t.getRealDouble() - min ) / range );
+	}
+
+	/**
+	 * Thresholds an image into a new bit image, if the image is stored in
+	 * primitive arrays. Pixels strictly above the threshold are set to
+	 * <code>true</code>.
+	 *
+	 * @param <T>
+	 *            the pixel type.
+	 * @param img
+	 *            the image.
+	 * @param threshold
+	 *            the threshold.
+	 * @return a new zero-min bit image with the same dimensions, or
+	 *         <code>null</code> if the image is not stored in primitive
+	 *         arrays.
+	 */
+	public static < T extends RealType< T > > Img< BitType > threshold( final RandomAccessibleInterval< T > img, final double threshold )
+	{
+		final Storage storage = Storage.of( img );
+		if ( null == storage )
+			return null;
+
+		final Img< BitType > out = ArrayImgs.bits( Intervals.dimensionsAsLongArray( img ) );
+		final Cursor< BitType > cursor = out.cursor();
+		for ( int p = 0; p < storage.arrays.length; p++ )
+		{
+			final Object array = storage.arrays[ p ];
+			final int from = storage.offsets[ p ];
+			final int to = from + storage.lengths[ p ];
+			switch ( storage.kind )
+			{
+			case FLOAT:
+			{
+				final float[] a = ( float[] ) array;
+				for ( int i = from; i < to; i++ )
+					cursor.next().set( a[ i ] > threshold );
+				break;
+			}
+			case DOUBLE:
+			{
+				final double[] a = ( double[] ) array;
+				for ( int i = from; i < to; i++ )
+					cursor.next().set( a[ i ] > threshold );
+				break;
+			}
+			case UNSIGNED_BYTE:
+			case BYTE:
+			{
+				final byte[] a = ( byte[] ) array;
+				final int mask = storage.kind == Kind.UNSIGNED_BYTE ? 0xff : -1;
+				for ( int i = from; i < to; i++ )
+					cursor.next().set( ( a[ i ] & mask ) > threshold );
+				break;
+			}
+			case UNSIGNED_SHORT:
+			case SHORT:
+			{
+				final short[] a = ( short[] ) array;
+				final int mask = storage.kind == Kind.UNSIGNED_SHORT ? 0xffff : -1;
+				for ( int i = from; i < to; i++ )
+					cursor.next().set( ( a[ i ] & mask ) > threshold );
+				break;
+			}
+			}
+		}
+		return out;
+	}
+
+	/*
+	 * STORAGE INSPECTION.
+	 */
+
+	private enum Kind
+	{
+		FLOAT, DOUBLE, UNSIGNED_BYTE, BYTE, UNSIGNED_SHORT, SHORT;
+
+		private static Kind of( final Object type )
+		{
+			final Class< ? > cl = type.getClass();
+			if ( cl == FloatType.class )
+				return FLOAT;
+			if ( cl == DoubleType.class )
+				return DOUBLE;
+			if ( cl == UnsignedByteType.class )
+				return UNSIGNED_BYTE;
+			if ( cl == ByteType.class )
+				return BYTE;
+			if ( cl == UnsignedShortType.class )
+				return UNSIGNED_SHORT;
+			if ( cl == ShortType.class )
+				return SHORT;
+			return null;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the kernels of this class can loop
+	 * directly over the primitive arrays storing the pixels of the specified
+	 * image.
+	 *
+	 * @param img
+	 *            the image.
+	 * @return <code>true</code> if the image is backed by primitive arrays of
+	 *         a supported type.
+	 */
+	public static boolean isArrayBacked( final RandomAccessibleInterval< ? > img )
+	{
+		return null != Storage.of( img );
+	}
+
+	/**
+	 * The primitive arrays storing the pixels of an image, as runs of
+	 * contiguous elements listed in the flat iteration order of the image.
+	 * <p>
+	 * The image can be a view on an {@link ArrayImg} or a {@link PlanarImg},
+	 * as long as the view only crops, translates, slices or permutes the
+	 * dimensions of the backing image, and keeps its X dimension first. Each
+	 * line of the view is then contiguous in the backing arrays.
+	 */
+	private static final class Storage
+	{
+
+		private final Kind kind;
+
+		private final Object[] arrays;
+
+		private final int[] offsets;
+
+		private final int[] lengths;
+
+		private Storage( final Kind kind, final Object[] arrays, final int[] offsets, final int[] lengths )
+		{
+			this.kind = kind;
+			this.arrays = arrays;
+			this.offsets = offsets;
+			this.lengths = lengths;
+		}
+
+		/**
+		 * Returns the storage of the specified image, or <code>null</code> if
+		 * it is not stored in primitive arrays of a supported type.
+		 */
+		private static Storage of( final RandomAccessibleInterval< ? > img )
+		{
+			final long size = Intervals.numElements( img );
+			if ( size == 0 || size > Integer.MAX_VALUE )
+				return null;
+			final Kind kind = Kind.of( Util.getTypeFromInterval( img ) );
+			if ( null == kind )
+				return null;
+
+			/*
+			 * Walk down the view chain, composing the mapping from the
+			 * coordinates of the image to the coordinates of the source. For
+			 * each source dimension, fromDim is the image dimension it is
+			 * taken from, or -1 if it is fixed, and offset is the translation
+			 * added to it.
+			 */
+			final int n = img.numDimensions();
+			int[] fromDim = new int[ n ];
+			long[] offset = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+				fromDim[ d ] = d;
+
+			Object source = img;
+			while ( true )
+			{
+				if ( source instanceof ImgPlus )
+				{
+					source = ( ( ImgPlus< ? > ) source ).getImg();
+				}
+				else if ( source instanceof IntervalView )
+				{
+					source = ( ( IntervalView< ? > ) source ).getSource();
+				}
+				else if ( source instanceof IterableRandomAccessibleInterval )
+				{
+					// Such as the ImgViews wrapping the hyperslices of an ImgPlus.
+					source = ( ( IterableRandomAccessibleInterval< ? > ) source ).getSource();
+				}
+				else if ( source instanceof MixedTransformView )
+				{
+					final MixedTransformView< ? > view = ( MixedTransformView< ? > ) source;
+					final MixedTransform t = view.getTransformToSource();
+					if ( t.numSourceDimensions() != fromDim.length )
+						return null;
+					final int m = t.numTargetDimensions();
+					final int[] nextFromDim = new int[ m ];
+					final long[] nextOffset = new long[ m ];
+					for ( int d = 0; d < m; d++ )
+					{
+						if ( t.getComponentZero( d ) )
+						{
+							nextFromDim[ d ] = -1;
+							nextOffset[ d ] = t.getTranslation( d );
+						}
+						else
+						{
+							if ( t.getComponentInversion( d ) )
+								return null;
+							final int c = t.getComponentMapping( d );
+							nextFromDim[ d ] = fromDim[ c ];
+							nextOffset[ d ] = offset[ c ] + t.getTranslation( d );
+						}
+					}
+					fromDim = nextFromDim;
+					offset = nextOffset;
+					source = view.getSource();
+				}
+				else
+				{
+					break;
+				}
+			}
+
+			if ( !( source instanceof ArrayImg ) && !( source instanceof PlanarImg ) )
+				return null;
+			final RandomAccessibleInterval< ? > backing = ( RandomAccessibleInterval< ? > ) source;
+			final int m = backing.numDimensions();
+			if ( m != fromDim.length || fromDim[ 0 ] != 0 )
+				return null;
+			for ( int s = 0; s < m; s++ )
+			{
+				// Lines must be contiguous in the backing arrays.
+				if ( s > 0 && fromDim[ s ] == 0 )
+					return null;
+				final long lo = ( fromDim[ s ] < 0 ) ? offset[ s ] : img.min( fromDim[ s ] ) + offset[ s ];
+				final long hi = ( fromDim[ s ] < 0 ) ? offset[ s ] : img.max( fromDim[ s ] ) + offset[ s ];
+				if ( lo < backing.min( s ) || hi > backing.max( s ) )
+					return null;
+			}
+
+			/*
+			 * Arrays and strides of the backing image.
+			 */
+			final long[] dims = Intervals.dimensionsAsLongArray( backing );
+			final Object[] backingArrays;
+			final long[] strides = new long[ m ];
+			final long[] planeStrides = new long[ m ];
+			if ( source instanceof ArrayImg )
+			{
+				final Object access = ( ( ArrayImg< ?, ? > ) source ).update( null );
+				if ( !( access instanceof ArrayDataAccess ) )
+					return null;
+				backingArrays = new Object[] { ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() };
+				strides[ 0 ] = 1;
+				for ( int s = 1; s < m; s++ )
+					strides[ s ] = strides[ s - 1 ] * dims[ s - 1 ];
+			}
+			else
+			{
+				final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) source;
+				backingArrays = new Object[ planar.numSlices() ];
+				for ( int i = 0; i < backingArrays.length; i++ )
+				{
+					final Object access = planar.getPlane( i );
+					if ( !( access instanceof ArrayDataAccess ) )
+						return null;
+					backingArrays[ i ] = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+				}
+				strides[ 0 ] = 1;
+				if ( m > 1 )
+					strides[ 1 ] = dims[ 0 ];
+				long planeStride = 1;
+				for ( int s = 2; s < m; s++ )
+				{
+					planeStrides[ s ] = planeStride;
+					planeStride *= dims[ s ];
+				}
+			}
+
+			/*
+			 * One run per line of the image, merged when contiguous.
+			 */
+			final int lineLength = ( int ) img.dimension( 0 );
+			final int nLines = ( int ) ( size / lineLength );
+			final Object[] arrays = new Object[ nLines ];
+			final int[] offsets = new int[ nLines ];
+			final int[] lengths = new int[ nLines ];
+			int nRuns = 0;
+			final long[] position = Intervals.minAsLongArray( img );
+			for ( int line = 0; line < nLines; line++ )
+			{
+				long index = 0;
+				long plane = 0;
+				for ( int s = 0; s < m; s++ )
+				{
+					final long pos = ( fromDim[ s ] < 0 ) ? offset[ s ] : position[ fromDim[ s ] ] + offset[ s ];
+					final long p = pos - backing.min( s );
+					index += p * strides[ s ];
+					plane += p * planeStrides[ s ];
+				}
+				final Object array = backingArrays[ ( int ) plane ];
+				if ( nRuns > 0 && arrays[ nRuns - 1 ] == array && offsets[ nRuns - 1 ] + lengths[ nRuns - 1 ] == index )
+				{
+					lengths[ nRuns - 1 ] += lineLength;
+				}
+				else
+				{
+					arrays[ nRuns ] = array;
+					offsets[ nRuns ] = ( int ) index;
+					lengths[ nRuns ] = lineLength;
+					nRuns++;
+				}
+
+				// Move to the next line, in flat iteration order.
+				for ( int d = 1; d < n; d++ )
+				{
+					if ( position[ d ] < img.max( d ) )
+					{
+						position[ d ]++;
+						break;
+					}
+					position[ d ] = img.min( d );
+				}
+			}
+			return new Storage( kind,
+					Arrays.copyOf( arrays, nRuns ),
+					Arrays.copyOf( offsets, nRuns ),
+					Arrays.copyOf( lengths, nRuns ) );
+		}
+
+		private static Storage ofIterable( final IterableInterval< ? > img )
+		{
+			if ( !( img instanceof RandomAccessibleInterval ) )
+				return null;
+			return of( ( RandomAccessibleInterval< ? > ) img );
+		}
+	}
+}
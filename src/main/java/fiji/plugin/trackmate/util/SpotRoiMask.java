@@ -0,0 +1,208 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.util;
+
+import java.util.Arrays;
+
+/**
+ * A polygon rasterized on the pixel grid, stored as runs of contiguous pixels
+ * along X.
+ * <p>
+ * A pixel belongs to the mask if its center, at integer coordinates, is
+ * inside the polygon according to the even-odd rule. The rasterization is
+ * done scanline by scanline: for each row we compute the crossings of the
+ * polygon edges and read the runs between pairs of crossings, so the result
+ * is identical to testing every pixel of the bounding box, without any
+ * geometric test at iteration time.
+ * <p>
+ * Instances are immutable.
+ */
+public final class SpotRoiMask
+{
+
+	private final long[] runY;
+
+	private final long[] runMinX;
+
+	private final long[] runMaxX;
+
+	private final long size;
+
+	private final long[] bounds;
+
+	private SpotRoiMask( final long[] runY, final long[] runMinX, final long[] runMaxX, final long[] bounds )
+	{
+		this.runY = runY;
+		this.runMinX = runMinX;
+		this.runMaxX = runMaxX;
+		this.bounds = bounds;
+		long s = 0;
+		for ( int r = 0; r < runY.length; r++ )
+			s += runMaxX[ r ] - runMinX[ r ] + 1;
+		this.size = s;
+	}
+
+	/**
+	 * Rasterizes the specified polygon, given in pixel coordinates.
+	 *
+	 * @param x
+	 *            the X coordinates of the polygon vertices.
+	 * @param y
+	 *            the Y coordinates of the polygon vertices.
+	 * @return a new mask.
+	 */
+	public static SpotRoiMask rasterize( final double[] x, final double[] y )
+	{
+		final long minX = ( long ) Math.floor( min( x ) );
+		final long maxX = ( long ) Math.ceil( max( x ) );
+		final long minY = ( long ) Math.floor( min( y ) );
+		final long maxY = ( long ) Math.ceil( max( y ) );
+		final long[] bounds = new long[] { minX, minY, maxX, maxY };
+
+		final int nRowsMax = ( int ) ( maxY - minY + 1 );
+		final int n = x.length;
+		final double[] crossings = new double[ n ];
+		long[] ys = new long[ nRowsMax ];
+		long[] x0s = new long[ nRowsMax ];
+		long[] x1s = new long[ nRowsMax ];
+		int nRuns = 0;
+		for ( long yl = minY; yl <= maxY; yl++ )
+		{
+			// Same computation as the point-in-polygon test, edge by edge.
+			int nc = 0;
+			for ( int i = 0, j = n - 1; i < n; j = i++ )
+			{
+				final double xj = x[ j ];
+				final double yj = y[ j ];
+				final double xi = x[ i ];
+				final double yi = y[ i ];
+				if ( ( yi > yl ) != ( yj > yl ) )
+					crossings[ nc++ ] = ( xj - xi ) * ( yl - yi ) / ( yj - yi ) + xi;
+			}
+			if ( nc == 0 )
+				continue;
+			Arrays.sort( crossings, 0, nc );
+
+			/*
+			 * A pixel is inside if an odd number of crossings are strictly on
+			 * its right. That is: if it lies in [c0, c1[, [c2, c3[, ...
+			 */
+			for ( int k = 0; k + 1 < nc; k += 2 )
+			{
+				final long x0 = ( long ) Math.ceil( crossings[ k ] );
+				final long x1 = ( long ) Math.ceil( crossings[ k + 1 ] ) - 1;
+				if ( x1 < x0 )
+					continue;
+
+				if ( nRuns == ys.length )
+				{
+					ys = Arrays.copyOf( ys, 2 * nRuns );
+					x0s = Arrays.copyOf( x0s, 2 * nRuns );
+					x1s = Arrays.copyOf( x1s, 2 * nRuns );
+				}
+				ys[ nRuns ] = yl;
+				x0s[ nRuns ] = x0;
+				x1s[ nRuns ] = x1;
+				nRuns++;
+			}
+		}
+		return new SpotRoiMask( Arrays.copyOf( ys, nRuns ), Arrays.copyOf( x0s, nRuns ), Arrays.copyOf( x1s, nRuns ), bounds );
+	}
+
+	/**
+	 * Returns the number of pixels in this mask.
+	 *
+	 * @return the number of pixels.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of runs in this mask.
+	 *
+	 * @return the number of runs.
+	 */
+	public int numRuns()
+	{
+		return runY.length;
+	}
+
+	/**
+	 * Returns the Y coordinate of the specified run.
+	 */
+	public long runY( final int run )
+	{
+		return runY[ run ];
+	}
+
+	/**
+	 * Returns the first X coordinate of the specified run, inclusive.
+	 */
+	public long runMinX( final int run )
+	{
+		return runMinX[ run ];
+	}
+
+	/**
+	 * Returns the last X coordinate of the specified run, inclusive.
+	 */
+	public long runMaxX( final int run )
+	{
+		return runMaxX[ run ];
+	}
+
+	/**
+	 * Returns the min of the bounding box of the polygon, in pixel
+	 * coordinates.
+	 */
+	public long min( final int d )
+	{
+		return bounds[ d ];
+	}
+
+	/**
+	 * Returns the max of the bounding box of the polygon, in pixel
+	 * coordinates.
+	 */
+	public long max( final int d )
+	{
+		return bounds[ 2 + d ];
+	}
+
+	private static final double min( final double[] arr )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		for ( final double v : arr )
+			min = Math.min( min, v );
+		return min;
+	}
+
+	private static final double max( final double[] arr )
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for ( final double v : arr )
+			max = Math.max( max, v );
+		return max;
+	}
+}
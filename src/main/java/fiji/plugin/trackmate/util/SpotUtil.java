@@ -21,7 +21,9 @@
  */
 package fiji.plugin.trackmate.util;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotRoi;
@@ -31,13 +33,12 @@ import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
-import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealLocalizable;
+import net.imglib2.outofbounds.OutOfBoundsMirrorExpWindowingFactory;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.util.Intervals;
-import net.imglib2.util.Util;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 
 public class SpotUtil
@@ -74,6 +75,43 @@ public class SpotUtil
 		}
 	}
 
+	/**
+	 * Returns a cursor over the neighborhood of the specified spot, that reads
+	 * all the specified channels at once. The neighborhood is the one returned
+	 * by {@link #iterable(Spot, ImgPlus)} for the first channel, and is only
+	 * computed once.
+	 *
+	 * @param spot
+	 *            the spot.
+	 * @param channels
+	 *            the 2D or 3D images of each channel. They must have the same
+	 *            dimensions and calibration.
+	 * @return a new {@link MultiChannelCursor}.
+	 */
+	public static final < T extends RealType< T > > MultiChannelCursor< T > multiChannelCursor( final Spot spot, final List< ImgPlus< T > > channels )
+	{
+		final IterableInterval< T > iterable = iterable( spot, channels.get( 0 ) );
+		// Out-of-bounds strategies must match the one of the iterable.
+		final boolean isNeighborhood = iterable instanceof SpotNeighborhood;
+		final List< RandomAccessible< T > > sources = new ArrayList<>( channels.size() );
+		for ( final ImgPlus< T > channel : channels )
+			sources.add( isNeighborhood ? extendForNeighborhood( channel ) : Views.extendMirrorSingle( channel ) );
+		return new MultiChannelCursor<>( iterable.localizingCursor(), sources );
+	}
+
+	/**
+	 * Returns the specified image extended with the out-of-bounds strategy
+	 * used by {@link SpotNeighborhood}.
+	 *
+	 * @param img
+	 *            the image to extend.
+	 * @return an extended view of the image.
+	 */
+	public static final < T extends RealType< T > > RandomAccessible< T > extendForNeighborhood( final ImgPlus< T > img )
+	{
+		return Views.extend( img, new OutOfBoundsMirrorExpWindowingFactory< T, RandomAccessibleInterval< T > >() );
+	}
+
 	private static < T > IterableInterval< T > makeSinglePixelIterable( final RealLocalizable center, final ImgPlus< T > img )
 	{
 		final double[] calibration = TMUtils.getSpatialCalibration( img );
@@ -93,39 +131,20 @@ public class SpotUtil
 	private static final class SpotRoiIterable< T extends RealType< T > > implements IterableInterval< T >
 	{
 
-		private final SpotRoi roi;
-
-		private final RealLocalizable center;
+		private final SpotRoiMask mask;
 
 		private final ImgPlus< T > img;
 
-		private final FinalInterval interval;
-
 		public SpotRoiIterable( final SpotRoi roi, final RealLocalizable center, final ImgPlus< T > img )
 		{
-			this.roi = roi;
-			this.center = center;
 			this.img = img;
-			final double[] x = roi.toPolygonX( img.averageScale( 0 ), 0, center.getDoublePosition( 0 ), 1. );
-			final double[] y = roi.toPolygonX( img.averageScale( 1 ), 0, center.getDoublePosition( 1 ), 1. );
-			final long minX = ( long ) Math.floor( Util.min( x ) );
-			final long maxX = ( long ) Math.ceil( Util.max( x ) );
-			final long minY = ( long ) Math.floor( Util.min( y ) );
-			final long maxY = ( long ) Math.ceil( Util.max( y ) );
-			interval = Intervals.createMinMax( minX, minY, maxX, maxY );
+			this.mask = roi.getMask( center.getDoublePosition( 0 ), center.getDoublePosition( 1 ), img.averageScale( 0 ), img.averageScale( 1 ) );
 		}
 
 		@Override
 		public long size()
 		{
-			int n = 0;
-			final Cursor< T > cursor = cursor();
-			while ( cursor.hasNext() )
-			{
-				cursor.fwd();
-				n++;
-			}
-			return n;
+			return mask.size();
 		}
 
 		@Override
@@ -143,13 +162,13 @@ public class SpotUtil
 		@Override
 		public double realMin( final int d )
 		{
-			return interval.realMin( d );
+			return mask.min( d );
 		}
 
 		@Override
 		public double realMax( final int d )
 		{
-			return interval.realMax( d );
+			return mask.max( d );
 		}
 
 		@Override
@@ -161,19 +180,19 @@ public class SpotUtil
 		@Override
 		public long min( final int d )
 		{
-			return interval.min( d );
+			return mask.min( d );
 		}
 
 		@Override
 		public long max( final int d )
 		{
-			return interval.max( d );
+			return mask.max( d );
 		}
 
 		@Override
 		public Cursor< T > cursor()
 		{
-			return new MyCursor< T >( roi, center, img );
+			return new RunCursor< T >( mask, img );
 		}
 
 		@Override
@@ -189,39 +208,29 @@ public class SpotUtil
 		}
 	}
 
-	private static final class MyCursor< T extends RealType< T > > implements Cursor< T >
+	/**
+	 * Iterates over the runs of a {@link SpotRoiMask}, in raster order.
+	 */
+	private static final class RunCursor< T extends RealType< T > > implements Cursor< T >
 	{
 
-		private final SpotRoi roi;
-
-		private final RealLocalizable center;
+		private final SpotRoiMask mask;
 
 		private final ImgPlus< T > img;
 
-		private final FinalInterval interval;
-
-		private Cursor< T > cursor;
+		private final RandomAccess< T > ra;
 
-		private final double[] x;
+		private int run;
 
-		private final double[] y;
+		private long x;
 
-		private boolean hasNext;
+		private long index;
 
-		private RandomAccess< T > ra;
-
-		public MyCursor( final SpotRoi roi, final RealLocalizable center, final ImgPlus< T > img )
+		public RunCursor( final SpotRoiMask mask, final ImgPlus< T > img )
 		{
-			this.roi = roi;
-			this.center = center;
+			this.mask = mask;
 			this.img = img;
-			x = roi.toPolygonX( img.averageScale( 0 ), 0, center.getDoublePosition( 0 ), 1. );
-			y = roi.toPolygonY( img.averageScale( 1 ), 0, center.getDoublePosition( 1 ), 1. );
-			final long minX = ( long ) Math.floor( Util.min( x ) );
-			final long maxX = ( long ) Math.ceil( Util.max( x ) );
-			final long minY = ( long ) Math.floor( Util.min( y ) );
-			final long maxY = ( long ) Math.ceil( Util.max( y ) );
-			interval = Intervals.createMinMax( minX, minY, maxX, maxY );
+			this.ra = Views.extendMirrorSingle( img ).randomAccess();
 			reset();
 		}
 
@@ -234,54 +243,27 @@ public class SpotUtil
 		@Override
 		public void fwd()
 		{
-			ra.setPosition( cursor );
-			fetch();
-		}
-
-		private void fetch()
-		{
-			while ( cursor.hasNext() )
+			index++;
+			// Before the first run or at the end of the current one, go to
+			// the next run.
+			if ( run >= 0 && x < mask.runMaxX( run ) )
 			{
-				cursor.fwd();
-				if ( isInside( cursor, x, y ) )
-				{
-					hasNext = cursor.hasNext();
-					return;
-				}
-			}
-			hasNext = false;
-		}
-
-		private static final boolean isInside( final Localizable localizable, final double[] x, final double[] y )
-		{
-			// Taken from Imglib2-roi GeomMaths. No edge case.
-			final double xl = localizable.getDoublePosition( 0 );
-			final double yl = localizable.getDoublePosition( 1 );
-
-			int i;
-			int j;
-			boolean inside = false;
-			for ( i = 0, j = x.length - 1; i < x.length; j = i++ )
-			{
-				final double xj = x[ j ];
-				final double yj = y[ j ];
-
-				final double xi = x[ i ];
-				final double yi = y[ i ];
-
-				if ( ( yi > yl ) != ( yj > yl ) && ( xl < ( xj - xi ) * ( yl - yi ) / ( yj - yi ) + xi ) )
-					inside = !inside;
+				x++;
+				ra.fwd( 0 );
+				return;
 			}
-			return inside;
+			run++;
+			x = mask.runMinX( run );
+			ra.setPosition( x, 0 );
+			ra.setPosition( mask.runY( run ), 1 );
 		}
 
 		@Override
 		public void reset()
 		{
-			final IntervalView< T > view = Views.interval( img, interval );
-			cursor = view.localizingCursor();
-			ra = Views.extendMirrorSingle( img ).randomAccess();
-			fetch();
+			index = 0;
+			run = -1;
+			x = 0;
 		}
 
 		@Override
@@ -306,7 +288,7 @@ public class SpotUtil
 		@Override
 		public boolean hasNext()
 		{
-			return hasNext;
+			return index < mask.size();
 		}
 
 		@Override
@@ -325,7 +307,12 @@ public class SpotUtil
 		@Override
 		public Cursor< T > copy()
 		{
-			return new MyCursor<>( roi, center, img );
+			final RunCursor< T > copy = new RunCursor<>( mask, img );
+			copy.run = run;
+			copy.x = x;
+			copy.index = index;
+			copy.ra.setPosition( ra );
+			return copy;
 		}
 	}
 }
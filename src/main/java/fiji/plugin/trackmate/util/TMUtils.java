@@ -527,6 +527,27 @@ public class TMUtils
 		return imgTCZ;
 	}
 
+	/**
+	 * Returns the hyperslices of all the channels of the specified image, at
+	 * the specified frame, as returned by
+	 * {@link #hyperSlice(ImgPlus, long, long)}.
+	 *
+	 * @param img
+	 *            the source image.
+	 * @param frame
+	 *            the frame to slice at.
+	 * @return a new list with one 2D or 3D image per channel.
+	 */
+	public static < T extends Type< T > > List< ImgPlus< T > > hyperSlices( final ImgPlus< T > img, final long frame )
+	{
+		final int channelDim = img.dimensionIndex( Axes.CHANNEL );
+		final long nChannels = channelDim < 0 ? 1 : img.dimension( channelDim );
+		final List< ImgPlus< T > > slices = new ArrayList<>( ( int ) nChannels );
+		for ( long c = 0; c < nChannels; c++ )
+			slices.add( hyperSlice( img, c, frame ) );
+		return slices;
+	}
+
 	/**
 	 * Returns an interval object that slices in the specified {@link ImgPlus}
 	 * <b>in a single channel</b> (the channel dimension is dropped).
@@ -787,15 +808,8 @@ public class TMUtils
 
 	public static final double variance( final double[] data )
 	{
-		final double mean = Util.average( data );
-		double variance = 0;
-		for ( int i = 0; i < data.length; i++ )
-		{
-			final double dx = data[ i ] - mean;
-			variance += dx * dx;
-		}
-		variance /= ( data.length - 1 );
-		return variance;
+		final double mean = sum( data ) / data.length;
+		return PixelKernels.sumOfSquaredDeviations( data, data.length, mean ) / ( data.length - 1 );
 	}
 
 	public static final double standardDeviation( final double[] data )
@@ -815,23 +829,13 @@ public class TMUtils
 
 	public static double sum( final DoubleArray data )
 	{
-		double sum = 0.;
-		for ( int i = 0; i < data.size(); i++ )
-			sum += data.getArray()[ i ];
-		return sum;
+		return PixelKernels.sum( data.getArray(), data.size() );
 	}
 
 	public static final double variance( final DoubleArray data )
 	{
 		final double mean = average( data );
-		double variance = 0;
-		for ( int i = 0; i < data.size(); i++ )
-		{
-			final double dx = data.getArray()[ i ] - mean;
-			variance += dx * dx;
-		}
-		variance /= ( data.size() - 1 );
-		return variance;
+		return PixelKernels.sumOfSquaredDeviations( data.getArray(), data.size(), mean ) / ( data.size() - 1 );
 	}
 
 	public static double standardDeviation( final DoubleArray data )
@@ -185,6 +185,7 @@ public class AllSpotsTableView extends JFrame implements TrackMateModelView, Mod
 
 	public static final TablePanel< Spot > createSpotTable( final Model model, final DisplaySettings ds )
 	{
+		model.getFeatureModel().ensureAllSpotFeatures();
 		final List< String > features = new ArrayList<>( model.getFeatureModel().getSpotFeatures() );
 		final Map< String, String > featureNames = model.getFeatureModel().getSpotFeatureNames();
 		final Map< String, String > featureShortNames = model.getFeatureModel().getSpotFeatureShortNames();
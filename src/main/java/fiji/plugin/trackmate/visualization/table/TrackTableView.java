@@ -335,6 +335,7 @@ public class TrackTableView extends JFrame implements TrackMateModelView, ModelC
 		final List< Spot > objects = new ArrayList<>();
 		for ( final Integer trackID : model.getTrackModel().unsortedTrackIDs( true ) )
 			objects.addAll( model.getTrackModel().trackSpots( trackID ) );
+		model.getFeatureModel().ensureAllSpotFeatures();
 		final List< String > features = new ArrayList<>( model.getFeatureModel().getSpotFeatures() );
 		final Map< String, String > featureNames = model.getFeatureModel().getSpotFeatureNames();
 		final Map< String, String > featureShortNames = model.getFeatureModel().getSpotFeatureShortNames();
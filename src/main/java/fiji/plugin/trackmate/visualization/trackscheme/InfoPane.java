@@ -39,6 +39,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.swing.AbstractListModel;
 import javax.swing.JLabel;
@@ -212,7 +214,15 @@ public class InfoPane extends JPanel implements SelectionChangeListener
 			}
 		};
 
+		// Only compute the features of the frames of the selected spots.
 		final List< String > features = new ArrayList<>( model.getFeatureModel().getSpotFeatures() );
+		final Set< Integer > frames = new TreeSet<>();
+		for ( final Spot spot : sortedSpots )
+			if ( null != spot )
+				frames.add( spot.getFeature( Spot.FRAME ).intValue() );
+		for ( final Integer frame : frames )
+			model.getFeatureModel().ensureSpotFeatures( features, frame );
+
 		for ( final Spot spot : sortedSpots )
 		{
 			if ( null == spot )
@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.util.PixelKernels;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class MaskUtilsTest
+{
+
+	private static final double[] CALIBRATION = new double[] { 0.5, 0.5 };
+
+	private static final FinalInterval INTERVAL = new FinalInterval( new long[] { 5, 4 }, new long[] { 70, 50 } );
+
+	@Test
+	public void testFromThresholdOnView()
+	{
+		final Img< FloatType > img = blobs();
+		final Img< FloatType > cells = toCellImg( img );
+
+		// The crop taken by toLabeling is read from the primitive arrays.
+		assertTrue( PixelKernels.isArrayBacked( Views.zeroMin( Views.interval( img, INTERVAL ) ) ) );
+		assertFalse( PixelKernels.isArrayBacked( Views.zeroMin( Views.interval( cells, INTERVAL ) ) ) );
+
+		final double threshold = 50.;
+		final List< Spot > expected = MaskUtils.fromThreshold( cells, INTERVAL, CALIBRATION, threshold, 1 );
+		final List< Spot > actual = MaskUtils.fromThreshold( img, INTERVAL, CALIBRATION, threshold, 1 );
+		assertTrue( expected.size() > 5 );
+		assertSameSpots( expected, actual );
+	}
+
+	@Test
+	public void testOtsuThresholdOnView()
+	{
+		final Img< FloatType > img = blobs();
+		final Img< FloatType > cells = toCellImg( img );
+
+		assertTrue( PixelKernels.isArrayBacked( Views.interval( img, INTERVAL ) ) );
+		final double expected = MaskUtils.otsuThreshold( Views.interval( cells, INTERVAL ) );
+		final double actual = MaskUtils.otsuThreshold( Views.interval( img, INTERVAL ) );
+		assertEquals( expected, actual, 0. );
+	}
+
+	@Test
+	public void testFromLabelImageLargeLabels()
+	{
+		// Few labels with huge, sparse values.
+		final long[] values = new long[] { 3l, 1_000_000_000l, Integer.MAX_VALUE + 5l, 1l << 40, 7l };
+		final Random ran = new Random( 5l );
+		final Img< DoubleType > labels = ArrayImgs.doubles( 60, 50, 8 );
+		final Img< FloatType > quality = ArrayImgs.floats( 60, 50, 8 );
+		final Cursor< DoubleType > cursor = labels.localizingCursor();
+		final RandomAccess< FloatType > ra = quality.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			// Blocks of labels, with some background.
+			final int block = cursor.getIntPosition( 0 ) / 12 + cursor.getIntPosition( 2 ) / 4;
+			if ( ran.nextDouble() < 0.2 )
+				continue;
+			cursor.get().set( values[ block % values.length ] );
+			ra.setPosition( cursor );
+			ra.get().set( ran.nextFloat() );
+		}
+
+		final double[] calibration = new double[] { 0.2, 0.2, 1. };
+		final FinalInterval interval = new FinalInterval( new long[] { 2, 1, 0 }, new long[] { 57, 48, 7 } );
+		for ( final int numThreads : new int[] { 1, 3 } )
+		{
+			final List< Spot > expected = naiveFromLabelImage( labels, interval, calibration, quality );
+			assertEquals( values.length, expected.size() );
+			assertSameSpots( expected, MaskUtils.fromLabelImage( labels, interval, calibration, numThreads, quality ) );
+		}
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testFromLabelImageFailure()
+	{
+		final Img< FloatType > labels = ArrayImgs.floats( 20, 20, 4 );
+		for ( final FloatType t : labels )
+			t.set( 1f );
+		// A quality image that cannot be read.
+		final RandomAccessibleInterval< FloatType > quality = Converters.convertRAI( labels, ( a, b ) -> {
+			throw new IllegalStateException();
+		}, new FloatType() );
+		MaskUtils.fromLabelImage( labels, labels, new double[] { 1., 1., 1. }, 2, quality );
+	}
+
+	/**
+	 * Computes the spots of a label image, one label at a time.
+	 */
+	private static < T extends RealType< T > > List< Spot > naiveFromLabelImage( final RandomAccessibleInterval< T > labels, final Interval interval, final double[] calibration, final RandomAccessibleInterval< FloatType > quality )
+	{
+		final Map< Long, long[] > sums = new TreeMap<>();
+		final Map< Long, Double > qualities = new HashMap<>();
+		final Cursor< T > cursor = Views.interval( labels, interval ).localizingCursor();
+		final RandomAccess< FloatType > ra = quality.randomAccess();
+		final int n = labels.numDimensions();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final long label = ( long ) cursor.get().getRealDouble();
+			if ( label <= 0 )
+				continue;
+			final long[] sum = sums.computeIfAbsent( label, l -> new long[ n + 1 ] );
+			for ( int d = 0; d < n; d++ )
+				sum[ d ] += cursor.getLongPosition( d ) - interval.min( d );
+			sum[ n ]++;
+			ra.setPosition( cursor );
+			qualities.merge( label, ra.get().getRealDouble(), Math::max );
+		}
+
+		final List< Spot > spots = new ArrayList<>();
+		for ( final Long label : sums.keySet() )
+		{
+			final long[] sum = sums.get( label );
+			final double[] pos = new double[ 3 ];
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = calibration[ d ] * ( interval.min( d ) + sum[ d ] / ( double ) sum[ n ] );
+			final double volume = sum[ n ] * calibration[ 0 ] * calibration[ 1 ] * calibration[ 2 ];
+			final double radius = Math.pow( 3. * volume / ( 4. * Math.PI ), 1. / 3. );
+			spots.add( new Spot( pos[ 0 ], pos[ 1 ], pos[ 2 ], radius, qualities.get( label ) ) );
+		}
+		return spots;
+	}
+
+	/**
+	 * Square blobs of various brightness over a noisy background.
+	 */
+	private static Img< FloatType > blobs()
+	{
+		final Random ran = new Random( 3l );
+		final Img< FloatType > img = ArrayImgs.floats( 80, 60 );
+		for ( final FloatType t : img )
+			t.set( 20f * ran.nextFloat() );
+
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		for ( int i = 0; i < 12; i++ )
+		{
+			final int x0 = ran.nextInt( 74 );
+			final int y0 = ran.nextInt( 54 );
+			final int size = 2 + ran.nextInt( 4 );
+			final float val = 100f + 100f * ran.nextFloat();
+			for ( int y = y0; y < y0 + size; y++ )
+			{
+				for ( int x = x0; x < x0 + size; x++ )
+				{
+					ra.setPosition( x, 0 );
+					ra.setPosition( y, 1 );
+					ra.get().set( val );
+				}
+			}
+		}
+		return img;
+	}
+
+	private static Img< FloatType > toCellImg( final Img< FloatType > img )
+	{
+		final Img< FloatType > cells = new CellImgFactory<>( new FloatType(), 16 ).create( img );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		final RandomAccess< FloatType > ra = cells.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			ra.setPosition( cursor );
+			ra.get().set( cursor.get() );
+		}
+		return cells;
+	}
+
+	private static void assertSameSpots( final List< Spot > expected, final List< Spot > actual )
+	{
+		final Comparator< Spot > order = Comparator
+				.comparingDouble( ( Spot s ) -> s.getDoublePosition( 0 ) )
+				.thenComparingDouble( s -> s.getDoublePosition( 1 ) );
+		expected.sort( order );
+		actual.sort( order );
+		assertEquals( expected.size(), actual.size() );
+		for ( int i = 0; i < expected.size(); i++ )
+		{
+			final Spot se = expected.get( i );
+			final Spot sa = actual.get( i );
+			for ( int d = 0; d < 3; d++ )
+				assertEquals( se.getDoublePosition( d ), sa.getDoublePosition( d ), 1e-12 );
+			assertEquals( se.getFeature( Spot.RADIUS ), sa.getFeature( Spot.RADIUS ), 1e-12 );
+			assertEquals( se.getFeature( Spot.QUALITY ), sa.getFeature( Spot.QUALITY ), 1e-12 );
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.PyramidDetector.DetectorProvider;
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class PyramidDetectorTest
+{
+
+	/** Spot radii, in pixels, from the smallest that is downsampled. */
+	private static final double[] RADII = new double[] { 8., 13., 21. };
+
+	private static final double[] CALIBRATION = new double[] { 0.2, 0.2 };
+
+	/** Standard deviation of the noise added to the spots. */
+	private static final double NOISE = 3.;
+
+	/** Number of spots along X and Y. */
+	private static final int N_SPOTS = 3;
+
+	@Test
+	public void testLogDetector()
+	{
+		for ( final double radius : RADII )
+			checkRecall( radius, 1e-6, ( im, itv, cal, thr, coarse ) -> new LogDetector<>( im, itv, cal, radius * CALIBRATION[ 0 ], thr, true, false ) );
+	}
+
+	/**
+	 * The DoG detector uses recursive Gaussian filters for large spots, whose
+	 * response in a refinement window depends slightly on the window borders.
+	 */
+	@Test
+	public void testDogDetector()
+	{
+		for ( final double radius : RADII )
+			checkRecall( radius, 0.02, ( im, itv, cal, thr, coarse ) -> new DogDetector<>( im, itv, cal, radius * CALIBRATION[ 0 ], thr, true, false ) );
+	}
+
+	/**
+	 * Detects spots of various sizes and intensities with the direct detector
+	 * and with the pyramid detector, with the threshold set just below the
+	 * quality of one of the spots. Checks that the pyramid detector finds the
+	 * spots the direct detector finds above the threshold, at the same
+	 * position and with the same quality, up to the specified relative
+	 * tolerance.
+	 */
+	private static void checkRecall( final double radiusPixels, final double tolerance, final DetectorProvider provider )
+	{
+		final Img< FloatType > img = createImage( radiusPixels );
+		final double radius = radiusPixels * CALIBRATION[ 0 ];
+
+		final List< Spot > all = detect( provider.get( img, img, CALIBRATION, 0., false ) );
+		final double threshold = getThreshold( all, tolerance );
+		final List< Spot > expected = new ArrayList<>();
+		for ( final Spot spot : all )
+			if ( spot.getFeature( Spot.QUALITY ) >= threshold )
+				expected.add( spot );
+
+		final int[] nCoarse = new int[ 1 ];
+		final DetectorProvider counter = ( im, itv, cal, thr, coarse ) -> {
+			if ( coarse )
+				nCoarse[ 0 ]++;
+			return provider.get( im, itv, cal, thr, coarse );
+		};
+		final PyramidDetector< FloatType > pyramid = new PyramidDetector<>( img, img, CALIBRATION, radius, threshold, counter );
+		final List< Spot > actual = detect( pyramid );
+		assertEquals( "Expected a detection on a downsampled image.", 1, nCoarse[ 0 ] );
+
+		final String msg = "At radius " + radiusPixels + " pixels: ";
+		assertEquals( msg + "number of spots.", expected.size(), actual.size() );
+		for ( final Spot spot : expected )
+		{
+			final Spot closest = closest( spot, actual );
+			assertEquals( msg + "position.", 0., Math.sqrt( spot.squareDistanceTo( closest ) ), CALIBRATION[ 0 ] + 1e-9 );
+			final double quality = spot.getFeature( Spot.QUALITY );
+			assertEquals( msg + "quality.", quality, closest.getFeature( Spot.QUALITY ), tolerance * quality );
+		}
+	}
+
+	/**
+	 * Returns a threshold just below the quality of one of the brightest half
+	 * of the spots, closer to this spot than the specified tolerance. The spot
+	 * below must be farther from the threshold than the tolerance.
+	 */
+	private static double getThreshold( final List< Spot > spots, final double tolerance )
+	{
+		// The spots are the brightest maxima, the others are noise.
+		final double[] all = new double[ spots.size() ];
+		for ( int i = 0; i < all.length; i++ )
+			all[ i ] = spots.get( i ).getFeature( Spot.QUALITY );
+		Arrays.sort( all );
+		assertTrue( all.length >= N_SPOTS * N_SPOTS );
+		final double[] qualities = Arrays.copyOfRange( all, all.length - N_SPOTS * N_SPOTS, all.length );
+
+		for ( int i = qualities.length / 2; i < qualities.length; i++ )
+		{
+			final double threshold = qualities[ i ] / ( 1. + 0.5 * tolerance );
+			if ( qualities[ i - 1 ] * ( 1. + tolerance ) < threshold )
+				return threshold;
+		}
+		fail( "Spot qualities too close to each other." );
+		return Double.NaN;
+	}
+
+	private static Spot closest( final Spot spot, final List< Spot > spots )
+	{
+		Spot closest = null;
+		double min = Double.POSITIVE_INFINITY;
+		for ( final Spot other : spots )
+		{
+			final double d2 = spot.squareDistanceTo( other );
+			if ( d2 < min )
+			{
+				min = d2;
+				closest = other;
+			}
+		}
+		return closest;
+	}
+
+	private static List< Spot > detect( final SpotDetector< ? > detector )
+	{
+		assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+		return detector.getResult();
+	}
+
+	/**
+	 * Creates a noisy image with a grid of Gaussian spots 4 radii apart, with
+	 * random offsets within a pixel of the downsampled image, intensities
+	 * from 20 to 100 and sizes from 0.8 to 1.2 times the specified radius.
+	 */
+	private static Img< FloatType > createImage( final double radius )
+	{
+		final Random random = new Random( 1l );
+		final double spacing = 4. * radius;
+		// Spans a pixel of the downsampled image.
+		final double offset = radius / PyramidDetector.COARSE_RADIUS;
+		final long size = ( long ) ( spacing * N_SPOTS );
+		final Img< FloatType > img = ArrayImgs.floats( size, size );
+		final List< double[] > spots = new ArrayList<>();
+		for ( int i = 0; i < N_SPOTS * N_SPOTS; i++ )
+		{
+			final double x = ( long ) ( spacing * ( i % N_SPOTS + 0.5 ) ) + offset * random.nextDouble();
+			final double y = ( long ) ( spacing * ( i / N_SPOTS + 0.5 ) ) + offset * random.nextDouble();
+			final double sigma = radius / Math.sqrt( 2. ) * ( 0.8 + 0.4 * random.nextDouble() );
+			final double amplitude = 20. + 80. * i / ( N_SPOTS * N_SPOTS - 1 );
+			spots.add( new double[] { x, y, sigma, amplitude } );
+		}
+
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double val = 0.;
+			for ( final double[] spot : spots )
+			{
+				final double dx = cursor.getDoublePosition( 0 ) - spot[ 0 ];
+				final double dy = cursor.getDoublePosition( 1 ) - spot[ 1 ];
+				val += spot[ 3 ] * Math.exp( -( dx * dx + dy * dy ) / ( 2. * spot[ 2 ] * spot[ 2 ] ) );
+			}
+			cursor.get().setReal( val + NOISE * random.nextGaussian() );
+		}
+		return img;
+	}
+}
@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.detection.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class RecursiveGaussianTest
+{
+
+	@Test
+	public void testImpulseResponse()
+	{
+		final double[] sigma = new double[] { 6., 4. };
+		final int size = 101;
+		final int center = size / 2;
+		final ArrayImg< FloatType, FloatArray > source = ArrayImgs.floats( size, size );
+		final RandomAccess< FloatType > ra = source.randomAccess();
+		ra.setPosition( new int[] { center, center } );
+		ra.get().set( 1f );
+
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( size, size );
+		RecursiveGaussian.gauss( sigma, source, target );
+
+		double sum = 0.;
+		final double[] mean = new double[ 2 ];
+		final double[] variance = new double[ 2 ];
+		final Cursor< FloatType > cursor = target.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final double val = cursor.next().getRealDouble();
+			sum += val;
+			for ( int d = 0; d < 2; d++ )
+			{
+				final double dx = cursor.getDoublePosition( d ) - center;
+				mean[ d ] += val * dx;
+				variance[ d ] += val * dx * dx;
+			}
+		}
+		assertEquals( "Filter should preserve the integral.", 1., sum, 1e-4 );
+		for ( int d = 0; d < 2; d++ )
+		{
+			assertEquals( "Impulse response should be centered in dimension " + d + ".", 0., mean[ d ], 1e-3 );
+			assertEquals( "Bad sigma in dimension " + d + ".", sigma[ d ], Math.sqrt( variance[ d ] ), 1e-2 );
+		}
+	}
+
+	@Test
+	public void testDoGOfConstantIsZero()
+	{
+		final ArrayImg< UnsignedShortType, ? > source = ArrayImgs.unsignedShorts( 40, 30, 20 );
+		source.forEach( p -> p.set( 1000 ) );
+
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 40, 30, 20 );
+		RecursiveGaussian.differenceOfGaussian(
+				new double[] { 4., 4., 1. },
+				new double[] { 5., 5., 1.5 },
+				source, target );
+
+		for ( final FloatType p : target )
+			assertEquals( "DoG of a constant image should be 0.", 0., p.getRealDouble(), 1e-2 );
+	}
+
+	@Test
+	public void testIsSuitable()
+	{
+		assertTrue( RecursiveGaussian.isSuitable( new double[] { 5., 5., 1. } ) );
+		assertFalse( "Small sigmas should use FIR filtering.", RecursiveGaussian.isSuitable( new double[] { 1., 1. } ) );
+		assertFalse( "Sigmas too small for recursive filtering.", RecursiveGaussian.isSuitable( new double[] { 5., 5., 0.2 } ) );
+	}
+}
@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackMate;
+import fiji.plugin.trackmate.features.spot.SpotContrastAndSNRAnalyzerFactory;
+import fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory;
+import ij.ImagePlus;
+import ij.gui.NewImage;
+import ij.process.ImageProcessor;
+
+/**
+ * Checks that computing spot features on demand gives the same features as
+ * computing all of them upfront.
+ */
+public class LazySpotFeatureCalculatorTest
+{
+
+	private static final int N_FRAMES = 5;
+
+	private static final int N_SPOTS = 6;
+
+	@Test
+	public void testLazyGivesSameFeatures()
+	{
+		final ImagePlus imp = createImage();
+		final TrackMate eager = createTrackMate( imp, false );
+		final TrackMate lazy = createTrackMate( imp, true );
+
+		assertTrue( eager.getErrorMessage(), eager.computeSpotFeatures( false ) );
+		assertTrue( lazy.getErrorMessage(), lazy.computeSpotFeatures( false ) );
+		assertEquals( eager.getModel().getFeatureModel().getSpotFeatures(), lazy.getModel().getFeatureModel().getSpotFeatures() );
+
+		final List< Spot > expected = spots( eager.getModel() );
+		final List< Spot > actual = spots( lazy.getModel() );
+		final Collection< String > intensityFeatures = new SpotIntensityMultiCAnalyzerFactory<>().getFeatures();
+		final Collection< String > contrastFeatures = new SpotContrastAndSNRAnalyzerFactory<>().getFeatures();
+
+		// Nothing computed yet.
+		for ( final Spot spot : actual )
+			for ( final String feature : intensityFeatures )
+				assertNull( "Feature " + feature + " of " + spot, spot.getFeature( feature ) );
+
+		// Only the requested frame, with the features the contrast needs.
+		lazy.getModel().getFeatureModel().ensureSpotFeatures( contrastFeatures, 2 );
+		for ( final Spot spot : actual )
+		{
+			final boolean inFrame = spot.getFeature( Spot.FRAME ).intValue() == 2;
+			for ( final String feature : contrastFeatures )
+				assertEquals( "Feature " + feature + " of " + spot, inFrame, null != spot.getFeature( feature ) );
+			for ( final String feature : intensityFeatures )
+				assertEquals( "Feature " + feature + " of " + spot, inFrame, null != spot.getFeature( feature ) );
+		}
+
+		lazy.getModel().getFeatureModel().ensureAllSpotFeatures();
+		assertEquals( expected.size(), actual.size() );
+		for ( int i = 0; i < expected.size(); i++ )
+		{
+			final Spot e = expected.get( i );
+			final Spot a = actual.get( i );
+			assertFalse( e.getFeatures().isEmpty() );
+			assertEquals( e.getFeatures().keySet(), a.getFeatures().keySet() );
+			for ( final String feature : e.getFeatures().keySet() )
+			{
+				assertNotNull( "Feature " + feature + " of " + a, a.getFeature( feature ) );
+				assertEquals( "Feature " + feature + " of " + a, e.getFeature( feature ), a.getFeature( feature ), 0. );
+			}
+		}
+	}
+
+	private static TrackMate createTrackMate( final ImagePlus imp, final boolean lazySpotFeatures )
+	{
+		final Settings settings = new Settings( imp );
+		settings.addSpotAnalyzerFactory( new SpotIntensityMultiCAnalyzerFactory<>() );
+		settings.addSpotAnalyzerFactory( new SpotContrastAndSNRAnalyzerFactory<>() );
+
+		// Same spots in both models.
+		final Random ran = new Random( 7l );
+		final Model model = new Model();
+		model.beginUpdate();
+		try
+		{
+			for ( int frame = 0; frame < N_FRAMES; frame++ )
+			{
+				for ( int i = 0; i < N_SPOTS; i++ )
+				{
+					final Spot spot = new Spot( 5. + 50. * ran.nextDouble(), 5. + 30. * ran.nextDouble(), 0., 2. + 2. * ran.nextDouble(), 10. * ran.nextDouble() );
+					spot.putFeature( Spot.POSITION_T, Double.valueOf( frame ) );
+					model.addSpotTo( spot, frame );
+				}
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+
+		final TrackMate trackmate = new TrackMate( model, settings );
+		trackmate.setNumThreads( 2 );
+		trackmate.setLazySpotFeatures( lazySpotFeatures );
+		return trackmate;
+	}
+
+	/**
+	 * Returns the spots of the model, in the order they were created.
+	 */
+	private static List< Spot > spots( final Model model )
+	{
+		final List< Spot > spots = new ArrayList<>();
+		for ( final Spot spot : model.getSpots().iterable( false ) )
+			spots.add( spot );
+		spots.sort( ( s1, s2 ) -> Integer.compare( s1.ID(), s2.ID() ) );
+		return spots;
+	}
+
+	private static ImagePlus createImage()
+	{
+		final Random ran = new Random( 3l );
+		final ImagePlus imp = NewImage.createFloatImage( "Test", 64, 40, N_FRAMES, NewImage.FILL_BLACK );
+		imp.setDimensions( 1, 1, N_FRAMES );
+		for ( int i = 1; i <= N_FRAMES; i++ )
+		{
+			final ImageProcessor ip = imp.getStack().getProcessor( i );
+			for ( int p = 0; p < ip.getPixelCount(); p++ )
+				ip.setf( p, 100f * ran.nextFloat() );
+		}
+		return imp;
+	}
+}
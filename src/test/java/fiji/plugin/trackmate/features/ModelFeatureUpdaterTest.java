@@ -0,0 +1,262 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.edges.DirectionalChangeAnalyzer;
+import fiji.plugin.trackmate.features.edges.EdgeSpeedAnalyzer;
+import fiji.plugin.trackmate.features.edges.EdgeTargetAnalyzer;
+import fiji.plugin.trackmate.features.edges.EdgeTimeLocationAnalyzer;
+import fiji.plugin.trackmate.features.spot.SpotContrastAndSNRAnalyzerFactory;
+import fiji.plugin.trackmate.features.spot.SpotIntensityMultiCAnalyzerFactory;
+import fiji.plugin.trackmate.features.track.TrackBranchingAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackDurationAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackIndexAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackLocationAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackMotilityAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackSpeedStatisticsAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackSpotQualityFeatureAnalyzer;
+import ij.ImagePlus;
+import ij.gui.NewImage;
+import ij.process.ImageProcessor;
+
+/**
+ * Checks that the selective updates of {@link ModelFeatureUpdater} give the
+ * same features as recomputing all of them.
+ */
+public class ModelFeatureUpdaterTest
+{
+
+	private static final int N_FRAMES = 6;
+
+	private static final double TOLERANCE = 1e-9;
+
+	private Model model;
+
+	private Settings settings;
+
+	private List< List< Spot > > tracks;
+
+	@Before
+	public void setUp()
+	{
+		final Random ran = new Random( 4l );
+		// One more frame to move spots to.
+		final ImagePlus imp = NewImage.createFloatImage( "Test", 48, 40, N_FRAMES + 1, NewImage.FILL_BLACK );
+		imp.setDimensions( 1, 1, N_FRAMES + 1 );
+		for ( int i = 1; i <= N_FRAMES + 1; i++ )
+		{
+			final ImageProcessor ip = imp.getStack().getProcessor( i );
+			for ( int p = 0; p < ip.getPixelCount(); p++ )
+				ip.setf( p, 100f * ran.nextFloat() );
+		}
+
+		settings = new Settings( imp );
+		settings.addSpotAnalyzerFactory( new SpotIntensityMultiCAnalyzerFactory<>() );
+		settings.addSpotAnalyzerFactory( new SpotContrastAndSNRAnalyzerFactory<>() );
+		settings.addEdgeAnalyzer( new EdgeTargetAnalyzer() );
+		settings.addEdgeAnalyzer( new EdgeSpeedAnalyzer() );
+		settings.addEdgeAnalyzer( new EdgeTimeLocationAnalyzer() );
+		settings.addEdgeAnalyzer( new DirectionalChangeAnalyzer() );
+		settings.addTrackAnalyzer( new TrackIndexAnalyzer() );
+		settings.addTrackAnalyzer( new TrackDurationAnalyzer() );
+		settings.addTrackAnalyzer( new TrackBranchingAnalyzer() );
+		settings.addTrackAnalyzer( new TrackLocationAnalyzer() );
+		settings.addTrackAnalyzer( new TrackSpeedStatisticsAnalyzer() );
+		settings.addTrackAnalyzer( new TrackMotilityAnalyzer() );
+		settings.addTrackAnalyzer( new TrackSpotQualityFeatureAnalyzer() );
+
+		// Three linear tracks.
+		model = new Model();
+		tracks = new ArrayList<>();
+		model.beginUpdate();
+		try
+		{
+			for ( int t = 0; t < 3; t++ )
+			{
+				final List< Spot > track = new ArrayList<>();
+				Spot previous = null;
+				for ( int frame = 0; frame < N_FRAMES; frame++ )
+				{
+					final Spot spot = new Spot( 8. + 14. * t + 3. * ran.nextDouble(), 6. + 5. * frame + ran.nextDouble(), 0., 2.5, 10. * ran.nextDouble() );
+					spot.putFeature( Spot.POSITION_T, Double.valueOf( frame ) );
+					model.addSpotTo( spot, frame );
+					if ( null != previous )
+						model.addEdge( previous, spot, 1. );
+					track.add( spot );
+					previous = spot;
+				}
+				tracks.add( track );
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		computeAll();
+	}
+
+	@Test
+	public void testMoveSpot()
+	{
+		checkEdit( m -> {
+			final Spot spot = tracks.get( 0 ).get( 2 );
+			spot.putFeature( Spot.POSITION_X, spot.getDoublePosition( 0 ) + 2. );
+			m.updateFeatures( spot );
+		} );
+	}
+
+	@Test
+	public void testChangeQualityAndRadius()
+	{
+		checkEdit( m -> {
+			final Spot s1 = tracks.get( 1 ).get( 3 );
+			s1.putFeature( Spot.QUALITY, 123. );
+			m.updateFeatures( s1 );
+			final Spot s2 = tracks.get( 2 ).get( 0 );
+			s2.putFeature( Spot.RADIUS, 4. );
+			m.updateFeatures( s2 );
+		} );
+	}
+
+	@Test
+	public void testSplitAndMerge()
+	{
+		// A split in the first track, then a gap-closing link to the second.
+		checkEdit( m -> {
+			final Spot spot = new Spot( 12., 12., 0., 2., 5. );
+			spot.putFeature( Spot.POSITION_T, 2. );
+			m.addSpotTo( spot, 2 );
+			m.addEdge( tracks.get( 0 ).get( 1 ), spot, 1. );
+		} );
+		checkEdit( m -> m.addEdge( tracks.get( 0 ).get( 3 ), tracks.get( 1 ).get( 5 ), 1. ) );
+	}
+
+	@Test
+	public void testUnlinkAndRemove()
+	{
+		checkEdit( m -> m.removeEdge( tracks.get( 0 ).get( 2 ), tracks.get( 0 ).get( 3 ) ) );
+		checkEdit( m -> m.removeSpot( tracks.get( 1 ).get( 4 ) ) );
+		checkEdit( m -> {
+			final Spot spot = tracks.get( 2 ).get( 5 );
+			spot.putFeature( Spot.POSITION_T, Double.valueOf( N_FRAMES ) );
+			m.moveSpotFrom( spot, N_FRAMES - 1, N_FRAMES );
+		} );
+	}
+
+	/**
+	 * Performs an edit in a model update, and checks that the features updated
+	 * by the {@link ModelFeatureUpdater} are the ones we get by recomputing
+	 * all of them.
+	 */
+	private void checkEdit( final Consumer< Model > edit )
+	{
+		final ModelFeatureUpdater updater = new ModelFeatureUpdater( model, settings );
+		updater.setNumThreads( 1 );
+		model.beginUpdate();
+		try
+		{
+			edit.accept( model );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		updater.quit();
+
+		final Map< Object, Map< String, Double > > updated = snapshot();
+		computeAll();
+		final Map< Object, Map< String, Double > > expected = snapshot();
+		assertEquals( expected.keySet(), updated.keySet() );
+		for ( final Object o : expected.keySet() )
+		{
+			for ( final String feature : expected.get( o ).keySet() )
+			{
+				final Double e = expected.get( o ).get( feature );
+				final Double a = updated.get( o ).get( feature );
+				if ( null == e || e.isNaN() )
+				{
+					assertEquals( "Feature " + feature + " of " + o, e, a );
+					continue;
+				}
+				assertNotNull( "Feature " + feature + " of " + o, a );
+				assertEquals( "Feature " + feature + " of " + o, e, a, TOLERANCE * Math.max( 1., Math.abs( e ) ) );
+			}
+		}
+	}
+
+	private void computeAll()
+	{
+		final SpotFeatureCalculator spotCalculator = new SpotFeatureCalculator( model, settings, false );
+		spotCalculator.setNumThreads( 1 );
+		spotCalculator.process();
+		final EdgeFeatureCalculator edgeCalculator = new EdgeFeatureCalculator( model, settings, false );
+		edgeCalculator.setNumThreads( 1 );
+		edgeCalculator.process();
+		final TrackFeatureCalculator trackCalculator = new TrackFeatureCalculator( model, settings, false );
+		trackCalculator.setNumThreads( 1 );
+		trackCalculator.process();
+	}
+
+	/**
+	 * Copies all the spot, edge and track features of the model.
+	 */
+	private Map< Object, Map< String, Double > > snapshot()
+	{
+		final FeatureModel fm = model.getFeatureModel();
+		final Map< Object, Map< String, Double > > features = new HashMap<>();
+		for ( final Spot spot : model.getSpots().iterable( false ) )
+			features.put( spot, new HashMap<>( spot.getFeatures() ) );
+		for ( final DefaultWeightedEdge edge : model.getTrackModel().edgeSet() )
+		{
+			final Map< String, Double > map = new HashMap<>();
+			for ( final String feature : fm.getEdgeFeatures() )
+				map.put( feature, fm.getEdgeFeature( edge, feature ) );
+			features.put( edge, map );
+		}
+		for ( final Integer trackID : model.getTrackModel().trackIDs( false ) )
+		{
+			final Map< String, Double > map = new HashMap<>();
+			for ( final String feature : fm.getTrackFeatures() )
+				map.put( feature, fm.getTrackFeature( trackID, feature ) );
+			features.put( "Track " + trackID, map );
+		}
+		return features;
+	}
+}
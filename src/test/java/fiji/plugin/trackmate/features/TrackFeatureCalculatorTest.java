@@ -0,0 +1,212 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.features.edges.DirectionalChangeAnalyzer;
+import fiji.plugin.trackmate.features.edges.EdgeSpeedAnalyzer;
+import fiji.plugin.trackmate.features.edges.EdgeTargetAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackBranchingAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackDurationAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackLocationAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackMotilityAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackSpeedStatisticsAnalyzer;
+import fiji.plugin.trackmate.features.track.TrackSpotQualityFeatureAnalyzer;
+
+/**
+ * Checks the track features computed by the {@link TrackFeatureCalculator}
+ * on a small model with gaps, splits and merges, against the values
+ * computed by the analyzers before they were fused in a single walk per
+ * track.
+ */
+public class TrackFeatureCalculatorTest
+{
+
+	private static final double TOLERANCE = 1e-12;
+
+	/**
+	 * Expected features, computed by the analyzers before they were fused.
+	 * One line per analyzer, in the order of the settings: branching,
+	 * duration, location, speed statistics, spot quality and motility.
+	 */
+	private static final Map< String, double[] > EXPECTED = new LinkedHashMap<>();
+	static
+	{
+		EXPECTED.put( "Gaps", new double[] {
+				6.0, 2.0, 0.0, 0.0, 0.0, 1.0,
+				3.5, 0.0, 3.5, 26.71259066432906,
+				4.75, 7.916666666666667, 0.7916666666666666,
+				7.215958883610398, 12.379418403139947, 3.2015621187164243, 6.726812023536855, 3.771594057895841,
+				13.166666666666666,
+				27.593012422364396, 26.71259066432906, 0.9680925828409461, 7.6321687612368745, 1.057679081095073, 0.40226597095153654 } );
+		EXPECTED.put( "Split and merge", new double[] {
+				8.0, 1.0, 1.0, 1.0, 0.0, 1.0,
+				3.0, 0.0, 3.0, 20.645822822062577,
+				24.5, 6.25, 0.75,
+				8.337656745650202, 14.221462653327892, 3.2015621187164243, 8.0156097709407, 3.925517980993253,
+				33.0,
+				37.35843186807116, 20.645822822062577, 0.5526415802186757, 6.881940940687525, 0.825404685108663, 1.37964268235237 } );
+		EXPECTED.put( "Merge", new double[] {
+				10.0, 0.0, 0.0, 1.0, 0.0, 0.0,
+				3.0, 0.0, 3.0, 21.68524844220144,
+				45.05, 5.25, 0.675,
+				7.154726018398586, 11.412712210513327, 3.2015621187164243, 5.852349955359813, 3.153154381227884,
+				53.7,
+				32.19626708279364, 21.68524844220144, 0.6735330026439771, 7.22841614740048, 1.0102995039659657, 0.845669187819723 } );
+	}
+
+	@Test
+	public void testFeatures()
+	{
+		final Settings settings = createSettings();
+		final Map< String, Spot > tracks = new LinkedHashMap<>();
+		final Model model = createModel( tracks );
+		computeFeatures( model, settings );
+		assertEquals( tracks.size(), model.getTrackModel().nTracks( false ) );
+
+		final FeatureModel fm = model.getFeatureModel();
+		for ( final String name : EXPECTED.keySet() )
+		{
+			final Integer trackID = model.getTrackModel().trackIDOf( tracks.get( name ) );
+			final double[] expected = EXPECTED.get( name );
+			final List< String > features = features( settings );
+			assertEquals( features.size(), expected.length );
+			for ( int i = 0; i < expected.length; i++ )
+			{
+				final String msg = "Feature " + features.get( i ) + " of track " + name;
+				final Double actual = fm.getTrackFeature( trackID, features.get( i ) );
+				assertNotNull( msg, actual );
+				assertEquals( msg, expected[ i ], actual.doubleValue(), TOLERANCE * Math.max( 1., Math.abs( expected[ i ] ) ) );
+			}
+		}
+	}
+
+	private static List< String > features( final Settings settings )
+	{
+		final List< String > features = new ArrayList<>();
+		for ( final TrackAnalyzer analyzer : settings.getTrackAnalyzers() )
+			features.addAll( analyzer.getFeatures() );
+		return features;
+	}
+
+	private static Settings createSettings()
+	{
+		final Settings settings = new Settings();
+		settings.addEdgeAnalyzer( new EdgeTargetAnalyzer() );
+		settings.addEdgeAnalyzer( new EdgeSpeedAnalyzer() );
+		settings.addEdgeAnalyzer( new DirectionalChangeAnalyzer() );
+		settings.addTrackAnalyzer( new TrackBranchingAnalyzer() );
+		settings.addTrackAnalyzer( new TrackDurationAnalyzer() );
+		settings.addTrackAnalyzer( new TrackLocationAnalyzer() );
+		settings.addTrackAnalyzer( new TrackSpeedStatisticsAnalyzer() );
+		settings.addTrackAnalyzer( new TrackSpotQualityFeatureAnalyzer() );
+		settings.addTrackAnalyzer( new TrackMotilityAnalyzer() );
+		return settings;
+	}
+
+	private static void computeFeatures( final Model model, final Settings settings )
+	{
+		final EdgeFeatureCalculator edgeCalculator = new EdgeFeatureCalculator( model, settings, false );
+		edgeCalculator.setNumThreads( 1 );
+		assertTrue( edgeCalculator.getErrorMessage(), edgeCalculator.checkInput() && edgeCalculator.process() );
+		final TrackFeatureCalculator trackCalculator = new TrackFeatureCalculator( model, settings, false );
+		trackCalculator.setNumThreads( 2 );
+		assertTrue( trackCalculator.getErrorMessage(), trackCalculator.checkInput() && trackCalculator.process() );
+	}
+
+	/**
+	 * Creates a model with a track with gaps, a track that splits then merges
+	 * back across a gap, and a track with a merge.
+	 * 
+	 * @param tracks
+	 *            a map in which to store the first spot of each track, by
+	 *            name.
+	 */
+	private static Model createModel( final Map< String, Spot > tracks )
+	{
+		final Model model = new Model();
+		model.beginUpdate();
+		try
+		{
+			final List< Spot > gaps = chain( model, 0., 0, 1, 2, 4, 5, 7 );
+			tracks.put( "Gaps", gaps.get( 0 ) );
+
+			final List< Spot > start = chain( model, 20., 0, 1, 2 );
+			final List< Spot > branch1 = chain( model, 17., 3, 4 );
+			final List< Spot > branch2 = chain( model, 24., 3 );
+			final List< Spot > end = chain( model, 21., 5, 6 );
+			model.addEdge( start.get( 2 ), branch1.get( 0 ), 1. );
+			model.addEdge( start.get( 2 ), branch2.get( 0 ), 1. );
+			model.addEdge( branch1.get( 1 ), end.get( 0 ), 1. );
+			model.addEdge( branch2.get( 0 ), end.get( 0 ), 1. );
+			tracks.put( "Split and merge", start.get( 0 ) );
+
+			final List< Spot > left = chain( model, 38., 0, 1, 2, 3 );
+			final List< Spot > right = chain( model, 45., 1, 2, 3 );
+			final List< Spot > merged = chain( model, 41., 4, 5, 6 );
+			model.addEdge( left.get( 3 ), merged.get( 0 ), 1. );
+			model.addEdge( right.get( 2 ), merged.get( 0 ), 1. );
+			tracks.put( "Merge", left.get( 0 ) );
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		return model;
+	}
+
+	/**
+	 * Adds a chain of linked spots in the specified frames, on a curved path
+	 * starting at the specified X position.
+	 */
+	private static List< Spot > chain( final Model model, final double x0, final int... frames )
+	{
+		final List< Spot > spots = new ArrayList<>( frames.length );
+		Spot previous = null;
+		for ( final int frame : frames )
+		{
+			final Spot spot = new Spot( x0 + 1.5 * frame, 0.5 * frame * frame, 0.25 * frame, 1., 10. + x0 + frame );
+			spot.putFeature( Spot.POSITION_T, Double.valueOf( 0.5 * frame ) );
+			model.addSpotTo( spot, frame );
+			if ( null != previous )
+				model.addEdge( previous, spot, 1. );
+			spots.add( spot );
+			previous = spot;
+		}
+		return spots;
+	}
+}
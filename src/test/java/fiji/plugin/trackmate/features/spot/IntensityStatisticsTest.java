@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.util.TMUtils;
+
+public class IntensityStatisticsTest
+{
+
+	@Test
+	public void testSelect()
+	{
+		final Random ran = new Random( 1l );
+		for ( int t = 0; t < 1000; t++ )
+		{
+			final int n = 1 + ran.nextInt( 100 );
+			final double[] values = new double[ n ];
+			for ( int i = 0; i < n; i++ )
+				// Plenty of ties.
+				values[ i ] = ran.nextBoolean() ? ran.nextInt( 5 ) : ran.nextGaussian();
+
+			final double[] sorted = values.clone();
+			Arrays.sort( sorted );
+			final int k = ran.nextInt( n );
+			assertEquals( sorted[ k ], IntensityStatistics.select( values, n, k ), 0. );
+		}
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		final Random ran = new Random( 2l );
+		final double[] values = new double[ 1001 ];
+		final IntensityStatistics stats = IntensityStatistics.get();
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[ i ] = 1000. + 100. * ran.nextGaussian();
+			stats.add( values[ i ] );
+		}
+
+		assertEquals( TMUtils.sum( values ) / values.length, stats.mean(), 1e-9 );
+		assertEquals( TMUtils.standardDeviation( values ), stats.std(), 1e-9 );
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		assertEquals( sorted[ values.length / 2 ], stats.median(), 0. );
+
+		// Reused instances come back empty.
+		final IntensityStatistics other = IntensityStatistics.get();
+		assertEquals( 0, other.size() );
+		assertEquals( Double.NaN, other.mean(), 0. );
+	}
+}
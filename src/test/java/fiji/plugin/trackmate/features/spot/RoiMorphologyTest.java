@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.SpotRoi;
+
+public class RoiMorphologyTest
+{
+
+	@Test
+	public void testShape()
+	{
+		final Random ran = new Random( 3l );
+		final List< SpotRoi > rois = new ArrayList<>();
+		for ( int i = 0; i < 50; i++ )
+		{
+			final int n = 3 + ran.nextInt( 30 );
+			final double[] x = new double[ n ];
+			final double[] y = new double[ n ];
+			for ( int j = 0; j < n; j++ )
+			{
+				// Star-shaped polygon, so that it is simple.
+				final double theta = 2. * Math.PI * j / n;
+				final double r = 2. + ran.nextDouble() * 5.;
+				x[ j ] = r * Math.cos( theta );
+				y[ j ] = r * Math.sin( theta );
+			}
+			rois.add( new SpotRoi( x, y ) );
+		}
+
+		final double[] area = new double[ rois.size() ];
+		final double[] perimeter = new double[ rois.size() ];
+		final double[] convexArea = new double[ rois.size() ];
+		RoiMorphology.pack( rois ).compute( area, perimeter, convexArea, null, 4 );
+		for ( int i = 0; i < rois.size(); i++ )
+		{
+			final SpotRoi roi = rois.get( i );
+			assertEquals( roi.area(), area[ i ], 1e-9 );
+			assertEquals( ConvexHull.convexHull( roi ).area(), convexArea[ i ], 1e-9 );
+			double length = 0.;
+			for ( int j = 0; j < roi.x.length; j++ )
+			{
+				final int k = ( j + 1 ) % roi.x.length;
+				length += Math.hypot( roi.x[ k ] - roi.x[ j ], roi.y[ k ] - roi.y[ j ] );
+			}
+			assertEquals( length, perimeter[ i ], 1e-9 );
+		}
+	}
+
+	@Test
+	public void testEllipse()
+	{
+		final double a = 7.;
+		final double b = 3.;
+		final double theta = 0.4;
+		final double xc = 12.;
+		final double yc = -5.;
+		final int n = 64;
+		final double[] x = new double[ n ];
+		final double[] y = new double[ n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final double t = 2. * Math.PI * i / n;
+			final double u = a * Math.cos( t );
+			final double v = b * Math.sin( t );
+			x[ i ] = xc + u * Math.cos( theta ) - v * Math.sin( theta );
+			y[ i ] = yc + u * Math.sin( theta ) + v * Math.cos( theta );
+		}
+		final List< SpotRoi > rois = new ArrayList<>();
+		rois.add( new SpotRoi( x, y ) );
+
+		final double[] ellipse = new double[ RoiMorphology.N_ELLIPSE_PARAMS ];
+		RoiMorphology.pack( rois ).compute( null, null, null, ellipse, 1 );
+		assertEquals( xc, ellipse[ RoiMorphology.ELLIPSE_X0 ], 1e-6 );
+		assertEquals( yc, ellipse[ RoiMorphology.ELLIPSE_Y0 ], 1e-6 );
+		assertEquals( a, ellipse[ RoiMorphology.ELLIPSE_MAJOR ], 1e-6 );
+		assertEquals( b, ellipse[ RoiMorphology.ELLIPSE_MINOR ], 1e-6 );
+		assertEquals( Math.tan( theta ), Math.tan( ellipse[ RoiMorphology.ELLIPSE_THETA ] ), 1e-6 );
+	}
+}
@@ -0,0 +1,157 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.spot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class SpotIntensityAndContrastAnalyzerTest
+{
+
+	private static final String[] FEATURES = new String[] {
+			SpotIntensityMultiCAnalyzerFactory.MEAN_INTENSITY,
+			SpotIntensityMultiCAnalyzerFactory.MEDIAN_INTENSITY,
+			SpotIntensityMultiCAnalyzerFactory.MIN_INTENSITY,
+			SpotIntensityMultiCAnalyzerFactory.MAX_INTENSITY,
+			SpotIntensityMultiCAnalyzerFactory.TOTAL_INTENSITY,
+			SpotIntensityMultiCAnalyzerFactory.STD_INTENSITY,
+			SpotContrastAndSNRAnalyzerFactory.CONTRAST,
+			SpotContrastAndSNRAnalyzerFactory.SNR };
+
+	@Test
+	public void testSameAsSeparate2D()
+	{
+		final Img< FloatType > img = randomImg( 64, 48 );
+		final ImgPlus< FloatType > imgPlus = new ImgPlus<>( img, "2D", new AxisType[] { Axes.X, Axes.Y }, new double[] { 0.2, 0.2 } );
+		// Includes a spot touching the image border.
+		check( imgPlus, new Spot( 6.3, 4.1, 0., 1.5, -1. ) );
+		check( imgPlus, new Spot( 0.4, 1., 0., 1.2, -1. ) );
+	}
+
+	@Test
+	public void testSameAsSeparate3D()
+	{
+		final Img< FloatType > img = randomImg( 40, 36, 20 );
+		final ImgPlus< FloatType > imgPlus = new ImgPlus<>( img, "3D", new AxisType[] { Axes.X, Axes.Y, Axes.Z }, new double[] { 0.2, 0.2, 0.5 } );
+		check( imgPlus, new Spot( 4.1, 3.5, 5.2, 1.5, -1. ) );
+		check( imgPlus, new Spot( 7.5, 0.3, 9.5, 1., -1. ) );
+	}
+
+	@Test
+	public void testMultiChannel()
+	{
+		final List< ImgPlus< FloatType > > channels = new ArrayList<>();
+		for ( int c = 0; c < 3; c++ )
+			channels.add( new ImgPlus<>( seededRandomImg( c, 40, 36, 20 ), "3D", new AxisType[] { Axes.X, Axes.Y, Axes.Z }, new double[] { 0.2, 0.2, 0.5 } ) );
+
+		checkMultiChannel( channels, new Spot( 4.1, 0.3, 5.2, 1.5, -1. ) );
+	}
+
+	@Test
+	public void testMultiChannel2DWithNaNs()
+	{
+		final List< ImgPlus< FloatType > > channels = new ArrayList<>();
+		for ( int c = 0; c < 2; c++ )
+		{
+			final Img< FloatType > img = seededRandomImg( 10 + c, 64, 48 );
+			// Some NaN pixels in the spot and in the ring, not the same in
+			// every channel.
+			final Random ran = new Random( c );
+			for ( final FloatType p : img )
+				if ( ran.nextDouble() < 0.1 )
+					p.set( Float.NaN );
+			channels.add( new ImgPlus<>( img, "2D", new AxisType[] { Axes.X, Axes.Y }, new double[] { 0.3, 0.3 } ) );
+		}
+
+		// A radius of 4.6 pixels, rounded to 5 by the spot neighborhood.
+		checkMultiChannel( channels, new Spot( 6.3, 4.1, 0., 1.38, -1. ) );
+	}
+
+	private static void checkMultiChannel( final List< ImgPlus< FloatType > > channels, final Spot spot )
+	{
+		final Spot expected = new Spot( spot );
+		for ( int c = 0; c < channels.size(); c++ )
+		{
+			new SpotIntensityMultiCAnalyzer<>( channels.get( c ), c ).process( expected );
+			new SpotContrastAndSNRAnalyzer<>( channels.get( c ), c ).process( expected );
+		}
+
+		final Spot intensity = new Spot( spot );
+		new SpotIntensityMultiCAnalyzer<>( channels, 0 ).process( intensity );
+		final Spot fused = new Spot( spot );
+		new SpotIntensityAndContrastAnalyzer<>( channels, 0 ).process( fused );
+
+		for ( int c = 0; c < channels.size(); c++ )
+		{
+			for ( final String feature : FEATURES )
+			{
+				final String key = SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( feature, c );
+				assertEquals( key, expected.getFeature( key ).doubleValue(), fused.getFeature( key ).doubleValue(), 1e-9 );
+				if ( !feature.equals( SpotContrastAndSNRAnalyzerFactory.CONTRAST ) && !feature.equals( SpotContrastAndSNRAnalyzerFactory.SNR ) )
+					assertEquals( key, expected.getFeature( key ).doubleValue(), intensity.getFeature( key ).doubleValue(), 1e-9 );
+			}
+		}
+	}
+
+	private static void check( final ImgPlus< FloatType > img, final Spot spot )
+	{
+		final Spot expected = new Spot( spot );
+		new SpotIntensityMultiCAnalyzer<>( img, 0 ).process( expected );
+		new SpotContrastAndSNRAnalyzer<>( img, 0 ).process( expected );
+
+		final Spot actual = new Spot( spot );
+		new SpotIntensityAndContrastAnalyzer<>( img, 0 ).process( actual );
+
+		for ( final String feature : FEATURES )
+		{
+			final String key = SpotIntensityMultiCAnalyzerFactory.makeFeatureKey( feature, 0 );
+			assertEquals( key, expected.getFeature( key ).doubleValue(), actual.getFeature( key ).doubleValue(), 1e-9 );
+		}
+	}
+
+	private static Img< FloatType > randomImg( final long... dims )
+	{
+		return seededRandomImg( 1l, dims );
+	}
+
+	private static Img< FloatType > seededRandomImg( final long seed, final long... dims )
+	{
+		final Img< FloatType > img = ArrayImgs.floats( dims );
+		final Random ran = new Random( seed );
+		for ( final FloatType p : img )
+			p.set( 100f + 50f * ran.nextFloat() );
+		return img;
+	}
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.features.track;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.util.TMUtils;
+import net.imglib2.util.Util;
+
+public class TrackStatisticsTest
+{
+
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void testSpeedsAddRemove()
+	{
+		final Random ran = new Random( 1l );
+		final TrackStatistics stats = new TrackStatistics();
+		final List< Double > speeds = new ArrayList<>();
+		for ( int i = 0; i < 500; i++ )
+		{
+			if ( speeds.size() > 2 && ran.nextDouble() < 0.3 )
+			{
+				final double speed = speeds.remove( ran.nextInt( speeds.size() ) );
+				assertTrue( stats.removeEdge( speed ) );
+			}
+			else
+			{
+				// Some duplicates on purpose.
+				final double speed = Math.round( 100. * ran.nextDouble() ) / 10.;
+				speeds.add( speed );
+				stats.addEdge( speed );
+			}
+			assertSpeeds( speeds, stats );
+		}
+		assertFalse( stats.removeEdge( -1. ) );
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final Random ran = new Random( 2l );
+		final TrackStatistics s1 = new TrackStatistics();
+		final TrackStatistics s2 = new TrackStatistics();
+		final List< Double > speeds = new ArrayList<>();
+		for ( int i = 0; i < 50; i++ )
+		{
+			final double speed = ran.nextDouble();
+			speeds.add( speed );
+			s1.addEdge( speed );
+		}
+		for ( int i = 0; i < 17; i++ )
+		{
+			final double speed = 0.5 + ran.nextDouble();
+			speeds.add( speed );
+			s2.addEdge( speed );
+		}
+
+		final Spot a = spot( 0., 1., 2., 0. );
+		final Spot b = spot( 3., 4., 5., 1. );
+		final Spot c = spot( 6., 8., 1., 2. );
+		s1.addSpot( b );
+		s1.addSpot( c );
+		s2.addSpot( a );
+
+		s1.merge( s2 );
+		assertSpeeds( speeds, s1 );
+		assertEquals( 3, s1.getNSpots() );
+		assertEquals( 3., s1.getMeanX(), EPSILON );
+		assertEquals( 13. / 3., s1.getMeanY(), EPSILON );
+		assertEquals( 0., s1.getStartTime(), EPSILON );
+		assertEquals( 2., s1.getStopTime(), EPSILON );
+		assertSame( a, s1.getStartSpot() );
+		assertSame( c, s1.getStopSpot() );
+
+		assertTrue( s1.removeSpot( a ) );
+		assertEquals( 2, s1.getNSpots() );
+		assertEquals( 4.5, s1.getMeanX(), EPSILON );
+		assertSame( b, s1.getStartSpot() );
+		assertFalse( s1.removeSpot( a ) );
+	}
+
+	private static void assertSpeeds( final List< Double > speeds, final TrackStatistics stats )
+	{
+		assertEquals( speeds.size(), stats.getNEdges() );
+		if ( speeds.isEmpty() )
+			return;
+
+		final double[] arr = new double[ speeds.size() ];
+		for ( int i = 0; i < arr.length; i++ )
+			arr[ i ] = speeds.get( i );
+		Util.quicksort( arr, 0, arr.length - 1 );
+		assertEquals( arr[ arr.length / 2 ], stats.getMedianSpeed(), EPSILON );
+		assertEquals( arr[ 0 ], stats.getMinSpeed(), EPSILON );
+		assertEquals( arr[ arr.length - 1 ], stats.getMaxSpeed(), EPSILON );
+		assertEquals( Util.average( arr ), stats.getMeanSpeed(), EPSILON );
+		if ( arr.length > 1 )
+			assertEquals( TMUtils.standardDeviation( arr ), stats.getStdSpeed(), 1e-6 );
+	}
+
+	private static Spot spot( final double x, final double y, final double z, final double t )
+	{
+		final Spot spot = new Spot( x, y, z, 1., 1. );
+		spot.putFeature( Spot.POSITION_T, Double.valueOf( t ) );
+		return spot;
+	}
+}
@@ -0,0 +1,301 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_GAP_CLOSING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_MERGING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_SPLITTING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_KALMAN_SEARCH_RADIUS;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_MAX_DISTANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import fiji.plugin.trackmate.tracking.jaqaman.SparseLAPTrackerFactory;
+import fiji.plugin.trackmate.tracking.kalman.AdvancedKalmanTrackerFactory;
+import fiji.plugin.trackmate.tracking.kalman.KalmanTrackerFactory;
+import fiji.plugin.trackmate.tracking.kdtree.NearestNeighborTrackerFactory;
+
+public class OnlineSpotTrackerTest
+{
+
+	private static final int N_PARTICLES = 8;
+
+	/** Max frame gap of the segment linking tests, larger than the movies. */
+	private static final int MAX_FRAME_GAP = 20;
+
+	@Test
+	public void testNearestNeighbor()
+	{
+		final NearestNeighborTrackerFactory factory = new NearestNeighborTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		settings.put( KEY_LINKING_MAX_DISTANCE, 5. );
+		for ( long seed = 1; seed <= 5; seed++ )
+			assertSameGraph( factory, settings, createSpots( seed, 30 ) );
+	}
+
+	@Test
+	public void testFrameToFrameLAP()
+	{
+		final SparseLAPTrackerFactory factory = new SparseLAPTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		settings.put( KEY_LINKING_MAX_DISTANCE, 5. );
+		settings.put( KEY_ALLOW_GAP_CLOSING, false );
+		settings.put( KEY_ALLOW_TRACK_SPLITTING, false );
+		settings.put( KEY_ALLOW_TRACK_MERGING, false );
+		for ( long seed = 1; seed <= 5; seed++ )
+			assertSameGraph( factory, settings, createSpots( seed, 30 ) );
+	}
+
+	@Test
+	public void testKalman()
+	{
+		final KalmanTrackerFactory factory = new KalmanTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		settings.put( KEY_LINKING_MAX_DISTANCE, 5. );
+		settings.put( KEY_KALMAN_SEARCH_RADIUS, 3. );
+		settings.put( KEY_GAP_CLOSING_MAX_FRAME_GAP, 2 );
+		for ( long seed = 1; seed <= 5; seed++ )
+			assertSameGraph( factory, settings, createSpots( seed, 30 ) );
+	}
+
+	/**
+	 * Segments are linked in blocks of frames as long as the max frame gap.
+	 * The movie is shorter than one block, so segments are linked in a
+	 * single LAP, as by the batch tracker.
+	 */
+	@Test
+	public void testSegmentLinkingShortMovie()
+	{
+		final SparseLAPTrackerFactory factory = new SparseLAPTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		setSegmentSettings( settings );
+		final List< SimpleWeightedGraph< Spot, DefaultWeightedEdge > > graphs = new ArrayList<>();
+		for ( long seed = 1; seed <= 5; seed++ )
+			graphs.add( assertSameGraph( factory, settings, createSpots( seed, MAX_FRAME_GAP - 2 ) ) );
+		assertSegmentLinks( graphs );
+	}
+
+	@Test
+	public void testKalmanSegmentLinkingShortMovie()
+	{
+		final AdvancedKalmanTrackerFactory factory = new AdvancedKalmanTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		setSegmentSettings( settings );
+		settings.put( KEY_KALMAN_SEARCH_RADIUS, 3. );
+		final List< SimpleWeightedGraph< Spot, DefaultWeightedEdge > > graphs = new ArrayList<>();
+		for ( long seed = 1; seed <= 5; seed++ )
+			graphs.add( assertSameGraph( factory, settings, createSpots( seed, MAX_FRAME_GAP - 2 ) ) );
+		assertSegmentLinks( graphs );
+	}
+
+	/**
+	 * Kalman links bridge up to <code>G+1</code> frames, which is longer than
+	 * the frame-to-frame links the window relies on. Merging is not allowed,
+	 * so a spot that has a predecessor must not receive a segment link.
+	 */
+	@Test
+	public void testKalmanSegmentLinkingLongMovie()
+	{
+		final AdvancedKalmanTrackerFactory factory = new AdvancedKalmanTrackerFactory();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		setSegmentSettings( settings );
+		settings.put( KEY_KALMAN_SEARCH_RADIUS, 3. );
+		settings.put( KEY_GAP_CLOSING_MAX_FRAME_GAP, 2 );
+		settings.put( KEY_ALLOW_TRACK_MERGING, false );
+		int nLinks = 0;
+		for ( long seed = 1; seed <= 5; seed++ )
+		{
+			final SpotCollection spots = createSpots( seed, 60 );
+			final OnlineSpotTracker online = factory.createOnline( settings );
+			online.setNumThreads( 2 );
+			track( online, spots );
+
+			final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = online.getResult();
+			for ( final Spot spot : graph.vertexSet() )
+			{
+				int nPredecessors = 0;
+				for ( final DefaultWeightedEdge edge : graph.edgesOf( spot ) )
+					if ( Graphs.getOppositeVertex( graph, edge, spot ).diffTo( spot, Spot.FRAME ) < 0. )
+						nPredecessors++;
+				assertTrue( "Spot " + spot + " has " + nPredecessors + " predecessors.", nPredecessors <= 1 );
+			}
+			nLinks += graph.edgeSet().size();
+		}
+		assertTrue( "Expected links.", nLinks > 0 );
+	}
+
+	private static void setSegmentSettings( final Map< String, Object > settings )
+	{
+		settings.put( KEY_LINKING_MAX_DISTANCE, 5. );
+		settings.put( KEY_ALLOW_GAP_CLOSING, true );
+		settings.put( KEY_GAP_CLOSING_MAX_FRAME_GAP, MAX_FRAME_GAP );
+		settings.put( KEY_GAP_CLOSING_MAX_DISTANCE, 10. );
+		settings.put( KEY_ALLOW_TRACK_SPLITTING, true );
+		settings.put( KEY_SPLITTING_MAX_DISTANCE, 6. );
+		settings.put( KEY_ALLOW_TRACK_MERGING, true );
+		settings.put( KEY_MERGING_MAX_DISTANCE, 6. );
+	}
+
+	/**
+	 * Tracks the specified spots with the batch and the online trackers of
+	 * the specified factory, and checks that they find the same links with
+	 * the same costs. Returns the graph of the online tracker.
+	 */
+	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > assertSameGraph( final SpotTrackerFactory factory, final Map< String, Object > settings, final SpotCollection spots )
+	{
+		final SpotTracker batch = factory.create( spots, settings );
+		batch.setNumThreads( 2 );
+		assertTrue( batch.getErrorMessage(), batch.checkInput() && batch.process() );
+
+		final OnlineSpotTracker online = factory.createOnline( settings );
+		assertNotNull( online );
+		online.setNumThreads( 2 );
+		track( online, spots );
+
+		final Map< String, Double > expected = edges( batch.getResult() );
+		final Map< String, Double > actual = edges( online.getResult() );
+		assertFalse( expected.isEmpty() );
+		assertEquals( expected.keySet(), actual.keySet() );
+		for ( final String edge : expected.keySet() )
+			assertEquals( "Cost of " + edge, expected.get( edge ), actual.get( edge ), 1e-9 );
+		return online.getResult();
+	}
+
+	/**
+	 * Feeds the specified spots to the online tracker, frame after frame.
+	 */
+	private static void track( final OnlineSpotTracker online, final SpotCollection spots )
+	{
+		for ( final Integer frame : spots.keySet() )
+		{
+			final List< Spot > frameSpots = new ArrayList<>();
+			for ( final Iterator< Spot > it = spots.iterator( frame, true ); it.hasNext(); )
+				frameSpots.add( it.next() );
+			assertTrue( online.getErrorMessage(), online.addFrame( frame, frameSpots ) );
+		}
+		assertTrue( online.getErrorMessage(), online.finish() );
+	}
+
+	/**
+	 * Checks that the specified graphs have gap-closing links and splits or
+	 * merges, so that the segment LAPs were not trivial.
+	 */
+	private static void assertSegmentLinks( final List< SimpleWeightedGraph< Spot, DefaultWeightedEdge > > graphs )
+	{
+		int nGaps = 0;
+		int nSplits = 0;
+		for ( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph : graphs )
+		{
+			for ( final DefaultWeightedEdge edge : graph.edgeSet() )
+				if ( Math.abs( graph.getEdgeSource( edge ).diffTo( graph.getEdgeTarget( edge ), Spot.FRAME ) ) > 1. )
+					nGaps++;
+			for ( final Spot spot : graph.vertexSet() )
+				if ( graph.degreeOf( spot ) > 2 )
+					nSplits++;
+		}
+		assertTrue( "Expected gap-closing links.", nGaps > 0 );
+		assertTrue( "Expected track splits or merges.", nSplits > 0 );
+	}
+
+	/**
+	 * Returns the edges of the specified graph as "source ID > target ID",
+	 * the source being in the earlier frame, mapped to their weight.
+	 */
+	private static Map< String, Double > edges( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph )
+	{
+		final Map< String, Double > edges = new TreeMap<>();
+		for ( final DefaultWeightedEdge edge : graph.edgeSet() )
+		{
+			Spot source = graph.getEdgeSource( edge );
+			Spot target = graph.getEdgeTarget( edge );
+			if ( source.getFeature( Spot.FRAME ) > target.getFeature( Spot.FRAME ) )
+			{
+				final Spot tmp = source;
+				source = target;
+				target = tmp;
+			}
+			edges.put( source.ID() + " > " + target.ID(), graph.getEdgeWeight( edge ) );
+		}
+		return edges;
+	}
+
+	/**
+	 * Creates particles moving at constant speed with some jitter. Each spot
+	 * is missed with a probability of 0.1, which makes gaps, and one particle
+	 * divides in the middle of the movie.
+	 */
+	private static SpotCollection createSpots( final long seed, final int nFrames )
+	{
+		final Random random = new Random( seed );
+		final List< double[] > particles = new ArrayList<>();
+		for ( int i = 0; i < N_PARTICLES; i++ )
+			particles.add( new double[] {
+					25. * ( i % 4 ) + 5. * random.nextDouble(),
+					25. * ( i / 4 ) + 5. * random.nextDouble(),
+					random.nextDouble() - 0.5,
+					random.nextDouble() - 0.5 } );
+
+		final SpotCollection spots = new SpotCollection();
+		for ( int frame = 0; frame < nFrames; frame++ )
+		{
+			if ( frame == nFrames / 2 )
+			{
+				final double[] mother = particles.get( 0 );
+				particles.add( new double[] { mother[ 0 ] + 1., mother[ 1 ], mother[ 2 ], mother[ 3 ] + 0.3 } );
+				mother[ 0 ] -= 1.;
+			}
+
+			for ( final double[] p : particles )
+			{
+				p[ 0 ] += p[ 2 ] + 0.2 * random.nextGaussian();
+				p[ 1 ] += p[ 3 ] + 0.2 * random.nextGaussian();
+				if ( random.nextDouble() < 0.1 )
+					continue;
+
+				final Spot spot = new Spot( p[ 0 ], p[ 1 ], 0., 1., 10. );
+				spot.putFeature( Spot.POSITION_T, Double.valueOf( frame ) );
+				spots.add( spot, frame );
+			}
+		}
+		return spots;
+	}
+}
@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.io.TrackSpillReader;
+import fiji.plugin.trackmate.io.TrackSpillWriter;
+
+public class TrackSpillerTest
+{
+
+	private static final int N_FRAMES = 20;
+
+	private static final int N_SPOTS_PER_FRAME = 3;
+
+	/**
+	 * Spills a movie as a tracker with a max frame gap of 2 would complete
+	 * it: spot 0 is linked frame to frame, spot 1 is linked every other frame
+	 * and spot 2 is never linked. Checks that the graph stays small and that
+	 * the file contains all the spots and links.
+	 */
+	@Test
+	public void testSpillAndRead() throws IOException
+	{
+		final File file = File.createTempFile( "TrackSpillerTest", ".bin" );
+		file.deleteOnExit();
+
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+		final Set< String > expectedEdges = new HashSet<>();
+		final List< Spot > previous = new ArrayList<>();
+		final List< Spot > beforePrevious = new ArrayList<>();
+		try (final TrackSpillWriter writer = new TrackSpillWriter( file, "µm", "s" ))
+		{
+			final TrackSpiller spiller = new TrackSpiller( graph, writer );
+			for ( int frame = 0; frame < N_FRAMES; frame++ )
+			{
+				final List< Spot > spots = new ArrayList<>();
+				for ( int i = 0; i < N_SPOTS_PER_FRAME; i++ )
+				{
+					final Spot spot = new Spot( frame, i, 0., 1., 10. * i );
+					spot.putFeature( Spot.FRAME, Double.valueOf( frame ) );
+					spots.add( spot );
+				}
+				spiller.addFrame( frame, spots );
+
+				if ( !previous.isEmpty() )
+					link( graph, previous.get( 0 ), spots.get( 0 ), expectedEdges );
+				if ( !beforePrevious.isEmpty() && frame % 2 == 0 )
+					link( graph, beforePrevious.get( 1 ), spots.get( 1 ), expectedEdges );
+
+				spiller.spill( frame - 2 );
+				assertTrue( "Spots of completed frames should be removed from the graph.", graph.vertexSet().size() <= 4 * N_SPOTS_PER_FRAME );
+
+				beforePrevious.clear();
+				beforePrevious.addAll( previous );
+				previous.clear();
+				previous.addAll( spots );
+			}
+			spiller.flush();
+			assertTrue( "All spots should be removed from the graph.", graph.vertexSet().isEmpty() );
+			assertEquals( N_FRAMES * N_SPOTS_PER_FRAME, writer.getNSpots() );
+			assertEquals( expectedEdges.size(), writer.getNEdges() );
+		}
+
+		// Read frame by frame.
+		try (final TrackSpillReader reader = new TrackSpillReader( file ))
+		{
+			assertEquals( "µm", reader.getSpaceUnits() );
+			final List< Spot > spots = new ArrayList<>();
+			final SimpleWeightedGraph< Spot, DefaultWeightedEdge > readGraph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+			int nFrames = 0;
+			while ( reader.readFrame( spots, readGraph ) )
+			{
+				assertEquals( nFrames, reader.getFrame() );
+				nFrames++;
+			}
+			assertEquals( N_FRAMES, nFrames );
+			assertEquals( N_FRAMES * N_SPOTS_PER_FRAME, spots.size() );
+			for ( final Spot spot : spots )
+				assertEquals( 10. * spot.getFeature( Spot.POSITION_Y ).doubleValue(), spot.getFeature( Spot.QUALITY ).doubleValue(), 1e-9 );
+
+			final Set< String > edges = new HashSet<>();
+			for ( final DefaultWeightedEdge edge : readGraph.edgeSet() )
+				edges.add( key( readGraph.getEdgeSource( edge ), readGraph.getEdgeTarget( edge ), readGraph.getEdgeWeight( edge ) ) );
+			assertEquals( expectedEdges, edges );
+		}
+
+		// Read in a model.
+		try (final TrackSpillReader reader = new TrackSpillReader( file ))
+		{
+			final Model model = reader.readModel();
+			assertEquals( N_FRAMES * N_SPOTS_PER_FRAME, model.getSpots().getNSpots( false ) );
+			assertEquals( 2, model.getTrackModel().nTracks( false ) );
+			assertFalse( reader.readFrame( new ArrayList<>(), new SimpleWeightedGraph<>( DefaultWeightedEdge.class ) ) );
+		}
+	}
+
+	private static void link( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph, final Spot source, final Spot target, final Set< String > expectedEdges )
+	{
+		graph.addVertex( source );
+		graph.addVertex( target );
+		final double weight = source.squareDistanceTo( target );
+		graph.setEdgeWeight( graph.addEdge( source, target ), weight );
+		expectedEdges.add( key( source, target, weight ) );
+	}
+
+	private static String key( final Spot source, final Spot target, final double weight )
+	{
+		return source.ID() + " -> " + target.ID() + " : " + weight;
+	}
+}
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALTERNATIVE_LINKING_COST_FACTOR;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_GREEDY_INITIALIZATION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+
+public class SparseLAPFrameToFrameTrackerTest
+{
+
+	@Test
+	public void testGreedyInitializationGivesSameCost()
+	{
+		for ( long seed = 1; seed <= 5; seed++ )
+		{
+			final SpotCollection spots = createSpots( seed, 500, 10 );
+			final SimpleWeightedGraph< Spot, DefaultWeightedEdge > reduction = track( spots, false );
+			final SimpleWeightedGraph< Spot, DefaultWeightedEdge > greedy = track( spots, true );
+
+			assertTrue( "Expected links.", reduction.edgeSet().size() > 0 );
+			assertEquals( "Greedy initialization did not find the same number of links.", reduction.edgeSet().size(), greedy.edgeSet().size() );
+			final double cost = totalCost( reduction );
+			assertEquals( "Greedy initialization did not find the same total cost.", cost, totalCost( greedy ), 1e-9 * cost );
+		}
+	}
+
+	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > track( final SpotCollection spots, final boolean greedyInitialization )
+	{
+		final Map< String, Object > settings = new HashMap<>();
+		settings.put( KEY_LINKING_MAX_DISTANCE, 4. );
+		settings.put( KEY_ALTERNATIVE_LINKING_COST_FACTOR, 1.05 );
+		settings.put( KEY_LINKING_GREEDY_INITIALIZATION, greedyInitialization );
+
+		final SparseLAPFrameToFrameTracker tracker = new SparseLAPFrameToFrameTracker( spots, settings );
+		tracker.setNumThreads( 2 );
+		assertTrue( tracker.getErrorMessage(), tracker.checkInput() && tracker.process() );
+		return tracker.getResult();
+	}
+
+	private static double totalCost( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph )
+	{
+		double cost = 0.;
+		for ( final DefaultWeightedEdge edge : graph.edgeSet() )
+			cost += graph.getEdgeWeight( edge );
+		return cost;
+	}
+
+	/**
+	 * Dense random walk, with some spots appearing and disappearing, so that
+	 * many spots compete for the same targets.
+	 */
+	private static SpotCollection createSpots( final long seed, final int nSpots, final int nFrames )
+	{
+		final Random random = new Random( seed );
+		final double[][] pos = new double[ nSpots ][ 2 ];
+		for ( final double[] p : pos )
+		{
+			p[ 0 ] = 100. * random.nextDouble();
+			p[ 1 ] = 100. * random.nextDouble();
+		}
+
+		final SpotCollection spots = new SpotCollection();
+		for ( int frame = 0; frame < nFrames; frame++ )
+		{
+			for ( final double[] p : pos )
+			{
+				p[ 0 ] += 1.5 * random.nextGaussian();
+				p[ 1 ] += 1.5 * random.nextGaussian();
+				if ( random.nextDouble() < 0.1 )
+					continue;
+
+				final Spot spot = new Spot( p[ 0 ], p[ 1 ], 0., 1., 10. );
+				spot.putFeature( Spot.POSITION_T, Double.valueOf( frame ) );
+				spots.add( spot, frame );
+			}
+		}
+		return spots;
+	}
+}
@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costfunction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+
+public class FeaturePenaltyCostFunctionTest
+{
+
+	@Test
+	public void testCompiledCostsAreTheSame()
+	{
+		final Random ran = new Random( 7l );
+		final List< Spot > sources = randomSpots( ran, 50 );
+		final List< Spot > targets = randomSpots( ran, 60 );
+		// Same position, to check the zero distance case.
+		final Spot copy = new Spot( sources.get( 0 ) );
+		copy.putFeature( "SIGNED", sources.get( 0 ).getFeature( "SIGNED" ) );
+		targets.add( copy );
+
+		final Map< String, Double > penalties = new HashMap<>();
+		penalties.put( Spot.QUALITY, 1. );
+		penalties.put( Spot.RADIUS, 0.5 );
+		penalties.put( "SIGNED", 2. );
+		final FeaturePenaltyCostFunction costFunction = new FeaturePenaltyCostFunction( penalties );
+		final IndexedCostFunction compiled = costFunction.compile( sources, targets );
+
+		for ( int i = 0; i < sources.size(); i++ )
+			for ( int j = 0; j < targets.size(); j++ )
+				assertEquals( costFunction.linkingCost( sources.get( i ), targets.get( j ) ), compiled.linkingCost( i, j ), 0. );
+	}
+
+	private static List< Spot > randomSpots( final Random ran, final int n )
+	{
+		final List< Spot > spots = new ArrayList<>( n );
+		for ( int i = 0; i < n; i++ )
+		{
+			final Spot spot = new Spot( 10. * ran.nextDouble(), 10. * ran.nextDouble(), 0., 1. + ran.nextDouble(), ran.nextInt( 3 ) );
+			// Negative, zero and NaN values.
+			final int k = ran.nextInt( 10 );
+			spot.putFeature( "SIGNED", ( k == 0 ) ? Double.NaN : ( k == 1 ) ? 0. : ran.nextGaussian() );
+			spots.add( spot );
+		}
+		return spots;
+	}
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AuctionLAPTest
+{
+
+	/**
+	 * Creates a random square sparse cost matrix that always admits a
+	 * solution: the diagonal is set, plus a few random entries per row.
+	 */
+	private static SparseCostMatrix randomMatrix( final int n, final boolean integers, final Random ran )
+	{
+		final int perRow = 4;
+		final double[] cc = new double[ n * perRow ];
+		final int[] kk = new int[ n * perRow ];
+		final int[] number = new int[ n ];
+		int index = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			final boolean[] cols = new boolean[ n ];
+			cols[ i ] = true;
+			for ( int k = 1; k < perRow; k++ )
+				cols[ ran.nextInt( n ) ] = true;
+			for ( int j = 0; j < n; j++ )
+			{
+				if ( !cols[ j ] )
+					continue;
+				kk[ index ] = j;
+				cc[ index ] = integers ? 1. + ran.nextInt( 100 ) : 0.01 + 100. * ran.nextDouble();
+				index++;
+				number[ i ]++;
+			}
+		}
+		final double[] cc2 = new double[ index ];
+		final int[] kk2 = new int[ index ];
+		System.arraycopy( cc, 0, cc2, 0, index );
+		System.arraycopy( kk, 0, kk2, 0, index );
+		return new SparseCostMatrix( cc2, kk2, number, n );
+	}
+
+	private static void compareToLAPJV( final SparseCostMatrix cm, final int numThreads, final double tolerance )
+	{
+		final LAPJV jv = new LAPJV( cm );
+		assertFalse( "LAPJV failed.", !jv.checkInput() || !jv.process() );
+		final double expected = cm.totalAssignmentCost( jv.getResult() );
+
+		final AuctionLAP auction = new AuctionLAP( cm );
+		auction.setNumThreads( numThreads );
+		assertFalse( "Auction failed.", !auction.checkInput() || !auction.process() );
+
+		// Must be a complete assignment.
+		final int[] assignment = auction.getResult();
+		final boolean[] taken = new boolean[ cm.getNCols() ];
+		for ( final int j : assignment )
+		{
+			assertFalse( "Column " + j + " is assigned twice.", taken[ j ] );
+			taken[ j ] = true;
+		}
+		assertEquals( "Auction did not find the optimal cost.", expected, cm.totalAssignmentCost( assignment ), tolerance );
+	}
+
+	@Test
+	public void testIntegerCostsAreOptimal()
+	{
+		final Random ran = new Random( 2014l );
+		for ( int t = 0; t < 50; t++ )
+			compareToLAPJV( randomMatrix( 20 + ran.nextInt( 50 ), true, ran ), 1, 1e-9 );
+	}
+
+	@Test
+	public void testRealCostsAreOptimal()
+	{
+		final Random ran = new Random( 1l );
+		for ( int t = 0; t < 50; t++ )
+			compareToLAPJV( randomMatrix( 20 + ran.nextInt( 50 ), false, ran ), 1, 1e-6 );
+	}
+
+	@Test
+	public void testMultithreaded()
+	{
+		final Random ran = new Random( 3l );
+		compareToLAPJV( randomMatrix( 3000, true, ran ), 4, 1e-9 );
+		compareToLAPJV( randomMatrix( 3000, false, ran ), 4, 1e-6 );
+	}
+
+	@Test
+	public void testNoCompleteAssignment()
+	{
+		// Two rows that can only go to the first column.
+		final double[] cc = new double[] { 1., 2., 3., 4. };
+		final int[] kk = new int[] { 0, 0, 1, 2 };
+		final int[] number = new int[] { 1, 1, 2 };
+		final AuctionLAP auction = new AuctionLAP( new SparseCostMatrix( cc, kk, number, 3 ) );
+		assertTrue( auction.checkInput() );
+		assertFalse( auction.process() );
+	}
+}
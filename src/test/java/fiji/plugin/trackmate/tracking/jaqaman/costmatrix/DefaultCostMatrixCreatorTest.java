@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DefaultCostMatrixCreatorTest
+{
+
+	/**
+	 * Sources and targets are compared with equals, not by identity.
+	 */
+	@Test
+	public void testEqualObjectsAreMerged()
+	{
+		final List< String > rows = Arrays.asList( new String( "b" ), new String( "a" ), new String( "b" ) );
+		final List< String > cols = Arrays.asList( new String( "x" ), new String( "y" ), new String( "y" ) );
+		final double[] costs = new double[] { 1., 2., 3. };
+
+		final DefaultCostMatrixCreator< String, String > creator = new DefaultCostMatrixCreator<>( rows, cols, costs, 1.05, 1. );
+		assertTrue( creator.getErrorMessage(), creator.checkInput() && creator.process() );
+		assertEquals( Arrays.asList( "a", "b" ), creator.getSourceList() );
+		assertEquals( Arrays.asList( "x", "y" ), creator.getTargetList() );
+
+		final SparseCostMatrix cm = creator.getResult();
+		assertEquals( 2, cm.getNRows() );
+		assertEquals( 2, cm.getNCols() );
+		assertEquals( 2., cm.get( 0, 1, Double.NaN ), 0. );
+		assertEquals( 1., cm.get( 1, 0, Double.NaN ), 0. );
+		assertEquals( 3., cm.get( 1, 1, Double.NaN ), 0. );
+		assertTrue( Double.isNaN( cm.get( 0, 0, Double.NaN ) ) );
+	}
+
+	@Test
+	public void testDuplicateOfEqualObjects()
+	{
+		final List< String > rows = Arrays.asList( new String( "a" ), new String( "a" ) );
+		final List< String > cols = Arrays.asList( new String( "x" ), new String( "x" ) );
+		final DefaultCostMatrixCreator< String, String > creator = new DefaultCostMatrixCreator<>( rows, cols, new double[] { 1., 2. }, 1.05, 1. );
+		assertTrue( creator.checkInput() );
+		assertFalse( "Duplicate assignment was not detected.", creator.process() );
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.jaqaman.costfunction.SquareDistCostFunction;
+
+public class JaqamanLinkingCostMatrixCreatorTest
+{
+
+	@Test
+	public void testSpatialSearchMatchesExhaustive()
+	{
+		final Random ran = new Random( 3l );
+		final List< Spot > sources = randomSpots( ran, 400 );
+		final List< Spot > targets = randomSpots( ran, 500 );
+		final double maxDistance = 4.;
+
+		final SquareDistCostFunction costFunction = new SquareDistCostFunction();
+		assertSame( sources, targets, costFunction, maxDistance * maxDistance );
+
+		final FeaturePenaltyCostFunction penaltyFunction = new FeaturePenaltyCostFunction( Collections.singletonMap( Spot.QUALITY, 1. ) );
+		assertTrue( penaltyFunction.isBoundedBySquareDistance( sources, targets ) );
+		assertSame( sources, targets, penaltyFunction, maxDistance * maxDistance );
+	}
+
+	private static void assertSame( final List< Spot > sources, final List< Spot > targets, final CostFunction< Spot, Spot > costFunction, final double costThreshold )
+	{
+		final JaqamanLinkingCostMatrixCreator< Spot, Spot > spatial = new JaqamanLinkingCostMatrixCreator<>( sources, targets, costFunction, costThreshold, 1.05, 1. );
+		// Not bounded, so it searches all pairs.
+		final CostFunction< Spot, Spot > exhaustiveFunction = ( s, t ) -> costFunction.linkingCost( s, t );
+		final JaqamanLinkingCostMatrixCreator< Spot, Spot > exhaustive = new JaqamanLinkingCostMatrixCreator<>( sources, targets, exhaustiveFunction, costThreshold, 1.05, 1. );
+		assertTrue( spatial.checkInput() && spatial.process() );
+		assertTrue( exhaustive.checkInput() && exhaustive.process() );
+
+		assertEquals( exhaustive.getSourceList(), spatial.getSourceList() );
+		assertEquals( exhaustive.getTargetList(), spatial.getTargetList() );
+		final SparseCostMatrix expected = exhaustive.getResult();
+		final SparseCostMatrix actual = spatial.getResult();
+		assertArrayEquals( expected.cc, actual.cc, 0. );
+		assertArrayEquals( expected.kk, actual.kk );
+		assertArrayEquals( expected.number, actual.number );
+		assertEquals( exhaustive.getAlternativeCostForSource( null ), spatial.getAlternativeCostForSource( null ), 0. );
+	}
+
+	private static List< Spot > randomSpots( final Random ran, final int n )
+	{
+		final List< Spot > spots = new ArrayList<>( n );
+		for ( int i = 0; i < n; i++ )
+			spots.add( new Spot( 100. * ran.nextDouble(), 100. * ran.nextDouble(), 10. * ran.nextDouble(), 1., 1. + ran.nextDouble() ) );
+		return spots;
+	}
+}
@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LAPJVTest
+{
+
+	/**
+	 * Creates a random square sparse cost matrix that always admits a
+	 * solution: the diagonal is set, plus a few random entries per row.
+	 */
+	private static SparseCostMatrix randomMatrix( final int n, final Random ran )
+	{
+		final int perRow = 4;
+		final double[] cc = new double[ n * perRow ];
+		final int[] kk = new int[ n * perRow ];
+		final int[] number = new int[ n ];
+		int index = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			final boolean[] cols = new boolean[ n ];
+			cols[ i ] = true;
+			for ( int k = 1; k < perRow; k++ )
+				cols[ ran.nextInt( n ) ] = true;
+			for ( int j = 0; j < n; j++ )
+			{
+				if ( !cols[ j ] )
+					continue;
+				kk[ index ] = j;
+				cc[ index ] = 1. + ran.nextInt( 100 );
+				index++;
+				number[ i ]++;
+			}
+		}
+		final double[] cc2 = new double[ index ];
+		final int[] kk2 = new int[ index ];
+		System.arraycopy( cc, 0, cc2, 0, index );
+		System.arraycopy( kk, 0, kk2, 0, index );
+		return new SparseCostMatrix( cc2, kk2, number, n );
+	}
+
+	@Test
+	public void testGreedyInitializationIsOptimal()
+	{
+		final Random ran = new Random( 2014l );
+		for ( int t = 0; t < 50; t++ )
+		{
+			final SparseCostMatrix cm = randomMatrix( 20 + ran.nextInt( 50 ), ran );
+
+			final LAPJV reduction = new LAPJV( cm );
+			assertFalse( "Column reduction failed.", !reduction.checkInput() || !reduction.process() );
+			final double expected = cm.totalAssignmentCost( reduction.getResult() );
+
+			final LAPJV greedy = new LAPJV( cm );
+			greedy.setGreedyInitialization( true );
+			assertFalse( "Greedy initialization failed.", !greedy.checkInput() || !greedy.process() );
+			assertEquals( "Greedy initialization did not find the optimal cost.", expected, cm.totalAssignmentCost( greedy.getResult() ), 1e-9 );
+		}
+	}
+}
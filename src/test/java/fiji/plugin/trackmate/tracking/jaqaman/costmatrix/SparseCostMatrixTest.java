@@ -21,6 +21,7 @@ package fiji.plugin.trackmate.tracking.jaqaman.costmatrix;
  * #L%
  */
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
@@ -78,4 +79,27 @@ public class SparseCostMatrixTest
 		}
 	}
 
+	@Test
+	public void testComponentLabels()
+	{
+		/*
+		 * Rows 0 & 2 share column 1; row 1 is alone with columns 0 & 3; row 3
+		 * is alone with column 2.
+		 */
+		final int[] kk = new int[] { 1, 0, 3, 1, 2 };
+		final double[] cc = new double[] { 0.1, 0.2, 0.3, 0.4, 0.5 };
+		final int[] number = new int[] { 1, 2, 1, 1 };
+		final SparseCostMatrix A = new SparseCostMatrix( cc, kk, number, 4 );
+		final int[] labels = A.componentLabels();
+
+		final int[] expected = new int[] { 0, 1, 0, 2, 1, 0, 2, 1 };
+		assertArrayEquals( "Bad component labels.", expected, labels );
+
+		final SparseCostMatrix B = A.subMatrix( new int[] { 1 }, new int[] { 0, -1, -1, 1 }, 2 );
+		assertEquals( "Bad number of rows.", 1, B.nRows );
+		assertEquals( "Bad number of cols.", 2, B.nCols );
+		assertEquals( "Bad value.", 0.2, B.get( 0, 0, Double.NaN ), Double.MIN_VALUE );
+		assertEquals( "Bad value.", 0.3, B.get( 0, 1, Double.NaN ), Double.MIN_VALUE );
+	}
+
 }
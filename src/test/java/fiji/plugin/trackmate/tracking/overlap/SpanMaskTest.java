@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.tracking.overlap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpanMaskTest
+{
+
+	private static final double PIXEL_SIZE = 0.1;
+
+	@Test
+	public void testCircleArea()
+	{
+		final SpanMask mask = SpanMask.rasterize( circleX( 13.3, 10. ), circleY( -7.1, 10. ), PIXEL_SIZE );
+		final double area = mask.area() * PIXEL_SIZE * PIXEL_SIZE;
+		assertEquals( "Unexpected area for a circle.", Math.PI * 100., area, 0.01 * Math.PI * 100. );
+		assertEquals( "A mask should fully intersect itself.", mask.area(), mask.intersection( mask ) );
+	}
+
+	@Test
+	public void testIntersection()
+	{
+		// Two circles of radius 10, distant by 5.
+		final SpanMask m1 = SpanMask.rasterize( circleX( 0., 10. ), circleY( 0., 10. ), PIXEL_SIZE );
+		final SpanMask m2 = SpanMask.rasterize( circleX( 5., 10. ), circleY( 0., 10. ), PIXEL_SIZE );
+		final double expected = 2. * 100. * Math.acos( 0.25 ) - 5. * Math.sqrt( 100. - 6.25 );
+		final double intersection = m1.intersection( m2 ) * PIXEL_SIZE * PIXEL_SIZE;
+		assertEquals( "Unexpected intersection area.", expected, intersection, 0.01 * expected );
+		assertEquals( "Intersection should be symmetric.", m1.intersection( m2 ), m2.intersection( m1 ) );
+
+		final SpanMask m3 = SpanMask.rasterize( circleX( 25., 10. ), circleY( 0., 10. ), PIXEL_SIZE );
+		assertEquals( "Disjoint masks should not intersect.", 0l, m1.intersection( m3 ) );
+	}
+
+	@Test
+	public void testBoxGridSearch()
+	{
+		final Random ran = new Random( 1l );
+		final int n = 500;
+		final double[] boxes = new double[ 4 * n ];
+		for ( int i = 0; i < n; i++ )
+		{
+			final double x = 100. * ran.nextDouble();
+			final double y = 100. * ran.nextDouble();
+			boxes[ 4 * i ] = x;
+			boxes[ 4 * i + 1 ] = y;
+			boxes[ 4 * i + 2 ] = x + 10. * ran.nextDouble();
+			boxes[ 4 * i + 3 ] = y + 10. * ran.nextDouble();
+		}
+		final BoxGrid grid = new BoxGrid( boxes );
+
+		for ( int q = 0; q < 100; q++ )
+		{
+			final double x = 110. * ran.nextDouble() - 5.;
+			final double y = 110. * ran.nextDouble() - 5.;
+			final double[] query = new double[] { x, y, x + 10. * ran.nextDouble(), y + 10. * ran.nextDouble() };
+
+			// Exhaustive search.
+			final int[] hits = new int[ n ];
+			int size = 0;
+			for ( int i = 0; i < n; i++ )
+				if ( boxes[ 4 * i ] < query[ 2 ] && query[ 0 ] < boxes[ 4 * i + 2 ]
+						&& boxes[ 4 * i + 1 ] < query[ 3 ] && query[ 1 ] < boxes[ 4 * i + 3 ] )
+					hits[ size++ ] = i;
+			final int[] expected = new int[ size ];
+			System.arraycopy( hits, 0, expected, 0, size );
+
+			assertArrayEquals( "Unexpected boxes found for query " + q, expected, grid.search( query, 0 ) );
+		}
+	}
+
+	private static double[] circleX( final double xc, final double radius )
+	{
+		final double[] x = new double[ 64 ];
+		for ( int i = 0; i < x.length; i++ )
+			x[ i ] = xc + radius * Math.cos( 2. * Math.PI * i / x.length );
+		return x;
+	}
+
+	private static double[] circleY( final double yc, final double radius )
+	{
+		final double[] y = new double[ 64 ];
+		for ( int i = 0; i < y.length; i++ )
+			y[ i ] = yc + radius * Math.sin( 2. * Math.PI * i / y.length );
+		return y;
+	}
+}
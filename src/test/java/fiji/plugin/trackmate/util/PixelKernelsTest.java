@@ -0,0 +1,205 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2010 - 2024 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imagej.ImgPlus;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgView;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.Views;
+
+public class PixelKernelsTest
+{
+
+	@Test
+	public void testSum()
+	{
+		final Random ran = new Random( 1l );
+		final double[] data = new double[ 1003 ];
+		double expected = 0.;
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[ i ] = ran.nextDouble();
+			expected += data[ i ];
+		}
+		assertEquals( expected, PixelKernels.sum( data, data.length ), 1e-9 );
+		assertEquals( data[ 0 ] + data[ 1 ], PixelKernels.sum( data, 2 ), 0. );
+	}
+
+	@Test
+	public void testMinMax()
+	{
+		final Img< FloatType > floats = fill( ArrayImgs.floats( 37, 21, 3 ) );
+		assertArrayEquals( genericMinMax( floats ), PixelKernels.minMax( floats ), 0. );
+
+		final Img< UnsignedShortType > planar = fill( PlanarImgs.unsignedShorts( 17, 23, 4 ) );
+		assertArrayEquals( genericMinMax( planar ), PixelKernels.minMax( planar ), 0. );
+
+		// Views use the primitive arrays too.
+		for ( final RandomAccessibleInterval< FloatType > view : views( fill( ArrayImgs.floats( 20, 18, 5 ) ) ) )
+			assertArrayEquals( genericMinMax( Views.iterable( view ) ), PixelKernels.minMax( Views.iterable( view ) ), 0. );
+		for ( final RandomAccessibleInterval< FloatType > view : views( fill( PlanarImgs.floats( 20, 18, 5 ) ) ) )
+			assertArrayEquals( genericMinMax( Views.iterable( view ) ), PixelKernels.minMax( Views.iterable( view ) ), 0. );
+	}
+
+	@Test
+	public void testViews()
+	{
+		for ( final Img< FloatType > img : Arrays.asList( ArrayImgs.floats( 20, 18, 5 ), PlanarImgs.floats( 20, 18, 5 ) ) )
+		{
+			for ( final RandomAccessibleInterval< FloatType > view : views( img ) )
+				assertTrue( PixelKernels.isArrayBacked( view ) );
+
+			// Views that do not keep lines contiguous fall back.
+			assertFalse( PixelKernels.isArrayBacked( Views.permute( img, 0, 1 ) ) );
+			assertFalse( PixelKernels.isArrayBacked( Views.invertAxis( img, 0 ) ) );
+			// As do views that read outside of the image.
+			assertFalse( PixelKernels.isArrayBacked( Views.interval( Views.extendZero( img ), new long[] { -1, 0, 0 }, new long[] { 5, 5, 2 } ) ) );
+		}
+		assertFalse( PixelKernels.isArrayBacked( new CellImgFactory<>( new FloatType(), 8 ).create( 20, 18, 5 ) ) );
+	}
+
+	@Test
+	public void testNormalizeView()
+	{
+		final Img< FloatType > img = fill( PlanarImgs.floats( 20, 18, 5 ) );
+		final Img< FloatType > copy = img.copy();
+		final IntervalView< FloatType > view = Views.interval( img, new long[] { 2, 3, 1 }, new long[] { 12, 10, 3 } );
+		PixelKernels.normalize( view );
+		assertArrayEquals( new double[] { 0., 1. }, PixelKernels.minMax( view ), 1e-7 );
+
+		// Pixels outside of the view are untouched.
+		final Cursor< FloatType > c1 = img.localizingCursor();
+		final Cursor< FloatType > c2 = copy.cursor();
+		while ( c1.hasNext() )
+		{
+			c1.fwd();
+			c2.fwd();
+			if ( !Intervals.contains( view, c1 ) )
+				assertEquals( c2.get().get(), c1.get().get(), 0f );
+		}
+	}
+
+	@Test
+	public void testNormalize()
+	{
+		final Img< FloatType > img = fill( PlanarImgs.floats( 31, 17, 2 ) );
+		PixelKernels.normalize( img );
+		assertArrayEquals( new double[] { 0., 1. }, PixelKernels.minMax( img ), 1e-7 );
+	}
+
+	@Test
+	public void testThreshold()
+	{
+		final Img< UnsignedShortType > img = fill( ArrayImgs.unsignedShorts( 29, 13 ) );
+		final double threshold = 30000.;
+		final Img< BitType > mask = PixelKernels.threshold( img, threshold );
+		assertNotNull( mask );
+		final Cursor< UnsignedShortType > c1 = img.cursor();
+		final Cursor< BitType > c2 = mask.cursor();
+		while ( c1.hasNext() )
+			assertEquals( c1.next().getRealDouble() > threshold, c2.next().get() );
+
+		for ( final RandomAccessibleInterval< UnsignedShortType > view : views( fill( PlanarImgs.unsignedShorts( 20, 18, 5 ) ) ) )
+			assertThreshold( view, threshold );
+		for ( final RandomAccessibleInterval< UnsignedShortType > view : views( fill( ArrayImgs.unsignedShorts( 20, 18, 5 ) ) ) )
+			assertThreshold( view, threshold );
+
+		assertNull( PixelKernels.threshold( Views.permute( img, 0, 1 ), threshold ) );
+	}
+
+	private static < T extends RealType< T > > void assertThreshold( final RandomAccessibleInterval< T > view, final double threshold )
+	{
+		final Img< BitType > mask = PixelKernels.threshold( view, threshold );
+		assertNotNull( mask );
+		assertArrayEquals( Intervals.dimensionsAsLongArray( view ), Intervals.dimensionsAsLongArray( mask ) );
+		final Cursor< T > c1 = Views.flatIterable( view ).cursor();
+		final Cursor< BitType > c2 = mask.cursor();
+		while ( c1.hasNext() )
+			assertEquals( c1.next().getRealDouble() > threshold, c2.next().get() );
+	}
+
+	/**
+	 * The views the detectors and analyzers take on a 3D image: crops,
+	 * zero-min crops, hyperslices and their combinations.
+	 */
+	private static < T extends NativeType< T > & RealType< T > > List< RandomAccessibleInterval< T > > views( final Img< T > img )
+	{
+		final List< RandomAccessibleInterval< T > > views = new ArrayList<>();
+		final long[] min = new long[] { 2, 3, 1 };
+		final long[] max = new long[] { 12, 10, 3 };
+		views.add( Views.interval( img, img ) );
+		views.add( Views.interval( img, min, max ) );
+		views.add( Views.zeroMin( Views.interval( img, min, max ) ) );
+		views.add( Views.hyperSlice( img, 2, 2 ) );
+		views.add( Views.hyperSlice( img, 1, 4 ) );
+		views.add( Views.zeroMin( Views.interval( Views.hyperSlice( img, 2, 3 ), new long[] { 1, 1 }, new long[] { 8, 9 } ) ) );
+		views.add( Views.translate( img, 5, -2, 7 ) );
+		views.add( new ImgPlus<>( ImgView.wrap( Views.hyperSlice( img, 2, 4 ), img.factory() ) ) );
+		return views;
+	}
+
+	private static < T extends RealType< T > > Img< T > fill( final Img< T > img )
+	{
+		final Random ran = new Random( 2l );
+		for ( final T t : img )
+			t.setReal( ran.nextDouble() * 60000. );
+		return img;
+	}
+
+	private static < T extends RealType< T > > double[] genericMinMax( final Iterable< T > img )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for ( final T t : img )
+		{
+			min = Math.min( min, t.getRealDouble() );
+			max = Math.max( max, t.getRealDouble() );
+		}
+		return new double[] { min, max };
+	}
+}
@@ -22,6 +22,9 @@
 package fiji.plugin.trackmate.util;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.util.Arrays;
 
@@ -74,6 +77,30 @@ public class SpotRoiIterableTest
 		assertArrayEquals( "Cursor did not iterate the expected area.", iteratedPixels, arr );
 	}
 
+	@Test
+	public void testMaskCache()
+	{
+		final double[] xp = new double[] { 4.5, 8.5, 4.5, 1.5 };
+		final double[] yp = new double[] { 1.5, 5, 8.8, 5 };
+		final Spot spot = SpotRoi.createSpot( xp, yp, 1. );
+		final SpotRoi roi = spot.getRoi();
+		final double x = spot.getDoublePosition( 0 );
+		final double y = spot.getDoublePosition( 1 );
+
+		final SpotRoiMask mask = roi.getMask( x, y, 1., 1. );
+		assertSame( "Mask should be reused.", mask, roi.getMask( x, y, 1., 1. ) );
+		assertEquals( 26, mask.size() );
+
+		// Moving the spot invalidates the mask.
+		final SpotRoiMask moved = roi.getMask( x + 1., y, 1., 1. );
+		assertNotSame( mask, moved );
+		assertEquals( mask.min( 0 ) + 1, moved.min( 0 ) );
+
+		// Changing the ROI too.
+		roi.scale( 2. );
+		assertNotSame( moved, roi.getMask( x + 1., y, 1., 1. ) );
+	}
+
 	public static void main( final String[] args )
 	{
 		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 10, 10 );